@@ -0,0 +1,259 @@
+/**
+ * Load test: check-in burst, dashboard polling and badminton matchmaking against the real app
+ * Usage: node benchmarks/checkinBurst.loadtest.js [scenarios] [timeScale]
+ *   e.g. node benchmarks/checkinBurst.loadtest.js qr,dashboard,matchmaking 0.25
+ *
+ * Boots src/server.js with src/config/supabase.js swapped for an in-process fake of the
+ * supabase-js client (support/fakeSupabase.js, seeded by support/loadTestSeed.js), so every
+ * route, middleware and service runs unchanged and each database round trip costs
+ * FAKE_DB_LATENCY_MS (default 2 ms). Requests are sent open-loop on a fixed arrival schedule;
+ * timeScale compresses the schedule (0.25 replays the 60 s burst in 15 s).
+ *
+ * Scenarios run in order against the same server, so caches warmed by one carry over to
+ * the next, as they would in production:
+ *   qr           300 swimming QR scans over 60 s, front-loaded at slot start
+ *   dashboard    150 users polling their dashboard every 5 s for 60 s (4 GETs per poll)
+ *   matchmaking  64 players going available, then joining the 1v1 queue over 20 s
+ *
+ * Reports p50/p99/max latency per endpoint, throughput and database calls per request
+ * (queries + RPCs counted by the fake), plus the busiest tables/RPCs per scenario.
+ */
+import process from "node:process";
+import { fork } from "node:child_process";
+import { performance } from "node:perf_hooks";
+import { fileURLToPath } from "node:url";
+import jwt from "jsonwebtoken";
+import {
+  SWIMMING_QR_VALUE,
+  CURRENT_SLOT_ID,
+  userId
+} from './support/loadTestSeed.js';
+
+const BACKEND_DIR = fileURLToPath(new URL('..', import.meta.url));
+const PRELOAD = fileURLToPath(new URL('./support/loadTestServer.js', import.meta.url));
+const JWT_SECRET = 'checkin-burst-load-test';
+const PORT = parseInt(process.env.LOADTEST_PORT, 10) || 3950;
+const BASE_URL = `http://127.0.0.1:${PORT}`;
+const USERS = 400;
+const VERBOSE = process.env.LOADTEST_VERBOSE === '1';
+
+const scenarioNames = (process.argv[2] || 'qr,dashboard,matchmaking').split(',');
+const timeScale = parseFloat(process.argv[3]) || 1;
+
+const tokens = Array.from({ length: USERS }, (_, i) => jwt.sign({ id: userId(i) }, JWT_SECRET, { expiresIn: '1h' }));
+
+const request = (label, user, method, path, body) => ({ label, user, method, path, body });
+
+/**
+ * Arrival offsets for n events over windowMs, front-loaded like a queue at the pool door:
+ * exponential decay with rate k, truncated to the window (k = 4 puts half the arrivals in
+ * the first ~10 s of a 60 s window)
+ */
+const frontLoaded = (n, windowMs, k = 4) => Array.from({ length: n }, (_, i) => {
+  const u = (i + 0.5) / n;
+  return windowMs * (-Math.log(1 - u * (1 - Math.exp(-k))) / k);
+});
+
+const uniform = (n, windowMs) => Array.from({ length: n }, (_, i) => (windowMs * i) / n);
+
+/**
+ * Each scenario is a list of sessions: { at, steps }, where steps run one after another and
+ * the requests inside a step are sent concurrently
+ */
+const SCENARIOS = {
+  qr: () => frontLoaded(300, 60000).map((at, i) => ({
+    at,
+    steps: [[request('POST /api/qr/scan', i, 'POST', '/api/qr/scan', { qrCodeValue: SWIMMING_QR_VALUE })]]
+  })),
+
+  dashboard: () => {
+    const pollers = 150;
+    const intervalMs = 5000;
+    const durationMs = 60000;
+    const sessions = [];
+    for (let i = 0; i < pollers; i++) {
+      for (let at = (intervalMs * i) / pollers; at < durationMs; at += intervalMs) {
+        sessions.push({
+          at,
+          steps: [[
+            request('GET /api/swimming/registration/status', i, 'GET', '/api/swimming/registration/status'),
+            request('GET /api/swimming/attendance/current-count/:id', i, 'GET', `/api/swimming/attendance/current-count/${CURRENT_SLOT_ID}`),
+            request('GET /api/leagues', i, 'GET', '/api/leagues'),
+            request('GET /api/badminton/players/available', i, 'GET', '/api/badminton/players/available')
+          ]]
+        });
+      }
+    }
+    return sessions;
+  },
+
+  matchmaking: () => uniform(64, 20000).map((at, i) => ({
+    at,
+    steps: [
+      [request('POST /api/badminton/availability/toggle', 300 + i, 'POST', '/api/badminton/availability/toggle', { isAvailable: true })],
+      [request('POST /api/badminton/matches/queue', 300 + i, 'POST', '/api/badminton/matches/queue', { matchMode: '1v1' })]
+    ]
+  }))
+};
+
+const send = async ({ label, user, method, path, body }) => {
+  const start = performance.now();
+  let status = 0;
+  try {
+    const response = await fetch(`${BASE_URL}${path}`, {
+      method,
+      headers: {
+        Authorization: `Bearer ${tokens[user]}`,
+        ...(body ? { 'Content-Type': 'application/json' } : {})
+      },
+      body: body ? JSON.stringify(body) : undefined
+    });
+    await response.arrayBuffer();
+    status = response.status;
+  } catch (error) {
+    if (VERBOSE) {
+      console.error(`${label} failed:`, error.message);
+    }
+  }
+  return { label, status, ms: performance.now() - start };
+};
+
+const runSessions = async (sessions) => {
+  const results = [];
+  const start = performance.now();
+
+  await Promise.all(sessions.map(session => new Promise((resolve) => {
+    setTimeout(async () => {
+      for (const step of session.steps) {
+        results.push(...await Promise.all(step.map(send)));
+      }
+      resolve();
+    }, session.at * timeScale);
+  })));
+
+  return { results, elapsedMs: performance.now() - start };
+};
+
+// ---------------------------------------------------------------------------
+// Server process
+// ---------------------------------------------------------------------------
+
+const startServer = async () => {
+  const server = fork('src/server.js', [], {
+    cwd: BACKEND_DIR,
+    execArgv: ['--import', PRELOAD],
+    silent: !VERBOSE,
+    env: {
+      ...process.env,
+      PORT: String(PORT),
+      JWT_SECRET,
+      SUPABASE_URL: 'http://fake-supabase.invalid',
+      SUPABASE_ANON_KEY: 'load-test',
+      SUPABASE_SERVICE_ROLE_KEY: 'load-test',
+      GEMINI_API_KEY: process.env.GEMINI_API_KEY || 'load-test',
+      LOADTEST_USERS: String(USERS)
+    }
+  });
+  if (!VERBOSE) {
+    // Drain the request logs so the pipe never blocks the server
+    server.stdout.resume();
+    server.stderr.resume();
+  }
+
+  const deadline = Date.now() + 30000;
+  while (Date.now() < deadline) {
+    if (server.exitCode !== null) {
+      throw new Error(`Server exited with code ${server.exitCode} (rerun with LOADTEST_VERBOSE=1)`);
+    }
+    try {
+      const response = await fetch(`${BASE_URL}/health`);
+      if (response.ok) {
+        return server;
+      }
+    } catch {
+      // Not listening yet
+    }
+    await new Promise(resolve => setTimeout(resolve, 100));
+  }
+
+  server.kill('SIGKILL');
+  throw new Error('Server did not become healthy within 30 s');
+};
+
+const ask = (server, message, type) => new Promise((resolve) => {
+  const onMessage = (reply) => {
+    if (reply?.type === type) {
+      server.off('message', onMessage);
+      resolve(reply);
+    }
+  };
+  server.on('message', onMessage);
+  server.send(message);
+});
+
+// ---------------------------------------------------------------------------
+// Reporting
+// ---------------------------------------------------------------------------
+
+const percentile = (sorted, p) => sorted.length ? sorted[Math.min(sorted.length - 1, Math.floor(sorted.length * p))] : NaN;
+
+const formatRow = (label, results) => {
+  const latencies = results.map(result => result.ms).sort((a, b) => a - b);
+  const byClass = (low, high) => results.filter(result => result.status >= low && result.status < high).length;
+  const failed = results.filter(result => result.status === 0).length;
+
+  return (
+    `  ${label.padEnd(48)} ` +
+    `${String(results.length).padStart(6)} ` +
+    `${String(byClass(200, 300)).padStart(6)} ` +
+    `${String(byClass(400, 500)).padStart(6)} ` +
+    `${String(byClass(500, 600) + failed).padStart(6)} ` +
+    `${percentile(latencies, 0.5).toFixed(1).padStart(9)} ` +
+    `${percentile(latencies, 0.99).toFixed(1).padStart(9)} ` +
+    `${latencies[latencies.length - 1].toFixed(1).padStart(9)}`
+  );
+};
+
+const report = (name, { results, elapsedMs }, stats) => {
+  const labels = [...new Set(results.map(result => result.label))];
+
+  console.log(`\n${name} (${(elapsedMs / 1000).toFixed(1)} s)`);
+  console.log(`  ${'endpoint'.padEnd(48)}   reqs    2xx    4xx  5xx/x   p50 ms    p99 ms    max ms`);
+  labels.forEach(label => console.log(formatRow(label, results.filter(result => result.label === label))));
+  console.log(formatRow('all', results));
+
+  console.log(
+    `  throughput ${(results.length / (elapsedMs / 1000)).toFixed(1)} req/s, ` +
+    `db calls ${stats.calls} (${(stats.calls / results.length).toFixed(2)} per request)`
+  );
+  const busiest = Object.entries(stats.byTarget).slice(0, 6)
+    .map(([target, calls]) => `${target} ${calls}`)
+    .join(', ');
+  if (busiest) {
+    console.log(`  busiest: ${busiest}`);
+  }
+};
+
+// ---------------------------------------------------------------------------
+// Driver
+// ---------------------------------------------------------------------------
+
+const unknown = scenarioNames.filter(name => !SCENARIOS[name]);
+if (unknown.length > 0) {
+  console.error(`Unknown scenario(s): ${unknown.join(', ')}. Available: ${Object.keys(SCENARIOS).join(', ')}`);
+  process.exit(1);
+}
+
+const server = await startServer();
+console.log(`Server on ${BASE_URL}, ${USERS} users, db latency ${process.env.FAKE_DB_LATENCY_MS ?? 2} ms/call, time scale ${timeScale}`);
+
+try {
+  for (const name of scenarioNames) {
+    await ask(server, 'db:reset', 'db:reset');
+    const run = await runSessions(SCENARIOS[name]());
+    const { stats } = await ask(server, 'db:stats', 'db:stats');
+    report(name, run, stats);
+  }
+} finally {
+  server.kill('SIGTERM');
+}
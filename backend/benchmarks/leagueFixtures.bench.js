@@ -0,0 +1,88 @@
+/**
+ * Benchmark: league fixture generation + court scheduling over synthetic league sizes
+ * Usage: node benchmarks/leagueFixtures.bench.js [participantCounts] [courts] [busyBookings]
+ *   e.g. node benchmarks/leagueFixtures.bench.js 16,64,256,512 8 2000
+ *
+ * Times the pure engine (utils/fixtureScheduling.js) that generateLeagueFixtures runs between
+ * its database reads and its staged, single-transaction write. The scheduling window is sized
+ * so every round-robin match fits; existing bookings are spread randomly over the courts.
+ */
+import process from "node:process";
+import { performance } from "node:perf_hooks";
+import {
+  generateRoundRobin,
+  generateKnockout,
+  scheduleFixtures
+} from '../src/utils/fixtureScheduling.js';
+
+const participantCounts = (process.argv[2] || '16,64,128,256,512').split(',').map(value => parseInt(value, 10));
+const courtCount = parseInt(process.argv[3], 10) || 8;
+const busyCount = parseInt(process.argv[4], 10) || 2000;
+const RUNS = 5;
+
+const SLOT_MINUTES = 30;
+const DAY_START = 8 * 60;
+const DAY_END = 22 * 60;
+const SLOTS_PER_DAY = (DAY_END - DAY_START) / SLOT_MINUTES;
+
+const courtIds = Array.from({ length: courtCount }, (_, i) => `court-${i + 1}`);
+const windowStart = new Date(2025, 0, 6);
+
+const windowFor = (matches) => {
+  // Enough days for every match plus headroom for the busy bookings and round boundaries
+  const days = Math.ceil((matches * 1.5) / (SLOTS_PER_DAY * courtCount)) + 7;
+  const windowEnd = new Date(windowStart);
+  windowEnd.setDate(windowEnd.getDate() + days);
+  return windowEnd;
+};
+
+const busyBookings = (windowEnd) => {
+  const span = windowEnd.getTime() - windowStart.getTime();
+  return Array.from({ length: busyCount }, (_, i) => {
+    const start = windowStart.getTime() + Math.floor(Math.random() * span);
+    return { courtId: courtIds[i % courtCount], start, end: start + 60 * 60 * 1000 };
+  });
+};
+
+const run = (label, participants, generate) => {
+  const ids = Array.from({ length: participants }, (_, i) => `player-${i + 1}`);
+  const matches = generate(ids).filter(fixture => fixture.status !== 'bye').length;
+  const windowEnd = windowFor(matches);
+  const busy = busyBookings(windowEnd);
+
+  // Warm up the JIT before measuring
+  scheduleFixtures(generate(ids), { courtIds, windowStart, windowEnd, busy });
+
+  let generateMs = 0;
+  let scheduleMs = 0;
+  let result = null;
+  for (let i = 0; i < RUNS; i++) {
+    const t0 = performance.now();
+    const fixtures = generate(ids);
+    const t1 = performance.now();
+    result = scheduleFixtures(fixtures, { courtIds, windowStart, windowEnd, busy });
+    const t2 = performance.now();
+    generateMs += t1 - t0;
+    scheduleMs += t2 - t1;
+  }
+
+  console.log(
+    `${label.padEnd(12)} ` +
+    `${String(participants).padStart(6)} ` +
+    `${matches.toLocaleString().padStart(10)} ` +
+    `${(generateMs / RUNS).toFixed(2).padStart(10)} ms ` +
+    `${(scheduleMs / RUNS).toFixed(2).padStart(10)} ms ` +
+    `${((generateMs + scheduleMs) / RUNS).toFixed(2).padStart(10)} ms ` +
+    `${result.success ? 'ok' : result.error}`
+  );
+};
+
+console.log(`Courts: ${courtCount}, existing bookings: ${busyCount}, slot: ${SLOT_MINUTES} min, runs: ${RUNS}\n`);
+console.log('format       players    matches    generate     schedule        total');
+
+for (const participants of participantCounts) {
+  run('round_robin', participants, generateRoundRobin);
+}
+for (const participants of participantCounts) {
+  run('knockout', participants, generateKnockout);
+}
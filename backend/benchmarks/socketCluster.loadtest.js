@@ -0,0 +1,322 @@
+/**
+ * Load test: Socket.IO connection capacity vs. cluster worker count
+ * Usage: node benchmarks/socketCluster.loadtest.js [connections] [workerCounts]
+ *   e.g. node benchmarks/socketCluster.loadtest.js 4000 1,2,4
+ *
+ * For each worker count a clustered server is started with the same sticky-session +
+ * cluster-adapter wiring as src/cluster.js (socket/socketCluster.js). Each handshake
+ * verifies a JWT like the real socket auth middleware. Client processes then open
+ * the connections, and one broadcast checks that room emits reach clients on every worker.
+ *
+ * Recycle under load: node benchmarks/socketCluster.loadtest.js recycle [connections] [workers]
+ *   e.g. node benchmarks/socketCluster.loadtest.js recycle 1000 4
+ * Boots the real src/cluster.js against the Supabase fake (support/loadTestServer.js), keeps
+ * HTTP requests flowing and the socket clients connected (with reconnection), sends SIGHUP
+ * and reports failed requests, socket reconnects and whether the primary survived.
+ */
+import process from "node:process";
+import cluster from "node:cluster";
+import os from "node:os";
+import { fork } from "node:child_process";
+import { createServer } from "node:http";
+import { performance } from "node:perf_hooks";
+import { fileURLToPath } from "node:url";
+import http from "node:http";
+import jwt from "jsonwebtoken";
+import { userId } from './support/loadTestSeed.js';
+
+const SCRIPT = fileURLToPath(import.meta.url);
+const BACKEND_DIR = fileURLToPath(new URL('..', import.meta.url));
+const PRELOAD = fileURLToPath(new URL('./support/loadTestServer.js', import.meta.url));
+const JWT_SECRET = 'socket-cluster-load-test';
+const RECYCLE_USERS = 400;
+const HTTP_CONCURRENCY = 16;
+const CLIENT_PROCESSES = Math.max(2, Math.min(8, os.availableParallelism() - 1));
+
+const [mode, ...args] = process.argv.slice(2);
+
+/**
+ * Clustered server: primary + workers
+ */
+const serve = async (workerCount, port) => {
+  const { setupSocketPrimary, attachSocketWorker } = await import('../src/socket/socketCluster.js');
+
+  if (cluster.isPrimary) {
+    const httpServer = createServer();
+    setupSocketPrimary(httpServer);
+
+    let ready = 0;
+    cluster.on('message', (_worker, message) => {
+      if (message === 'worker:ready' && ++ready === workerCount) {
+        httpServer.listen(port, () => process.send?.('server:ready'));
+      }
+    });
+
+    for (let i = 0; i < workerCount; i++) {
+      cluster.fork();
+    }
+    return;
+  }
+
+  const { Server } = await import('socket.io');
+  const httpServer = createServer();
+  const io = new Server(httpServer, { transports: ['websocket', 'polling'] });
+
+  // Same CPU work per handshake as the real auth middleware
+  io.use((socket, next) => {
+    try {
+      socket.userId = jwt.verify(socket.handshake.auth.token, JWT_SECRET).id;
+      next();
+    } catch {
+      next(new Error('Authentication error'));
+    }
+  });
+
+  io.on('connection', (socket) => {
+    socket.join('badminton');
+    socket.on('bench:broadcast', () => {
+      io.to('badminton').emit('bench:ping', { sentAt: Date.now() });
+    });
+  });
+
+  attachSocketWorker(io);
+  process.send('worker:ready');
+};
+
+/**
+ * Client process: open connections, then report broadcast deliveries
+ */
+const runClients = async (count, port, offset) => {
+  const { io } = await import('socket.io-client');
+  const sockets = [];
+  const latencies = [];
+
+  const start = performance.now();
+  await Promise.all(Array.from({ length: count }, (_, i) => new Promise((resolve) => {
+    const socket = io(`http://127.0.0.1:${port}`, {
+      transports: ['websocket'],
+      forceNew: true,
+      reconnection: false,
+      auth: { token: jwt.sign({ id: `user-${offset + i}` }, JWT_SECRET) }
+    });
+    socket.on('bench:ping', ({ sentAt }) => latencies.push(Date.now() - sentAt));
+    socket.once('connect', resolve);
+    socket.once('connect_error', resolve);
+    sockets.push(socket);
+  })));
+  const connectMs = performance.now() - start;
+
+  process.send({ type: 'connected', connected: sockets.filter(s => s.connected).length, connectMs });
+
+  process.on('message', (message) => {
+    if (message === 'broadcast') {
+      sockets[0].emit('bench:broadcast');
+    } else if (message === 'report') {
+      process.send({ type: 'report', latencies });
+    } else if (message === 'close') {
+      sockets.forEach(socket => socket.close());
+      process.exit(0);
+    }
+  });
+};
+
+/**
+ * Client process for the recycle run: app sockets that reconnect, counting disconnects
+ */
+const runRecycleClients = async (count, port, offset) => {
+  const { io } = await import('socket.io-client');
+  let disconnects = 0;
+  let reconnects = 0;
+
+  const sockets = await Promise.all(Array.from({ length: count }, (_, i) => new Promise((resolve) => {
+    const socket = io(`http://127.0.0.1:${port}`, {
+      transports: ['websocket'],
+      forceNew: true,
+      reconnectionDelay: 200,
+      auth: { token: jwt.sign({ id: userId((offset + i) % RECYCLE_USERS) }, JWT_SECRET) }
+    });
+    socket.on('disconnect', () => disconnects++);
+    socket.io.on('reconnect', () => reconnects++);
+    socket.once('connect', () => resolve(socket));
+    socket.once('connect_error', () => resolve(socket));
+  })));
+
+  process.send({ type: 'connected', connected: sockets.filter(s => s.connected).length });
+
+  process.on('message', (message) => {
+    if (message === 'report') {
+      process.send({ type: 'report', connected: sockets.filter(s => s.connected).length, disconnects, reconnects });
+    } else if (message === 'close') {
+      sockets.forEach(socket => socket.close());
+      process.exit(0);
+    }
+  });
+};
+
+const waitFor = (child, predicate) => new Promise((resolve) => {
+  const onMessage = (message) => {
+    if (predicate(message)) {
+      child.off('message', onMessage);
+      resolve(message);
+    }
+  };
+  child.on('message', onMessage);
+});
+
+/**
+ * Driver: one round per worker count
+ */
+const runRound = async (workerCount, connections, port) => {
+  const server = fork(SCRIPT, ['serve', String(workerCount), String(port)]);
+  await waitFor(server, message => message === 'server:ready');
+
+  const perProcess = Math.ceil(connections / CLIENT_PROCESSES);
+  const clients = Array.from({ length: CLIENT_PROCESSES }, (_, i) =>
+    fork(SCRIPT, ['clients', String(perProcess), String(port), String(i * perProcess)])
+  );
+
+  const connectedReports = await Promise.all(clients.map(client => waitFor(client, m => m.type === 'connected')));
+  const connected = connectedReports.reduce((sum, report) => sum + report.connected, 0);
+  const connectMs = Math.max(...connectedReports.map(report => report.connectMs));
+
+  clients[0].send('broadcast');
+  await new Promise(resolve => setTimeout(resolve, 2000));
+  clients.forEach(client => client.send('report'));
+  const latencies = (await Promise.all(clients.map(client => waitFor(client, m => m.type === 'report'))))
+    .flatMap(report => report.latencies)
+    .sort((a, b) => a - b);
+
+  clients.forEach(client => client.send('close'));
+  server.kill('SIGKILL');
+
+  const p99 = latencies.length ? latencies[Math.min(latencies.length - 1, Math.floor(latencies.length * 0.99))] : NaN;
+  console.log(
+    `${String(workerCount).padStart(7)} ` +
+    `${String(connected).padStart(11)} ` +
+    `${connectMs.toFixed(0).padStart(12)} ms ` +
+    `${Math.round(connected / (connectMs / 1000)).toLocaleString().padStart(10)} conn/s ` +
+    `${`${latencies.length}/${connected}`.padStart(14)} ` +
+    `${String(p99).padStart(8)} ms`
+  );
+};
+
+/**
+ * Driver for the recycle run
+ */
+const runRecycle = async (connections, workerCount, port) => {
+  const server = fork(fileURLToPath(new URL('../src/cluster.js', import.meta.url)), [], {
+    cwd: BACKEND_DIR,
+    execArgv: [...process.execArgv, '--import', PRELOAD],
+    env: {
+      ...process.env,
+      PORT: String(port),
+      JWT_SECRET,
+      WEB_CONCURRENCY: String(workerCount),
+      LOADTEST_USERS: String(RECYCLE_USERS),
+      SHUTDOWN_READINESS_DELAY_MS: '0'
+    },
+    silent: true
+  });
+
+  const logs = [];
+  server.stdout.on('data', chunk => logs.push(...chunk.toString().split('\n').filter(Boolean)));
+  server.stderr.on('data', chunk => logs.push(...chunk.toString().split('\n').filter(Boolean)));
+  const recycled = new Promise(resolve => server.stdout.on('data', chunk => {
+    if (chunk.toString().includes('Worker recycle finished')) {
+      resolve(true);
+    }
+  }));
+
+  // FIFO keeps every pooled socket busy: one left idle past the server's keepAliveTimeout
+  // races its close, which would count against the recycle
+  const agent = new http.Agent({ keepAlive: true, maxSockets: HTTP_CONCURRENCY, scheduling: 'fifo' });
+  const get = (path) => new Promise((resolve) => {
+    const req = http.get({ host: '127.0.0.1', port, path, agent, timeout: 10000 }, (res) => {
+      res.resume();
+      res.on('end', () => resolve(res.statusCode));
+    });
+    req.on('timeout', () => req.destroy(new Error('timeout')));
+    req.on('error', error => resolve(error.message));
+  });
+
+  while (await get('/health/ready') !== 200) {
+    await new Promise(resolve => setTimeout(resolve, 200));
+  }
+
+  const clientCount = connections > 0 ? CLIENT_PROCESSES : 0;
+  const perProcess = Math.ceil(connections / Math.max(clientCount, 1));
+  const clients = Array.from({ length: clientCount }, (_, i) =>
+    fork(SCRIPT, ['recycle-clients', String(perProcess), String(port), String(i * perProcess)])
+  );
+  const connected = (await Promise.all(clients.map(client => waitFor(client, m => m.type === 'connected'))))
+    .reduce((sum, report) => sum + report.connected, 0);
+
+  // Keep HTTP traffic flowing through the whole recycle
+  const statuses = new Map();
+  let running = true;
+  const loops = Array.from({ length: HTTP_CONCURRENCY }, async () => {
+    while (running) {
+      const status = await get('/health');
+      statuses.set(status, (statuses.get(status) || 0) + 1);
+    }
+  });
+
+  await new Promise(resolve => setTimeout(resolve, 1000));
+  const startedAt = performance.now();
+  server.kill('SIGHUP');
+  let timer;
+  const finished = await Promise.race([
+    recycled,
+    new Promise(resolve => server.once('exit', () => resolve(false))),
+    new Promise(resolve => {
+      timer = setTimeout(() => resolve(false), 120000);
+    })
+  ]);
+  clearTimeout(timer);
+  const recycleMs = performance.now() - startedAt;
+  await new Promise(resolve => setTimeout(resolve, 2000));
+  running = false;
+  await Promise.all(loops);
+
+  clients.forEach(client => client.send('report'));
+  const reports = await Promise.all(clients.map(client => waitFor(client, m => m.type === 'report')));
+  clients.forEach(client => client.send('close'));
+
+  const primaryAlive = server.exitCode === null && server.signalCode === null;
+  server.kill('SIGTERM');
+  agent.destroy();
+
+  const failed = [...statuses].filter(([status]) => status !== 200);
+  console.log(`Workers: ${workerCount}, sockets: ${connected}/${connections}`);
+  console.log(`Recycle ${finished ? 'finished' : 'did NOT finish'} in ${recycleMs.toFixed(0)} ms, primary ${primaryAlive ? 'alive' : 'DIED'}`);
+  console.log(`HTTP: ${[...statuses.values()].reduce((a, b) => a + b, 0)} requests, failed: ${failed.length ? failed.map(([s, n]) => `${s} x${n}`).join(', ') : 'none'}`);
+  if (clientCount > 0) {
+    const sum = key => reports.reduce((total, report) => total + report[key], 0);
+    console.log(`Sockets: ${sum('disconnects')} disconnects, ${sum('reconnects')} reconnects, ${sum('connected')} connected after the recycle`);
+  }
+  const errors = logs.filter(line => /"level":"error"|Error|ERR_/.test(line) && !/stripe/i.test(line));
+  if (errors.length) {
+    console.log(`Primary/worker errors:\n  ${errors.slice(0, 10).join('\n  ')}`);
+  }
+};
+
+if (mode === 'serve') {
+  await serve(parseInt(args[0], 10), parseInt(args[1], 10));
+} else if (mode === 'clients') {
+  await runClients(parseInt(args[0], 10), parseInt(args[1], 10), parseInt(args[2], 10));
+} else if (mode === 'recycle-clients') {
+  await runRecycleClients(parseInt(args[0], 10), parseInt(args[1], 10), parseInt(args[2], 10));
+} else if (mode === 'recycle') {
+  await runRecycle(parseInt(args[0] ?? '1000', 10), parseInt(args[1], 10) || 4, 3890);
+} else {
+  const connections = parseInt(mode, 10) || 4000;
+  const workerCounts = (args[0] || '1,2,4').split(',').map(value => parseInt(value, 10));
+  let port = 3900;
+
+  console.log(`Connections: ${connections}, client processes: ${CLIENT_PROCESSES}, cores: ${os.availableParallelism()}\n`);
+  console.log('workers   connected   connect time      rate          broadcast  p99 lat');
+
+  for (const workerCount of workerCounts) {
+    await runRound(workerCount, connections, port++);
+  }
+}
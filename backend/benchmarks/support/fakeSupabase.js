@@ -0,0 +1,476 @@
+/**
+ * In-process stand-in for the @supabase/supabase-js client surface the backend uses.
+ * Tables are plain arrays in memory; queries support the PostgREST features the services
+ * rely on (filters, ordering, limits, counts, single/maybeSingle, one-level embeds, upsert,
+ * RPCs registered by the load test). Every query and RPC is counted, and each one waits
+ * FAKE_DB_LATENCY_MS to model the network round trip to Postgres.
+ *
+ * Exports `supabase` and `supabaseAdmin` like src/config/supabase.js, which the load test
+ * swaps for this module with a resolve hook (see fakeSupabaseLoader.js).
+ */
+import process from "node:process";
+import { randomUUID } from "node:crypto";
+import { instrumentSupabase } from '../../src/utils/dbMetrics.js';
+
+const LATENCY_MS = parseFloat(process.env.FAKE_DB_LATENCY_MS ?? '2');
+
+const tables = new Map(); // name -> rows
+const rpcs = new Map(); // name -> (args, db) => data
+const constraints = new Map(); // table -> (row, rows) => error | null
+const stats = { calls: 0, byTarget: new Map() };
+
+const wait = () => new Promise(resolve => {
+  if (LATENCY_MS > 0) {
+    setTimeout(resolve, LATENCY_MS);
+  } else {
+    setImmediate(resolve);
+  }
+});
+
+const count = (target) => {
+  stats.calls++;
+  stats.byTarget.set(target, (stats.byTarget.get(target) || 0) + 1);
+};
+
+const getTable = (name) => {
+  if (!tables.has(name)) {
+    tables.set(name, []);
+  }
+  return tables.get(name);
+};
+
+// ---------------------------------------------------------------------------
+// Filtering
+// ---------------------------------------------------------------------------
+
+const compare = (a, b) => {
+  if (typeof a === 'number' && typeof b === 'number') {
+    return a - b;
+  }
+  const left = String(a);
+  const right = String(b);
+  return left < right ? -1 : left > right ? 1 : 0;
+};
+
+const same = (a, b) => a === b || (a !== null && a !== undefined && b !== null && b !== undefined && String(a) === String(b));
+
+const likeToRegExp = (pattern, flags) => {
+  const escaped = String(pattern).replace(/[.*+?^${}()|[\]\\]/g, '\\$&').replace(/%/g, '.*').replace(/_/g, '.');
+  return new RegExp(`^${escaped}$`, flags);
+};
+
+const parseIsValue = (value) => {
+  if (value === 'null' || value === null) return null;
+  if (value === 'true' || value === true) return true;
+  if (value === 'false' || value === false) return false;
+  return value;
+};
+
+const OPERATORS = {
+  eq: (value, operand) => same(value, operand),
+  neq: (value, operand) => !same(value, operand),
+  gt: (value, operand) => value !== null && value !== undefined && compare(value, operand) > 0,
+  gte: (value, operand) => value !== null && value !== undefined && compare(value, operand) >= 0,
+  lt: (value, operand) => value !== null && value !== undefined && compare(value, operand) < 0,
+  lte: (value, operand) => value !== null && value !== undefined && compare(value, operand) <= 0,
+  in: (value, operand) => operand.some(item => same(value, item)),
+  is: (value, operand) => (value ?? null) === parseIsValue(operand),
+  like: (value, operand) => value !== null && value !== undefined && likeToRegExp(operand, '').test(String(value)),
+  ilike: (value, operand) => value !== null && value !== undefined && likeToRegExp(operand, 'i').test(String(value))
+};
+
+const parseInList = (operand) => {
+  if (Array.isArray(operand)) return operand;
+  return String(operand).replace(/^\(|\)$/g, '').split(',').map(item => item.trim());
+};
+
+// "a.eq.1,b.is.null" -> [{ column, operator, operand }]
+const parseOrFilter = (expression) => expression.split(',').map(part => {
+  const [column, operator, ...rest] = part.trim().split('.');
+  const operand = rest.join('.');
+  return { column, operator, operand: operator === 'in' ? parseInList(operand) : operand };
+});
+
+const matchesFilter = (row, filter) => {
+  if (filter.or) {
+    return filter.or.some(condition => matchesFilter(row, condition));
+  }
+  const test = OPERATORS[filter.operator];
+  if (!test) {
+    throw new Error(`Unsupported filter operator: ${filter.operator}`);
+  }
+  const result = test(row[filter.column], filter.operand);
+  return filter.negate ? !result : result;
+};
+
+// ---------------------------------------------------------------------------
+// Select parsing and projection
+// ---------------------------------------------------------------------------
+
+// Split on top-level commas (not inside parentheses)
+const splitTopLevel = (text) => {
+  const parts = [];
+  let depth = 0;
+  let current = '';
+  for (const char of text) {
+    if (char === '(') depth++;
+    if (char === ')') depth--;
+    if (char === ',' && depth === 0) {
+      parts.push(current);
+      current = '';
+    } else {
+      current += char;
+    }
+  }
+  parts.push(current);
+  return parts.map(part => part.trim()).filter(Boolean);
+};
+
+const parseSelect = (columns = '*') => splitTopLevel(columns.replace(/\s+/g, ' ')).map(token => {
+  const embed = token.match(/^(?:(\w+)\s*:\s*)?(\w+)(?:!(\w+))?\s*\((.*)\)$/s);
+  if (embed) {
+    const [, alias, table, hint, inner] = embed;
+    return { embed: true, alias: alias || table, table, hint, fields: parseSelect(inner) };
+  }
+  const [alias, column] = token.includes(':') ? token.split(':').map(part => part.trim()) : [token, token];
+  return { embed: false, alias, column };
+});
+
+const singular = (name) => name.endsWith('s') ? name.slice(0, -1) : name;
+
+const resolveEmbed = (row, parentTable, field) => {
+  const related = getTable(field.table);
+  const candidates = [field.hint, `${field.alias}_id`, `${singular(field.table)}_id`];
+  const foreignKey = candidates.find(column => column && column in row);
+
+  if (foreignKey) {
+    const match = related.find(candidate => same(candidate.id, row[foreignKey]));
+    return match ? project(match, field.table, field.fields) : null;
+  }
+
+  // One-to-many: children pointing back at this row
+  const backReference = `${singular(parentTable)}_id`;
+  return related
+    .filter(candidate => same(candidate[backReference], row.id))
+    .map(candidate => project(candidate, field.table, field.fields));
+};
+
+function project(row, tableName, fields) {
+  const result = {};
+  fields.forEach(field => {
+    if (field.embed) {
+      result[field.alias] = resolveEmbed(row, tableName, field);
+    } else if (field.column === '*') {
+      Object.assign(result, row);
+    } else {
+      result[field.alias] = row[field.column] ?? null;
+    }
+  });
+  return result;
+}
+
+// ---------------------------------------------------------------------------
+// Query builder
+// ---------------------------------------------------------------------------
+
+class QueryBuilder {
+  constructor(tableName) {
+    this.tableName = tableName;
+    this.operation = 'select';
+    this.fields = null;
+    this.returning = null;
+    this.filters = [];
+    this.orders = [];
+    this.limitCount = null;
+    this.rangeBounds = null;
+    this.countMode = null;
+    this.head = false;
+    this.cardinality = null;
+    this.values = null;
+    this.onConflict = 'id';
+  }
+
+  select(columns = '*', options = {}) {
+    if (this.operation === 'select') {
+      this.fields = parseSelect(columns);
+      this.countMode = options.count || null;
+      this.head = !!options.head;
+    } else {
+      this.returning = parseSelect(columns);
+    }
+    return this;
+  }
+
+  insert(values) {
+    this.operation = 'insert';
+    this.values = Array.isArray(values) ? values : [values];
+    return this;
+  }
+
+  upsert(values, options = {}) {
+    this.operation = 'upsert';
+    this.values = Array.isArray(values) ? values : [values];
+    this.onConflict = options.onConflict || 'id';
+    return this;
+  }
+
+  update(values) {
+    this.operation = 'update';
+    this.values = values;
+    return this;
+  }
+
+  delete() {
+    this.operation = 'delete';
+    return this;
+  }
+
+  addFilter(column, operator, operand, negate = false) {
+    this.filters.push({ column, operator, operand, negate });
+    return this;
+  }
+
+  eq(column, value) { return this.addFilter(column, 'eq', value); }
+  neq(column, value) { return this.addFilter(column, 'neq', value); }
+  gt(column, value) { return this.addFilter(column, 'gt', value); }
+  gte(column, value) { return this.addFilter(column, 'gte', value); }
+  lt(column, value) { return this.addFilter(column, 'lt', value); }
+  lte(column, value) { return this.addFilter(column, 'lte', value); }
+  in(column, values) { return this.addFilter(column, 'in', parseInList(values)); }
+  is(column, value) { return this.addFilter(column, 'is', value); }
+  like(column, pattern) { return this.addFilter(column, 'like', pattern); }
+  ilike(column, pattern) { return this.addFilter(column, 'ilike', pattern); }
+
+  not(column, operator, value) {
+    return this.addFilter(column, operator, operator === 'in' ? parseInList(value) : value, true);
+  }
+
+  filter(column, operator, value) {
+    return this.addFilter(column, operator, operator === 'in' ? parseInList(value) : value);
+  }
+
+  match(query) {
+    Object.entries(query).forEach(([column, value]) => this.eq(column, value));
+    return this;
+  }
+
+  or(expression) {
+    this.filters.push({ or: parseOrFilter(expression) });
+    return this;
+  }
+
+  order(column, { ascending = true } = {}) {
+    this.orders.push({ column, ascending });
+    return this;
+  }
+
+  limit(count) {
+    this.limitCount = count;
+    return this;
+  }
+
+  range(from, to) {
+    this.rangeBounds = [from, to];
+    return this;
+  }
+
+  single() {
+    this.cardinality = 'single';
+    return this;
+  }
+
+  maybeSingle() {
+    this.cardinality = 'maybeSingle';
+    return this;
+  }
+
+  then(onFulfilled, onRejected) {
+    return this.execute().then(onFulfilled, onRejected);
+  }
+
+  matching(rows) {
+    return rows.filter(row => this.filters.every(filter => matchesFilter(row, filter)));
+  }
+
+  shape(rows, fields) {
+    let data = rows.map(row => project(row, this.tableName, fields || parseSelect('*')));
+
+    if (this.cardinality === 'single') {
+      if (data.length !== 1) {
+        return { data: null, error: { code: 'PGRST116', message: `JSON object requested, ${data.length} rows returned` } };
+      }
+      data = data[0];
+    } else if (this.cardinality === 'maybeSingle') {
+      if (data.length > 1) {
+        return { data: null, error: { code: 'PGRST116', message: `JSON object requested, ${data.length} rows returned` } };
+      }
+      data = data[0] ?? null;
+    }
+
+    return { data, error: null };
+  }
+
+  async execute() {
+    count(`${this.operation} ${this.tableName}`);
+    await wait();
+
+    try {
+      const rows = getTable(this.tableName);
+      switch (this.operation) {
+        case 'select': return this.runSelect(rows);
+        case 'insert': return this.runInsert(rows);
+        case 'upsert': return this.runUpsert(rows);
+        case 'update': return this.runUpdate(rows);
+        case 'delete': return this.runDelete(rows);
+        default: throw new Error(`Unsupported operation: ${this.operation}`);
+      }
+    } catch (error) {
+      return { data: null, error: { code: error.code || 'FAKE', message: error.message } };
+    }
+  }
+
+  runSelect(rows) {
+    let selected = this.matching(rows);
+    const total = selected.length;
+
+    this.orders.slice().reverse().forEach(({ column, ascending }) => {
+      selected = [...selected].sort((a, b) => (ascending ? 1 : -1) * compare(a[column] ?? '', b[column] ?? ''));
+    });
+    if (this.rangeBounds) {
+      selected = selected.slice(this.rangeBounds[0], this.rangeBounds[1] + 1);
+    }
+    if (this.limitCount !== null) {
+      selected = selected.slice(0, this.limitCount);
+    }
+
+    if (this.head) {
+      return { data: null, error: null, count: total };
+    }
+
+    const result = this.shape(selected, this.fields);
+    return this.countMode ? { ...result, count: total } : result;
+  }
+
+  checkConstraint(row, rows) {
+    const check = constraints.get(this.tableName);
+    const error = check ? check(row, rows) : null;
+    if (error) {
+      throw Object.assign(new Error(error.message), { code: error.code });
+    }
+  }
+
+  withDefaults(value) {
+    const now = new Date().toISOString();
+    return { id: randomUUID(), created_at: now, updated_at: now, ...value };
+  }
+
+  runInsert(rows) {
+    const inserted = this.values.map(value => this.withDefaults(value));
+    inserted.forEach(row => {
+      this.checkConstraint(row, rows);
+      rows.push(row);
+    });
+    return this.returning ? this.shape(inserted, this.returning) : { data: null, error: null };
+  }
+
+  runUpsert(rows) {
+    const keys = this.onConflict.split(',').map(key => key.trim());
+    const written = this.values.map(value => {
+      const existing = rows.find(row => keys.every(key => same(row[key], value[key])));
+      if (existing) {
+        Object.assign(existing, value, { updated_at: new Date().toISOString() });
+        return existing;
+      }
+      const row = this.withDefaults(value);
+      this.checkConstraint(row, rows);
+      rows.push(row);
+      return row;
+    });
+    return this.returning ? this.shape(written, this.returning) : { data: null, error: null };
+  }
+
+  runUpdate(rows) {
+    const updated = this.matching(rows);
+    updated.forEach(row => {
+      const next = { ...row, ...this.values, updated_at: new Date().toISOString() };
+      this.checkConstraint(next, rows.filter(other => other !== row));
+      Object.assign(row, next);
+    });
+    return this.returning ? this.shape(updated, this.returning) : { data: null, error: null };
+  }
+
+  runDelete(rows) {
+    const removed = new Set(this.matching(rows));
+    const kept = rows.filter(row => !removed.has(row));
+    rows.length = 0;
+    rows.push(...kept);
+    return this.returning ? this.shape([...removed], this.returning) : { data: null, error: null };
+  }
+}
+
+// ---------------------------------------------------------------------------
+// Client
+// ---------------------------------------------------------------------------
+
+const client = {
+  from: (tableName) => new QueryBuilder(tableName),
+
+  rpc: async (name, args = {}) => {
+    count(`rpc ${name}`);
+    await wait();
+
+    const handler = rpcs.get(name);
+    if (!handler) {
+      return { data: null, error: { code: 'PGRST202', message: `Could not find the function public.${name}` } };
+    }
+
+    try {
+      return { data: handler(args, fakeDb), error: null };
+    } catch (error) {
+      return { data: null, error: { code: error.code || 'P0001', message: error.message } };
+    }
+  },
+
+  storage: {
+    from: () => ({
+      upload: async () => ({ data: null, error: { message: 'Storage is not available in the load test' } }),
+      remove: async () => ({ data: null, error: null }),
+      getPublicUrl: (path) => ({ data: { publicUrl: `http://localhost/fake-storage/${path}` } })
+    })
+  }
+};
+
+// Instrumented like the real clients, so /metrics works and its overhead is part of the measurement
+export const supabase = instrumentSupabase(client);
+export const supabaseAdmin = instrumentSupabase(client);
+
+/**
+ * Control surface for the load test (not part of the supabase-js API)
+ */
+export const fakeDb = {
+  table: getTable,
+
+  seed: (data) => {
+    Object.entries(data).forEach(([name, rows]) => {
+      tables.set(name, rows.map(row => ({ ...row })));
+    });
+  },
+
+  defineRpc: (name, handler) => {
+    rpcs.set(name, handler);
+  },
+
+  defineConstraint: (tableName, check) => {
+    constraints.set(tableName, check);
+  },
+
+  stats: () => ({
+    calls: stats.calls,
+    byTarget: Object.fromEntries([...stats.byTarget].sort((a, b) => b[1] - a[1]))
+  }),
+
+  resetStats: () => {
+    stats.calls = 0;
+    stats.byTarget.clear();
+  }
+};
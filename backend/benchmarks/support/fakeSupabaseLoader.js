@@ -0,0 +1,14 @@
+/**
+ * Module resolve hook: every import of src/config/supabase.js resolves to the in-process
+ * fake instead, so the services run unchanged against fakeSupabase.js.
+ * Registered by loadTestServer.js.
+ */
+const FAKE_SUPABASE_URL = new URL('./fakeSupabase.js', import.meta.url).href;
+
+export const resolve = async (specifier, context, nextResolve) => {
+  const result = await nextResolve(specifier, context);
+  if (result.url.endsWith('/src/config/supabase.js')) {
+    return { url: FAKE_SUPABASE_URL, shortCircuit: true };
+  }
+  return result;
+};
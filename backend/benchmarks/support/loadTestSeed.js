@@ -0,0 +1,252 @@
+/**
+ * Deterministic data set for the check-in burst load test, shared by the driver (user ids,
+ * QR values, slot id) and the server preload (table contents). Also installs in-memory
+ * versions of the RPCs and constraints the exercised paths depend on, mirroring the SQL in
+ * database/migrations (swim_check_in, swim_attendance_counts, badminton_free_courts,
+ * check_court_availability, league_participant_counts_for, badminton_matches_no_court_overlap).
+ */
+import { randomUUID } from "node:crypto";
+
+export const SWIMMING_QR_VALUE = 'LOADTEST-SWIM-POOL';
+export const GYM_QR_VALUE = 'LOADTEST-GYM-MAIN';
+export const CURRENT_SLOT_ID = '00000000-0000-4000-a000-000000000001';
+export const COURT_COUNT = 8;
+
+const ACTIVE_MATCH_STATUSES = ['scheduled', 'in_progress'];
+
+export const userId = (index) => `00000000-0000-4000-8000-${String(index + 1).padStart(12, '0')}`;
+
+const pad = (value) => String(value).padStart(2, '0');
+const toTime = (minutes) => `${pad(Math.floor(minutes / 60))}:${pad(minutes % 60)}:00`;
+const toDate = (date) => `${date.getFullYear()}-${pad(date.getMonth() + 1)}-${pad(date.getDate())}`;
+
+const addDays = (date, days) => {
+  const result = new Date(date);
+  result.setDate(result.getDate() + days);
+  return toDate(result);
+};
+
+/**
+ * Build the table contents
+ * @param {Object} options
+ * @param {number} options.users - Number of students/faculty (every user has an active swimming registration)
+ * @param {number} [options.slotCapacity] - max_capacity of the slot that is open now
+ * @returns {Object} - { tables }
+ */
+export const buildSeed = ({ users, slotCapacity = users }) => {
+  const now = new Date();
+  const createdAt = now.toISOString();
+
+  const usersMetadata = Array.from({ length: users }, (_, i) => ({
+    id: userId(i),
+    email: `loadtest${i + 1}@example.edu`,
+    name: `Load Test User ${i + 1}`,
+    role: i % 5 === 0 ? 'faculty' : 'student',
+    cms_id: 400000 + i,
+    gender: i % 2 === 0 ? 'male' : 'female',
+    email_confirmed: true,
+    profile_picture_url: null,
+    created_at: createdAt
+  }));
+
+  const swimmingRegistrations = usersMetadata.map((user, i) => ({
+    id: `00000000-0000-4000-9000-${String(i + 1).padStart(12, '0')}`,
+    user_id: user.id,
+    status: 'active',
+    payment_status: 'succeeded',
+    payment_due: false,
+    next_payment_date: addDays(now, 20),
+    created_at: createdAt
+  }));
+
+  // The slot that opened two minutes ago (the burst), plus the rest of a normal day's timetable
+  const minutesNow = now.getHours() * 60 + now.getMinutes();
+  const currentStart = Math.max(0, minutesNow - 2);
+  const currentEnd = Math.min(24 * 60 - 1, currentStart + 60);
+  const timeSlots = [{
+    id: CURRENT_SLOT_ID,
+    start_time: toTime(currentStart),
+    end_time: toTime(currentEnd),
+    gender_restriction: 'mixed',
+    max_capacity: slotCapacity,
+    trainer_id: usersMetadata[0]?.id || null,
+    is_active: true,
+    updated_at: createdAt
+  }];
+  const restrictions = ['male', 'female', 'faculty_pg', 'mixed'];
+  for (let hour = 6; hour < 22; hour++) {
+    const start = hour * 60;
+    if (start < currentEnd && start + 60 > currentStart) {
+      continue;
+    }
+    timeSlots.push({
+      id: `00000000-0000-4000-a000-${String(hour + 100).padStart(12, '0')}`,
+      start_time: toTime(start),
+      end_time: toTime(start + 60),
+      gender_restriction: restrictions[hour % restrictions.length],
+      max_capacity: 40,
+      trainer_id: null,
+      is_active: true,
+      updated_at: createdAt
+    });
+  }
+
+  const courts = Array.from({ length: COURT_COUNT }, (_, i) => ({
+    id: `00000000-0000-4000-b000-${String(i + 1).padStart(12, '0')}`,
+    name: `Court ${i + 1}`,
+    court_number: i + 1,
+    status: 'available',
+    created_at: createdAt
+  }));
+
+  const leagues = Array.from({ length: 6 }, (_, i) => ({
+    id: `00000000-0000-4000-c000-${String(i + 1).padStart(12, '0')}`,
+    name: `Load Test League ${i + 1}`,
+    sport_type: i % 2 === 0 ? 'badminton' : 'swimming',
+    description: 'Seeded for the load test',
+    start_date: addDays(now, i * 7 - 7),
+    end_date: addDays(now, i * 7 + 21),
+    registration_deadline: addDays(now, i * 7 - 9),
+    registration_enabled: true,
+    max_participants: 64,
+    registration_fee: 0,
+    participant_count: 10 + i,
+    status: 'upcoming',
+    created_at: createdAt
+  }));
+
+  return {
+    tables: {
+      users_metadata: usersMetadata,
+      swimming_registrations: swimmingRegistrations,
+      swimming_time_slots: timeSlots,
+      swimming_attendance: [],
+      swimming_qr_codes: [{
+        id: '00000000-0000-4000-d000-000000000001',
+        qr_code_value: SWIMMING_QR_VALUE,
+        location_name: 'Main Pool',
+        is_active: true
+      }],
+      gym_qr_codes: [{
+        id: '00000000-0000-4000-d000-000000000002',
+        qr_code_value: GYM_QR_VALUE,
+        location: 'Main Gym',
+        is_active: true
+      }],
+      badminton_courts: courts,
+      badminton_availability: [],
+      badminton_matches: [],
+      leagues,
+      league_registrations: [],
+      league_fixtures: []
+    }
+  };
+};
+
+const overlaps = (startA, endA, startB, endB) => startA < endB && startB < endA;
+
+const courtIsFree = (db, courtId, start, end) => {
+  const busyByMatch = db.table('badminton_matches').some(match =>
+    match.court_id === courtId &&
+    ACTIVE_MATCH_STATUSES.includes(match.status) &&
+    overlaps(new Date(match.scheduled_start_time), new Date(match.scheduled_end_time), start, end)
+  );
+  const busyByFixture = db.table('league_fixtures').some(fixture =>
+    fixture.court_id === courtId &&
+    fixture.status === 'scheduled' &&
+    overlaps(new Date(fixture.scheduled_start_time), new Date(fixture.scheduled_end_time), start, end)
+  );
+  return !busyByMatch && !busyByFixture;
+};
+
+/**
+ * Seed the fake and define its RPCs and constraints
+ * RPC handlers run synchronously, so each one is atomic like its plpgsql counterpart.
+ */
+export const installSeed = (db, seed) => {
+  db.seed(seed.tables);
+
+  db.defineRpc('swim_check_in', ({ p_user_id, p_time_slot_id, p_session_date, p_registration_id, p_check_in_method }) => {
+    const slot = db.table('swimming_time_slots').find(row => row.id === p_time_slot_id && row.is_active);
+    if (!slot) {
+      return { status: 'slot_not_found' };
+    }
+
+    const attendance = db.table('swimming_attendance');
+    const sessionRows = attendance.filter(row => row.time_slot_id === p_time_slot_id && row.session_date === p_session_date);
+    if (sessionRows.some(row => row.user_id === p_user_id)) {
+      return { status: 'already_checked_in' };
+    }
+    if (sessionRows.length >= slot.max_capacity) {
+      return { status: 'capacity_exceeded', current_count: sessionRows.length, max_capacity: slot.max_capacity };
+    }
+
+    const row = {
+      id: randomUUID(),
+      time_slot_id: p_time_slot_id,
+      user_id: p_user_id,
+      registration_id: p_registration_id ?? null,
+      session_date: p_session_date,
+      check_in_time: new Date().toISOString(),
+      check_in_method: p_check_in_method || 'qr_scan'
+    };
+    attendance.push(row);
+
+    return { status: 'checked_in', attendance: { ...row }, current_count: sessionRows.length + 1, max_capacity: slot.max_capacity };
+  });
+
+  db.defineRpc('swim_attendance_counts', ({ p_session_date, p_time_slot_ids }) => {
+    const counts = new Map();
+    db.table('swimming_attendance').forEach(row => {
+      if (row.session_date === p_session_date && p_time_slot_ids.includes(row.time_slot_id)) {
+        counts.set(row.time_slot_id, (counts.get(row.time_slot_id) || 0) + 1);
+      }
+    });
+    return [...counts].map(([time_slot_id, attendance_count]) => ({ time_slot_id, attendance_count }));
+  });
+
+  db.defineRpc('badminton_free_courts', ({ p_start_time, p_end_time }) => {
+    const start = new Date(p_start_time);
+    const end = new Date(p_end_time);
+    return db.table('badminton_courts')
+      .filter(court => court.status === 'available' && courtIsFree(db, court.id, start, end))
+      .sort((a, b) => a.court_number - b.court_number)
+      .map(court => ({ ...court }));
+  });
+
+  db.defineRpc('check_court_availability', ({ p_court_id, p_start_time, p_end_time }) =>
+    courtIsFree(db, p_court_id, new Date(p_start_time), new Date(p_end_time))
+  );
+
+  db.defineRpc('league_participant_counts_for', ({ p_league_ids }) => {
+    const counts = new Map(p_league_ids.map(id => [id, 0]));
+    db.table('league_registrations').forEach(row => {
+      if (counts.has(row.league_id) && ['registered', 'confirmed'].includes(row.status)) {
+        counts.set(row.league_id, counts.get(row.league_id) + 1);
+      }
+    });
+    return [...counts].map(([league_id, participant_count]) => ({ league_id, participant_count }));
+  });
+
+  db.defineConstraint('swimming_attendance', (row, rows) =>
+    rows.some(other => other.time_slot_id === row.time_slot_id && other.user_id === row.user_id && other.session_date === row.session_date)
+      ? { code: '23505', message: 'duplicate key value violates unique constraint "swimming_attendance_time_slot_id_user_id_session_date_key"' }
+      : null
+  );
+
+  db.defineConstraint('badminton_matches', (row, rows) => {
+    if (!ACTIVE_MATCH_STATUSES.includes(row.status)) {
+      return null;
+    }
+    const start = new Date(row.scheduled_start_time);
+    const end = new Date(row.scheduled_end_time);
+    const conflict = rows.some(other =>
+      other.court_id === row.court_id &&
+      ACTIVE_MATCH_STATUSES.includes(other.status) &&
+      overlaps(new Date(other.scheduled_start_time), new Date(other.scheduled_end_time), start, end)
+    );
+    return conflict
+      ? { code: '23P01', message: 'conflicting key value violates exclusion constraint "badminton_matches_no_court_overlap"' }
+      : null;
+  });
+};
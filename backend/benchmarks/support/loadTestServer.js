@@ -0,0 +1,25 @@
+/**
+ * Preload for running src/server.js against the in-process Supabase fake:
+ *   node --import ./benchmarks/support/loadTestServer.js src/server.js
+ *
+ * Registers the resolve hook, seeds the fake with the load-test data set
+ * (LOADTEST_USERS users, see loadTestSeed.js) and answers the driver's IPC messages:
+ *   'db:reset' -> zero the call counters, 'db:stats' -> { type: 'db:stats', stats }
+ */
+import process from "node:process";
+import { register } from "node:module";
+import { fakeDb } from './fakeSupabase.js';
+import { buildSeed, installSeed } from './loadTestSeed.js';
+
+register('./fakeSupabaseLoader.js', import.meta.url);
+
+installSeed(fakeDb, buildSeed({ users: parseInt(process.env.LOADTEST_USERS, 10) || 400 }));
+
+process.on('message', (message) => {
+  if (message === 'db:reset') {
+    fakeDb.resetStats();
+    process.send({ type: 'db:reset' });
+  } else if (message === 'db:stats') {
+    process.send({ type: 'db:stats', stats: fakeDb.stats() });
+  }
+});
@@ -0,0 +1,69 @@
+/**
+ * Micro-benchmark: linear determineTimeSlot vs compiled schedule lookup
+ * Usage: node benchmarks/timeSlotDetermination.bench.js [slotCount] [iterations]
+ */
+import process from "node:process";
+import { performance } from "node:perf_hooks";
+import { validateUserEligibility } from '../src/utils/swimmingValidation.js';
+import {
+  determineTimeSlot,
+  getCompiledSchedule,
+  getEligibleSlotIndex,
+  lookupTimeSlot
+} from '../src/utils/timeSlotDetermination.js';
+
+const slotCount = parseInt(process.argv[2], 10) || 20;
+const iterations = parseInt(process.argv[3], 10) || 200000;
+
+const restrictions = ['male', 'female', 'faculty_pg', 'mixed'];
+const pad = (value) => String(value).padStart(2, '0');
+const toTime = (minutes) => `${pad(Math.floor(minutes / 60))}:${pad(minutes % 60)}:00`;
+
+// Evenly spread slots between 06:00 and 22:00, in the order the database returns them
+const slotLength = Math.max(1, Math.floor((16 * 60) / slotCount));
+const timeSlots = Array.from({ length: slotCount }, (_, i) => ({
+  id: `slot-${i}`,
+  start_time: toTime(6 * 60 + i * slotLength),
+  end_time: toTime(6 * 60 + (i + 1) * slotLength),
+  gender_restriction: restrictions[i % restrictions.length],
+  max_capacity: 20,
+  updated_at: '2024-01-01T00:00:00.000Z'
+}));
+
+const user = { id: 'bench-user', role: 'faculty', gender: 'female' };
+const scanTimes = Array.from({ length: 1024 }, (_, i) => new Date(2024, 0, 1, 5 + (i % 18), (i * 7) % 60));
+
+const run = (label, fn) => {
+  // Warm up the JIT before measuring
+  for (let i = 0; i < 10000; i++) fn(scanTimes[i & 1023]);
+
+  const start = performance.now();
+  for (let i = 0; i < iterations; i++) fn(scanTimes[i & 1023]);
+  const elapsed = performance.now() - start;
+
+  const nsPerOp = (elapsed * 1e6) / iterations;
+  console.log(`${label.padEnd(34)} ${nsPerOp.toFixed(1).padStart(10)} ns/op  ${Math.round(iterations / (elapsed / 1000)).toLocaleString().padStart(14)} ops/s`);
+  return nsPerOp;
+};
+
+console.log(`Slots: ${slotCount}, iterations: ${iterations}\n`);
+
+// What the scan handlers used to do per request: eligibility filter + sort + parse
+const linear = run('linear (filter + determineTimeSlot)', (now) => {
+  const eligibleSlots = timeSlots.filter(slot => validateUserEligibility(user, slot).isValid);
+  return determineTimeSlot(eligibleSlots, now);
+});
+
+// What they do now: version check + cached eligibility index + binary search
+const compiled = run('compiled schedule lookup', (now) => {
+  const schedule = getCompiledSchedule(timeSlots);
+  return lookupTimeSlot(schedule, getEligibleSlotIndex(schedule, user), now);
+});
+
+// Each request reads the slots again: a new array with the same version (copy included)
+run('compiled, new slot array per op', (now) => {
+  const schedule = getCompiledSchedule(timeSlots.slice());
+  return lookupTimeSlot(schedule, getEligibleSlotIndex(schedule, user), now);
+});
+
+console.log(`\nSpeedup: ${(linear / compiled).toFixed(1)}x`);
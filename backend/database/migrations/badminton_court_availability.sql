@@ -0,0 +1,54 @@
+-- Badminton Court Availability
+-- 1. badminton_free_courts() returns every available court with no active match overlapping
+--    a window, in one query instead of one check_court_availability() call per court.
+-- 2. An exclusion constraint makes the database reject overlapping scheduled/in-progress
+--    matches on the same court, so concurrent match creation cannot double-book a court.
+--
+-- SAFE TO RUN: Only creates functions/extensions and adds a constraint, it does NOT modify existing data.
+-- Adding the constraint fails if overlapping active matches already exist; find them with:
+--   SELECT a.id, b.id FROM badminton_matches a JOIN badminton_matches b
+--     ON a.court_id = b.court_id AND a.id < b.id
+--    AND a.status IN ('scheduled', 'in_progress') AND b.status IN ('scheduled', 'in_progress')
+--    AND tstzrange(a.scheduled_start_time, a.scheduled_end_time) && tstzrange(b.scheduled_start_time, b.scheduled_end_time);
+-- Requires badminton_module.sql to be applied first.
+
+-- 1. Free courts for a time window
+CREATE OR REPLACE FUNCTION badminton_free_courts(
+  p_start_time TIMESTAMP WITH TIME ZONE,
+  p_end_time TIMESTAMP WITH TIME ZONE
+)
+RETURNS SETOF badminton_courts
+LANGUAGE sql
+STABLE
+AS $$
+  SELECT c.*
+  FROM badminton_courts c
+  WHERE c.status = 'available'
+    AND NOT EXISTS (
+      SELECT 1
+      FROM badminton_matches m
+      WHERE m.court_id = c.id
+        AND m.status IN ('scheduled', 'in_progress')
+        AND tstzrange(m.scheduled_start_time, m.scheduled_end_time) && tstzrange(p_start_time, p_end_time)
+    )
+  ORDER BY c.court_number;
+$$;
+
+-- 2. Reject overlapping active matches on the same court
+-- btree_gist is needed for the UUID equality part of the GiST index
+CREATE EXTENSION IF NOT EXISTS btree_gist;
+
+DO $$
+BEGIN
+  IF NOT EXISTS (
+    SELECT 1 FROM pg_constraint WHERE conname = 'badminton_matches_no_court_overlap'
+  ) THEN
+    ALTER TABLE badminton_matches
+      ADD CONSTRAINT badminton_matches_no_court_overlap
+      EXCLUDE USING gist (
+        court_id WITH =,
+        tstzrange(scheduled_start_time, scheduled_end_time) WITH &&
+      )
+      WHERE (status IN ('scheduled', 'in_progress'));
+  END IF;
+END $$;
@@ -0,0 +1,47 @@
+-- Badminton Matches vs League Fixtures
+-- badminton_matches_no_court_overlap only compares matches with each other, so an ad-hoc or
+-- matchmaking match could take a court that a scheduled league fixture holds. This trigger
+-- rejects such a match with the same error code as the exclusion constraint (23P01), which the
+-- API already reports as "Court is not available at this time".
+--
+-- SAFE TO RUN: Only creates/replaces a function and a trigger, it does NOT modify existing data.
+-- Existing overlaps are left alone; find them with:
+--   SELECT m.id, f.id FROM badminton_matches m JOIN league_fixtures f
+--     ON m.court_id = f.court_id
+--    AND m.status IN ('scheduled', 'in_progress') AND f.status = 'scheduled'
+--    AND tstzrange(m.scheduled_start_time, m.scheduled_end_time) && tstzrange(f.scheduled_start_time, f.scheduled_end_time);
+-- Requires badminton_court_availability.sql and league_fixtures_module.sql to be applied first.
+
+-- 1. Reject active matches overlapping a scheduled fixture on the same court
+CREATE OR REPLACE FUNCTION badminton_match_check_fixture_overlap()
+RETURNS TRIGGER
+LANGUAGE plpgsql
+AS $$
+BEGIN
+  IF NEW.status NOT IN ('scheduled', 'in_progress') OR NEW.court_id IS NULL THEN
+    RETURN NEW;
+  END IF;
+
+  IF EXISTS (
+    SELECT 1
+    FROM league_fixtures f
+    WHERE f.court_id = NEW.court_id
+      AND f.status = 'scheduled'
+      AND tstzrange(f.scheduled_start_time, f.scheduled_end_time) && tstzrange(NEW.scheduled_start_time, NEW.scheduled_end_time)
+  ) THEN
+    RAISE EXCEPTION 'Court % is held by a league fixture at this time', NEW.court_id
+      USING ERRCODE = 'exclusion_violation';
+  END IF;
+
+  RETURN NEW;
+END;
+$$;
+
+-- 2. Check on insert and whenever the court, window or status changes
+DROP TRIGGER IF EXISTS badminton_matches_no_fixture_overlap ON badminton_matches;
+CREATE TRIGGER badminton_matches_no_fixture_overlap
+BEFORE INSERT OR UPDATE OF court_id, scheduled_start_time, scheduled_end_time, status ON badminton_matches
+FOR EACH ROW
+EXECUTE FUNCTION badminton_match_check_fixture_overlap();
+
+COMMENT ON FUNCTION badminton_match_check_fixture_overlap() IS 'Rejects active badminton matches on a court held by a scheduled league fixture';
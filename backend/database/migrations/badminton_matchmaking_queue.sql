@@ -0,0 +1,55 @@
+-- Shared Badminton Matchmaking Queue
+-- In cluster mode (src/cluster.js) a player's requests can be served by any worker process, so
+-- an in-memory queue per worker would never pair two players queued on different workers.
+-- Clustered workers keep the 1v1 / 2v2 queues in badminton_matchmaking_queue instead, and take
+-- full groups with matchmaking_take_group(), which locks and removes the oldest entries of a
+-- mode in one statement: two workers never hand the same player to two matches.
+--
+-- SAFE TO RUN: Only creates the table, its index and the function if they are missing; it does
+-- NOT modify existing data.
+-- Requires badminton_module.sql to be applied first.
+
+-- 1. Queue table (one entry per user: joining a mode replaces the previous entry)
+CREATE TABLE IF NOT EXISTS badminton_matchmaking_queue (
+  user_id UUID PRIMARY KEY REFERENCES users_metadata(id) ON DELETE CASCADE,
+  match_mode VARCHAR(10) NOT NULL CHECK (match_mode IN ('1v1', '2v2')),
+  queued_at TIMESTAMPTZ NOT NULL DEFAULT NOW()
+);
+
+-- 2. FIFO order per mode
+CREATE INDEX IF NOT EXISTS idx_badminton_matchmaking_queue_mode
+  ON badminton_matchmaking_queue(match_mode, queued_at);
+
+-- 3. Take the oldest full group of a mode
+-- Returns nothing (and removes nothing) unless p_group_size players are queued. Entries locked
+-- by a concurrent call are skipped rather than waited for.
+CREATE OR REPLACE FUNCTION matchmaking_take_group(
+  p_match_mode VARCHAR,
+  p_group_size INTEGER
+)
+RETURNS SETOF badminton_matchmaking_queue
+LANGUAGE plpgsql
+AS $$
+DECLARE
+  group_ids UUID[];
+BEGIN
+  SELECT array_agg(oldest.user_id) INTO group_ids
+  FROM (
+    SELECT q.user_id
+    FROM badminton_matchmaking_queue q
+    WHERE q.match_mode = p_match_mode
+    ORDER BY q.queued_at
+    LIMIT p_group_size
+    FOR UPDATE SKIP LOCKED
+  ) oldest;
+
+  IF COALESCE(array_length(group_ids, 1), 0) < p_group_size THEN
+    RETURN;
+  END IF;
+
+  RETURN QUERY
+  DELETE FROM badminton_matchmaking_queue q
+  WHERE q.user_id = ANY(group_ids)
+  RETURNING q.*;
+END;
+$$;
@@ -0,0 +1,98 @@
+-- Transactional Gym Workout Save
+-- Creates gym_save_workout(), which stores all exercise logs of a workout and completes
+-- the workout in a single round trip instead of one MET lookup + one insert per exercise.
+--
+-- Calories per exercise use the same formula as calculateCalories() in gymService.js:
+--   calories = ROUND(met_value * 3.5 * weight_kg * duration_minutes / 200)
+-- Exercises that do not exist are skipped, but still count towards total_exercises
+-- (matching the previous per-exercise implementation).
+--
+-- SAFE TO RUN: Only creates/replaces a function, it does NOT modify existing data.
+-- Requires gym_module.sql to be applied first.
+
+CREATE OR REPLACE FUNCTION gym_save_workout(
+  p_user_id UUID,
+  p_workout_id UUID,
+  p_user_weight NUMERIC,
+  p_exercises JSONB
+)
+RETURNS JSONB
+LANGUAGE plpgsql
+AS $$
+DECLARE
+  workout_row user_workouts%ROWTYPE;
+  log_rows JSONB;
+  calories_sum INTEGER;
+  exercise_count INTEGER := COALESCE(jsonb_array_length(p_exercises), 0);
+  end_ts TIMESTAMP WITH TIME ZONE := NOW();
+BEGIN
+  -- 1. Lock the workout so concurrent saves of the same workout are serialized
+  SELECT * INTO workout_row
+  FROM user_workouts
+  WHERE id = p_workout_id
+    AND user_id = p_user_id
+  FOR UPDATE;
+
+  IF NOT FOUND THEN
+    RETURN jsonb_build_object('status', 'workout_not_found');
+  END IF;
+
+  -- 2. Insert every exercise log in one statement, joining exercises for the MET value
+  WITH input AS (
+    SELECT
+      (e->>'exerciseId')::UUID AS exercise_id,
+      COALESCE(NULLIF((e->>'sets')::NUMERIC::INTEGER, 0), 1) AS sets,
+      COALESCE(NULLIF((e->>'reps')::NUMERIC::INTEGER, 0), 1) AS reps,
+      NULLIF((e->>'weight')::NUMERIC, 0) AS weight,
+      COALESCE(NULLIF((e->>'duration')::NUMERIC, 0), 5) AS duration_minutes,
+      ord
+    FROM jsonb_array_elements(COALESCE(p_exercises, '[]'::JSONB)) WITH ORDINALITY AS t(e, ord)
+  ),
+  inserted AS (
+    INSERT INTO user_workout_logs (
+      user_workout_id,
+      exercise_id,
+      sets,
+      reps,
+      weight,
+      duration_minutes,
+      calories
+    )
+    SELECT
+      p_workout_id,
+      i.exercise_id,
+      i.sets,
+      i.reps,
+      i.weight,
+      i.duration_minutes,
+      COALESCE(ROUND(x.met_value * 3.5 * p_user_weight * i.duration_minutes / 200), 0)::INTEGER
+    FROM input i
+    JOIN exercises x ON x.id = i.exercise_id
+    ORDER BY i.ord
+    RETURNING *
+  )
+  SELECT
+    COALESCE(jsonb_agg(to_jsonb(inserted)), '[]'::JSONB),
+    COALESCE(SUM(inserted.calories), 0)::INTEGER
+  INTO log_rows, calories_sum
+  FROM inserted;
+
+  -- 3. Complete the workout with the totals
+  UPDATE user_workouts
+  SET total_calories = calories_sum,
+      total_exercises = exercise_count,
+      total_duration_minutes = COALESCE(ROUND(EXTRACT(EPOCH FROM (end_ts - workout_row.start_time)) / 60), 0)::INTEGER,
+      end_time = end_ts,
+      status = 'completed'
+  WHERE id = p_workout_id
+  RETURNING * INTO workout_row;
+
+  RETURN jsonb_build_object(
+    'status', 'completed',
+    'workout', to_jsonb(workout_row),
+    'exercise_logs', log_rows,
+    'total_calories', calories_sum,
+    'total_exercises', exercise_count
+  );
+END;
+$$;
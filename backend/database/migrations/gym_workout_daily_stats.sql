@@ -0,0 +1,202 @@
+-- Gym Workout Daily Rollups
+-- Keeps one aggregate row per (user, day) of completed workouts so stats and progress
+-- reads cost O(days) instead of scanning a member's full workout history.
+--
+--   user_workout_daily_stats                - per-user daily totals, maintained by trigger
+--   gym_user_stats(user)                    - totals for getUserStats() in one row
+--   gym_user_progress(user, period)         - daily rows for getUserProgress()
+--
+-- Days are bucketed in gym_stats_timezone() (UTC by default). Replace that function if
+-- members should see days in a different zone, then re-run section 5 to rebuild the rollups.
+--
+-- SAFE TO RUN: Creates objects if missing and rebuilds the rollup rows from user_workouts.
+-- It does NOT modify user_workouts. Requires gym_module.sql to be applied first.
+
+-- 1. Rollup table
+CREATE TABLE IF NOT EXISTS user_workout_daily_stats (
+  user_id UUID NOT NULL REFERENCES users_metadata(id) ON DELETE CASCADE,
+  stat_date DATE NOT NULL,
+  workouts_count INTEGER NOT NULL DEFAULT 0,
+  total_calories INTEGER NOT NULL DEFAULT 0,
+  total_exercises INTEGER NOT NULL DEFAULT 0,
+  total_duration_minutes INTEGER NOT NULL DEFAULT 0,
+  updated_at TIMESTAMP WITH TIME ZONE DEFAULT NOW(),
+  PRIMARY KEY (user_id, stat_date)
+);
+
+-- 2. Day bucketing
+CREATE OR REPLACE FUNCTION gym_stats_timezone()
+RETURNS TEXT
+LANGUAGE sql
+IMMUTABLE
+AS $$
+  SELECT 'UTC'::TEXT;
+$$;
+
+CREATE OR REPLACE FUNCTION gym_stats_day(p_ts TIMESTAMP WITH TIME ZONE)
+RETURNS DATE
+LANGUAGE sql
+STABLE
+AS $$
+  SELECT (p_ts AT TIME ZONE gym_stats_timezone())::DATE;
+$$;
+
+-- 3. Apply one workout's contribution (p_sign = 1 to add, -1 to remove)
+CREATE OR REPLACE FUNCTION gym_bump_workout_daily_stats(
+  p_user_id UUID,
+  p_workout_date TIMESTAMP WITH TIME ZONE,
+  p_sign INTEGER,
+  p_calories INTEGER,
+  p_exercises INTEGER,
+  p_duration_minutes INTEGER
+)
+RETURNS VOID
+LANGUAGE sql
+AS $$
+  INSERT INTO user_workout_daily_stats (
+    user_id,
+    stat_date,
+    workouts_count,
+    total_calories,
+    total_exercises,
+    total_duration_minutes,
+    updated_at
+  )
+  VALUES (
+    p_user_id,
+    gym_stats_day(p_workout_date),
+    p_sign,
+    p_sign * COALESCE(p_calories, 0),
+    p_sign * COALESCE(p_exercises, 0),
+    p_sign * COALESCE(p_duration_minutes, 0),
+    NOW()
+  )
+  ON CONFLICT (user_id, stat_date) DO UPDATE
+  SET workouts_count = user_workout_daily_stats.workouts_count + EXCLUDED.workouts_count,
+      total_calories = user_workout_daily_stats.total_calories + EXCLUDED.total_calories,
+      total_exercises = user_workout_daily_stats.total_exercises + EXCLUDED.total_exercises,
+      total_duration_minutes = user_workout_daily_stats.total_duration_minutes + EXCLUDED.total_duration_minutes,
+      updated_at = NOW();
+$$;
+
+-- 4. Keep the rollups in sync with user_workouts
+-- Only completed workouts count; an update removes the old contribution and adds the new one
+CREATE OR REPLACE FUNCTION gym_sync_workout_daily_stats()
+RETURNS TRIGGER
+LANGUAGE plpgsql
+AS $$
+BEGIN
+  IF TG_OP = 'UPDATE'
+     AND OLD.status IS NOT DISTINCT FROM NEW.status
+     AND OLD.user_id IS NOT DISTINCT FROM NEW.user_id
+     AND OLD.workout_date IS NOT DISTINCT FROM NEW.workout_date
+     AND OLD.total_calories IS NOT DISTINCT FROM NEW.total_calories
+     AND OLD.total_exercises IS NOT DISTINCT FROM NEW.total_exercises
+     AND OLD.total_duration_minutes IS NOT DISTINCT FROM NEW.total_duration_minutes THEN
+    RETURN NULL;
+  END IF;
+
+  IF TG_OP IN ('UPDATE', 'DELETE') AND OLD.status = 'completed' THEN
+    PERFORM gym_bump_workout_daily_stats(
+      OLD.user_id, OLD.workout_date, -1,
+      OLD.total_calories, OLD.total_exercises, OLD.total_duration_minutes
+    );
+  END IF;
+
+  IF TG_OP IN ('INSERT', 'UPDATE') AND NEW.status = 'completed' THEN
+    PERFORM gym_bump_workout_daily_stats(
+      NEW.user_id, NEW.workout_date, 1,
+      NEW.total_calories, NEW.total_exercises, NEW.total_duration_minutes
+    );
+  END IF;
+
+  RETURN NULL;
+END;
+$$;
+
+DROP TRIGGER IF EXISTS sync_user_workout_daily_stats ON user_workouts;
+CREATE TRIGGER sync_user_workout_daily_stats
+  AFTER INSERT OR UPDATE OR DELETE ON user_workouts
+  FOR EACH ROW EXECUTE FUNCTION gym_sync_workout_daily_stats();
+
+-- 5. Rebuild the rollups from existing workouts
+-- The lock keeps workouts saved during the rebuild from being counted twice or missed
+BEGIN;
+
+LOCK TABLE user_workouts IN SHARE MODE;
+
+DELETE FROM user_workout_daily_stats;
+
+INSERT INTO user_workout_daily_stats (
+  user_id,
+  stat_date,
+  workouts_count,
+  total_calories,
+  total_exercises,
+  total_duration_minutes
+)
+SELECT
+  user_id,
+  gym_stats_day(workout_date),
+  COUNT(*)::INTEGER,
+  COALESCE(SUM(total_calories), 0)::INTEGER,
+  COALESCE(SUM(total_exercises), 0)::INTEGER,
+  COALESCE(SUM(total_duration_minutes), 0)::INTEGER
+FROM user_workouts
+WHERE status = 'completed'
+GROUP BY user_id, gym_stats_day(workout_date);
+
+COMMIT;
+
+-- 6. Stats for the dashboard (all time, last 7 days + today, today)
+CREATE OR REPLACE FUNCTION gym_user_stats(p_user_id UUID)
+RETURNS TABLE (
+  total_workouts INTEGER,
+  total_calories INTEGER,
+  week_calories INTEGER,
+  week_workouts INTEGER,
+  today_calories INTEGER,
+  today_exercises INTEGER
+)
+LANGUAGE sql
+STABLE
+AS $$
+  WITH bounds AS (
+    SELECT gym_stats_day(NOW()) AS today
+  )
+  SELECT
+    COALESCE(SUM(s.workouts_count), 0)::INTEGER,
+    COALESCE(SUM(s.total_calories), 0)::INTEGER,
+    COALESCE(SUM(s.total_calories) FILTER (WHERE s.stat_date >= b.today - 7), 0)::INTEGER,
+    COALESCE(SUM(s.workouts_count) FILTER (WHERE s.stat_date >= b.today - 7), 0)::INTEGER,
+    COALESCE(SUM(s.total_calories) FILTER (WHERE s.stat_date >= b.today), 0)::INTEGER,
+    COALESCE(SUM(s.total_exercises) FILTER (WHERE s.stat_date >= b.today), 0)::INTEGER
+  FROM bounds b
+  LEFT JOIN user_workout_daily_stats s ON s.user_id = p_user_id;
+$$;
+
+-- 7. Daily progress for 'day', 'week' (default) or 'month'
+CREATE OR REPLACE FUNCTION gym_user_progress(
+  p_user_id UUID,
+  p_period TEXT DEFAULT 'week'
+)
+RETURNS SETOF user_workout_daily_stats
+LANGUAGE sql
+STABLE
+AS $$
+  WITH bounds AS (
+    SELECT
+      gym_stats_day(NOW()) AS today,
+      CASE p_period
+        WHEN 'day' THEN gym_stats_day(NOW())
+        WHEN 'month' THEN (gym_stats_day(NOW()) - INTERVAL '1 month')::DATE
+        ELSE gym_stats_day(NOW()) - 7
+      END AS start_date
+  )
+  SELECT s.*
+  FROM user_workout_daily_stats s, bounds b
+  WHERE s.user_id = p_user_id
+    AND s.stat_date BETWEEN b.start_date AND b.today
+    AND s.workouts_count > 0
+  ORDER BY s.stat_date;
+$$;
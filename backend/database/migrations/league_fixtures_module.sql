@@ -0,0 +1,169 @@
+-- League Fixtures
+-- Stores the round-robin / knockout fixtures generated for a league, placed on badminton
+-- courts and time windows by the fixture engine (src/utils/fixtureScheduling.js).
+--
+--   league_fixtures                              - one row per fixture; knockout byes have no court/time
+--   league_fixtures_staging                      - fixtures uploaded in chunks, keyed by batch id
+--   replace_league_fixtures(league, batch, n)    - swaps a staged batch in as the league's fixtures in one transaction
+--   badminton_free_courts(start, end)            - now also treats scheduled league fixtures as busy
+--
+-- A round robin of several hundred players is tens of thousands of rows, too large for one
+-- request body: the API inserts them into league_fixtures_staging in chunks and then calls
+-- replace_league_fixtures() once, which moves the batch over and deletes it.
+--
+-- Knockout progression: the winner of (round, match_number) plays in (round + 1, ceil(match_number / 2)).
+--
+-- SAFE TO RUN: Creates the tables if missing and creates/replaces functions (dropping the
+-- older JSONB variant of replace_league_fixtures). It does NOT modify existing data.
+-- Requires leagues_module.sql, badminton_module.sql and badminton_court_availability.sql
+-- to be applied first.
+
+-- 1. Fixtures table
+CREATE TABLE IF NOT EXISTS league_fixtures (
+  id UUID PRIMARY KEY DEFAULT gen_random_uuid(),
+  league_id UUID NOT NULL REFERENCES leagues(id) ON DELETE CASCADE,
+  format VARCHAR(20) NOT NULL CHECK (format IN ('round_robin', 'knockout')),
+  round INTEGER NOT NULL CHECK (round > 0),
+  match_number INTEGER NOT NULL CHECK (match_number > 0),
+  player1_id UUID REFERENCES users_metadata(id) ON DELETE SET NULL,
+  player2_id UUID REFERENCES users_metadata(id) ON DELETE SET NULL,
+  court_id UUID REFERENCES badminton_courts(id) ON DELETE SET NULL,
+  scheduled_start_time TIMESTAMP WITH TIME ZONE,
+  scheduled_end_time TIMESTAMP WITH TIME ZONE,
+  status VARCHAR(20) NOT NULL DEFAULT 'scheduled' CHECK (status IN ('scheduled', 'bye', 'completed', 'cancelled')),
+  winner_id UUID REFERENCES users_metadata(id) ON DELETE SET NULL,
+  created_at TIMESTAMP WITH TIME ZONE DEFAULT NOW(),
+  updated_at TIMESTAMP WITH TIME ZONE DEFAULT NOW(),
+  CONSTRAINT unique_league_fixture UNIQUE (league_id, round, match_number),
+  CONSTRAINT check_fixture_time_order CHECK (scheduled_end_time IS NULL OR scheduled_end_time > scheduled_start_time)
+);
+
+CREATE INDEX IF NOT EXISTS idx_league_fixtures_court_time ON league_fixtures(court_id, scheduled_start_time);
+CREATE INDEX IF NOT EXISTS idx_league_fixtures_player1 ON league_fixtures(player1_id);
+CREATE INDEX IF NOT EXISTS idx_league_fixtures_player2 ON league_fixtures(player2_id);
+
+DROP TRIGGER IF EXISTS update_league_fixtures_updated_at ON league_fixtures;
+CREATE TRIGGER update_league_fixtures_updated_at
+BEFORE UPDATE ON league_fixtures
+FOR EACH ROW
+EXECUTE FUNCTION update_badminton_updated_at_column();
+
+-- 2. Staged fixtures (same columns as league_fixtures, constraints are checked on the swap)
+CREATE TABLE IF NOT EXISTS league_fixtures_staging (
+  batch_id UUID NOT NULL,
+  league_id UUID NOT NULL REFERENCES leagues(id) ON DELETE CASCADE,
+  format VARCHAR(20) NOT NULL,
+  round INTEGER NOT NULL,
+  match_number INTEGER NOT NULL,
+  player1_id UUID,
+  player2_id UUID,
+  court_id UUID,
+  scheduled_start_time TIMESTAMP WITH TIME ZONE,
+  scheduled_end_time TIMESTAMP WITH TIME ZONE,
+  status VARCHAR(20) NOT NULL,
+  winner_id UUID,
+  staged_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT NOW()
+);
+
+CREATE INDEX IF NOT EXISTS idx_league_fixtures_staging_batch ON league_fixtures_staging(batch_id);
+CREATE INDEX IF NOT EXISTS idx_league_fixtures_staging_staged_at ON league_fixtures_staging(staged_at);
+
+-- 3. Replace a league's fixtures atomically with a staged batch
+-- p_expected_count guards against a lost chunk: an incomplete batch is rejected. The batch is
+-- deleted whatever the outcome, as are batches abandoned more than an hour ago.
+DROP FUNCTION IF EXISTS replace_league_fixtures(UUID, JSONB);
+
+CREATE OR REPLACE FUNCTION replace_league_fixtures(
+  p_league_id UUID,
+  p_batch_id UUID,
+  p_expected_count INTEGER
+)
+RETURNS JSONB
+LANGUAGE plpgsql
+AS $$
+DECLARE
+  staged_count INTEGER;
+  inserted_count INTEGER;
+BEGIN
+  DELETE FROM league_fixtures_staging
+  WHERE staged_at < NOW() - INTERVAL '1 hour';
+
+  -- Serialize regenerations of the same league
+  PERFORM 1 FROM leagues WHERE id = p_league_id FOR UPDATE;
+  IF NOT FOUND THEN
+    DELETE FROM league_fixtures_staging WHERE batch_id = p_batch_id;
+    RETURN jsonb_build_object('status', 'league_not_found');
+  END IF;
+
+  SELECT COUNT(*) INTO staged_count
+  FROM league_fixtures_staging
+  WHERE batch_id = p_batch_id
+    AND league_id = p_league_id;
+
+  IF staged_count <> p_expected_count THEN
+    DELETE FROM league_fixtures_staging WHERE batch_id = p_batch_id;
+    RETURN jsonb_build_object('status', 'incomplete_batch', 'staged', staged_count);
+  END IF;
+
+  IF EXISTS (
+    SELECT 1 FROM league_fixtures
+    WHERE league_id = p_league_id
+      AND status = 'completed'
+  ) THEN
+    DELETE FROM league_fixtures_staging WHERE batch_id = p_batch_id;
+    RETURN jsonb_build_object('status', 'has_results');
+  END IF;
+
+  DELETE FROM league_fixtures WHERE league_id = p_league_id;
+
+  INSERT INTO league_fixtures (
+    league_id, format, round, match_number, player1_id, player2_id,
+    court_id, scheduled_start_time, scheduled_end_time, status, winner_id
+  )
+  SELECT
+    p_league_id, f.format, f.round, f.match_number, f.player1_id, f.player2_id,
+    f.court_id, f.scheduled_start_time, f.scheduled_end_time, f.status, f.winner_id
+  FROM league_fixtures_staging f
+  WHERE f.batch_id = p_batch_id
+    AND f.league_id = p_league_id;
+
+  GET DIAGNOSTICS inserted_count = ROW_COUNT;
+
+  DELETE FROM league_fixtures_staging WHERE batch_id = p_batch_id;
+
+  RETURN jsonb_build_object('status', 'replaced', 'inserted', inserted_count);
+END;
+$$;
+
+-- 4. Free courts now also exclude courts held by scheduled league fixtures
+CREATE OR REPLACE FUNCTION badminton_free_courts(
+  p_start_time TIMESTAMP WITH TIME ZONE,
+  p_end_time TIMESTAMP WITH TIME ZONE
+)
+RETURNS SETOF badminton_courts
+LANGUAGE sql
+STABLE
+AS $$
+  SELECT c.*
+  FROM badminton_courts c
+  WHERE c.status = 'available'
+    AND NOT EXISTS (
+      SELECT 1
+      FROM badminton_matches m
+      WHERE m.court_id = c.id
+        AND m.status IN ('scheduled', 'in_progress')
+        AND tstzrange(m.scheduled_start_time, m.scheduled_end_time) && tstzrange(p_start_time, p_end_time)
+    )
+    AND NOT EXISTS (
+      SELECT 1
+      FROM league_fixtures f
+      WHERE f.court_id = c.id
+        AND f.status = 'scheduled'
+        AND tstzrange(f.scheduled_start_time, f.scheduled_end_time) && tstzrange(p_start_time, p_end_time)
+    )
+  ORDER BY c.court_number;
+$$;
+
+COMMENT ON TABLE league_fixtures IS 'Generated league fixtures placed on badminton courts';
+COMMENT ON TABLE league_fixtures_staging IS 'Fixture batches uploaded in chunks before replace_league_fixtures swaps them in';
+COMMENT ON FUNCTION replace_league_fixtures(UUID, UUID, INTEGER) IS 'Replaces all fixtures of a league with a staged batch in one transaction unless results were already recorded';
@@ -0,0 +1,109 @@
+-- League Participant Counts
+-- Keeps a cached participant_count on each league so the leagues tab reads counts with
+-- the league rows instead of running one count query per league.
+--
+--   leagues.participant_count             - registered + confirmed registrations, maintained by trigger
+--   league_participant_counts (view)      - grouped aggregate straight from league_registrations
+--   league_participant_counts_for(ids)    - the same aggregate for a set of leagues (RPC)
+--
+-- The trigger fires on every insert, status change and delete of league_registrations, so
+-- register, cancel and payment confirmation all keep the cached count in step.
+--
+-- SAFE TO RUN: Adds a column if missing, creates functions/trigger/view with CREATE OR REPLACE
+-- and recomputes the cached counts from league_registrations. Requires leagues_module.sql.
+
+-- 1. Cached count column
+DO $$
+BEGIN
+  IF NOT EXISTS (
+    SELECT 1 FROM information_schema.columns
+    WHERE table_name = 'leagues' AND column_name = 'participant_count'
+  ) THEN
+    ALTER TABLE leagues ADD COLUMN participant_count INTEGER NOT NULL DEFAULT 0;
+  END IF;
+END $$;
+
+CREATE INDEX IF NOT EXISTS idx_league_registrations_league_status
+  ON league_registrations(league_id, status);
+
+-- 2. Grouped aggregate
+CREATE OR REPLACE VIEW league_participant_counts AS
+SELECT league_id, COUNT(*)::INTEGER AS participant_count
+FROM league_registrations
+WHERE status IN ('registered', 'confirmed')
+GROUP BY league_id;
+
+CREATE OR REPLACE FUNCTION league_participant_counts_for(p_league_ids UUID[])
+RETURNS TABLE (league_id UUID, participant_count INTEGER)
+LANGUAGE sql
+STABLE
+AS $$
+  SELECT r.league_id, COUNT(*)::INTEGER
+  FROM league_registrations r
+  WHERE r.league_id = ANY(p_league_ids)
+    AND r.status IN ('registered', 'confirmed')
+  GROUP BY r.league_id;
+$$;
+
+-- 3. Trigger keeping leagues.participant_count in step
+CREATE OR REPLACE FUNCTION sync_league_participant_count()
+RETURNS TRIGGER
+LANGUAGE plpgsql
+AS $$
+DECLARE
+  old_counts BOOLEAN := false;
+  new_counts BOOLEAN := false;
+BEGIN
+  IF TG_OP IN ('UPDATE', 'DELETE') THEN
+    old_counts := OLD.status IN ('registered', 'confirmed');
+  END IF;
+  IF TG_OP IN ('INSERT', 'UPDATE') THEN
+    new_counts := NEW.status IN ('registered', 'confirmed');
+  END IF;
+
+  IF TG_OP = 'UPDATE' AND OLD.league_id = NEW.league_id AND old_counts = new_counts THEN
+    RETURN NULL;
+  END IF;
+
+  IF old_counts THEN
+    UPDATE leagues
+    SET participant_count = GREATEST(participant_count - 1, 0)
+    WHERE id = OLD.league_id;
+  END IF;
+
+  IF new_counts THEN
+    UPDATE leagues
+    SET participant_count = participant_count + 1
+    WHERE id = NEW.league_id;
+  END IF;
+
+  RETURN NULL;
+END;
+$$;
+
+DROP TRIGGER IF EXISTS trigger_league_participant_count ON league_registrations;
+CREATE TRIGGER trigger_league_participant_count
+  AFTER INSERT OR UPDATE OF status, league_id OR DELETE
+  ON league_registrations
+  FOR EACH ROW
+  EXECUTE FUNCTION sync_league_participant_count();
+
+-- 4. Recompute cached counts from existing registrations
+BEGIN;
+LOCK TABLE league_registrations IN SHARE MODE;
+
+WITH counts AS (
+  SELECT l.id, COALESCE(c.participant_count, 0) AS participant_count
+  FROM leagues l
+  LEFT JOIN league_participant_counts c ON c.league_id = l.id
+)
+UPDATE leagues l
+SET participant_count = counts.participant_count
+FROM counts
+WHERE l.id = counts.id
+  AND l.participant_count IS DISTINCT FROM counts.participant_count;
+
+COMMIT;
+
+COMMENT ON COLUMN leagues.participant_count IS 'Registered + confirmed registrations, maintained by trigger_league_participant_count';
+COMMENT ON FUNCTION league_participant_counts_for(UUID[]) IS 'Registered + confirmed registration counts for the given leagues';
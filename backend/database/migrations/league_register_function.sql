@@ -0,0 +1,122 @@
+-- Atomic League Registration
+-- Creates register_for_league(), which performs the registration window checks, duplicate
+-- check, capacity check and insert for a league registration in a single transaction /
+-- single round trip.
+--
+-- The league row is locked with FOR UPDATE so concurrent registrations for the same league
+-- are serialized and max_participants can no longer be exceeded. The
+-- UNIQUE(league_id, user_id) constraint is the final guard against duplicates.
+--
+-- SAFE TO RUN: Only creates/replaces a function and adds the unique constraint if it is
+-- missing; it does NOT modify existing data.
+-- Requires leagues_module.sql and league_payment_fields.sql to be applied first.
+
+-- 1. Unique registration per user and league (already created by leagues_module.sql)
+DO $$
+BEGIN
+  IF NOT EXISTS (
+    SELECT 1 FROM pg_constraint
+    WHERE conname = 'unique_league_user_registration'
+      AND conrelid = 'league_registrations'::regclass
+  ) THEN
+    ALTER TABLE league_registrations
+      ADD CONSTRAINT unique_league_user_registration UNIQUE (league_id, user_id);
+  END IF;
+END $$;
+
+-- 2. Registration function
+CREATE OR REPLACE FUNCTION register_for_league(
+  p_league_id UUID,
+  p_user_id UUID
+)
+RETURNS JSONB
+LANGUAGE plpgsql
+AS $$
+DECLARE
+  league_row leagues%ROWTYPE;
+  current_count INTEGER;
+  registration_row league_registrations%ROWTYPE;
+  is_free BOOLEAN;
+BEGIN
+  -- 1. Lock the league row so concurrent registrations for this league queue up behind us
+  SELECT * INTO league_row
+  FROM leagues
+  WHERE id = p_league_id
+  FOR UPDATE;
+
+  IF NOT FOUND THEN
+    RETURN jsonb_build_object('status', 'league_not_found');
+  END IF;
+
+  -- 2. Registration window
+  IF NOT COALESCE(league_row.registration_enabled, false) THEN
+    RETURN jsonb_build_object('status', 'registration_disabled');
+  END IF;
+
+  IF CURRENT_DATE > league_row.registration_deadline THEN
+    RETURN jsonb_build_object('status', 'deadline_passed');
+  END IF;
+
+  IF CURRENT_DATE >= league_row.start_date THEN
+    RETURN jsonb_build_object('status', 'league_started');
+  END IF;
+
+  -- 3. Reject duplicate registrations
+  IF EXISTS (
+    SELECT 1 FROM league_registrations
+    WHERE league_id = p_league_id
+      AND user_id = p_user_id
+  ) THEN
+    RETURN jsonb_build_object('status', 'already_registered');
+  END IF;
+
+  -- 4. Enforce capacity
+  IF league_row.max_participants IS NOT NULL THEN
+    SELECT COUNT(*) INTO current_count
+    FROM league_registrations
+    WHERE league_id = p_league_id
+      AND status IN ('registered', 'confirmed');
+
+    IF current_count >= league_row.max_participants THEN
+      RETURN jsonb_build_object(
+        'status', 'league_full',
+        'current_count', current_count,
+        'max_participants', league_row.max_participants
+      );
+    END IF;
+  END IF;
+
+  -- 5. Register (free leagues are confirmed immediately, paid ones wait for payment)
+  is_free := COALESCE(league_row.registration_fee, 0) = 0;
+
+  INSERT INTO league_registrations (
+    league_id,
+    user_id,
+    status,
+    payment_status,
+    amount_paid,
+    confirmed_at
+  )
+  VALUES (
+    p_league_id,
+    p_user_id,
+    CASE WHEN is_free THEN 'confirmed' ELSE 'registered' END,
+    CASE WHEN is_free THEN 'succeeded' ELSE 'pending' END,
+    0,
+    CASE WHEN is_free THEN NOW() ELSE NULL END
+  )
+  RETURNING * INTO registration_row;
+
+  RETURN jsonb_build_object(
+    'status', 'registered',
+    'registration', to_jsonb(registration_row),
+    'requires_payment', NOT is_free,
+    'fee', COALESCE(league_row.registration_fee, 0)
+  );
+EXCEPTION
+  WHEN unique_violation THEN
+    RETURN jsonb_build_object('status', 'already_registered');
+END;
+$$;
+
+COMMENT ON FUNCTION register_for_league(UUID, UUID) IS 'Registers a user for a league with the league row locked, enforcing the registration window, uniqueness and max_participants';
@@ -0,0 +1,53 @@
+-- Set-based League Status Sweep
+-- update_league_status() from update_leagues_auto_status.sql loops over every league and
+-- updates them one by one. The backend sweeper calls it once after every local midnight, so
+-- it is replaced by a single UPDATE that derives each status from the row it is writing
+-- (a league whose dates change during the sweep is never written with a status computed
+-- from its old dates) and returns how many leagues changed.
+--
+--   league_derived_status(leagues)  - status implied by a league's dates today (cancelled stays cancelled)
+--   update_league_status()          - persist the derived status of every league that changed, returns the count
+--
+-- SAFE TO RUN: Only creates/replaces functions, it does NOT modify existing data. The old
+-- update_league_status() returned void, so it is dropped first; scheduled calls such as
+-- SELECT update_league_status(); keep working. Requires update_leagues_auto_status.sql.
+
+-- 1. Status implied by the dates (same rules as trigger_update_league_status and the API)
+CREATE OR REPLACE FUNCTION league_derived_status(l leagues)
+RETURNS VARCHAR(20)
+LANGUAGE sql
+STABLE
+AS $$
+  SELECT CASE
+    WHEN l.status = 'cancelled' OR l.start_date IS NULL THEN l.status
+    WHEN l.start_date > CURRENT_DATE THEN
+      CASE
+        WHEN l.registration_enabled = true
+         AND l.registration_deadline IS NOT NULL
+         AND CURRENT_DATE <= l.registration_deadline THEN 'registration_open'
+        ELSE 'upcoming'
+      END
+    WHEN l.end_date IS NOT NULL AND l.end_date < CURRENT_DATE THEN 'completed'
+    ELSE 'in_progress'
+  END;
+$$;
+
+-- 2. Sweep every league in one statement
+DROP FUNCTION IF EXISTS update_league_status();
+CREATE FUNCTION update_league_status()
+RETURNS INTEGER
+LANGUAGE sql
+AS $$
+  WITH updated AS (
+    UPDATE leagues l
+    SET status = league_derived_status(l),
+        updated_at = NOW()
+    WHERE l.status <> 'cancelled'
+      AND l.status IS DISTINCT FROM league_derived_status(l)
+    RETURNING 1
+  )
+  SELECT COUNT(*)::INTEGER FROM updated;
+$$;
+
+COMMENT ON FUNCTION league_derived_status(leagues) IS 'Status implied by a league''s dates today';
+COMMENT ON FUNCTION update_league_status() IS 'Updates all league statuses based on current date and league dates, returns the number changed';
@@ -0,0 +1,25 @@
+-- Grouped Swimming Attendance Counts
+-- Creates swim_attendance_counts(), which returns today's attendance count for many
+-- time slots in one query instead of one count query per slot.
+-- Used by GET /api/swimming/time-slots to enrich the slot list.
+--
+-- SAFE TO RUN: Only creates/replaces a function, it does NOT modify existing data.
+-- Uses the existing idx_swimming_attendance_date_slot (session_date, time_slot_id) index.
+
+CREATE OR REPLACE FUNCTION swim_attendance_counts(
+  p_session_date DATE,
+  p_time_slot_ids UUID[]
+)
+RETURNS TABLE (
+  time_slot_id UUID,
+  attendance_count INTEGER
+)
+LANGUAGE sql
+STABLE
+AS $$
+  SELECT a.time_slot_id, COUNT(*)::INTEGER AS attendance_count
+  FROM swimming_attendance a
+  WHERE a.session_date = p_session_date
+    AND a.time_slot_id = ANY(p_time_slot_ids)
+  GROUP BY a.time_slot_id;
+$$;
@@ -0,0 +1,105 @@
+-- Atomic Swimming Check-in
+-- Creates swim_check_in(), which performs the duplicate check, capacity check and
+-- attendance insert for a QR scan in a single transaction / single round trip.
+--
+-- The time slot row is locked with FOR UPDATE so concurrent scans for the same slot
+-- are serialized and max_capacity can no longer be exceeded. Seats held for promoted
+-- waitlist users (swim_waitlist_promote) count as taken for everyone but their holder.
+--
+-- SAFE TO RUN: Only creates/replaces a function, it does NOT modify existing data.
+-- Requires swimming_module.sql, swimming_registration_module.sql and
+-- swimming_waitlist_functions.sql to be applied first.
+
+CREATE OR REPLACE FUNCTION swim_check_in(
+  p_user_id UUID,
+  p_time_slot_id UUID,
+  p_session_date DATE,
+  p_registration_id UUID DEFAULT NULL,
+  p_check_in_method VARCHAR(20) DEFAULT 'qr_scan'
+)
+RETURNS JSONB
+LANGUAGE plpgsql
+AS $$
+DECLARE
+  slot_capacity INTEGER;
+  current_count INTEGER;
+  reserved_count INTEGER;
+  attendance_row swimming_attendance%ROWTYPE;
+BEGIN
+  -- 1. Lock the slot row so concurrent check-ins for this slot queue up behind us
+  SELECT max_capacity INTO slot_capacity
+  FROM swimming_time_slots
+  WHERE id = p_time_slot_id
+    AND is_active = true
+  FOR UPDATE;
+
+  IF NOT FOUND THEN
+    RETURN jsonb_build_object('status', 'slot_not_found');
+  END IF;
+
+  -- 2. Reject duplicate check-ins for the same session
+  IF EXISTS (
+    SELECT 1 FROM swimming_attendance
+    WHERE user_id = p_user_id
+      AND time_slot_id = p_time_slot_id
+      AND session_date = p_session_date
+  ) THEN
+    RETURN jsonb_build_object('status', 'already_checked_in');
+  END IF;
+
+  -- 3. Enforce capacity, keeping other users' waitlist reservations free
+  SELECT COUNT(*) INTO current_count
+  FROM swimming_attendance
+  WHERE time_slot_id = p_time_slot_id
+    AND session_date = p_session_date;
+
+  reserved_count := swim_waitlist_reserved_count(p_time_slot_id, p_session_date, p_user_id);
+
+  IF current_count + reserved_count >= slot_capacity THEN
+    RETURN jsonb_build_object(
+      'status', 'capacity_exceeded',
+      'current_count', current_count,
+      'reserved_count', reserved_count,
+      'max_capacity', slot_capacity
+    );
+  END IF;
+
+  -- 4. Record attendance
+  INSERT INTO swimming_attendance (
+    time_slot_id,
+    user_id,
+    registration_id,
+    session_date,
+    check_in_time,
+    check_in_method
+  )
+  VALUES (
+    p_time_slot_id,
+    p_user_id,
+    p_registration_id,
+    p_session_date,
+    NOW(),
+    p_check_in_method
+  )
+  RETURNING * INTO attendance_row;
+
+  -- A promoted user checking in uses their reservation
+  UPDATE swimming_waitlist
+  SET status = 'confirmed'
+  WHERE user_id = p_user_id
+    AND time_slot_id = p_time_slot_id
+    AND session_date = p_session_date
+    AND status = 'notified';
+
+  RETURN jsonb_build_object(
+    'status', 'checked_in',
+    'attendance', to_jsonb(attendance_row),
+    'current_count', current_count + 1,
+    'max_capacity', slot_capacity
+  );
+EXCEPTION
+  -- The UNIQUE(time_slot_id, user_id, session_date) constraint is the final guard
+  WHEN unique_violation THEN
+    RETURN jsonb_build_object('status', 'already_checked_in');
+END;
+$$;
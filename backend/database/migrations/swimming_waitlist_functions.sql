@@ -0,0 +1,181 @@
+-- Set-based Swimming Waitlist Maintenance
+-- Replaces the per-row position updates done from Node with single statements and adds
+-- automatic promotion of waitlisted users when seats become free.
+--
+--   swim_waitlist_renumber(slot, date)          - renumber pending positions 1..n in one UPDATE
+--   swim_waitlist_reserved_count(slot, date, u) - seats held by live reservations of other users
+--   swim_waitlist_promote(slot, date)           - mark the first pending users as 'notified' for each free seat
+--   swim_waitlist_leave(user, slot, date)       - delete + renumber + promote in one round trip
+--
+-- A 'notified' user holds a seat for swim_waitlist_hold() (15 minutes) from notified_at;
+-- swim_check_in() keeps held seats for their holders. Expired reservations stop counting and
+-- are cancelled by the next promotion, which hands the seat to the next pending user.
+--
+-- Lock order is always swimming_time_slots row -> swimming_waitlist rows, the same as
+-- swim_check_in(), so these functions cannot deadlock with each other or with check-ins.
+--
+-- SAFE TO RUN: Adds the nullable notified_at column if missing and creates/replaces functions.
+-- It does NOT modify existing data (older 'notified' rows expire from their updated_at).
+-- Apply before swimming_check_in_function.sql.
+
+-- 0. Reservation start
+ALTER TABLE swimming_waitlist ADD COLUMN IF NOT EXISTS notified_at TIMESTAMP WITH TIME ZONE;
+
+-- 1. Renumber pending positions without gaps
+CREATE OR REPLACE FUNCTION swim_waitlist_renumber(
+  p_time_slot_id UUID,
+  p_session_date DATE
+)
+RETURNS INTEGER
+LANGUAGE sql
+AS $$
+  WITH ranked AS (
+    SELECT id, ROW_NUMBER() OVER (ORDER BY position, created_at) AS new_position
+    FROM swimming_waitlist
+    WHERE time_slot_id = p_time_slot_id
+      AND session_date = p_session_date
+      AND status = 'pending'
+  ),
+  updated AS (
+    UPDATE swimming_waitlist w
+    SET position = r.new_position
+    FROM ranked r
+    WHERE w.id = r.id
+      AND w.position <> r.new_position
+    RETURNING 1
+  )
+  SELECT COUNT(*)::INTEGER FROM updated;
+$$;
+
+-- 2. Reservations
+-- How long a promoted user's seat is held
+CREATE OR REPLACE FUNCTION swim_waitlist_hold()
+RETURNS INTERVAL
+LANGUAGE sql
+IMMUTABLE
+AS $$
+  SELECT INTERVAL '15 minutes';
+$$;
+
+-- Seats held by unexpired reservations whose holder has not checked in yet, p_except_user_id's
+-- own reservation excluded. Callers hold the slot row lock.
+CREATE OR REPLACE FUNCTION swim_waitlist_reserved_count(
+  p_time_slot_id UUID,
+  p_session_date DATE,
+  p_except_user_id UUID DEFAULT NULL
+)
+RETURNS INTEGER
+LANGUAGE sql
+STABLE
+AS $$
+  SELECT COUNT(*)::INTEGER
+  FROM swimming_waitlist w
+  WHERE w.time_slot_id = p_time_slot_id
+    AND w.session_date = p_session_date
+    AND w.status = 'notified'
+    AND COALESCE(w.notified_at, w.updated_at) > NOW() - swim_waitlist_hold()
+    AND w.user_id IS DISTINCT FROM p_except_user_id
+    AND NOT EXISTS (
+      SELECT 1 FROM swimming_attendance a
+      WHERE a.time_slot_id = w.time_slot_id
+        AND a.session_date = w.session_date
+        AND a.user_id = w.user_id
+    );
+$$;
+
+-- 3. Promote pending users into free seats
+-- Free seats = max_capacity - checked in - live reservations
+CREATE OR REPLACE FUNCTION swim_waitlist_promote(
+  p_time_slot_id UUID,
+  p_session_date DATE
+)
+RETURNS SETOF swimming_waitlist
+LANGUAGE plpgsql
+AS $$
+DECLARE
+  slot_capacity INTEGER;
+  attended_count INTEGER;
+  reserved_count INTEGER;
+  free_seats INTEGER;
+BEGIN
+  SELECT max_capacity INTO slot_capacity
+  FROM swimming_time_slots
+  WHERE id = p_time_slot_id
+    AND is_active = true
+  FOR UPDATE;
+
+  IF NOT FOUND THEN
+    RETURN;
+  END IF;
+
+  -- Release expired reservations whose holder never checked in
+  UPDATE swimming_waitlist w
+  SET status = 'cancelled'
+  WHERE w.time_slot_id = p_time_slot_id
+    AND w.session_date = p_session_date
+    AND w.status = 'notified'
+    AND COALESCE(w.notified_at, w.updated_at) <= NOW() - swim_waitlist_hold()
+    AND NOT EXISTS (
+      SELECT 1 FROM swimming_attendance a
+      WHERE a.time_slot_id = w.time_slot_id
+        AND a.session_date = w.session_date
+        AND a.user_id = w.user_id
+    );
+
+  SELECT COUNT(*) INTO attended_count
+  FROM swimming_attendance
+  WHERE time_slot_id = p_time_slot_id
+    AND session_date = p_session_date;
+
+  reserved_count := swim_waitlist_reserved_count(p_time_slot_id, p_session_date);
+
+  free_seats := slot_capacity - attended_count - reserved_count;
+
+  IF free_seats <= 0 THEN
+    RETURN;
+  END IF;
+
+  RETURN QUERY
+  UPDATE swimming_waitlist
+  SET status = 'notified',
+      notified_at = NOW()
+  WHERE id IN (
+    SELECT id
+    FROM swimming_waitlist
+    WHERE time_slot_id = p_time_slot_id
+      AND session_date = p_session_date
+      AND status = 'pending'
+    ORDER BY position, created_at
+    LIMIT free_seats
+  )
+  RETURNING *;
+
+  IF FOUND THEN
+    PERFORM swim_waitlist_renumber(p_time_slot_id, p_session_date);
+  END IF;
+END;
+$$;
+
+-- 4. Leave the waitlist: delete, close the gap and hand a freed reservation to the next user
+CREATE OR REPLACE FUNCTION swim_waitlist_leave(
+  p_user_id UUID,
+  p_time_slot_id UUID,
+  p_session_date DATE
+)
+RETURNS SETOF swimming_waitlist
+LANGUAGE plpgsql
+AS $$
+BEGIN
+  -- Take the slot lock first to keep the lock order consistent
+  PERFORM 1 FROM swimming_time_slots WHERE id = p_time_slot_id FOR UPDATE;
+
+  DELETE FROM swimming_waitlist
+  WHERE user_id = p_user_id
+    AND time_slot_id = p_time_slot_id
+    AND session_date = p_session_date;
+
+  PERFORM swim_waitlist_renumber(p_time_slot_id, p_session_date);
+
+  RETURN QUERY SELECT * FROM swim_waitlist_promote(p_time_slot_id, p_session_date);
+END;
+$$;
@@ -0,0 +1,287 @@
+import dotenv from "dotenv";
+dotenv.config();
+import process from "node:process";
+import cluster from "node:cluster";
+import os from "node:os";
+import { createServer } from "http";
+import { setupSocketPrimary } from "./socket/socketCluster.js";
+import { setupClusterBusPrimary } from "./utils/clusterBus.js";
+import { logger, flushLogs } from "./utils/logger.js";
+import { SHUTDOWN_TIMEOUT_MS, READINESS_DELAY_MS, WORKER_LIFECYCLE, delay } from "./utils/gracefulShutdown.js";
+
+/**
+ * Clustered entry point: forks one worker per core (or WEB_CONCURRENCY) running server.js.
+ * The primary listens on PORT and distributes connections with sticky sessions; workers
+ * share Socket.IO rooms through the cluster adapter, so no external broker is needed.
+ *
+ * Signals (send them to the primary):
+ * - SIGTERM / SIGINT: workers report not ready for SHUTDOWN_READINESS_DELAY_MS, the port is
+ *   closed, then every worker drains its connections and exits
+ * - SIGHUP: zero-downtime recycle, one worker at a time: a replacement is started and only
+ *   once it is ready is the old worker drained
+ *
+ * REST requests are not sticky. In-memory state (caches, occupancy counters, matchmaking
+ * presence) is per worker and kept in step through the cluster bus (utils/clusterBus.js); the
+ * matchmaking queue lives in Postgres. Scheduled jobs (the league status sweeper) run in one
+ * worker only, started with CLUSTER_SCHEDULER=true.
+ */
+
+// How long a new worker gets to report ready during a recycle
+const WORKER_READY_TIMEOUT_MS = 30000;
+
+// Crashed workers are restarted after 1s, 2s, 4s, ... (capped); after CRASH_LIMIT crashes
+// within CRASH_WINDOW_MS the primary gives up and exits so the supervisor can step in
+const RESTART_DELAY_MS = 1000;
+const MAX_RESTART_DELAY_MS = 30000;
+const CRASH_LIMIT = 5;
+const CRASH_WINDOW_MS = 60000;
+
+/**
+ * Resolve true once the worker reports ready, false if it exits or times out first
+ */
+const waitForReady = (worker, timeoutMs) => new Promise((resolve) => {
+  const done = (ready) => {
+    clearTimeout(timer);
+    worker.off("message", onMessage);
+    worker.off("exit", onExit);
+    resolve(ready);
+  };
+  const onMessage = (message) => {
+    if (message?.type === WORKER_LIFECYCLE.ready) {
+      done(true);
+    }
+  };
+  const onExit = () => done(false);
+  const timer = setTimeout(() => done(false), timeoutMs);
+
+  worker.on("message", onMessage);
+  worker.once("exit", onExit);
+});
+
+/**
+ * Queue whatever is sent to a worker until it reports ready. The sticky balancer hands
+ * connections to a worker as soon as it is forked, and IPC messages that arrive before
+ * server.js has loaded are dropped (the connection would hang).
+ */
+const holdUntilReady = (worker) => {
+  const send = worker.send.bind(worker);
+  const queued = [];
+
+  worker.send = (...args) => {
+    queued.push(args);
+    return true;
+  };
+
+  const onMessage = (message) => {
+    if (message?.type === WORKER_LIFECYCLE.ready) {
+      worker.off("message", onMessage);
+      worker.send = send;
+      queued.splice(0).forEach(args => send(...args));
+    }
+  };
+  worker.on("message", onMessage);
+
+  // Connections held for a worker that never got ready are closed
+  worker.once("exit", () => {
+    queued.forEach(([, handle]) => handle?.destroy?.());
+  });
+};
+
+/**
+ * Take a retiring worker out of rotation before it drains. It stays in cluster.workers until it
+ * exits, so the sticky balancer may still pick it: connections handed to it go to another
+ * worker instead (or are closed if none is left). Messages without a handle (adapter
+ * broadcasts, later chunks of connections it already owns) reach it while its channel is open.
+ */
+const takeOutOfRotation = (worker, pickWorker) => {
+  const send = worker.send.bind(worker);
+
+  worker.send = (message, handle, ...rest) => {
+    const callback = [handle, ...rest].find(arg => typeof arg === "function");
+
+    if (!handle || typeof handle === "function") {
+      if (worker.isConnected()) {
+        return send(message, handle, ...rest);
+      }
+      callback?.(new Error("Worker is retiring"));
+      return false;
+    }
+
+    const target = pickWorker();
+    if (target) {
+      return target.send(message, handle, ...rest);
+    }
+    handle.destroy?.();
+    callback?.(new Error("No worker available"));
+    return false;
+  };
+};
+
+const sendToWorker = (worker, type) => {
+  if (worker.isConnected()) {
+    worker.send({ type });
+  }
+};
+
+if (cluster.isPrimary) {
+  const PORT = process.env.PORT || 3000;
+  const workerCount = parseInt(process.env.WEB_CONCURRENCY, 10) || os.availableParallelism();
+
+  const liveWorkers = new Set(); // forked and not exited yet (draining workers included)
+  const retiringWorkers = new Set(); // ids of workers drained on purpose, not to be replaced
+  let shuttingDown = false;
+  let recycling = false;
+  let onAllExited = null;
+  let crashTimes = []; // recent unexpected worker exits, oldest first
+
+  let schedulerWorker = null; // the worker that runs scheduled jobs
+
+  /**
+   * Fork a worker; the scheduler flag moves to its replacement when it is recycled or exits
+   */
+  const forkWorker = (asScheduler = false) => {
+    const worker = cluster.fork({ CLUSTER_SCHEDULER: asScheduler ? "true" : "false" });
+    if (asScheduler) {
+      schedulerWorker = worker;
+    }
+    return worker;
+  };
+
+  const httpServer = createServer();
+  setupSocketPrimary(httpServer);
+  setupClusterBusPrimary();
+
+  httpServer.listen(PORT, () => {
+    logger.info(`Cluster primary listening on port ${PORT}`, { workers: workerCount });
+  });
+
+  /**
+   * A worker that is not retiring and can receive connections, picked at random
+   */
+  const pickServingWorker = () => {
+    const serving = [...liveWorkers].filter(worker => !retiringWorkers.has(worker.id) && worker.isConnected());
+    return serving[Math.floor(Math.random() * serving.length)] || null;
+  };
+
+  cluster.on("fork", (worker) => {
+    liveWorkers.add(worker);
+    holdUntilReady(worker);
+    // e.g. a send racing the channel closing; without a listener it would kill the primary
+    worker.on("error", (error) => {
+      logger.warn("Worker IPC error", { workerPid: worker.process.pid, error });
+    });
+  });
+
+  cluster.on("exit", (worker, code, signal) => {
+    liveWorkers.delete(worker);
+
+    if (retiringWorkers.delete(worker.id) || shuttingDown) {
+      logger.info("Worker drained", { workerPid: worker.process.pid, code, signal });
+      if (liveWorkers.size === 0) {
+        onAllExited?.();
+      }
+      return;
+    }
+
+    const now = Date.now();
+    crashTimes = [...crashTimes.filter(time => now - time < CRASH_WINDOW_MS), now];
+    if (crashTimes.length >= CRASH_LIMIT) {
+      logger.error("Workers keep crashing, stopping the cluster", { workerPid: worker.process.pid, code, signal, crashes: crashTimes.length });
+      shutdown("crash-loop", 1);
+      return;
+    }
+
+    const restartDelay = Math.min(RESTART_DELAY_MS * 2 ** (crashTimes.length - 1), MAX_RESTART_DELAY_MS);
+    logger.error("Worker exited, starting a new one", { workerPid: worker.process.pid, code, signal, restartDelayMs: restartDelay });
+    const asScheduler = worker === schedulerWorker;
+    setTimeout(() => {
+      if (!shuttingDown) {
+        forkWorker(asScheduler);
+      }
+    }, restartDelay);
+  });
+
+  for (let i = 0; i < workerCount; i++) {
+    forkWorker(i === 0);
+  }
+
+  /**
+   * Replace every worker, one at a time, without dropping capacity
+   */
+  const recycleWorkers = async () => {
+    if (recycling || shuttingDown) {
+      return;
+    }
+    recycling = true;
+
+    const current = Object.values(cluster.workers);
+    logger.info("Recycling workers", { workers: current.length });
+
+    for (const oldWorker of current) {
+      if (shuttingDown) {
+        break;
+      }
+      if (oldWorker.isDead()) {
+        continue; // already replaced by the exit handler
+      }
+
+      const replacement = forkWorker(oldWorker === schedulerWorker);
+      if (!await waitForReady(replacement, WORKER_READY_TIMEOUT_MS)) {
+        logger.error("Replacement worker did not become ready, recycle stopped", { workerPid: replacement.process.pid });
+        break;
+      }
+
+      const exited = new Promise(resolve => oldWorker.once("exit", resolve));
+      retiringWorkers.add(oldWorker.id);
+      takeOutOfRotation(oldWorker, pickServingWorker);
+      sendToWorker(oldWorker, WORKER_LIFECYCLE.shutdown);
+      await exited;
+    }
+
+    recycling = false;
+    logger.info("Worker recycle finished", { workers: liveWorkers.size });
+  };
+
+  /**
+   * Drain all workers, then exit
+   */
+  const shutdown = async (signal, exitCode = 0) => {
+    if (shuttingDown) {
+      return;
+    }
+    shuttingDown = true;
+    logger.info("Cluster shutting down", { signal, workers: liveWorkers.size });
+
+    const allExited = new Promise((resolve) => {
+      onAllExited = resolve;
+    });
+
+    // Keep serving while load balancers notice /health/ready failing
+    liveWorkers.forEach(worker => sendToWorker(worker, WORKER_LIFECYCLE.unready));
+    await delay(READINESS_DELAY_MS);
+
+    httpServer.close();
+    liveWorkers.forEach(worker => sendToWorker(worker, WORKER_LIFECYCLE.shutdown));
+
+    // Workers enforce SHUTDOWN_TIMEOUT_MS themselves; this only covers a stuck worker
+    const deadline = setTimeout(() => {
+      logger.warn("Workers still running after the shutdown timeout, killing them", { workers: liveWorkers.size });
+      liveWorkers.forEach(worker => worker.process.kill("SIGKILL"));
+    }, SHUTDOWN_TIMEOUT_MS + 5000);
+
+    if (liveWorkers.size > 0) {
+      await allExited;
+    }
+    clearTimeout(deadline);
+
+    logger.info("Cluster stopped", { exitCode });
+    await flushLogs();
+    process.exit(exitCode);
+  };
+
+  process.on("SIGTERM", () => shutdown("SIGTERM"));
+  process.on("SIGINT", () => shutdown("SIGINT"));
+  process.on("SIGHUP", recycleWorkers);
+} else {
+  await import("./server.js");
+}
@@ -1,6 +1,7 @@
 import process from "node:process";
 import { createClient } from '@supabase/supabase-js';
 import dotenv from 'dotenv';
+import { instrumentSupabase } from '../utils/dbMetrics.js';
 
 dotenv.config();
 
@@ -12,16 +13,17 @@ if (!supabaseUrl || !supabaseKey) {
   throw new Error('Missing Supabase environment variables. Please check your .env file.');
 }
 
+// Both clients are instrumented: every query and RPC is counted per route and timed (see /metrics)
 // Client for general operations (uses anon key)
-const supabase = createClient(supabaseUrl, supabaseKey);
+const supabase = instrumentSupabase(createClient(supabaseUrl, supabaseKey));
 
 // Admin client for server-side operations (uses service role key)
-const supabaseAdmin = createClient(supabaseUrl, supabaseServiceKey, {
+const supabaseAdmin = instrumentSupabase(createClient(supabaseUrl, supabaseServiceKey, {
   auth: {
     autoRefreshToken: false,
     persistSession: false
   }
-});
+}));
 
 export {
   supabase,
@@ -3,6 +3,8 @@ import crypto from "crypto";
 import { supabase, supabaseAdmin } from "../config/supabase.js";
 import { generateToken } from "../config/auth.js";
 import { sendEmail } from "../utils/email.js";
+import { invalidateUserPrincipal } from "../utils/userPrincipalCache.js";
+import { invalidatePlayerCard } from "../services/playerCardService.js";
 import { 
   isValidEmailFormat, 
   validatePassword, 
@@ -10,6 +12,7 @@ import {
   validateRole, 
   validateName 
 } from "../utils/validation.js";
+import { logger } from "../utils/logger.js";
 
 /**
  * Register a new user with email and additional information
@@ -83,7 +86,7 @@ const register = async (req, res) => {
       .maybeSingle();
 
     if (userError) {
-      console.error('Error checking existing user:', userError);
+      logger.error('Error checking existing user', { error: userError });
       return res.status(500).json({
         success: false,
         message: 'Error checking user existence'
@@ -105,7 +108,7 @@ const register = async (req, res) => {
       .maybeSingle();
 
     if (cmsError) {
-      console.error('Error checking existing CMS ID:', cmsError);
+      logger.error('Error checking existing CMS ID', { error: cmsError });
       return res.status(500).json({
         success: false,
         message: 'Error checking CMS ID existence'
@@ -147,7 +150,7 @@ const register = async (req, res) => {
       .single();
 
     if (insertError) {
-      console.error('Database insert error:', insertError);
+      logger.error('Database insert error', { error: insertError });
       return res.status(500).json({
         success: false,
         message: 'Failed to create user account'
@@ -182,7 +185,7 @@ const register = async (req, res) => {
     });
 
   } catch (error) {
-    console.error('Registration error:', error);
+    logger.error('Registration error', { error });
     res.status(500).json({
       success: false,
       message: 'Internal server error during registration'
@@ -256,7 +259,7 @@ const login = async (req, res) => {
     });
 
   } catch (error) {
-    console.error('Login error:', error);
+    logger.error('Login error', { error });
     res.status(500).json({
       success: false,
       message: 'Internal server error during login'
@@ -281,14 +284,14 @@ const getProfile = async (req, res) => {
       .single();
     
     if (error || !user) {
-      console.error('Get profile error:', error);
+      logger.error('Get profile error', { error });
       return res.status(404).json({
         success: false,
         message: 'User not found'
       });
     }
 
-    console.log('User profile fetched:', { userId, gender: user.gender, hasGender: !!user.gender, allFields: Object.keys(user) });
+    logger.debug('User profile fetched', { userId, gender: user.gender, hasGender: !!user.gender, allFields: Object.keys(user) });
 
     // Set cache-control headers to prevent caching
     res.set({
@@ -320,7 +323,7 @@ const getProfile = async (req, res) => {
     });
 
   } catch (error) {
-    console.error('Get profile error:', error);
+    logger.error('Get profile error', { error });
     res.status(500).json({
       success: false,
       message: 'Internal server error'
@@ -380,7 +383,7 @@ const updateProfile = async (req, res) => {
           });
 
         if (uploadError) {
-          console.error('Storage upload error:', uploadError);
+          logger.error('Storage upload error', { error: uploadError });
           return res.status(500).json({
             success: false,
             message: 'Failed to upload profile picture'
@@ -417,12 +420,12 @@ const updateProfile = async (req, res) => {
                 .storage
                 .from('profile-pictures')
                 .remove([oldFileName])
-                .catch(err => console.error('Error deleting old profile picture:', err));
+                .catch(error => logger.error('Error deleting old profile picture', { error }));
             }
           }
         }
       } catch (fileError) {
-        console.error('File upload error:', fileError);
+        logger.error('File upload error', { error: fileError });
         return res.status(500).json({
           success: false,
           message: 'Error processing profile picture upload'
@@ -444,7 +447,7 @@ const updateProfile = async (req, res) => {
       }
     }
 
-    console.log('Updating profile:', { userId, updateData, hasGender: 'gender' in updateData, genderValue: updateData.gender });
+    logger.debug('Updating profile', { userId, updateData, hasGender: 'gender' in updateData, genderValue: updateData.gender });
 
     // Update user in database
     const { data: updatedUser, error } = await supabaseAdmin
@@ -455,7 +458,7 @@ const updateProfile = async (req, res) => {
       .single();
 
     if (error) {
-      console.error('Update error:', error);
+      logger.error('Update error', { error });
       return res.status(400).json({
         success: false,
         message: 'Failed to update profile',
@@ -463,7 +466,10 @@ const updateProfile = async (req, res) => {
       });
     }
 
-    console.log('Profile updated successfully:', { userId, updatedGender: updatedUser.gender });
+    logger.debug('Profile updated successfully', { userId, updatedGender: updatedUser.gender });
+
+    invalidateUserPrincipal(userId);
+    invalidatePlayerCard(userId);
 
     res.status(200).json({
       success: true,
@@ -486,7 +492,7 @@ const updateProfile = async (req, res) => {
     });
 
   } catch (error) {
-    console.error('Update profile error:', error);
+    logger.error('Update profile error', { error });
     res.status(500).json({
       success: false,
       message: 'Internal server error'
@@ -535,12 +541,12 @@ const requestPasswordReset = async (req, res) => {
            <p>Or copy this link: ${resetLink}</p>
            <p>This link will expire in 15 minutes.</p>`
         );
-        console.log("Password reset email sent to:", user.email);
+        logger.info("Password reset email sent", { userId: user.id });
       } catch (emailError) {
         // Log error but don't fail the request
         // Token is still created, user can use it if they know the link
-        console.error(" Failed to send password reset email:", emailError.message);
-        console.log("Password reset link (for manual sharing):", resetLink);
+        logger.error("Failed to send password reset email", { error: emailError });
+        logger.debug("Password reset link (for manual sharing)", { resetLink });
       }
     }
 
@@ -550,7 +556,7 @@ const requestPasswordReset = async (req, res) => {
     });
 
   } catch (error) {
-    console.error(error);
+    logger.error('Error in requestPasswordReset', { error });
     res.status(500).json({ success: false, message: "Internal server error" });
   }
 };
@@ -598,13 +604,15 @@ const resetPassword = async (req, res) => {
       .eq("id", resetRecord.user_id);
 
     if (updateError) {
-      console.error("Password update error:", updateError);
+      logger.error("Password update error", { error: updateError });
       return res.status(500).json({
         success: false,
         message: "Failed to update password"
       });
     }
 
+    invalidateUserPrincipal(resetRecord.user_id);
+
     // 4. Mark token as used
     await supabaseAdmin
       .from("password_reset_tokens")
@@ -614,7 +622,7 @@ const resetPassword = async (req, res) => {
     return res.status(200).json({ success: true, message: "Password reset successful" });
 
   } catch (error) {
-    console.error("Reset password error:", error);
+    logger.error("Reset password error", { error });
     res.status(500).json({ success: false, message: "Server error" });
   }
 };
@@ -677,20 +685,22 @@ const changePassword = async (req, res) => {
       .eq('id', userId);
 
     if (updateError) {
-      console.error('Password update error:', updateError);
+      logger.error('Password update error', { error: updateError });
       return res.status(500).json({
         success: false,
         message: 'Failed to update password'
       });
     }
 
+    invalidateUserPrincipal(userId);
+
     res.status(200).json({
       success: true,
       message: 'Password changed successfully'
     });
 
   } catch (error) {
-    console.error('Change password error:', error);
+    logger.error('Change password error', { error });
     res.status(500).json({
       success: false,
       message: 'Internal server error'
@@ -745,7 +755,7 @@ const refreshToken = async (req, res) => {
     });
 
   } catch (error) {
-    console.error('Refresh token error:', error);
+    logger.error('Refresh token error', { error });
     res.status(500).json({
       success: false,
       message: 'Internal server error'
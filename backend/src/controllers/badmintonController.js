@@ -5,14 +5,15 @@ import {
   setUserAvailability,
   getCourts,
   updateCourtStatus,
-  checkCourtAvailability,
   createMatch,
   startMatch,
   endMatch,
   getUserActiveMatches,
   getAvailableCourtsAtTime
 } from '../services/badmintonService.js';
+import { pickRandomOpponent, joinQueue, leaveQueue } from '../services/matchmakingService.js';
 import { emitAvailabilityChange, emitMatchChange } from '../socket/socketServer.js';
+import { logger } from '../utils/logger.js';
 
 /**
  * Get all available players
@@ -35,7 +36,7 @@ export const getAvailablePlayersController = async (req, res) => {
       players: result.players
     });
   } catch (error) {
-    console.error('Error in getAvailablePlayersController:', error);
+    logger.error('Error in getAvailablePlayersController', { error });
     res.status(500).json({
       success: false,
       message: 'Internal server error'
@@ -63,7 +64,7 @@ export const getMyAvailabilityController = async (req, res) => {
       isAvailable: result.isAvailable
     });
   } catch (error) {
-    console.error('Error in getMyAvailabilityController:', error);
+    logger.error('Error in getMyAvailabilityController', { error });
     res.status(500).json({
       success: false,
       message: 'Internal server error'
@@ -104,7 +105,7 @@ export const toggleAvailabilityController = async (req, res) => {
       isAvailable
     });
   } catch (error) {
-    console.error('Error in toggleAvailabilityController:', error);
+    logger.error('Error in toggleAvailabilityController', { error });
     res.status(500).json({
       success: false,
       message: 'Internal server error'
@@ -131,7 +132,7 @@ export const getCourtsController = async (req, res) => {
       courts: result.courts
     });
   } catch (error) {
-    console.error('Error in getCourtsController:', error);
+    logger.error('Error in getCourtsController', { error });
     res.status(500).json({
       success: false,
       message: 'Internal server error'
@@ -169,7 +170,7 @@ export const updateCourtStatusController = async (req, res) => {
       court: result.court
     });
   } catch (error) {
-    console.error('Error in updateCourtStatusController:', error);
+    logger.error('Error in updateCourtStatusController', { error });
     res.status(500).json({
       success: false,
       message: 'Internal server error'
@@ -214,19 +215,7 @@ export const createMatchController = async (req, res) => {
       });
     }
 
-    // Check if court is available
-    const startTime = new Date();
-    const endTime = new Date(startTime.getTime() + 30 * 60 * 1000);
-    const availability = await checkCourtAvailability(courtId, startTime.toISOString(), endTime.toISOString());
-
-    if (!availability.success || !availability.isAvailable) {
-      return res.status(400).json({
-        success: false,
-        message: 'Court is not available at this time'
-      });
-    }
-
-    // Create match
+    // Create match (overlapping bookings are rejected by the database)
     const result = await createMatch({
       courtId,
       team1Player1Id,
@@ -238,7 +227,7 @@ export const createMatchController = async (req, res) => {
     });
 
     if (!result.success) {
-      return res.status(500).json({
+      return res.status(result.conflict ? 400 : 500).json({
         success: false,
         message: result.error || 'Failed to create match'
       });
@@ -253,7 +242,7 @@ export const createMatchController = async (req, res) => {
       match: result.match
     });
   } catch (error) {
-    console.error('Error in createMatchController:', error);
+    logger.error('Error in createMatchController', { error });
     res.status(500).json({
       success: false,
       message: 'Internal server error'
@@ -293,7 +282,7 @@ export const startMatchController = async (req, res) => {
       match: result.match
     });
   } catch (error) {
-    console.error('Error in startMatchController:', error);
+    logger.error('Error in startMatchController', { error });
     res.status(500).json({
       success: false,
       message: 'Internal server error'
@@ -333,7 +322,7 @@ export const endMatchController = async (req, res) => {
       match: result.match
     });
   } catch (error) {
-    console.error('Error in endMatchController:', error);
+    logger.error('Error in endMatchController', { error });
     res.status(500).json({
       success: false,
       message: 'Internal server error'
@@ -361,7 +350,7 @@ export const getMyMatchesController = async (req, res) => {
       matches: result.matches
     });
   } catch (error) {
-    console.error('Error in getMyMatchesController:', error);
+    logger.error('Error in getMyMatchesController', { error });
     res.status(500).json({
       success: false,
       message: 'Internal server error'
@@ -391,26 +380,22 @@ export const findMatchController = async (req, res) => {
       });
     }
 
-    // Get available players (excluding current user)
-    const playersResult = await getAvailablePlayers(user.id);
+    // Randomly select an idle player (excluding current user)
+    const selectedPlayer = await pickRandomOpponent(user.id);
 
-    if (!playersResult.success || playersResult.players.length === 0) {
+    if (!selectedPlayer) {
       return res.status(404).json({
         success: false,
         message: 'No available players found'
       });
     }
 
-    // Randomly select a player
-    const randomIndex = Math.floor(Math.random() * playersResult.players.length);
-    const selectedPlayer = playersResult.players[randomIndex];
-
     res.json({
       success: true,
       player: selectedPlayer
     });
   } catch (error) {
-    console.error('Error in findMatchController:', error);
+    logger.error('Error in findMatchController', { error });
     res.status(500).json({
       success: false,
       message: 'Internal server error'
@@ -440,7 +425,7 @@ export const getAvailableCourtsController = async (req, res) => {
       courts: result.courts
     });
   } catch (error) {
-    console.error('Error in getAvailableCourtsController:', error);
+    logger.error('Error in getAvailableCourtsController', { error });
     res.status(500).json({
       success: false,
       message: 'Internal server error'
@@ -448,3 +433,62 @@ export const getAvailableCourtsController = async (req, res) => {
   }
 };
 
+
+/**
+ * Join the matchmaking queue - a match is created as soon as enough players and a court are free
+ */
+export const joinMatchQueueController = async (req, res) => {
+  try {
+    const user = req.user;
+    const { matchMode } = req.body;
+
+    if (!matchMode || !['1v1', '2v2'].includes(matchMode)) {
+      return res.status(400).json({
+        success: false,
+        message: 'matchMode must be either "1v1" or "2v2"'
+      });
+    }
+
+    const result = await joinQueue(user.id, matchMode);
+
+    if (!result.success) {
+      return res.status(400).json({
+        success: false,
+        message: result.error
+      });
+    }
+
+    res.json({
+      success: true,
+      message: result.queued ? 'Waiting for players' : 'Match found',
+      queued: result.queued,
+      position: result.position
+    });
+  } catch (error) {
+    logger.error('Error in joinMatchQueueController', { error });
+    res.status(500).json({
+      success: false,
+      message: 'Internal server error'
+    });
+  }
+};
+
+/**
+ * Leave the matchmaking queue
+ */
+export const leaveMatchQueueController = async (req, res) => {
+  try {
+    await leaveQueue(req.user.id);
+
+    res.json({
+      success: true,
+      message: 'Left the matchmaking queue'
+    });
+  } catch (error) {
+    logger.error('Error in leaveMatchQueueController', { error });
+    res.status(500).json({
+      success: false,
+      message: 'Internal server error'
+    });
+  }
+};
@@ -1,4 +1,5 @@
 import { generateContent, generateContentWithHistory, generateIntelligentResponse } from '../services/geminiService.js';
+import { logger } from '../utils/logger.js';
 
 /**
  * Generate intelligent AI response using Gemini with database context
@@ -39,7 +40,7 @@ export const chat = async (req, res) => {
       }
     });
   } catch (error) {
-    console.error("Error in chat controller:", error);
+    logger.error("Error in chat controller", { error });
     return res.status(500).json({
       success: false,
       message: "Internal server error",
@@ -95,7 +96,7 @@ export const chatWithHistory = async (req, res) => {
       }
     });
   } catch (error) {
-    console.error("Error in chatWithHistory controller:", error);
+    logger.error("Error in chatWithHistory controller", { error });
     return res.status(500).json({
       success: false,
       message: "Internal server error",
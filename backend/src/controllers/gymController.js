@@ -23,6 +23,8 @@ import {
   getAllGymAttendanceToday
 } from '../services/gymService.js';
 import * as stripeService from '../services/stripeService.js';
+import { invalidateQRRegistry } from '../services/qrRegistryService.js';
+import { logger } from '../utils/logger.js';
 
 /**
  * Get all exercises with optional filters
@@ -48,6 +50,12 @@ export const getExercisesController = async (req, res) => {
       });
     }
 
+    // The ETag only changes when the catalog is reloaded, so repeat searches can be answered with 304
+    res.set('ETag', result.etag);
+    if (req.fresh) {
+      return res.status(304).end();
+    }
+
     res.status(200).json({
       success: true,
       data: {
@@ -56,7 +64,7 @@ export const getExercisesController = async (req, res) => {
       }
     });
   } catch (error) {
-    console.error('Error in getExercisesController:', error);
+    logger.error('Error in getExercisesController', { error });
     res.status(500).json({
       success: false,
       message: 'Internal server error'
@@ -87,7 +95,7 @@ export const getExerciseByIdController = async (req, res) => {
       }
     });
   } catch (error) {
-    console.error('Error in getExerciseByIdController:', error);
+    logger.error('Error in getExerciseByIdController', { error });
     res.status(500).json({
       success: false,
       message: 'Internal server error'
@@ -129,7 +137,7 @@ export const startWorkoutController = async (req, res) => {
       }
     });
   } catch (error) {
-    console.error('Error in startWorkoutController:', error);
+    logger.error('Error in startWorkoutController', { error });
     res.status(500).json({
       success: false,
       message: 'Internal server error'
@@ -180,7 +188,7 @@ export const saveWorkoutController = async (req, res) => {
       }
     });
   } catch (error) {
-    console.error('Error in saveWorkoutController:', error);
+    logger.error('Error in saveWorkoutController', { error });
     res.status(500).json({
       success: false,
       message: 'Internal server error'
@@ -215,7 +223,7 @@ export const getProgressController = async (req, res) => {
       }
     });
   } catch (error) {
-    console.error('Error in getProgressController:', error);
+    logger.error('Error in getProgressController', { error });
     res.status(500).json({
       success: false,
       message: 'Internal server error'
@@ -249,7 +257,7 @@ export const getWorkoutHistoryController = async (req, res) => {
       }
     });
   } catch (error) {
-    console.error('Error in getWorkoutHistoryController:', error);
+    logger.error('Error in getWorkoutHistoryController', { error });
     res.status(500).json({
       success: false,
       message: 'Internal server error'
@@ -281,7 +289,7 @@ export const getActiveWorkoutController = async (req, res) => {
       }
     });
   } catch (error) {
-    console.error('Error in getActiveWorkoutController:', error);
+    logger.error('Error in getActiveWorkoutController', { error });
     res.status(500).json({
       success: false,
       message: 'Internal server error'
@@ -335,7 +343,7 @@ export const finishWorkoutController = async (req, res) => {
       .single();
 
     if (updateError) {
-      console.error('Error updating workout:', updateError);
+      logger.error('Error updating workout', { error: updateError });
       return res.status(500).json({
         success: false,
         message: 'Failed to finish workout'
@@ -350,7 +358,7 @@ export const finishWorkoutController = async (req, res) => {
       }
     });
   } catch (error) {
-    console.error('Error in finishWorkoutController:', error);
+    logger.error('Error in finishWorkoutController', { error });
     res.status(500).json({
       success: false,
       message: 'Internal server error'
@@ -383,7 +391,7 @@ export const getGoalsController = async (req, res) => {
       }
     });
   } catch (error) {
-    console.error('Error in getGoalsController:', error);
+    logger.error('Error in getGoalsController', { error });
     res.status(500).json({
       success: false,
       message: 'Internal server error'
@@ -424,7 +432,7 @@ export const saveGoalController = async (req, res) => {
     const result = await saveUserGoal(userId, goalData);
 
     if (!result.success) {
-      console.error('Failed to save goal:', result.error);
+      logger.error('Failed to save goal', { error: result.error });
       return res.status(500).json({
         success: false,
         message: 'Failed to save goal',
@@ -440,7 +448,7 @@ export const saveGoalController = async (req, res) => {
       }
     });
   } catch (error) {
-    console.error('Error in saveGoalController:', error);
+    logger.error('Error in saveGoalController', { error });
     res.status(500).json({
       success: false,
       message: 'Internal server error',
@@ -473,7 +481,7 @@ export const getStatsController = async (req, res) => {
       }
     });
   } catch (error) {
-    console.error('Error in getStatsController:', error);
+    logger.error('Error in getStatsController', { error });
     res.status(500).json({
       success: false,
       message: 'Internal server error'
@@ -505,7 +513,7 @@ export const getGymRegistrationController = async (req, res) => {
       }
     });
   } catch (error) {
-    console.error('Error in getGymRegistrationController:', error);
+    logger.error('Error in getGymRegistrationController', { error });
     res.status(500).json({
       success: false,
       message: 'Internal server error'
@@ -526,7 +534,7 @@ export const checkGymRegistrationStatusController = async (req, res) => {
       data: result
     });
   } catch (error) {
-    console.error('Error in checkGymRegistrationStatusController:', error);
+    logger.error('Error in checkGymRegistrationStatusController', { error });
     res.status(500).json({
       success: false,
       message: 'Internal server error'
@@ -630,7 +638,7 @@ export const createGymRegistrationController = async (req, res) => {
       }
     });
   } catch (error) {
-    console.error('Error in createGymRegistrationController:', error);
+    logger.error('Error in createGymRegistrationController', { error });
     res.status(500).json({
       success: false,
       message: 'Internal server error'
@@ -671,7 +679,7 @@ export const verifyGymRegistrationPaymentController = async (req, res) => {
     // Verify Stripe session
     const stripeResult = await stripeService.verifyCheckoutSession(sessionId);
     if (!stripeResult.success) {
-      console.error('Stripe session verification failed:', stripeResult.error);
+      logger.error('Stripe session verification failed', { error: stripeResult.error });
       return res.status(400).json({
         success: false,
         message: 'Invalid payment session',
@@ -680,7 +688,7 @@ export const verifyGymRegistrationPaymentController = async (req, res) => {
     }
 
     const session = stripeResult.session;
-    console.log('Gym Registration Payment - Stripe session details:', {
+    logger.debug('Gym Registration Payment - Stripe session details', {
       sessionId: session.id,
       status: session.status,
       payment_status: session.payment_status,
@@ -694,7 +702,7 @@ export const verifyGymRegistrationPaymentController = async (req, res) => {
     const isPaymentComplete = session.status === 'complete' && 
                              (session.payment_status === 'paid' || session.payment_status === 'no_payment_required');
 
-    console.log('Gym Registration Payment - Payment complete check:', { 
+    logger.debug('Gym Registration Payment - Payment complete check', {
       isPaymentComplete, 
       sessionStatus: session.status, 
       paymentStatus: session.payment_status 
@@ -709,7 +717,7 @@ export const verifyGymRegistrationPaymentController = async (req, res) => {
         activated_at: new Date().toISOString(),
       });
 
-      console.log('Gym Registration Payment - Registration updated successfully:', updateResult.registration?.id);
+      logger.info('Gym Registration Payment - Registration updated successfully', { registrationId: updateResult.registration?.id });
 
       return res.status(200).json({
         success: true,
@@ -720,7 +728,7 @@ export const verifyGymRegistrationPaymentController = async (req, res) => {
       });
     }
 
-    console.warn('Gym Registration Payment - Payment not completed:', {
+    logger.warn('Gym Registration Payment - Payment not completed', {
       sessionStatus: session.status,
       paymentStatus: session.payment_status,
       sessionId: session.id
@@ -736,7 +744,7 @@ export const verifyGymRegistrationPaymentController = async (req, res) => {
       }
     });
   } catch (error) {
-    console.error('Error in verifyGymRegistrationPaymentController:', error);
+    logger.error('Error in verifyGymRegistrationPaymentController', { error });
     res.status(500).json({
       success: false,
       message: 'Internal server error'
@@ -857,7 +865,7 @@ export const createGymMonthlyPaymentController = async (req, res) => {
       }
     });
   } catch (error) {
-    console.error('Error in createGymMonthlyPaymentController:', error);
+    logger.error('Error in createGymMonthlyPaymentController', { error });
     res.status(500).json({
       success: false,
       message: 'Internal server error'
@@ -944,7 +952,7 @@ export const verifyGymMonthlyPaymentController = async (req, res) => {
       }
     });
   } catch (error) {
-    console.error('Error in verifyGymMonthlyPaymentController:', error);
+    logger.error('Error in verifyGymMonthlyPaymentController', { error });
     res.status(500).json({
       success: false,
       message: 'Internal server error'
@@ -978,7 +986,7 @@ export const getGymMonthlyPaymentsController = async (req, res) => {
       }
     });
   } catch (error) {
-    console.error('Error in getGymMonthlyPaymentsController:', error);
+    logger.error('Error in getGymMonthlyPaymentsController', { error });
     res.status(500).json({
       success: false,
       message: 'Internal server error'
@@ -1019,7 +1027,7 @@ export const processGymQRScanController = async (req, res) => {
       }
     });
   } catch (error) {
-    console.error('Error in processGymQRScanController:', error);
+    logger.error('Error in processGymQRScanController', { error });
     res.status(500).json({
       success: false,
       message: 'Internal server error'
@@ -1053,7 +1061,7 @@ export const getGymAttendanceController = async (req, res) => {
       }
     });
   } catch (error) {
-    console.error('Error in getGymAttendanceController:', error);
+    logger.error('Error in getGymAttendanceController', { error });
     res.status(500).json({
       success: false,
       message: 'Internal server error'
@@ -1087,7 +1095,7 @@ export const getAllGymAttendanceTodayController = async (req, res) => {
       }
     });
   } catch (error) {
-    console.error('Error in getAllGymAttendanceTodayController:', error);
+    logger.error('Error in getAllGymAttendanceTodayController', { error });
     res.status(500).json({
       success: false,
       message: 'Internal server error'
@@ -1108,7 +1116,7 @@ export const getGymQRCodesController = async (req, res) => {
       .order('created_at', { ascending: false });
 
     if (error) {
-      console.error('Error fetching gym QR codes:', error);
+      logger.error('Error fetching gym QR codes', { error });
       return res.status(500).json({
         success: false,
         message: 'Failed to fetch gym QR codes'
@@ -1123,7 +1131,7 @@ export const getGymQRCodesController = async (req, res) => {
       }
     });
   } catch (error) {
-    console.error('Error in getGymQRCodesController:', error);
+    logger.error('Error in getGymQRCodesController', { error });
     res.status(500).json({
       success: false,
       message: 'Internal server error'
@@ -1141,13 +1149,13 @@ export const createGymQRCodeController = async (req, res) => {
 
     // Validate location name for gym QR codes
     if (location && location.toLowerCase().includes('swimming')) {
-      console.warn('Warning: Gym QR code created with location containing "swimming":', location);
+      logger.warn('Warning: Gym QR code created with location containing "swimming"', { location });
     }
 
     // Generate unique QR code value
     const qrCodeValue = `GYM-${Date.now()}-${Math.random().toString(36).substring(7)}`;
 
-    console.log('Creating GYM QR code:', { location, description, qrCodeValue });
+    logger.debug('Creating GYM QR code', { location, description, qrCodeValue });
 
     const { data, error } = await supabase
       .from('gym_qr_codes')
@@ -1164,14 +1172,16 @@ export const createGymQRCodeController = async (req, res) => {
       .single();
 
     if (error) {
-      console.error('Error creating gym QR code:', error);
+      logger.error('Error creating gym QR code', { error });
       return res.status(500).json({
         success: false,
         message: 'Failed to create gym QR code'
       });
     }
 
-    console.log('Gym QR code created successfully. This QR code will route to gym attendance.');
+    invalidateQRRegistry();
+
+    logger.debug('Gym QR code created successfully. This QR code will route to gym attendance.');
     res.status(201).json({
       success: true,
       message: 'Gym QR code created successfully. This QR code will scan for gym attendance.',
@@ -1180,7 +1190,7 @@ export const createGymQRCodeController = async (req, res) => {
       }
     });
   } catch (error) {
-    console.error('Error in createGymQRCodeController:', error);
+    logger.error('Error in createGymQRCodeController', { error });
     res.status(500).json({
       success: false,
       message: 'Internal server error'
@@ -1209,13 +1219,15 @@ export const updateGymQRCodeController = async (req, res) => {
       .single();
 
     if (error) {
-      console.error('Error updating gym QR code:', error);
+      logger.error('Error updating gym QR code', { error });
       return res.status(500).json({
         success: false,
         message: 'Failed to update gym QR code'
       });
     }
 
+    invalidateQRRegistry();
+
     res.status(200).json({
       success: true,
       message: 'Gym QR code updated successfully',
@@ -1224,7 +1236,7 @@ export const updateGymQRCodeController = async (req, res) => {
       }
     });
   } catch (error) {
-    console.error('Error in updateGymQRCodeController:', error);
+    logger.error('Error in updateGymQRCodeController', { error });
     res.status(500).json({
       success: false,
       message: 'Internal server error'
@@ -1245,19 +1257,21 @@ export const deleteGymQRCodeController = async (req, res) => {
       .eq('id', id);
 
     if (error) {
-      console.error('Error deleting gym QR code:', error);
+      logger.error('Error deleting gym QR code', { error });
       return res.status(500).json({
         success: false,
         message: 'Failed to delete gym QR code'
       });
     }
 
+    invalidateQRRegistry();
+
     res.status(200).json({
       success: true,
       message: 'Gym QR code deleted successfully'
     });
   } catch (error) {
-    console.error('Error in deleteGymQRCodeController:', error);
+    logger.error('Error in deleteGymQRCodeController', { error });
     res.status(500).json({
       success: false,
       message: 'Internal server error'
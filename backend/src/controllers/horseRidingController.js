@@ -1,6 +1,7 @@
 import { supabaseAdmin as supabase } from '../config/supabase.js';
 import * as horseRidingService from '../services/horseRidingService.js';
 import * as stripeService from '../services/stripeService.js';
+import { logger } from '../utils/logger.js';
 
 // ==================== TIME SLOTS ====================
 
@@ -43,7 +44,7 @@ export const getTimeSlots = async (req, res) => {
       }
     });
   } catch (error) {
-    console.error('Error in getTimeSlots:', error);
+    logger.error('Error in getTimeSlots', { error });
     res.status(500).json({
       success: false,
       message: 'Internal server error'
@@ -73,7 +74,7 @@ export const getTimeSlotById = async (req, res) => {
       }
     });
   } catch (error) {
-    console.error('Error in getTimeSlotById:', error);
+    logger.error('Error in getTimeSlotById', { error });
     res.status(500).json({
       success: false,
       message: 'Internal server error'
@@ -119,7 +120,7 @@ export const createTimeSlot = async (req, res) => {
       }
     });
   } catch (error) {
-    console.error('Error in createTimeSlot:', error);
+    logger.error('Error in createTimeSlot', { error });
     res.status(500).json({
       success: false,
       message: 'Internal server error'
@@ -160,7 +161,7 @@ export const updateTimeSlot = async (req, res) => {
       }
     });
   } catch (error) {
-    console.error('Error in updateTimeSlot:', error);
+    logger.error('Error in updateTimeSlot', { error });
     res.status(500).json({
       success: false,
       message: 'Internal server error'
@@ -188,7 +189,7 @@ export const deleteTimeSlot = async (req, res) => {
       message: 'Time slot deleted successfully'
     });
   } catch (error) {
-    console.error('Error in deleteTimeSlot:', error);
+    logger.error('Error in deleteTimeSlot', { error });
     res.status(500).json({
       success: false,
       message: 'Internal server error'
@@ -203,12 +204,12 @@ export const deleteTimeSlot = async (req, res) => {
  */
 export const getRules = async (req, res) => {
   try {
-    console.log('Fetching horse riding rules...');
+    logger.debug('Fetching horse riding rules...');
     const result = await horseRidingService.getRules();
-    console.log('Rules service result:', { success: result.success, count: result.rules?.length || 0 });
+    logger.debug('Rules service result', { success: result.success, count: result.rules?.length || 0 });
 
     if (!result.success) {
-      console.error('Failed to fetch rules:', result.error);
+      logger.error('Failed to fetch rules', { error: result.error });
       return res.status(500).json({
         success: false,
         message: 'Failed to fetch rules',
@@ -216,7 +217,7 @@ export const getRules = async (req, res) => {
       });
     }
 
-    console.log('Returning rules:', result.rules.length);
+    logger.debug('Returning rules', { count: result.rules.length });
     res.json({
       success: true,
       data: {
@@ -225,7 +226,7 @@ export const getRules = async (req, res) => {
       }
     });
   } catch (error) {
-    console.error('Error in getRules:', error);
+    logger.error('Error in getRules', { error });
     res.status(500).json({
       success: false,
       message: 'Internal server error'
@@ -272,7 +273,7 @@ export const createRule = async (req, res) => {
       }
     });
   } catch (error) {
-    console.error('Error in createRule:', error);
+    logger.error('Error in createRule', { error });
     res.status(500).json({
       success: false,
       message: 'Internal server error'
@@ -312,7 +313,7 @@ export const updateRule = async (req, res) => {
       }
     });
   } catch (error) {
-    console.error('Error in updateRule:', error);
+    logger.error('Error in updateRule', { error });
     res.status(500).json({
       success: false,
       message: 'Internal server error'
@@ -340,7 +341,7 @@ export const deleteRule = async (req, res) => {
       message: 'Rule deleted successfully'
     });
   } catch (error) {
-    console.error('Error in deleteRule:', error);
+    logger.error('Error in deleteRule', { error });
     res.status(500).json({
       success: false,
       message: 'Internal server error'
@@ -373,7 +374,7 @@ export const getEquipment = async (req, res) => {
       }
     });
   } catch (error) {
-    console.error('Error in getEquipment:', error);
+    logger.error('Error in getEquipment', { error });
     res.status(500).json({
       success: false,
       message: 'Internal server error'
@@ -419,7 +420,7 @@ export const createEquipment = async (req, res) => {
       }
     });
   } catch (error) {
-    console.error('Error in createEquipment:', error);
+    logger.error('Error in createEquipment', { error });
     res.status(500).json({
       success: false,
       message: 'Internal server error'
@@ -460,7 +461,7 @@ export const updateEquipment = async (req, res) => {
       }
     });
   } catch (error) {
-    console.error('Error in updateEquipment:', error);
+    logger.error('Error in updateEquipment', { error });
     res.status(500).json({
       success: false,
       message: 'Internal server error'
@@ -488,7 +489,7 @@ export const deleteEquipment = async (req, res) => {
       message: 'Equipment deleted successfully'
     });
   } catch (error) {
-    console.error('Error in deleteEquipment:', error);
+    logger.error('Error in deleteEquipment', { error });
     res.status(500).json({
       success: false,
       message: 'Internal server error'
@@ -556,7 +557,7 @@ export const getRegistrationCheckoutUrl = async (req, res) => {
       }
     });
   } catch (error) {
-    console.error('Error in getRegistrationCheckoutUrl:', error);
+    logger.error('Error in getRegistrationCheckoutUrl', { error });
     res.status(500).json({
       success: false,
       message: 'Internal server error'
@@ -586,7 +587,7 @@ export const getUserRegistration = async (req, res) => {
       }
     });
   } catch (error) {
-    console.error('Error in getUserRegistration:', error);
+    logger.error('Error in getUserRegistration', { error });
     res.status(500).json({
       success: false,
       message: 'Internal server error'
@@ -689,7 +690,7 @@ export const createRegistration = async (req, res) => {
       }
     });
   } catch (error) {
-    console.error('Error in createRegistration:', error);
+    logger.error('Error in createRegistration', { error });
     res.status(500).json({
       success: false,
       message: 'Internal server error'
@@ -767,7 +768,7 @@ export const verifyRegistrationPayment = async (req, res) => {
       }
     });
   } catch (error) {
-    console.error('Error in verifyRegistrationPayment:', error);
+    logger.error('Error in verifyRegistrationPayment', { error });
     res.status(500).json({
       success: false,
       message: 'Internal server error'
@@ -877,7 +878,7 @@ export const createMonthlyPayment = async (req, res) => {
       }
     });
   } catch (error) {
-    console.error('Error in createMonthlyPayment:', error);
+    logger.error('Error in createMonthlyPayment', { error });
     res.status(500).json({
       success: false,
       message: 'Internal server error'
@@ -965,7 +966,7 @@ export const verifyMonthlyPayment = async (req, res) => {
       }
     });
   } catch (error) {
-    console.error('Error in verifyMonthlyPayment:', error);
+    logger.error('Error in verifyMonthlyPayment', { error });
     res.status(500).json({
       success: false,
       message: 'Internal server error'
@@ -997,7 +998,7 @@ export const getUserMonthlyPayments = async (req, res) => {
       }
     });
   } catch (error) {
-    console.error('Error in getUserMonthlyPayments:', error);
+    logger.error('Error in getUserMonthlyPayments', { error });
     res.status(500).json({
       success: false,
       message: 'Internal server error'
@@ -1036,7 +1037,7 @@ export const getUserEnrollments = async (req, res) => {
       }
     });
   } catch (error) {
-    console.error('Error in getUserEnrollments:', error);
+    logger.error('Error in getUserEnrollments', { error });
     res.status(500).json({
       success: false,
       message: 'Internal server error'
@@ -1081,7 +1082,7 @@ export const createEnrollment = async (req, res) => {
       }
     });
   } catch (error) {
-    console.error('Error in createEnrollment:', error);
+    logger.error('Error in createEnrollment', { error });
     res.status(500).json({
       success: false,
       message: 'Internal server error'
@@ -1114,7 +1115,7 @@ export const getUserEquipmentPurchases = async (req, res) => {
       }
     });
   } catch (error) {
-    console.error('Error in getUserEquipmentPurchases:', error);
+    logger.error('Error in getUserEquipmentPurchases', { error });
     res.status(500).json({
       success: false,
       message: 'Internal server error'
@@ -1213,7 +1214,7 @@ export const createEquipmentPurchase = async (req, res) => {
       }
     });
   } catch (error) {
-    console.error('Error in createEquipmentPurchase:', error);
+    logger.error('Error in createEquipmentPurchase', { error });
     res.status(500).json({
       success: false,
       message: 'Internal server error'
@@ -1261,7 +1262,7 @@ export const verifyEquipmentPurchasePayment = async (req, res) => {
     }
 
     const session = stripeResult.session;
-    console.log('Stripe session status:', {
+    logger.debug('Stripe session status', {
       payment_status: session.payment_status,
       status: session.status,
       payment_intent: session.payment_intent
@@ -1295,7 +1296,7 @@ export const verifyEquipmentPurchasePayment = async (req, res) => {
       }
     });
   } catch (error) {
-    console.error('Error in verifyEquipmentPurchasePayment:', error);
+    logger.error('Error in verifyEquipmentPurchasePayment', { error });
     res.status(500).json({
       success: false,
       message: 'Internal server error'
@@ -1325,7 +1326,7 @@ export const getAllRegistrations = async (req, res) => {
       }
     });
   } catch (error) {
-    console.error('Error in getAllRegistrations:', error);
+    logger.error('Error in getAllRegistrations', { error });
     res.status(500).json({
       success: false,
       message: 'Internal server error'
@@ -1362,7 +1363,7 @@ export const handleStripeWebhook = async (req, res) => {
       }
       event = stripe.webhooks.constructEvent(req.body, sig, webhookSecret);
     } catch (err) {
-      console.error('Webhook signature verification failed:', err.message);
+      logger.error('Webhook signature verification failed', { error: err.message });
       return res.status(400).send(`Webhook Error: ${err.message}`);
     }
 
@@ -1395,7 +1396,7 @@ export const handleStripeWebhook = async (req, res) => {
 
     res.json({ received: true });
   } catch (error) {
-    console.error('Error in handleStripeWebhook:', error);
+    logger.error('Error in handleStripeWebhook', { error });
     res.status(500).json({
       success: false,
       message: 'Internal server error'
@@ -12,7 +12,9 @@ import {
   updateLeagueRegistrationPayment,
   getLeagueRegistrationById,
 } from '../services/leagueService.js';
+import { generateLeagueFixtures, getLeagueFixtures } from '../services/leagueFixtureService.js';
 import { createLeagueCheckoutSession, verifyCheckoutSession } from '../services/stripeService.js';
+import { logger } from '../utils/logger.js';
 
 /**
  * Get all leagues
@@ -37,7 +39,7 @@ export const getLeaguesController = async (req, res) => {
       }
     });
   } catch (error) {
-    console.error('Error in getLeaguesController:', error);
+    logger.error('Error in getLeaguesController', { error });
     res.status(500).json({
       success: false,
       message: 'Internal server error'
@@ -67,7 +69,7 @@ export const getLeagueByIdController = async (req, res) => {
       }
     });
   } catch (error) {
-    console.error('Error in getLeagueByIdController:', error);
+    logger.error('Error in getLeagueByIdController', { error });
     res.status(500).json({
       success: false,
       message: 'Internal server error'
@@ -143,7 +145,7 @@ export const createLeagueController = async (req, res) => {
       }
     });
   } catch (error) {
-    console.error('Error in createLeagueController:', error);
+    logger.error('Error in createLeagueController', { error });
     res.status(500).json({
       success: false,
       message: 'Internal server error'
@@ -187,7 +189,7 @@ export const updateLeagueController = async (req, res) => {
       }
     });
   } catch (error) {
-    console.error('Error in updateLeagueController:', error);
+    logger.error('Error in updateLeagueController', { error });
     res.status(500).json({
       success: false,
       message: 'Internal server error'
@@ -215,7 +217,7 @@ export const deleteLeagueController = async (req, res) => {
       message: 'League deleted successfully'
     });
   } catch (error) {
-    console.error('Error in deleteLeagueController:', error);
+    logger.error('Error in deleteLeagueController', { error });
     res.status(500).json({
       success: false,
       message: 'Internal server error'
@@ -255,7 +257,7 @@ export const toggleLeagueRegistrationController = async (req, res) => {
       }
     });
   } catch (error) {
-    console.error('Error in toggleLeagueRegistrationController:', error);
+    logger.error('Error in toggleLeagueRegistrationController', { error });
     res.status(500).json({
       success: false,
       message: 'Internal server error'
@@ -333,7 +335,7 @@ export const registerForLeagueController = async (req, res) => {
       }
     });
   } catch (error) {
-    console.error('Error in registerForLeagueController:', error);
+    logger.error('Error in registerForLeagueController', { error });
     res.status(500).json({
       success: false,
       message: 'Internal server error'
@@ -364,7 +366,7 @@ export const getLeagueRegistrationsController = async (req, res) => {
       }
     });
   } catch (error) {
-    console.error('Error in getLeagueRegistrationsController:', error);
+    logger.error('Error in getLeagueRegistrationsController', { error });
     res.status(500).json({
       success: false,
       message: 'Internal server error'
@@ -396,7 +398,7 @@ export const getUserLeagueRegistrationController = async (req, res) => {
       }
     });
   } catch (error) {
-    console.error('Error in getUserLeagueRegistrationController:', error);
+    logger.error('Error in getUserLeagueRegistrationController', { error });
     res.status(500).json({
       success: false,
       message: 'Internal server error'
@@ -479,7 +481,7 @@ export const verifyLeaguePaymentController = async (req, res) => {
       }
     });
   } catch (error) {
-    console.error('Error in verifyLeaguePaymentController:', error);
+    logger.error('Error in verifyLeaguePaymentController', { error });
     res.status(500).json({
       success: false,
       message: 'Internal server error'
@@ -509,7 +511,7 @@ export const cancelLeagueRegistrationController = async (req, res) => {
       message: 'Registration cancelled successfully'
     });
   } catch (error) {
-    console.error('Error in cancelLeagueRegistrationController:', error);
+    logger.error('Error in cancelLeagueRegistrationController', { error });
     res.status(500).json({
       success: false,
       message: 'Internal server error'
@@ -517,5 +519,75 @@ export const cancelLeagueRegistrationController = async (req, res) => {
   }
 };
 
+/**
+ * Generate fixtures for a league (admin/faculty only)
+ * Replaces existing fixtures unless results have been recorded
+ */
+export const generateLeagueFixturesController = async (req, res) => {
+  try {
+    const { id } = req.params;
+    const { format, start_date, end_date, slot_minutes, day_start_hour, day_end_hour } = req.body;
+
+    const result = await generateLeagueFixtures(id, {
+      format,
+      startDate: start_date,
+      endDate: end_date,
+      slotMinutes: slot_minutes,
+      dayStartHour: day_start_hour,
+      dayEndHour: day_end_hour
+    });
+
+    if (!result.success) {
+      return res.status(400).json({
+        success: false,
+        message: result.error || 'Failed to generate fixtures'
+      });
+    }
+
+    res.status(201).json({
+      success: true,
+      message: 'Fixtures generated successfully',
+      data: {
+        fixtures: result.fixtures,
+        summary: result.summary
+      }
+    });
+  } catch (error) {
+    logger.error('Error in generateLeagueFixturesController', { error });
+    res.status(500).json({
+      success: false,
+      message: 'Internal server error'
+    });
+  }
+};
+
+/**
+ * Get fixtures for a league
+ */
+export const getLeagueFixturesController = async (req, res) => {
+  try {
+    const { id } = req.params;
+    const result = await getLeagueFixtures(id);
 
+    if (!result.success) {
+      return res.status(500).json({
+        success: false,
+        message: result.error || 'Failed to fetch fixtures'
+      });
+    }
 
+    res.json({
+      success: true,
+      data: {
+        fixtures: result.fixtures,
+        count: result.fixtures.length
+      }
+    });
+  } catch (error) {
+    logger.error('Error in getLeagueFixturesController', { error });
+    res.status(500).json({
+      success: false,
+      message: 'Internal server error'
+    });
+  }
+};
@@ -9,8 +9,10 @@ import {
   processQRScan,
   processSwimmingQRScan,
   getAttendanceCount,
+  enrichTimeSlots,
   addToWaitlist,
   removeFromWaitlist,
+  promoteFromWaitlist,
   getUserSwimmingRegistration,
   checkSwimmingRegistrationStatus,
   createSwimmingRegistration,
@@ -20,7 +22,10 @@ import {
   getUserSwimmingMonthlyPayments
 } from '../services/swimmingService.js';
 import * as stripeService from '../services/stripeService.js';
+import { invalidateQRRegistry } from '../services/qrRegistryService.js';
+import { recordCheckIn } from '../services/occupancyService.js';
 import { getTodayDate } from '../utils/timeSlotDetermination.js';
+import { logger } from '../utils/logger.js';
 
 /**
  * Get all time slots with optional filters
@@ -30,8 +35,6 @@ export const getTimeSlots = async (req, res) => {
     const { gender, active } = req.query;
     const user = req.user; // Get user from auth middleware
 
-    console.log('Time slots query params:', { gender, active, activeType: typeof active });
-    console.log('User info:', { userId: user?.id, userRole: user?.role, userGender: user?.gender });
 
     // First, get time slots without the join to avoid issues with null trainer_id
     let query = supabase
@@ -47,18 +50,15 @@ export const getTimeSlots = async (req, res) => {
       // Only apply active filter if explicitly requested via query param
       if (active !== undefined) {
         const isActive = active === 'true' || active === true;
-        console.log('Admin filtering by active:', isActive);
         query = query.eq('is_active', isActive);
       }
       // No gender filtering for admin - they see everything
-      console.log('Admin user detected - showing all time slots without gender/role filters');
     } else {
       // Non-admin users: Apply filters based on gender and role
       
       // Filter by active status (only for non-admin users, or if admin explicitly requests it)
       if (active !== undefined) {
         const isActive = active === 'true' || active === true;
-        console.log('Filtering by active:', isActive);
         query = query.eq('is_active', isActive);
       }
 
@@ -106,7 +106,7 @@ export const getTimeSlots = async (req, res) => {
           query = query.eq('gender_restriction', 'mixed');
         }
 
-        console.log('Filtered gender restrictions for user:', {
+        logger.debug('Filtered gender restrictions for user', {
           userGender,
           userRole,
           allowedRestrictions: allowedGenderRestrictions
@@ -119,22 +119,8 @@ export const getTimeSlots = async (req, res) => {
 
     const { data, error } = await query.order('start_time');
 
-    console.log('Time slots query result:', { 
-      dataCount: data?.length || 0, 
-      error: error?.message || null,
-      errorCode: error?.code || null,
-      errorDetails: error?.details || null,
-      hasData: !!data,
-      firstItem: data?.[0] || null
-    });
-
     if (error) {
-      console.error('Error fetching time slots:', {
-        message: error.message,
-        code: error.code,
-        details: error.details,
-        hint: error.hint
-      });
+      logger.error('Error fetching time slots', { error });
       return res.status(500).json({
         success: false,
         message: 'Failed to fetch time slots',
@@ -143,47 +129,11 @@ export const getTimeSlots = async (req, res) => {
       });
     }
 
-    // If no data but no error, log it
-    if (!data || data.length === 0) {
-      console.log('No time slots found in database.', {
-        isAdmin,
-        userRole,
-        queryParams: { gender, active },
-        totalSlotsInDB: 'Check database directly'
-      });
-    } else {
-      console.log(`Found ${data.length} time slot(s) for ${isAdmin ? 'admin' : 'non-admin'} user`);
-    }
+    logger.debug('Time slots fetched', { count: data?.length || 0, isAdmin, userRole, gender, active });
 
-    // For each time slot, get trainer info and current attendance count for today
+    // Attach trainer info and today's attendance count (batched, fixed number of queries)
     const today = getTodayDate();
-    const enrichedData = await Promise.all(
-      data.map(async (slot) => {
-        // Get trainer info if trainer_id exists
-        let trainer = null;
-        if (slot.trainer_id) {
-          const { data: trainerData, error: trainerError } = await supabase
-            .from('users_metadata')
-            .select('id, name, email')
-            .eq('id', slot.trainer_id)
-            .single();
-          
-          if (!trainerError && trainerData) {
-            trainer = trainerData;
-          }
-        }
-
-        // Get attendance count
-        const { count } = await getAttendanceCount(slot.id, today);
-        
-        return {
-          ...slot,
-          trainer,
-          currentCount: count,
-          availableSpots: slot.max_capacity - count
-        };
-      })
-    );
+    const enrichedData = await enrichTimeSlots(data, today);
 
     // Set cache-control headers to prevent caching (especially for admin)
     res.set({
@@ -200,7 +150,7 @@ export const getTimeSlots = async (req, res) => {
       }
     });
   } catch (error) {
-    console.error('Get time slots error:', error);
+    logger.error('Get time slots error', { error });
     res.status(500).json({
       success: false,
       message: 'Internal server error'
@@ -243,7 +193,7 @@ export const getTimeSlotById = async (req, res) => {
       }
     });
   } catch (error) {
-    console.error('Get time slot error:', error);
+    logger.error('Get time slot error', { error });
     res.status(500).json({
       success: false,
       message: 'Internal server error'
@@ -307,7 +257,7 @@ export const createTimeSlot = async (req, res) => {
       .single();
 
     if (error) {
-      console.error('Error creating time slot:', error);
+      logger.error('Error creating time slot', { error });
       return res.status(500).json({
         success: false,
         message: 'Failed to create time slot'
@@ -322,7 +272,7 @@ export const createTimeSlot = async (req, res) => {
       }
     });
   } catch (error) {
-    console.error('Create time slot error:', error);
+    logger.error('Create time slot error', { error });
     res.status(500).json({
       success: false,
       message: 'Internal server error'
@@ -373,13 +323,18 @@ export const updateTimeSlot = async (req, res) => {
       .single();
 
     if (error) {
-      console.error('Error updating time slot:', error);
+      logger.error('Error updating time slot', { error });
       return res.status(500).json({
         success: false,
         message: 'Failed to update time slot'
       });
     }
 
+    // Extra capacity (or a re-activated slot) frees seats for today's waitlist
+    if (maxCapacity !== undefined || isActive === true) {
+      await promoteFromWaitlist(id, getTodayDate());
+    }
+
     res.status(200).json({
       success: true,
       message: 'Time slot updated successfully',
@@ -388,7 +343,7 @@ export const updateTimeSlot = async (req, res) => {
       }
     });
   } catch (error) {
-    console.error('Update time slot error:', error);
+    logger.error('Update time slot error', { error });
     res.status(500).json({
       success: false,
       message: 'Internal server error'
@@ -409,7 +364,7 @@ export const deleteTimeSlot = async (req, res) => {
       .eq('id', id);
 
     if (error) {
-      console.error('Error deleting time slot:', error);
+      logger.error('Error deleting time slot', { error });
       return res.status(500).json({
         success: false,
         message: 'Failed to delete time slot'
@@ -421,7 +376,7 @@ export const deleteTimeSlot = async (req, res) => {
       message: 'Time slot deleted successfully'
     });
   } catch (error) {
-    console.error('Delete time slot error:', error);
+    logger.error('Delete time slot error', { error });
     res.status(500).json({
       success: false,
       message: 'Internal server error'
@@ -456,7 +411,7 @@ export const scanQRCode = async (req, res) => {
 
     res.status(200).json(result);
   } catch (error) {
-    console.error('Scan QR code error:', error);
+    logger.error('Scan QR code error', { error });
     res.status(500).json({
       success: false,
       message: 'Internal server error during check-in'
@@ -522,13 +477,18 @@ export const manualCheckIn = async (req, res) => {
       .single();
 
     if (attendanceError) {
-      console.error('Error creating attendance:', attendanceError);
+      logger.error('Error creating attendance', { error: attendanceError });
       return res.status(500).json({
         success: false,
         message: 'Failed to record attendance'
       });
     }
 
+    // Live occupancy only tracks today's sessions
+    if (sessionDate === getTodayDate()) {
+      recordCheckIn('swimming', timeSlotId, sessionDate);
+    }
+
     res.status(200).json({
       success: true,
       message: 'Manual check-in successful',
@@ -537,7 +497,7 @@ export const manualCheckIn = async (req, res) => {
       }
     });
   } catch (error) {
-    console.error('Manual check-in error:', error);
+    logger.error('Manual check-in error', { error });
     res.status(500).json({
       success: false,
       message: 'Internal server error'
@@ -563,7 +523,7 @@ export const getAttendance = async (req, res) => {
       .order('check_in_time', { ascending: true });
 
     if (error) {
-      console.error('Error fetching attendance:', error);
+      logger.error('Error fetching attendance', { error });
       return res.status(500).json({
         success: false,
         message: 'Failed to fetch attendance'
@@ -587,7 +547,7 @@ export const getAttendance = async (req, res) => {
       }
     });
   } catch (error) {
-    console.error('Get attendance error:', error);
+    logger.error('Get attendance error', { error });
     res.status(500).json({
       success: false,
       message: 'Internal server error'
@@ -624,7 +584,7 @@ export const getCurrentCount = async (req, res) => {
       }
     });
   } catch (error) {
-    console.error('Get current count error:', error);
+    logger.error('Get current count error', { error });
     res.status(500).json({
       success: false,
       message: 'Internal server error'
@@ -648,7 +608,7 @@ export const getUserHistory = async (req, res) => {
       .limit(parseInt(limit, 10));
 
     if (error) {
-      console.error('Error fetching user history:', error);
+      logger.error('Error fetching user history', { error });
       return res.status(500).json({
         success: false,
         message: 'Failed to fetch attendance history'
@@ -663,7 +623,7 @@ export const getUserHistory = async (req, res) => {
       }
     });
   } catch (error) {
-    console.error('Get user history error:', error);
+    logger.error('Get user history error', { error });
     res.status(500).json({
       success: false,
       message: 'Internal server error'
@@ -696,7 +656,7 @@ export const joinWaitlist = async (req, res) => {
 
     res.status(200).json(result);
   } catch (error) {
-    console.error('Join waitlist error:', error);
+    logger.error('Join waitlist error', { error });
     res.status(500).json({
       success: false,
       message: 'Internal server error'
@@ -727,7 +687,7 @@ export const leaveWaitlist = async (req, res) => {
 
     res.status(200).json(result);
   } catch (error) {
-    console.error('Leave waitlist error:', error);
+    logger.error('Leave waitlist error', { error });
     res.status(500).json({
       success: false,
       message: 'Internal server error'
@@ -753,7 +713,7 @@ export const getWaitlist = async (req, res) => {
       .order('position', { ascending: true });
 
     if (error) {
-      console.error('Error fetching waitlist:', error);
+      logger.error('Error fetching waitlist', { error });
       return res.status(500).json({
         success: false,
         message: 'Failed to fetch waitlist'
@@ -768,7 +728,7 @@ export const getWaitlist = async (req, res) => {
       }
     });
   } catch (error) {
-    console.error('Get waitlist error:', error);
+    logger.error('Get waitlist error', { error });
     res.status(500).json({
       success: false,
       message: 'Internal server error'
@@ -788,7 +748,7 @@ export const getRules = async (_req, res) => {
       .order('display_order', { ascending: true });
 
     if (error) {
-      console.error('Error fetching rules:', error);
+      logger.error('Error fetching rules', { error });
       return res.status(500).json({
         success: false,
         message: 'Failed to fetch rules and regulations'
@@ -803,7 +763,7 @@ export const getRules = async (_req, res) => {
       }
     });
   } catch (error) {
-    console.error('Get rules error:', error);
+    logger.error('Get rules error', { error });
     res.status(500).json({
       success: false,
       message: 'Internal server error'
@@ -844,7 +804,7 @@ export const createRule = async (req, res) => {
       .single();
 
     if (error) {
-      console.error('Error creating rule:', error);
+      logger.error('Error creating rule', { error });
       return res.status(500).json({
         success: false,
         message: 'Failed to create rule'
@@ -859,7 +819,7 @@ export const createRule = async (req, res) => {
       }
     });
   } catch (error) {
-    console.error('Create rule error:', error);
+    logger.error('Create rule error', { error });
     res.status(500).json({
       success: false,
       message: 'Internal server error'
@@ -890,7 +850,7 @@ export const updateRule = async (req, res) => {
       .single();
 
     if (error) {
-      console.error('Error updating rule:', error);
+      logger.error('Error updating rule', { error });
       return res.status(500).json({
         success: false,
         message: 'Failed to update rule'
@@ -905,7 +865,7 @@ export const updateRule = async (req, res) => {
       }
     });
   } catch (error) {
-    console.error('Update rule error:', error);
+    logger.error('Update rule error', { error });
     res.status(500).json({
       success: false,
       message: 'Internal server error'
@@ -926,7 +886,7 @@ export const deleteRule = async (req, res) => {
       .eq('id', id);
 
     if (error) {
-      console.error('Error deleting rule:', error);
+      logger.error('Error deleting rule', { error });
       return res.status(500).json({
         success: false,
         message: 'Failed to delete rule'
@@ -938,7 +898,7 @@ export const deleteRule = async (req, res) => {
       message: 'Rule deleted successfully'
     });
   } catch (error) {
-    console.error('Delete rule error:', error);
+    logger.error('Delete rule error', { error });
     res.status(500).json({
       success: false,
       message: 'Internal server error'
@@ -957,7 +917,7 @@ export const getQRCodes = async (_req, res) => {
       .order('created_at', { ascending: false });
 
     if (error) {
-      console.error('Error fetching QR codes:', error);
+      logger.error('Error fetching QR codes', { error });
       return res.status(500).json({
         success: false,
         message: 'Failed to fetch QR codes'
@@ -972,7 +932,7 @@ export const getQRCodes = async (_req, res) => {
       }
     });
   } catch (error) {
-    console.error('Get QR codes error:', error);
+    logger.error('Get QR codes error', { error });
     res.status(500).json({
       success: false,
       message: 'Internal server error'
@@ -996,13 +956,13 @@ export const createQRCode = async (req, res) => {
 
     // Validate location name for swimming QR codes
     if (locationName.toLowerCase().includes('gym') && !locationName.toLowerCase().includes('swimming')) {
-      console.warn('Warning: Swimming QR code created with location containing "gym":', locationName);
+      logger.warn('Warning: Swimming QR code created with location containing "gym"', { locationName });
     }
 
     // Generate unique QR code value
     const qrCodeValue = `SWIMMING-${Date.now()}-${Math.random().toString(36).substring(7)}`;
 
-    console.log('Creating SWIMMING QR code:', { locationName, description, qrCodeValue });
+    logger.debug('Creating SWIMMING QR code', { locationName, description, qrCodeValue });
 
     const { data, error } = await supabase
       .from('swimming_qr_codes')
@@ -1018,14 +978,16 @@ export const createQRCode = async (req, res) => {
       .single();
 
     if (error) {
-      console.error('Error creating swimming QR code:', error);
+      logger.error('Error creating swimming QR code', { error });
       return res.status(500).json({
         success: false,
         message: 'Failed to create QR code'
       });
     }
 
-    console.log('Swimming QR code created successfully. This QR code will route to swimming attendance.');
+    invalidateQRRegistry();
+
+    logger.debug('Swimming QR code created successfully. This QR code will route to swimming attendance.');
     res.status(201).json({
       success: true,
       message: 'Swimming QR code created successfully. This QR code will scan for swimming attendance.',
@@ -1034,7 +996,7 @@ export const createQRCode = async (req, res) => {
       }
     });
   } catch (error) {
-    console.error('Create QR code error:', error);
+    logger.error('Create QR code error', { error });
     res.status(500).json({
       success: false,
       message: 'Internal server error'
@@ -1063,13 +1025,15 @@ export const updateQRCode = async (req, res) => {
       .single();
 
     if (error) {
-      console.error('Error updating QR code:', error);
+      logger.error('Error updating QR code', { error });
       return res.status(500).json({
         success: false,
         message: 'Failed to update QR code'
       });
     }
 
+    invalidateQRRegistry();
+
     res.status(200).json({
       success: true,
       message: 'QR code updated successfully',
@@ -1078,7 +1042,7 @@ export const updateQRCode = async (req, res) => {
       }
     });
   } catch (error) {
-    console.error('Update QR code error:', error);
+    logger.error('Update QR code error', { error });
     res.status(500).json({
       success: false,
       message: 'Internal server error'
@@ -1089,7 +1053,7 @@ export const updateQRCode = async (req, res) => {
 /**
  * Delete QR code (admin only)
  */
-export const deleteQRCode = async (_req, res) => {
+export const deleteQRCode = async (req, res) => {
   try {
     const { id } = req.params;
 
@@ -1099,19 +1063,21 @@ export const deleteQRCode = async (_req, res) => {
       .eq('id', id);
 
     if (error) {
-      console.error('Error deleting QR code:', error);
+      logger.error('Error deleting QR code', { error });
       return res.status(500).json({
         success: false,
         message: 'Failed to delete QR code'
       });
     }
 
+    invalidateQRRegistry();
+
     res.status(200).json({
       success: true,
       message: 'QR code deleted successfully'
     });
   } catch (error) {
-    console.error('Delete QR code error:', error);
+    logger.error('Delete QR code error', { error });
     res.status(500).json({
       success: false,
       message: 'Internal server error'
@@ -1143,7 +1109,7 @@ export const getSwimmingRegistration = async (req, res) => {
       }
     });
   } catch (error) {
-    console.error('Error in getSwimmingRegistration:', error);
+    logger.error('Error in getSwimmingRegistration', { error });
     res.status(500).json({
       success: false,
       message: 'Internal server error'
@@ -1164,7 +1130,7 @@ export const checkSwimmingRegistrationStatusController = async (req, res) => {
       data: result
     });
   } catch (error) {
-    console.error('Error in checkSwimmingRegistrationStatusController:', error);
+    logger.error('Error in checkSwimmingRegistrationStatusController', { error });
     res.status(500).json({
       success: false,
       message: 'Internal server error'
@@ -1263,7 +1229,7 @@ export const createSwimmingRegistrationController = async (req, res) => {
       }
     });
   } catch (error) {
-    console.error('Error in createSwimmingRegistrationController:', error);
+    logger.error('Error in createSwimmingRegistrationController', { error });
     res.status(500).json({
       success: false,
       message: 'Internal server error'
@@ -1302,7 +1268,7 @@ export const verifySwimmingRegistrationPayment = async (req, res) => {
 
     // Check if already paid
     if (registration.payment_status === 'succeeded' && registration.status === 'active') {
-      console.log('Swimming Registration Payment - Registration already paid and active');
+      logger.debug('Swimming Registration Payment - Registration already paid and active');
       return res.status(200).json({
         success: true,
         message: 'Payment already verified',
@@ -1322,7 +1288,7 @@ export const verifySwimmingRegistrationPayment = async (req, res) => {
       });
     }
 
-    console.log('Swimming Registration Payment - Verifying session:', {
+    logger.debug('Swimming Registration Payment - Verifying session', {
       sessionIdFromRequest: sessionId,
       sessionIdFromDB: registration.stripe_session_id,
       sessionIdToUse: sessionIdToUse
@@ -1337,7 +1303,7 @@ export const verifySwimmingRegistrationPayment = async (req, res) => {
     }
 
     const session = stripeResult.session;
-    console.log('Swimming Registration Payment - Stripe session details:', {
+    logger.debug('Swimming Registration Payment - Stripe session details', {
       sessionId: session.id,
       status: session.status,
       payment_status: session.payment_status,
@@ -1353,7 +1319,7 @@ export const verifySwimmingRegistrationPayment = async (req, res) => {
       (session.payment_status === 'paid') ||
       (session.status === 'complete' && session.payment_intent);
 
-    console.log('Swimming Registration Payment - Payment complete check:', { 
+    logger.debug('Swimming Registration Payment - Payment complete check', {
       isPaymentComplete, 
       sessionStatus: session.status, 
       paymentStatus: session.payment_status,
@@ -1369,7 +1335,7 @@ export const verifySwimmingRegistrationPayment = async (req, res) => {
         activated_at: new Date().toISOString(),
       };
 
-      console.log('Swimming Registration Payment - Updating registration with data:', {
+      logger.debug('Swimming Registration Payment - Updating registration with data', {
         registrationId,
         updateData
       });
@@ -1377,7 +1343,7 @@ export const verifySwimmingRegistrationPayment = async (req, res) => {
       const updateResult = await updateSwimmingRegistration(registrationId, updateData);
 
       if (!updateResult.success) {
-        console.error('Swimming Registration Payment - Failed to update registration:', updateResult.error);
+        logger.error('Swimming Registration Payment - Failed to update registration', { error: updateResult.error });
         return res.status(500).json({
           success: false,
           message: 'Payment verified but failed to update registration',
@@ -1385,7 +1351,7 @@ export const verifySwimmingRegistrationPayment = async (req, res) => {
         });
       }
 
-      console.log('Swimming Registration Payment - Registration updated successfully:', {
+      logger.debug('Swimming Registration Payment - Registration updated successfully', {
         registrationId: updateResult.registration?.id,
         paymentStatus: updateResult.registration?.payment_status,
         status: updateResult.registration?.status
@@ -1400,7 +1366,7 @@ export const verifySwimmingRegistrationPayment = async (req, res) => {
       });
     }
 
-    console.warn('Swimming Registration Payment - Payment not completed:', {
+    logger.warn('Swimming Registration Payment - Payment not completed', {
       sessionStatus: session.status,
       paymentStatus: session.payment_status,
       sessionId: session.id,
@@ -1424,7 +1390,7 @@ export const verifySwimmingRegistrationPayment = async (req, res) => {
       }
     });
   } catch (error) {
-    console.error('Error in verifySwimmingRegistrationPayment:', error);
+    logger.error('Error in verifySwimmingRegistrationPayment', { error });
     res.status(500).json({
       success: false,
       message: 'Internal server error'
@@ -1538,7 +1504,7 @@ export const createSwimmingMonthlyPaymentController = async (req, res) => {
       }
     });
   } catch (error) {
-    console.error('Error in createSwimmingMonthlyPaymentController:', error);
+    logger.error('Error in createSwimmingMonthlyPaymentController', { error });
     res.status(500).json({
       success: false,
       message: 'Internal server error'
@@ -1620,7 +1586,7 @@ export const verifySwimmingMonthlyPayment = async (req, res) => {
       }
     });
   } catch (error) {
-    console.error('Error in verifySwimmingMonthlyPayment:', error);
+    logger.error('Error in verifySwimmingMonthlyPayment', { error });
     res.status(500).json({
       success: false,
       message: 'Internal server error'
@@ -1654,7 +1620,7 @@ export const getSwimmingMonthlyPayments = async (req, res) => {
       }
     });
   } catch (error) {
-    console.error('Error in getSwimmingMonthlyPayments:', error);
+    logger.error('Error in getSwimmingMonthlyPayments', { error });
     res.status(500).json({
       success: false,
       message: 'Internal server error'
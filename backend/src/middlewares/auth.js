@@ -1,5 +1,6 @@
 import { verifyToken } from '../config/auth.js';
-import { supabase } from '../config/supabase.js';
+import { loadUserPrincipal } from '../utils/userPrincipalCache.js';
+import { logger } from '../utils/logger.js';
 
 /**
  * Middleware to authenticate JWT tokens
@@ -19,14 +20,10 @@ const authenticateToken = async (req, res, next) => {
     // Verify JWT token
     const decoded = verifyToken(token);
     
-    // Get user from database to ensure user still exists and is active
-    const { data: user, error } = await supabase
-      .from('users_metadata')
-      .select('id, email, role, cms_id, name, email_confirmed, gender')
-      .eq('id', decoded.id)
-      .single();
-    
-    if (error || !user) {
+    // Get user from cache, falling back to the database to ensure user still exists and is active
+    const user = await loadUserPrincipal(decoded.id);
+
+    if (!user) {
       return res.status(401).json({
         success: false,
         message: 'Invalid token or user not found'
@@ -46,7 +43,7 @@ const authenticateToken = async (req, res, next) => {
 
     next();
   } catch (error) {
-    console.error('Auth middleware error:', error);
+    logger.error('Auth middleware error', { error });
     
     // Handle JWT specific errors
     if (error.name === 'TokenExpiredError') {
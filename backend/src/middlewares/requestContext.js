@@ -0,0 +1,43 @@
+import { randomUUID } from "node:crypto";
+import { AsyncResource } from "node:async_hooks";
+import { performance } from "node:perf_hooks";
+import { runWithRequestContext } from '../utils/requestContext.js';
+import { startRequestMetrics, recordRequest } from '../utils/dbMetrics.js';
+import { logger, sampleDebug } from '../utils/logger.js';
+
+// Accept a caller's request id (e.g. from a proxy) only if it is short and plain
+const REQUEST_ID_PATTERN = /^[\w.:-]{1,64}$/;
+
+/**
+ * Middleware that gives every request its context: a request id (echoed in X-Request-Id and
+ * attached to its log lines), the debug-log sampling decision and the database call counters.
+ * Writes one access log line per request, labelled with the route pattern
+ * (e.g. "GET /api/leagues/:id") that also labels /metrics. Must be registered before the routes.
+ */
+const requestContext = (req, res, next) => {
+  const incomingId = req.headers['x-request-id'];
+  const requestId = typeof incomingId === 'string' && REQUEST_ID_PATTERN.test(incomingId) ? incomingId : randomUUID();
+  res.setHeader('X-Request-Id', requestId);
+
+  const context = { requestId, debugSampled: sampleDebug(), db: startRequestMetrics() };
+
+  runWithRequestContext(context, () => {
+    res.on('finish', AsyncResource.bind(() => {
+      const route = req.route ? `${req.method} ${req.baseUrl}${req.route.path}` : 'unmatched';
+      recordRequest(context.db, route);
+
+      logger.info('Request completed', {
+        method: req.method,
+        url: req.originalUrl,
+        route,
+        status: res.statusCode,
+        durationMs: Math.round((performance.now() - context.db.startedAt) * 10) / 10,
+        dbCalls: context.db.queries
+      });
+    }));
+
+    next();
+  });
+};
+
+export default requestContext;
@@ -43,5 +43,9 @@ router.get('/matches/my-matches', authenticateToken, badmintonController.getMyMa
 // Find match - auto-select random available player
 router.post('/matches/find', authenticateToken, badmintonController.findMatchController);
 
+// Matchmaking queue - creates the match and notifies players once a group and a court are free
+router.post('/matches/queue', authenticateToken, badmintonController.joinMatchQueueController);
+router.delete('/matches/queue', authenticateToken, badmintonController.leaveMatchQueueController);
+
 export default router;
 
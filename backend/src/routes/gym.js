@@ -30,6 +30,7 @@ import {
 import { requireRole } from '../middlewares/auth.js';
 import { Roles } from '../constants/roles.js';
 import { checkGymRegistrationStatus } from '../services/gymService.js';
+import { logger } from '../utils/logger.js';
 
 const router = express.Router();
 
@@ -58,7 +59,7 @@ const requireGymRegistration = async (req, res, next) => {
     req.gymRegistration = status.registration;
     next();
   } catch (error) {
-    console.error('Error in requireGymRegistration middleware:', error);
+    logger.error('Error in requireGymRegistration middleware', { error });
     res.status(500).json({
       success: false,
       message: 'Error checking gym registration status'
@@ -79,6 +79,23 @@ router.put(
   leagueController.toggleLeagueRegistrationController
 );
 
+// ==================== LEAGUE FIXTURE ROUTES ====================
+
+// Get fixtures for a league (all authenticated users)
+router.get(
+  '/:id/fixtures',
+  authenticateToken,
+  leagueController.getLeagueFixturesController
+);
+
+// Generate fixtures for a league (admin/faculty only)
+router.post(
+  '/:id/fixtures',
+  authenticateToken,
+  requireRole(ADMIN_OR_FACULTY),
+  leagueController.generateLeagueFixturesController
+);
+
 // Verify league registration payment (all authenticated users)
 router.post(
   '/verify-payment',
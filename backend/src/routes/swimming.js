@@ -3,6 +3,7 @@ import swimmingController from '../controllers/swimmingController.js';
 import { authenticateToken, requireRole } from '../middlewares/auth.js';
 import { Roles } from '../constants/roles.js';
 import { checkSwimmingRegistrationStatus } from '../services/swimmingService.js';
+import { logger } from '../utils/logger.js';
 
 const router = express.Router();
 
@@ -30,7 +31,7 @@ const requireSwimmingRegistration = async (req, res, next) => {
     req.swimmingRegistration = status.registration;
     next();
   } catch (error) {
-    console.error('Error in requireSwimmingRegistration middleware:', error);
+    logger.error('Error in requireSwimmingRegistration middleware', { error });
     res.status(500).json({
       success: false,
       message: 'Error checking swimming registration status'
@@ -1,9 +1,9 @@
 import dotenv from "dotenv";
 dotenv.config();
 import process from "node:process";
+import { timingSafeEqual } from "node:crypto";
 import express from "express";
 import cors from "cors";
-import morgan from "morgan";
 import { createServer } from "http";
 
 import authRoutes from "./routes/auth.js";
@@ -15,6 +15,22 @@ import horseRidingRoutes from "./routes/horseRiding.js";
 import qrRoutes from "./routes/qr.js";
 import geminiRoutes from "./routes/gemini.js";
 import { initializeSocketServer } from "./socket/socketServer.js";
+import { getSocketFanoutStats } from "./socket/socketFanout.js";
+import { isClusterWorker, leaveCluster } from "./socket/socketCluster.js";
+import { startLeagueStatusSweeper, stopLeagueStatusSweeper } from "./services/leagueService.js";
+import { startWaitlistSweeper, stopWaitlistSweeper } from "./services/swimmingService.js";
+import requestContext from "./middlewares/requestContext.js";
+import { collectMetrics } from "./utils/dbMetrics.js";
+import { logger, flushLogs } from "./utils/logger.js";
+import {
+  SHUTDOWN_TIMEOUT_MS,
+  READINESS_DELAY_MS,
+  WORKER_LIFECYCLE,
+  isReady,
+  markNotReady,
+  delay,
+  trackConnections
+} from "./utils/gracefulShutdown.js";
 
 const app = express();
 const httpServer = createServer(app);
@@ -23,6 +39,17 @@ const PORT = process.env.PORT || 3000;
 // Initialize Socket.IO
 export const io = initializeSocketServer(httpServer);
 
+// Connections are tracked so SIGTERM can drain them (after Socket.IO, see trackConnections)
+const drainConnections = trackConnections(httpServer);
+
+// Keep stored league statuses in step with their dates (reads derive status in memory) and
+// release expired swimming waitlist reservations.
+// In cluster mode only the worker the primary started as scheduler runs them.
+if (!isClusterWorker() || process.env.CLUSTER_SCHEDULER === "true") {
+  startLeagueStatusSweeper();
+  startWaitlistSweeper();
+}
+
 // -------------------
 // CORS MUST BE FIRST
 // -------------------
@@ -46,7 +73,7 @@ const corsOptions = {
   credentials: true,
   methods: ["GET", "POST", "PUT", "DELETE", "PATCH", "OPTIONS"],
   allowedHeaders: ["Content-Type", "Authorization", "X-Requested-With"],
-  exposedHeaders: ["Authorization"],
+  exposedHeaders: ["Authorization", "X-Request-Id"],
   preflightContinue: false,
   optionsSuccessStatus: 204
 };
@@ -56,7 +83,8 @@ app.use(cors(corsOptions));
 // -------------------
 // BASIC MIDDLEWARE
 // -------------------
-app.use(morgan("dev"));
+// Request id, access log and database call counters per route (exposed on /metrics)
+app.use(requestContext);
 app.use(express.json());
 app.use(express.urlencoded({ extended: true }));
 
@@ -71,6 +99,60 @@ app.get("/health", (_req, res) => {
   });
 });
 
+// Readiness for load balancers: 503 once this process starts shutting down
+app.get("/health/ready", (_req, res) => {
+  const ready = isReady();
+  res.status(ready ? 200 : 503).json({
+    success: ready,
+    ready,
+    timestamp: new Date().toISOString(),
+  });
+});
+
+// Operational endpoints below: callers send METRICS_TOKEN as a bearer token. Without a token
+// they are open in development only; in production they stay closed until one is set.
+const IS_PRODUCTION = process.env.NODE_ENV === "production";
+
+const hasMetricsToken = (authorization) => {
+  const expected = Buffer.from(`Bearer ${process.env.METRICS_TOKEN}`);
+  const received = Buffer.from(authorization || "");
+  return received.length === expected.length && timingSafeEqual(received, expected);
+};
+
+const requireMetricsToken = (req, res, next) => {
+  if (!process.env.METRICS_TOKEN) {
+    if (IS_PRODUCTION) {
+      return res.status(403).json({
+        success: false,
+        message: "Metrics are disabled: METRICS_TOKEN is not set",
+      });
+    }
+    return next();
+  }
+
+  if (!hasMetricsToken(req.headers.authorization)) {
+    return res.status(401).json({
+      success: false,
+      message: "Metrics token required",
+    });
+  }
+  next();
+};
+
+// Socket fan-out counters (per-event emits, recipients and bytes) for sizing socket nodes
+app.get("/health/socket", requireMetricsToken, (_req, res) => {
+  res.status(200).json({
+    success: true,
+    stats: getSocketFanoutStats(),
+    timestamp: new Date().toISOString(),
+  });
+});
+
+// Prometheus metrics: database calls per route, per-table latency and errors (every worker's in cluster mode)
+app.get("/metrics", requireMetricsToken, async (_req, res) => {
+  res.type("text/plain; version=0.0.4").send(await collectMetrics());
+});
+
 // API routes
 app.use('/api/auth', authRoutes);
 app.use('/api/swimming', swimmingRoutes);
@@ -93,7 +175,7 @@ app.use((_req, res) => {
 // GLOBAL ERROR HANDLER (MUST BE LAST)
 // -------------------
 app.use((err, req, res, next) => {
-  console.error("Error:", err);
+  logger.error("Unhandled request error", { error: err });
 
   // Set CORS headers even on errors
   const origin = req.headers.origin;
@@ -117,18 +199,77 @@ app.use((err, req, res, next) => {
 });
 
 // -------------------
-httpServer.listen(PORT, () => {
-  console.log(`Server is running on port ${PORT}`);
-  console.log(`Health check: http://localhost:${PORT}/health`);
-  console.log(`Auth endpoints: http://localhost:${PORT}/api/auth`);
-  console.log(`Swimming endpoints: http://localhost:${PORT}/api/swimming`);
-  console.log(`Badminton endpoints: http://localhost:${PORT}/api/badminton`);
-  console.log(`Gym endpoints: http://localhost:${PORT}/api/gym`);
-  console.log(`Horse Riding endpoints: http://localhost:${PORT}/api/horse-riding`);
-  console.log(`Gemini endpoints: http://localhost:${PORT}/api/gemini`);
-  console.log(`WebSocket server: ws://localhost:${PORT}`);
-  
-  console.log('\n🎉 Server startup completed!');
-});
+// GRACEFUL SHUTDOWN
+// -------------------
+let shuttingDown = false;
+
+/**
+ * Stop taking new connections, let in-flight requests finish, then exit
+ * @param {string} reason - Signal or primary message that triggered the shutdown
+ * @param {number} readinessDelayMs - Time to keep serving while /health/ready reports 503
+ */
+const shutdown = async (reason, readinessDelayMs) => {
+  if (shuttingDown) {
+    return;
+  }
+  shuttingDown = true;
+  // In cluster mode readiness follows the primary (WORKER_LIFECYCLE.unready): a worker retired
+  // by a recycle keeps answering ready on the connections it still serves
+  if (!isClusterWorker()) {
+    markNotReady();
+  }
+  logger.info("Shutting down", { reason, readinessDelayMs, timeoutMs: SHUTDOWN_TIMEOUT_MS });
+
+  await delay(readinessDelayMs);
+  stopLeagueStatusSweeper();
+  stopWaitlistSweeper();
+
+  // Stop accepting: a worker leaves the cluster, a standalone server closes its port
+  if (isClusterWorker()) {
+    leaveCluster();
+  } else {
+    httpServer.close();
+  }
+
+  // Socket clients are told to disconnect and reconnect (to another worker or instance)
+  await io.close();
+  await drainConnections(SHUTDOWN_TIMEOUT_MS);
+
+  logger.info("Shutdown complete", { reason });
+  await flushLogs();
+  process.exit(0);
+};
+
+if (isClusterWorker()) {
+  // The primary coordinates shutdown and recycling; signals sent to the whole process
+  // group (Ctrl-C, systemd) must not make every worker drop out at once
+  process.on("SIGTERM", () => {});
+  process.on("SIGINT", () => {});
+  process.on("message", (message) => {
+    if (message?.type === WORKER_LIFECYCLE.unready) {
+      markNotReady();
+    } else if (message?.type === WORKER_LIFECYCLE.shutdown) {
+      shutdown("primary", 0);
+    }
+  });
+} else {
+  process.on("SIGTERM", () => shutdown("SIGTERM", READINESS_DELAY_MS));
+  process.on("SIGINT", () => shutdown("SIGINT", 0));
+}
+
+// -------------------
+// In cluster mode the primary (src/cluster.js) owns the port and passes connections to us
+if (isClusterWorker()) {
+  logger.info("Worker ready");
+  process.send({ type: WORKER_LIFECYCLE.ready });
+} else {
+  httpServer.listen(PORT, () => {
+    logger.info(`Server is running on port ${PORT}`, {
+      health: `http://localhost:${PORT}/health`,
+      api: `http://localhost:${PORT}/api`,
+      websocket: `ws://localhost:${PORT}`
+    });
+  });
+}
 
 export default app;
@@ -1,12 +1,26 @@
 import { supabaseAdmin as supabase } from '../config/supabase.js';
+import {
+  listIdlePlayers,
+  setPlayerPresence,
+  setMatchPresence,
+  drainQueues
+} from './matchmakingService.js';
+import {
+  MATCH_PLAYERS_SELECT,
+  toPlayerCard,
+  projectMatch,
+  projectMatchPlayers
+} from './playerCardService.js';
+import { isMissingFunction, isMissingTable } from '../utils/rpcErrors.js';
+import { logger } from '../utils/logger.js';
 
 /**
- * Get all available players (excluding those in active matches)
+ * Load available players and the users currently in active matches from the database
+ * Used to seed the in-memory matchmaking presence
  */
-export const getAvailablePlayers = async (excludeUserId = null) => {
+export const loadBadmintonPresence = async () => {
   try {
-    // First, get all users who are available
-    let query = supabase
+    const { data, error } = await supabase
       .from('badminton_availability')
       .select(`
         *,
@@ -22,19 +36,13 @@ export const getAvailablePlayers = async (excludeUserId = null) => {
       `)
       .eq('is_available', true);
 
-    if (excludeUserId) {
-      query = query.neq('user_id', excludeUserId);
-    }
-
-    const { data, error } = await query;
-
     if (error) {
-      console.error('Error getting available players:', error);
+      logger.error('Error getting available players', { error });
       // Check if table doesn't exist
       if (error.code === '42P01' || error.message?.includes('does not exist')) {
-        console.error('Badminton tables do not exist. Please run the migration: backend/database/migrations/badminton_module.sql');
+        logger.error('Badminton tables do not exist. Please run the migration: backend/database/migrations/badminton_module.sql');
       }
-      return { success: false, players: [], error: error.message };
+      return { success: false, players: [], busyUserIds: [], error: error.message };
     }
 
     // Get all user IDs who are in active matches
@@ -44,39 +52,40 @@ export const getAvailablePlayers = async (excludeUserId = null) => {
       .in('status', ['scheduled', 'in_progress']);
 
     if (matchesError) {
-      console.error('Error getting active matches:', matchesError);
+      logger.error('Error getting active matches', { error: matchesError });
+      return { success: false, players: [], busyUserIds: [], error: matchesError.message };
     }
 
-    // Collect all user IDs in active matches
-    const usersInMatches = new Set();
-    if (activeMatches) {
-      activeMatches.forEach(match => {
-        if (match.team1_player1_id) usersInMatches.add(match.team1_player1_id);
-        if (match.team1_player2_id) usersInMatches.add(match.team1_player2_id);
-        if (match.team2_player1_id) usersInMatches.add(match.team2_player1_id);
-        if (match.team2_player2_id) usersInMatches.add(match.team2_player2_id);
-      });
-    }
+    const busyUserIds = new Set();
+    (activeMatches || []).forEach(match => {
+      if (match.team1_player1_id) busyUserIds.add(match.team1_player1_id);
+      if (match.team1_player2_id) busyUserIds.add(match.team1_player2_id);
+      if (match.team2_player1_id) busyUserIds.add(match.team2_player1_id);
+      if (match.team2_player2_id) busyUserIds.add(match.team2_player2_id);
+    });
 
-    // Filter out users who are in active matches
     const players = (data || [])
-      .filter(item => item.user && !usersInMatches.has(item.user.id)) // Filter out null users and users in matches
-      .map(item => ({
-        id: item.user.id,
-        name: item.user.name,
-        email: item.user.email,
-        avatar: item.user.profile_picture_url,
-        cms_id: item.user.cms_id,
-        role: item.user.role,
-        gender: item.user.gender,
-        initials: getInitials(item.user.name),
-        available: true
-      }));
+      .filter(item => item.user) // Filter out null users
+      .map(item => toPlayerCard(item.user));
 
+    return { success: true, players, busyUserIds: [...busyUserIds] };
+  } catch (error) {
+    logger.error('Error in loadBadmintonPresence', { error });
+    return { success: false, players: [], busyUserIds: [], error: error.message };
+  }
+};
+
+/**
+ * Get all available players (excluding those in active matches)
+ * Served from the in-memory matchmaking presence
+ */
+export const getAvailablePlayers = async (excludeUserId = null) => {
+  try {
+    const players = await listIdlePlayers(excludeUserId);
     return { success: true, players };
   } catch (error) {
-    console.error('Error in getAvailablePlayers:', error);
-    return { success: false, players: [] };
+    logger.error('Error in getAvailablePlayers', { error });
+    return { success: false, players: [], error: error.message };
   }
 };
 
@@ -92,16 +101,16 @@ export const getUserAvailability = async (userId) => {
       .single();
 
     if (error && error.code !== 'PGRST116') {
-      console.error('Error getting user availability:', error);
+      logger.error('Error getting user availability', { error });
       if (error.code === '42P01' || error.message?.includes('does not exist')) {
-        console.error('Badminton tables do not exist. Please run the migration: backend/database/migrations/badminton_module.sql');
+        logger.error('Badminton tables do not exist. Please run the migration: backend/database/migrations/badminton_module.sql');
       }
       return { success: false, isAvailable: false, error: error.message };
     }
 
     return { success: true, isAvailable: data?.is_available || false };
   } catch (error) {
-    console.error('Error in getUserAvailability:', error);
+    logger.error('Error in getUserAvailability', { error });
     return { success: false, isAvailable: false };
   }
 };
@@ -120,17 +129,22 @@ export const setUserAvailability = async (userId, isAvailable) => {
       }, {
         onConflict: 'user_id'
       })
-      .select()
+      .select(`
+        *,
+        user:users_metadata (id, name, email, profile_picture_url, cms_id, role, gender)
+      `)
       .single();
 
     if (error) {
-      console.error('Error setting user availability:', error);
+      logger.error('Error setting user availability', { error });
       return { success: false };
     }
 
+    setPlayerPresence(userId, isAvailable, data.user ? toPlayerCard(data.user) : null);
+
     return { success: true, data };
   } catch (error) {
-    console.error('Error in setUserAvailability:', error);
+    logger.error('Error in setUserAvailability', { error });
     return { success: false };
   }
 };
@@ -146,16 +160,16 @@ export const getCourts = async () => {
       .order('court_number', { ascending: true });
 
     if (error) {
-      console.error('Error getting courts:', error);
+      logger.error('Error getting courts', { error });
       if (error.code === '42P01' || error.message?.includes('does not exist')) {
-        console.error('Badminton tables do not exist. Please run the migration: backend/database/migrations/badminton_module.sql');
+        logger.error('Badminton tables do not exist. Please run the migration: backend/database/migrations/badminton_module.sql');
       }
       return { success: false, courts: [], error: error.message };
     }
 
     return { success: true, courts: data || [] };
   } catch (error) {
-    console.error('Error in getCourts:', error);
+    logger.error('Error in getCourts', { error });
     return { success: false, courts: [] };
   }
 };
@@ -177,7 +191,7 @@ export const updateCourtStatus = async (courtId, status) => {
       .single();
 
     if (error) {
-      console.error('Error updating court status:', error);
+      logger.error('Error updating court status', { error });
       return { success: false, error: error.message };
     }
 
@@ -187,7 +201,7 @@ export const updateCourtStatus = async (courtId, status) => {
 
     return { success: true, court: data };
   } catch (error) {
-    console.error('Error in updateCourtStatus:', error);
+    logger.error('Error in updateCourtStatus', { error });
     return { success: false, error: error.message };
   }
 };
@@ -204,7 +218,7 @@ export const checkCourtAvailability = async (courtId, startTime, endTime) => {
     });
 
     if (error) {
-      console.error('Error checking court availability:', error);
+      logger.error('Error checking court availability', { error });
       return { success: false, isAvailable: false };
     }
 
@@ -221,13 +235,13 @@ export const checkCourtAvailability = async (courtId, startTime, endTime) => {
         .gt('scheduled_end_time', startTime);
 
       if (matchError) {
-        console.error('Error in fallback court availability check:', matchError);
+        logger.error('Error in fallback court availability check', { error: matchError });
         return { success: false, isAvailable: false };
       }
 
       return { success: true, isAvailable: (matches || []).length === 0 };
     } catch (fallbackError) {
-      console.error('Error in fallback check:', fallbackError);
+      logger.error('Error in fallback check', { error: fallbackError });
       return { success: false, isAvailable: false };
     }
   }
@@ -269,82 +283,31 @@ export const createMatch = async (matchData) => {
       .select(`
         *,
         court:badminton_courts (*),
-        team1_player1:users_metadata!team1_player1_id (id, name, email, profile_picture_url, cms_id, role, gender),
-        team1_player2:users_metadata!team1_player2_id (id, name, email, profile_picture_url, cms_id, role, gender),
-        team2_player1:users_metadata!team2_player1_id (id, name, email, profile_picture_url, cms_id, role, gender),
-        team2_player2:users_metadata!team2_player2_id (id, name, email, profile_picture_url, cms_id, role, gender)
+        ${MATCH_PLAYERS_SELECT}
       `)
       .single();
 
     if (error) {
-      console.error('Error creating match:', error);
+      // badminton_matches_no_court_overlap / badminton_matches_no_fixture_overlap: another
+      // active match or a scheduled league fixture already holds this court
+      if (error.code === '23P01') {
+        return { success: false, conflict: true, error: 'Court is not available at this time' };
+      }
+      logger.error('Error creating match', { error });
       return { success: false, error: error.message };
     }
 
+    setMatchPresence(data, true);
+
     // Update court status to occupied
     await supabase
       .from('badminton_courts')
       .update({ status: 'occupied' })
       .eq('id', courtId);
 
-    // Transform player data
-    const transformed = { ...data };
-    if (data.team1_player1) {
-      transformed.team1_player1 = {
-        id: data.team1_player1.id,
-        name: data.team1_player1.name,
-        email: data.team1_player1.email,
-        avatar: data.team1_player1.profile_picture_url,
-        cms_id: data.team1_player1.cms_id || 0,
-        role: data.team1_player1.role || '',
-        gender: data.team1_player1.gender,
-        initials: getInitials(data.team1_player1.name),
-        available: true
-      };
-    }
-    if (data.team1_player2) {
-      transformed.team1_player2 = {
-        id: data.team1_player2.id,
-        name: data.team1_player2.name,
-        email: data.team1_player2.email,
-        avatar: data.team1_player2.profile_picture_url,
-        cms_id: data.team1_player2.cms_id || 0,
-        role: data.team1_player2.role || '',
-        gender: data.team1_player2.gender,
-        initials: getInitials(data.team1_player2.name),
-        available: true
-      };
-    }
-    if (data.team2_player1) {
-      transformed.team2_player1 = {
-        id: data.team2_player1.id,
-        name: data.team2_player1.name,
-        email: data.team2_player1.email,
-        avatar: data.team2_player1.profile_picture_url,
-        cms_id: data.team2_player1.cms_id || 0,
-        role: data.team2_player1.role || '',
-        gender: data.team2_player1.gender,
-        initials: getInitials(data.team2_player1.name),
-        available: true
-      };
-    }
-    if (data.team2_player2) {
-      transformed.team2_player2 = {
-        id: data.team2_player2.id,
-        name: data.team2_player2.name,
-        email: data.team2_player2.email,
-        avatar: data.team2_player2.profile_picture_url,
-        cms_id: data.team2_player2.cms_id || 0,
-        role: data.team2_player2.role || '',
-        gender: data.team2_player2.gender,
-        initials: getInitials(data.team2_player2.name),
-        available: true
-      };
-    }
-
-    return { success: true, match: transformed };
+    return { success: true, match: await projectMatch(data) };
   } catch (error) {
-    console.error('Error in createMatch:', error);
+    logger.error('Error in createMatch', { error });
     return { success: false, error: error.message };
   }
 };
@@ -364,76 +327,18 @@ export const startMatch = async (matchId) => {
       .select(`
         *,
         court:badminton_courts (*),
-        team1_player1:users_metadata!team1_player1_id (id, name, email, profile_picture_url, cms_id, role, gender),
-        team1_player2:users_metadata!team1_player2_id (id, name, email, profile_picture_url, cms_id, role, gender),
-        team2_player1:users_metadata!team2_player1_id (id, name, email, profile_picture_url, cms_id, role, gender),
-        team2_player2:users_metadata!team2_player2_id (id, name, email, profile_picture_url, cms_id, role, gender)
+        ${MATCH_PLAYERS_SELECT}
       `)
       .single();
 
     if (error) {
-      console.error('Error starting match:', error);
+      logger.error('Error starting match', { error });
       return { success: false, error: error.message };
     }
 
-    // Transform player data
-    const transformed = { ...data };
-    if (data.team1_player1) {
-      transformed.team1_player1 = {
-        id: data.team1_player1.id,
-        name: data.team1_player1.name,
-        email: data.team1_player1.email,
-        avatar: data.team1_player1.profile_picture_url,
-        cms_id: data.team1_player1.cms_id || 0,
-        role: data.team1_player1.role || '',
-        gender: data.team1_player1.gender,
-        initials: getInitials(data.team1_player1.name),
-        available: true
-      };
-    }
-    if (data.team1_player2) {
-      transformed.team1_player2 = {
-        id: data.team1_player2.id,
-        name: data.team1_player2.name,
-        email: data.team1_player2.email,
-        avatar: data.team1_player2.profile_picture_url,
-        cms_id: data.team1_player2.cms_id || 0,
-        role: data.team1_player2.role || '',
-        gender: data.team1_player2.gender,
-        initials: getInitials(data.team1_player2.name),
-        available: true
-      };
-    }
-    if (data.team2_player1) {
-      transformed.team2_player1 = {
-        id: data.team2_player1.id,
-        name: data.team2_player1.name,
-        email: data.team2_player1.email,
-        avatar: data.team2_player1.profile_picture_url,
-        cms_id: data.team2_player1.cms_id || 0,
-        role: data.team2_player1.role || '',
-        gender: data.team2_player1.gender,
-        initials: getInitials(data.team2_player1.name),
-        available: true
-      };
-    }
-    if (data.team2_player2) {
-      transformed.team2_player2 = {
-        id: data.team2_player2.id,
-        name: data.team2_player2.name,
-        email: data.team2_player2.email,
-        avatar: data.team2_player2.profile_picture_url,
-        cms_id: data.team2_player2.cms_id || 0,
-        role: data.team2_player2.role || '',
-        gender: data.team2_player2.gender,
-        initials: getInitials(data.team2_player2.name),
-        available: true
-      };
-    }
-
-    return { success: true, match: transformed };
+    return { success: true, match: await projectMatch(data) };
   } catch (error) {
-    console.error('Error in startMatch:', error);
+    logger.error('Error in startMatch', { error });
     return { success: false, error: error.message };
   }
 };
@@ -464,12 +369,13 @@ export const endMatch = async (matchId) => {
       .eq('id', matchId)
       .select(`
         *,
-        court:badminton_courts (*)
+        court:badminton_courts (*),
+        ${MATCH_PLAYERS_SELECT}
       `)
       .single();
 
     if (error) {
-      console.error('Error ending match:', error);
+      logger.error('Error ending match', { error });
       return { success: false, error: error.message };
     }
 
@@ -489,9 +395,13 @@ export const endMatch = async (matchId) => {
         .eq('id', match.court_id);
     }
 
-    return { success: true, match: data };
+    // Players are free again and a court may have opened up for queued players
+    setMatchPresence(data, false);
+    drainQueues();
+
+    return { success: true, match: await projectMatch(data) };
   } catch (error) {
-    console.error('Error in endMatch:', error);
+    logger.error('Error in endMatch', { error });
     return { success: false, error: error.message };
   }
 };
@@ -506,178 +416,89 @@ export const getUserActiveMatches = async (userId) => {
       .select(`
         *,
         court:badminton_courts (*),
-        team1_player1:users_metadata!team1_player1_id (id, name, email, profile_picture_url, cms_id, role, gender),
-        team1_player2:users_metadata!team1_player2_id (id, name, email, profile_picture_url, cms_id, role, gender),
-        team2_player1:users_metadata!team2_player1_id (id, name, email, profile_picture_url, cms_id, role, gender),
-        team2_player2:users_metadata!team2_player2_id (id, name, email, profile_picture_url, cms_id, role, gender)
+        ${MATCH_PLAYERS_SELECT}
       `)
       .in('status', ['scheduled', 'in_progress'])
       .or(`team1_player1_id.eq.${userId},team1_player2_id.eq.${userId},team2_player1_id.eq.${userId},team2_player2_id.eq.${userId}`)
       .order('scheduled_start_time', { ascending: true });
 
     if (error) {
-      console.error('Error getting user active matches:', error);
+      logger.error('Error getting user active matches', { error });
       return { success: false, matches: [] };
     }
 
-    // Transform the data to match frontend expectations
-    const transformedMatches = await Promise.all((data || []).map(async (match) => {
-      const transformed = { ...match };
-      
-      // Transform players to match Player interface, with fallback to fetch separately
-      if (match.team1_player1_id) {
-        if (match.team1_player1 && typeof match.team1_player1 === 'object') {
-          transformed.team1_player1 = {
-            id: match.team1_player1.id,
-            name: match.team1_player1.name,
-            email: match.team1_player1.email,
-            avatar: match.team1_player1.profile_picture_url,
-            cms_id: match.team1_player1.cms_id || 0,
-            role: match.team1_player1.role || '',
-            gender: match.team1_player1.gender,
-            initials: getInitials(match.team1_player1.name),
-            available: true
-          };
-        } else {
-          // Fallback: fetch player data separately
-          transformed.team1_player1 = await fetchPlayerData(match.team1_player1_id);
-        }
-      }
-      
-      if (match.team1_player2_id) {
-        if (match.team1_player2 && typeof match.team1_player2 === 'object') {
-          transformed.team1_player2 = {
-            id: match.team1_player2.id,
-            name: match.team1_player2.name,
-            email: match.team1_player2.email,
-            avatar: match.team1_player2.profile_picture_url,
-            cms_id: match.team1_player2.cms_id || 0,
-            role: match.team1_player2.role || '',
-            gender: match.team1_player2.gender,
-            initials: getInitials(match.team1_player2.name),
-            available: true
-          };
-        } else {
-          transformed.team1_player2 = await fetchPlayerData(match.team1_player2_id);
-        }
-      }
-      
-      if (match.team2_player1_id) {
-        if (match.team2_player1 && typeof match.team2_player1 === 'object') {
-          transformed.team2_player1 = {
-            id: match.team2_player1.id,
-            name: match.team2_player1.name,
-            email: match.team2_player1.email,
-            avatar: match.team2_player1.profile_picture_url,
-            cms_id: match.team2_player1.cms_id || 0,
-            role: match.team2_player1.role || '',
-            gender: match.team2_player1.gender,
-            initials: getInitials(match.team2_player1.name),
-            available: true
-          };
-        } else {
-          transformed.team2_player1 = await fetchPlayerData(match.team2_player1_id);
-        }
-      }
-      
-      if (match.team2_player2_id) {
-        if (match.team2_player2 && typeof match.team2_player2 === 'object') {
-          transformed.team2_player2 = {
-            id: match.team2_player2.id,
-            name: match.team2_player2.name,
-            email: match.team2_player2.email,
-            avatar: match.team2_player2.profile_picture_url,
-            cms_id: match.team2_player2.cms_id || 0,
-            role: match.team2_player2.role || '',
-            gender: match.team2_player2.gender,
-            initials: getInitials(match.team2_player2.name),
-            available: true
-          };
-        } else {
-          transformed.team2_player2 = await fetchPlayerData(match.team2_player2_id);
-        }
-      }
-      
-      return transformed;
-    }));
+    // Project players (unresolved joins are loaded in one batched query)
+    const transformedMatches = await projectMatchPlayers(data || []);
 
     return { success: true, matches: transformedMatches };
   } catch (error) {
-    console.error('Error in getUserActiveMatches:', error);
+    logger.error('Error in getUserActiveMatches', { error });
     return { success: false, matches: [] };
   }
 };
 
 /**
  * Get available courts at a specific time
+ * Resolved in one query by badminton_free_courts, independent of the number of courts
  */
 export const getAvailableCourtsAtTime = async (startTime, endTime) => {
   try {
-    const { data: courts, error: courtsError } = await supabase
-      .from('badminton_courts')
-      .select('*')
-      .eq('status', 'available')
-      .order('court_number', { ascending: true });
+    const { data, error } = await supabase.rpc('badminton_free_courts', {
+      p_start_time: startTime,
+      p_end_time: endTime
+    });
 
-    if (courtsError) {
-      return { success: false, courts: [] };
+    if (!error) {
+      return { success: true, courts: data || [] };
     }
 
-    const availableCourts = [];
-    for (const court of courts || []) {
-      const availability = await checkCourtAvailability(court.id, startTime, endTime);
-      if (availability.success && availability.isAvailable) {
-        availableCourts.push(court);
-      }
+    if (!isMissingFunction(error)) {
+      logger.error('Error in badminton_free_courts RPC', { error });
+      return { success: false, courts: [] };
     }
 
-    return { success: true, courts: availableCourts };
-  } catch (error) {
-    console.error('Error in getAvailableCourtsAtTime:', error);
-    return { success: false, courts: [] };
-  }
-};
+    // Fallback only if the RPC isn't installed yet: courts, overlapping matches and overlapping
+    // league fixtures (the fixtures table may be missing too, then no court is held by one)
+    logger.warn('badminton_free_courts RPC not installed, filtering courts in Node', { error });
+    const [courtsResult, matchesResult, fixturesResult] = await Promise.all([
+      supabase
+        .from('badminton_courts')
+        .select('*')
+        .eq('status', 'available')
+        .order('court_number', { ascending: true }),
+      supabase
+        .from('badminton_matches')
+        .select('court_id')
+        .in('status', ['scheduled', 'in_progress'])
+        .lt('scheduled_start_time', endTime)
+        .gt('scheduled_end_time', startTime),
+      supabase
+        .from('league_fixtures')
+        .select('court_id')
+        .eq('status', 'scheduled')
+        .not('court_id', 'is', null)
+        .lt('scheduled_start_time', endTime)
+        .gt('scheduled_end_time', startTime)
+    ]);
 
-/**
- * Helper function to get initials from name
- */
-function getInitials(name) {
-  if (!name) return '??';
-  const parts = name.trim().split(' ');
-  if (parts.length >= 2) {
-    return `${parts[0][0]}${parts[parts.length - 1][0]}`.toUpperCase();
-  }
-  return name.substring(0, 2).toUpperCase();
-}
+    const fixturesError = isMissingTable(fixturesResult.error) ? null : fixturesResult.error;
+    if (courtsResult.error || matchesResult.error || fixturesError) {
+      logger.error('Error in fallback available courts lookup', {
+        error: courtsResult.error || matchesResult.error || fixturesError
+      });
+      return { success: false, courts: [] };
+    }
 
-/**
- * Helper function to fetch and transform player data
- */
-async function fetchPlayerData(userId) {
-  if (!userId) return null;
-  try {
-    const { data, error } = await supabase
-      .from('users_metadata')
-      .select('id, name, email, profile_picture_url, cms_id, role, gender')
-      .eq('id', userId)
-      .single();
-    
-    if (error || !data) return null;
-    
+    const busyCourtIds = new Set([
+      ...(matchesResult.data || []),
+      ...(fixturesResult.data || [])
+    ].map(booking => booking.court_id));
     return {
-      id: data.id,
-      name: data.name,
-      email: data.email,
-      avatar: data.profile_picture_url,
-      cms_id: data.cms_id || 0,
-      role: data.role || '',
-      gender: data.gender,
-      initials: getInitials(data.name),
-      available: true
+      success: true,
+      courts: (courtsResult.data || []).filter(court => !busyCourtIds.has(court.id))
     };
   } catch (error) {
-    console.error('Error fetching player data:', error);
-    return null;
+    logger.error('Error in getAvailableCourtsAtTime', { error });
+    return { success: false, courts: [] };
   }
-}
-
+};
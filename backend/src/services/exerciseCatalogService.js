@@ -0,0 +1,306 @@
+import process from "node:process";
+import { createHash } from "node:crypto";
+import { supabaseAdmin as supabase } from '../config/supabase.js';
+import { createLruCache } from '../utils/lruCache.js';
+import { publish, subscribe } from '../utils/clusterBus.js';
+import { selectAllPages } from '../utils/pagination.js';
+import { logger } from '../utils/logger.js';
+
+/**
+ * In-memory exercise catalog.
+ * The whole exercises table is loaded once (in pages of 1000 rows, the PostgREST response
+ * cap) and kept sorted by name, with secondary indexes by body_part / equipment / difficulty /
+ * is_active and a trigram index for name search, so filtered lookups never hit Postgres.
+ *
+ * Every (re)load bumps the catalog version, which is part of the ETag of list responses.
+ * Call invalidateExerciseCatalog() after any write to the exercises table (the other cluster
+ * workers reload too); edits made outside the API are picked up after EXERCISE_CATALOG_TTL_MS
+ * (stale entries are served while the reload runs in the background).
+ */
+
+const CATALOG_TTL_MS = parseInt(process.env.EXERCISE_CATALOG_TTL_MS, 10) || 60 * 60 * 1000;
+
+let catalog = null; // { version, loadedAt, exercises, byId, byBodyPart, byEquipment, byDifficulty, byActive, trigrams }
+let loadingPromise = null;
+let generation = 0;
+let invalidations = 0;
+
+// Query results per catalog version; keys include the version so a reload makes old entries unreachable
+const resultCache = createLruCache({ maxEntries: 500, ttlMs: CATALOG_TTL_MS });
+
+/**
+ * Split a lower-cased string into its trigrams
+ */
+const toTrigrams = (text) => {
+  const trigrams = new Set();
+  for (let i = 0; i + 3 <= text.length; i++) {
+    trigrams.add(text.slice(i, i + 3));
+  }
+  return trigrams;
+};
+
+/**
+ * Append a catalog position to a posting list
+ */
+const addToIndex = (index, key, position) => {
+  if (key === null || key === undefined) {
+    return;
+  }
+
+  const postings = index.get(key);
+  if (postings) {
+    postings.push(position);
+  } else {
+    index.set(key, [position]);
+  }
+};
+
+/**
+ * Intersect two ascending posting lists
+ */
+const intersect = (a, b) => {
+  const result = [];
+  let i = 0;
+  let j = 0;
+
+  while (i < a.length && j < b.length) {
+    if (a[i] === b[j]) {
+      result.push(a[i]);
+      i++;
+      j++;
+    } else if (a[i] < b[j]) {
+      i++;
+    } else {
+      j++;
+    }
+  }
+
+  return result;
+};
+
+/**
+ * Build the catalog and its indexes from exercises rows
+ * Posting lists hold positions in the name-sorted array, so they are ascending and
+ * any intersection is already in name order.
+ */
+const buildCatalog = (rows) => {
+  const exercises = [...rows].sort((a, b) => (a.name || '').localeCompare(b.name || ''));
+  const byId = new Map();
+  const byBodyPart = new Map();
+  const byEquipment = new Map();
+  const byDifficulty = new Map();
+  const byActive = new Map();
+  const trigrams = new Map();
+  const lowerNames = [];
+
+  exercises.forEach((exercise, position) => {
+    byId.set(exercise.id, exercise);
+    addToIndex(byBodyPart, exercise.body_part, position);
+    addToIndex(byEquipment, exercise.equipment, position);
+    addToIndex(byDifficulty, exercise.difficulty, position);
+    addToIndex(byActive, exercise.is_active !== false, position);
+
+    const lowerName = (exercise.name || '').toLowerCase();
+    lowerNames.push(lowerName);
+    toTrigrams(lowerName).forEach(trigram => addToIndex(trigrams, trigram, position));
+  });
+
+  generation += 1;
+
+  return {
+    version: `${Date.now().toString(36)}.${generation}`,
+    loadedAt: Date.now(),
+    exercises,
+    lowerNames,
+    byId,
+    byBodyPart,
+    byEquipment,
+    byDifficulty,
+    byActive,
+    trigrams
+  };
+};
+
+/**
+ * Load the full exercises table (single-flight)
+ */
+const loadCatalog = () => {
+  if (!loadingPromise) {
+    const startedAt = invalidations;
+    const promise = (async () => {
+      try {
+        const { data, error } = await selectAllPages(() => supabase
+          .from('exercises')
+          .select('*')
+          .order('id', { ascending: true }));
+
+        if (error) {
+          throw new Error(error.message);
+        }
+
+        const loaded = buildCatalog(data || []);
+        // Don't publish a snapshot read before an invalidation
+        if (startedAt === invalidations) {
+          catalog = loaded;
+        }
+        return loaded;
+      } finally {
+        if (loadingPromise === promise) {
+          loadingPromise = null;
+        }
+      }
+    })();
+    loadingPromise = promise;
+  }
+
+  return loadingPromise;
+};
+
+/**
+ * Get the current catalog, loading it on first use and refreshing it in the background when stale
+ */
+const getCatalog = async () => {
+  if (!catalog) {
+    return loadCatalog();
+  }
+
+  if (Date.now() - catalog.loadedAt > CATALOG_TTL_MS) {
+    loadCatalog().catch(error => {
+      logger.error('Error refreshing exercise catalog', { error });
+    });
+  }
+
+  return catalog;
+};
+
+/**
+ * Positions of exercises whose name contains the search term (case-insensitive, like ilike '%term%')
+ */
+const searchNamePositions = (current, search, candidates) => {
+  const term = search.toLowerCase();
+  let positions = candidates;
+
+  // Narrow with the trigram index, then verify the substring match
+  if (term.length >= 3) {
+    for (const trigram of toTrigrams(term)) {
+      const postings = current.trigrams.get(trigram);
+      if (!postings) {
+        return [];
+      }
+      positions = positions ? intersect(positions, postings) : postings;
+    }
+  }
+
+  if (!positions) {
+    positions = current.exercises.map((_, position) => position);
+  }
+
+  return positions.filter(position => current.lowerNames[position].includes(term));
+};
+
+/**
+ * Run a filtered lookup against the catalog
+ */
+const queryCatalog = (current, filters) => {
+  const isActive = filters.isActive !== undefined ? filters.isActive : true;
+  const postingLists = [current.byActive.get(isActive) || []];
+
+  if (filters.bodyPart) {
+    postingLists.push(current.byBodyPart.get(filters.bodyPart) || []);
+  }
+  if (filters.equipment) {
+    postingLists.push(current.byEquipment.get(filters.equipment) || []);
+  }
+  if (filters.difficulty) {
+    postingLists.push(current.byDifficulty.get(filters.difficulty) || []);
+  }
+
+  // Intersect starting from the most selective index
+  postingLists.sort((a, b) => a.length - b.length);
+  let positions = postingLists.reduce((acc, postings) => intersect(acc, postings));
+
+  if (filters.search) {
+    positions = searchNamePositions(current, filters.search, positions);
+  }
+
+  return positions.map(position => current.exercises[position]);
+};
+
+/**
+ * Stable key for a set of filters
+ */
+const toFilterKey = (filters) => {
+  return JSON.stringify([
+    filters.bodyPart || null,
+    filters.equipment || null,
+    filters.difficulty || null,
+    filters.isActive !== undefined ? filters.isActive : true,
+    filters.search ? filters.search.toLowerCase() : null
+  ]);
+};
+
+/**
+ * Get exercises matching the filters from memory
+ * @param {Object} filters - { bodyPart, equipment, difficulty, isActive, search }
+ * @returns {Object} - { success, exercises, etag, error }
+ */
+export const findExercises = async (filters = {}) => {
+  try {
+    const current = await getCatalog();
+    const filterKey = toFilterKey(filters);
+    const cacheKey = `${current.version}|${filterKey}`;
+
+    let result = resultCache.get(cacheKey);
+    if (!result) {
+      const filterHash = createHash('sha1').update(filterKey).digest('base64url').slice(0, 16);
+      result = {
+        exercises: queryCatalog(current, filters),
+        etag: `W/"exercises-${current.version}-${filterHash}"`
+      };
+      resultCache.set(cacheKey, result);
+    }
+
+    return { success: true, exercises: result.exercises, etag: result.etag };
+  } catch (error) {
+    logger.error('Error in findExercises', { error });
+    return { success: false, exercises: [], etag: null, error: error.message };
+  }
+};
+
+/**
+ * Get a single exercise from memory
+ * @returns {Object} - { success, exercise, error }
+ */
+export const findExerciseById = async (exerciseId) => {
+  try {
+    const current = await getCatalog();
+    const exercise = current.byId.get(exerciseId) || null;
+
+    if (!exercise) {
+      return { success: false, exercise: null, error: 'Exercise not found' };
+    }
+
+    return { success: true, exercise };
+  } catch (error) {
+    logger.error('Error in findExerciseById', { error });
+    return { success: false, exercise: null, error: error.message };
+  }
+};
+
+/**
+ * Drop the catalog so the next read reloads it with a new version
+ * Call after creating, updating or deleting exercises
+ */
+const dropCatalog = () => {
+  invalidations += 1;
+  catalog = null;
+  loadingPromise = null;
+  resultCache.clear();
+};
+
+export const invalidateExerciseCatalog = () => {
+  dropCatalog();
+  publish('exercise-catalog:invalidate');
+};
+
+subscribe('exercise-catalog:invalidate', dropCatalog);
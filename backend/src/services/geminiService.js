@@ -1,8 +1,9 @@
 import { GoogleGenAI } from "@google/genai";
 import { supabaseAdmin as supabase } from '../config/supabase.js';
-import { getActiveTimeSlots, getAttendanceCount } from './swimmingService.js';
+import { getActiveTimeSlots, getAttendanceCounts } from './swimmingService.js';
 import { getTimeSlots as getHorseRidingTimeSlots, getEquipment, getRules as getHorseRidingRules } from './horseRidingService.js';
-import { getTodayDate } from '../utils/timeSlotDetermination.js';
+import { getCompiledSchedule, getUpcomingSlots, getTodayDate } from '../utils/timeSlotDetermination.js';
+import { logger } from '../utils/logger.js';
 
 /**
  * Initialize Gemini AI client
@@ -56,34 +57,10 @@ const filterTimeSlotsByUser = (slots, userGender, userRole) => {
 
 /**
  * Get the next available time slot (first slot with available spots that hasn't passed)
+ * Expects slots that have not ended yet, already in start time order (see getUpcomingSlots)
  */
 const getNextAvailableSlot = (slots) => {
-  const now = new Date();
-  const currentTime = `${now.getHours().toString().padStart(2, '0')}:${now.getMinutes().toString().padStart(2, '0')}:${now.getSeconds().toString().padStart(2, '0')}`;
-
-  // Filter slots that:
-  // 1. Haven't ended yet (endTime > currentTime)
-  // 2. Have available spots (availableSpots > 0)
-  // 3. Are active
-  const availableSlots = slots.filter(slot => {
-    const hasEnded = currentTime > slot.endTime;
-    const hasSpots = slot.availableSpots > 0;
-    const isActive = slot.isActive !== false;
-    return !hasEnded && hasSpots && isActive;
-  });
-
-  // Sort by start time and return the first one (next available)
-  if (availableSlots.length === 0) {
-    return null;
-  }
-
-  availableSlots.sort((a, b) => {
-    if (a.startTime < b.startTime) return -1;
-    if (a.startTime > b.startTime) return 1;
-    return 0;
-  });
-
-  return availableSlots[0];
+  return slots.find(slot => slot.availableSpots > 0 && slot.isActive !== false) || null;
 };
 
 /**
@@ -96,24 +73,25 @@ const fetchSwimmingTimeSlots = async (userGender = null, userRole = null) => {
       return null;
     }
 
+    // Only slots that haven't ended yet need availability information
+    const upcomingSlots = getUpcomingSlots(getCompiledSchedule(timeSlots));
+
     const today = getTodayDate();
-    const slotsWithAvailability = await Promise.all(
-      timeSlots.map(async (slot) => {
-        const attendanceResult = await getAttendanceCount(slot.id, today);
-        const count = attendanceResult.count || 0;
-        return {
-          id: slot.id,
-          startTime: slot.start_time,
-          endTime: slot.end_time,
-          genderRestriction: slot.gender_restriction,
-          maxCapacity: slot.max_capacity,
-          currentCount: count,
-          availableSpots: slot.max_capacity - count,
-          trainer: slot.trainer?.name || null,
-          isActive: slot.is_active
-        };
-      })
-    );
+    const { counts } = await getAttendanceCounts(upcomingSlots.map(slot => slot.id), today);
+    const slotsWithAvailability = upcomingSlots.map((slot) => {
+      const count = counts[slot.id] || 0;
+      return {
+        id: slot.id,
+        startTime: slot.start_time,
+        endTime: slot.end_time,
+        genderRestriction: slot.gender_restriction,
+        maxCapacity: slot.max_capacity,
+        currentCount: count,
+        availableSpots: slot.max_capacity - count,
+        trainer: slot.trainer?.name || null,
+        isActive: slot.is_active
+      };
+    });
 
     // Filter by user gender and role
     const filteredSlots = filterTimeSlotsByUser(slotsWithAvailability, userGender, userRole);
@@ -121,7 +99,7 @@ const fetchSwimmingTimeSlots = async (userGender = null, userRole = null) => {
     // Return only the next available slot
     return getNextAvailableSlot(filteredSlots);
   } catch (error) {
-    console.error("Error fetching swimming time slots:", error);
+    logger.error("Error fetching swimming time slots", { error });
     return null;
   }
 };
@@ -146,7 +124,7 @@ const fetchHorseRidingTimeSlots = async () => {
       isActive: slot.is_active
     }));
   } catch (error) {
-    console.error("Error fetching horse riding time slots:", error);
+    logger.error("Error fetching horse riding time slots", { error });
     return [];
   }
 };
@@ -170,7 +148,7 @@ const fetchHorseRidingEquipment = async () => {
       isAvailable: item.is_available
     }));
   } catch (error) {
-    console.error("Error fetching horse riding equipment:", error);
+    logger.error("Error fetching horse riding equipment", { error });
     return [];
   }
 };
@@ -187,7 +165,7 @@ const fetchSwimmingRules = async () => {
       .order('display_order', { ascending: true });
 
     if (error) {
-      console.error("Error fetching swimming rules:", error);
+      logger.error("Error fetching swimming rules", { error });
       return [];
     }
 
@@ -197,7 +175,7 @@ const fetchSwimmingRules = async () => {
       category: rule.category || "General"
     }));
   } catch (error) {
-    console.error("Error fetching swimming rules:", error);
+    logger.error("Error fetching swimming rules", { error });
     return [];
   }
 };
@@ -218,7 +196,7 @@ const fetchHorseRidingRules = async () => {
       category: rule.category || "General"
     }));
   } catch (error) {
-    console.error("Error fetching horse riding rules:", error);
+    logger.error("Error fetching horse riding rules", { error });
     return [];
   }
 };
@@ -381,7 +359,7 @@ export const generateIntelligentResponse = async (userQuery, model = "gemini-2.5
       text: response.text
     };
   } catch (error) {
-    console.error("Error generating intelligent response with Gemini:", error);
+    logger.error("Error generating intelligent response with Gemini", { error });
     return {
       success: false,
       error: error.message || "Failed to generate response with Gemini API"
@@ -422,7 +400,7 @@ export const generateContent = async (prompt, model = "gemini-2.5-flash") => {
       text: response.text
     };
   } catch (error) {
-    console.error("Error generating content with Gemini:", error);
+    logger.error("Error generating content with Gemini", { error });
     return {
       success: false,
       error: error.message || "Failed to generate content with Gemini API"
@@ -494,7 +472,7 @@ export const generateContentWithHistory = async (messages, model = "gemini-2.5-f
       text: response.text
     };
   } catch (error) {
-    console.error("Error generating content with history:", error);
+    logger.error("Error generating content with history", { error });
     return {
       success: false,
       error: error.message || "Failed to generate content with Gemini API"
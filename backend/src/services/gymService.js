@@ -1,4 +1,15 @@
 import { supabaseAdmin as supabase } from '../config/supabase.js';
+import {
+  getCachedRegistrationStatus,
+  setCachedRegistrationStatus,
+  invalidateRegistrationStatus,
+  clearRegistrationStatusCache
+} from '../utils/registrationStatusCache.js';
+import { getOccupancy, recordCheckIn, GYM_OCCUPANCY_KEY } from './occupancyService.js';
+import { findExercises, findExerciseById } from './exerciseCatalogService.js';
+import { resolveQRCodeForSport } from './qrRegistryService.js';
+import { isMissingFunction } from '../utils/rpcErrors.js';
+import { logger } from '../utils/logger.js';
 
 /**
  * Calculate calories burned for an exercise
@@ -13,70 +24,17 @@ export const calculateCalories = (metValue, weightKg, durationMinutes) => {
 
 /**
  * Get all exercises with optional filters
+ * Served from the in-memory exercise catalog; etag changes whenever the catalog is reloaded
  */
 export const getExercises = async (filters = {}) => {
-  try {
-    let query = supabase
-      .from('exercises')
-      .select('*');
-
-    if (filters.bodyPart) {
-      query = query.eq('body_part', filters.bodyPart);
-    }
-
-    if (filters.equipment) {
-      query = query.eq('equipment', filters.equipment);
-    }
-
-    if (filters.difficulty) {
-      query = query.eq('difficulty', filters.difficulty);
-    }
-
-    if (filters.isActive !== undefined) {
-      query = query.eq('is_active', filters.isActive);
-    } else {
-      query = query.eq('is_active', true);
-    }
-
-    if (filters.search) {
-      query = query.ilike('name', `%${filters.search}%`);
-    }
-
-    const { data, error } = await query.order('name', { ascending: true });
-
-    if (error) {
-      console.error('Error fetching exercises:', error);
-      return { success: false, exercises: [], error: error.message };
-    }
-
-    return { success: true, exercises: data || [] };
-  } catch (error) {
-    console.error('Error in getExercises:', error);
-    return { success: false, exercises: [], error: error.message };
-  }
+  return findExercises(filters);
 };
 
 /**
  * Get exercise by ID
  */
 export const getExerciseById = async (exerciseId) => {
-  try {
-    const { data, error } = await supabase
-      .from('exercises')
-      .select('*')
-      .eq('id', exerciseId)
-      .single();
-
-    if (error) {
-      console.error('Error fetching exercise:', error);
-      return { success: false, exercise: null, error: error.message };
-    }
-
-    return { success: true, exercise: data };
-  } catch (error) {
-    console.error('Error in getExerciseById:', error);
-    return { success: false, exercise: null, error: error.message };
-  }
+  return findExerciseById(exerciseId);
 };
 
 /**
@@ -96,7 +54,7 @@ export const getUserWeight = async (userId) => {
 
     return { success: true, weight: data.weight_kg || 70 };
   } catch (error) {
-    console.error('Error getting user weight:', error);
+    logger.error('Error getting user weight', { error });
     return { success: false, weight: 70 };
   }
 };
@@ -120,21 +78,64 @@ export const createWorkout = async (userId, startTime = null) => {
       .single();
 
     if (error) {
-      console.error('Error creating workout:', error);
+      logger.error('Error creating workout', { error });
       return { success: false, workout: null, error: error.message };
     }
 
     return { success: true, workout: data };
   } catch (error) {
-    console.error('Error in createWorkout:', error);
+    logger.error('Error in createWorkout', { error });
     return { success: false, workout: null, error: error.message };
   }
 };
 
 /**
  * Save workout with exercises and calculate calories
+ * Uses the gym_save_workout RPC so all logs and the workout totals are written in one transaction
  */
 export const saveWorkout = async (userId, workoutData) => {
+  try {
+    const { workoutId, exercises, userWeight } = workoutData;
+
+    const { data, error } = await supabase.rpc('gym_save_workout', {
+      p_user_id: userId,
+      p_workout_id: workoutId,
+      p_user_weight: userWeight,
+      p_exercises: exercises
+    });
+
+    if (error) {
+      // Fallback to the batched pipeline only if the RPC isn't installed yet; any other
+      // error may come from a rolled-back save and must not be retried outside the transaction
+      if (isMissingFunction(error)) {
+        logger.warn('gym_save_workout RPC not installed, falling back to batched save', { error });
+        return await saveWorkoutBatched(userId, workoutData);
+      }
+      logger.error('Error in gym_save_workout RPC', { error });
+      return { success: false, error: error.message };
+    }
+
+    if (!data || data.status === 'workout_not_found') {
+      return { success: false, error: 'Workout not found' };
+    }
+
+    return {
+      success: true,
+      workout: data.workout,
+      exerciseLogs: data.exercise_logs || [],
+      totalCalories: data.total_calories,
+      totalExercises: data.total_exercises
+    };
+  } catch (error) {
+    logger.error('Error in saveWorkout', { error });
+    return { success: false, error: error.message };
+  }
+};
+
+/**
+ * Save workout without the RPC: one MET lookup, one multi-row insert and one workout update
+ */
+const saveWorkoutBatched = async (userId, workoutData) => {
   try {
     const { workoutId, exercises, userWeight } = workoutData;
 
@@ -150,55 +151,65 @@ export const saveWorkout = async (userId, workoutData) => {
       return { success: false, error: 'Workout not found' };
     }
 
+    const totalExercises = exercises.length;
+
+    // Get MET values for all exercises at once
+    const exerciseIds = [...new Set(exercises.map(exercise => exercise.exerciseId))];
+    const { data: exerciseRows, error: exError } = await supabase
+      .from('exercises')
+      .select('id, met_value')
+      .in('id', exerciseIds);
+
+    if (exError) {
+      logger.error('Error fetching exercise MET values', { error: exError });
+      return { success: false, error: 'Failed to load exercises' };
+    }
+
+    const metById = new Map((exerciseRows || []).map(row => [row.id, row.met_value]));
+
     let totalCalories = 0;
-    let totalExercises = exercises.length;
-    const exerciseLogs = [];
-
-    // Process each exercise
-    for (const exercise of exercises) {
-      const { exerciseId, sets, reps, weight, duration } = exercise;
-
-      // Get exercise details for MET value
-      const { data: exerciseData, error: exError } = await supabase
-        .from('exercises')
-        .select('met_value')
-        .eq('id', exerciseId)
-        .single();
+    const logRows = [];
 
-      if (exError || !exerciseData) {
-        console.error('Exercise not found:', exerciseId);
-        continue;
+    exercises.forEach(({ exerciseId, sets, reps, weight, duration }) => {
+      if (!metById.has(exerciseId)) {
+        logger.error('Exercise not found', { exerciseId });
+        return;
       }
 
       // Calculate calories for this exercise
       const calories = calculateCalories(
-        exerciseData.met_value,
+        metById.get(exerciseId),
         userWeight,
         duration || 5 // Default 5 minutes if not provided
       );
 
       totalCalories += calories;
 
-      // Create workout log entry
+      logRows.push({
+        user_workout_id: workoutId,
+        exercise_id: exerciseId,
+        sets: sets || 1,
+        reps: reps || 1,
+        weight: weight || null,
+        duration_minutes: duration || 5,
+        calories: calories
+      });
+    });
+
+    // Create all workout log entries in one insert
+    let exerciseLogs = [];
+    if (logRows.length > 0) {
       const { data: logData, error: logError } = await supabase
         .from('user_workout_logs')
-        .insert([
-          {
-            user_workout_id: workoutId,
-            exercise_id: exerciseId,
-            sets: sets || 1,
-            reps: reps || 1,
-            weight: weight || null,
-            duration_minutes: duration || 5,
-            calories: calories
-          }
-        ])
-        .select()
-        .single();
+        .insert(logRows)
+        .select();
 
-      if (!logError && logData) {
-        exerciseLogs.push(logData);
+      if (logError) {
+        logger.error('Error creating workout logs', { error: logError });
+        return { success: false, error: 'Failed to save exercise logs' };
       }
+
+      exerciseLogs = logData || [];
     }
 
     // Calculate total duration
@@ -221,7 +232,7 @@ export const saveWorkout = async (userId, workoutData) => {
       .single();
 
     if (updateError) {
-      console.error('Error updating workout:', updateError);
+      logger.error('Error updating workout', { error: updateError });
       return { success: false, error: 'Failed to update workout' };
     }
 
@@ -233,58 +244,38 @@ export const saveWorkout = async (userId, workoutData) => {
       totalExercises
     };
   } catch (error) {
-    console.error('Error in saveWorkout:', error);
+    logger.error('Error in saveWorkoutBatched', { error });
     return { success: false, error: error.message };
   }
 };
 
 /**
  * Get user's workout progress (daily/weekly/monthly)
+ * Served from user_workout_daily_stats rollups: one row per day with completed workouts
  */
 export const getUserProgress = async (userId, period = 'week') => {
   try {
-    let startDate;
-    const endDate = new Date();
-    endDate.setHours(23, 59, 59, 999);
-
-    switch (period) {
-      case 'day':
-        startDate = new Date();
-        startDate.setHours(0, 0, 0, 0);
-        break;
-      case 'week':
-        startDate = new Date();
-        startDate.setDate(startDate.getDate() - 7);
-        startDate.setHours(0, 0, 0, 0);
-        break;
-      case 'month':
-        startDate = new Date();
-        startDate.setMonth(startDate.getMonth() - 1);
-        startDate.setHours(0, 0, 0, 0);
-        break;
-      default:
-        startDate = new Date();
-        startDate.setDate(startDate.getDate() - 7);
-        startDate.setHours(0, 0, 0, 0);
-    }
-
-    const { data, error } = await supabase
-      .from('user_workouts')
-      .select('workout_date, total_calories, total_exercises, total_duration_minutes')
-      .eq('user_id', userId)
-      .eq('status', 'completed')
-      .gte('workout_date', startDate.toISOString())
-      .lte('workout_date', endDate.toISOString())
-      .order('workout_date', { ascending: true });
+    const { data, error } = await supabase.rpc('gym_user_progress', {
+      p_user_id: userId,
+      p_period: period
+    });
 
     if (error) {
-      console.error('Error fetching progress:', error);
+      logger.error('Error fetching progress', { error });
       return { success: false, progress: [], error: error.message };
     }
 
-    return { success: true, progress: data || [] };
+    const progress = (data || []).map(day => ({
+      workout_date: day.stat_date,
+      workouts_count: day.workouts_count,
+      total_calories: day.total_calories,
+      total_exercises: day.total_exercises,
+      total_duration_minutes: day.total_duration_minutes
+    }));
+
+    return { success: true, progress };
   } catch (error) {
-    console.error('Error in getUserProgress:', error);
+    logger.error('Error in getUserProgress', { error });
     return { success: false, progress: [], error: error.message };
   }
 };
@@ -308,13 +299,13 @@ export const getUserWorkoutHistory = async (userId, limit = 50) => {
       .limit(limit);
 
     if (error) {
-      console.error('Error fetching workout history:', error);
+      logger.error('Error fetching workout history', { error });
       return { success: false, workouts: [], error: error.message };
     }
 
     return { success: true, workouts: data || [] };
   } catch (error) {
-    console.error('Error in getUserWorkoutHistory:', error);
+    logger.error('Error in getUserWorkoutHistory', { error });
     return { success: false, workouts: [], error: error.message };
   }
 };
@@ -340,13 +331,13 @@ export const getActiveWorkout = async (userId) => {
       .single();
 
     if (error && error.code !== 'PGRST116') {
-      console.error('Error fetching active workout:', error);
+      logger.error('Error fetching active workout', { error });
       return { success: false, workout: null, error: error.message };
     }
 
     return { success: true, workout: data || null };
   } catch (error) {
-    console.error('Error in getActiveWorkout:', error);
+    logger.error('Error in getActiveWorkout', { error });
     return { success: false, workout: null, error: error.message };
   }
 };
@@ -364,13 +355,13 @@ export const getUserGoals = async (userId) => {
       .order('created_at', { ascending: false });
 
     if (error) {
-      console.error('Error fetching goals:', error);
+      logger.error('Error fetching goals', { error });
       return { success: false, goals: [], error: error.message };
     }
 
     return { success: true, goals: data || [] };
   } catch (error) {
-    console.error('Error in getUserGoals:', error);
+    logger.error('Error in getUserGoals', { error });
     return { success: false, goals: [], error: error.message };
   }
 };
@@ -405,7 +396,7 @@ export const saveUserGoal = async (userId, goalData) => {
         .single();
 
       if (error) {
-        console.error('Error updating goal:', error);
+        logger.error('Error updating goal', { error });
         return { success: false, goal: null, error: error.message };
       }
 
@@ -424,82 +415,49 @@ export const saveUserGoal = async (userId, goalData) => {
         .single();
 
       if (error) {
-        console.error('Error creating goal:', error);
-        console.error('Goal data attempted:', { ...cleanGoalData, user_id: userId });
+        logger.error('Error creating goal', { error });
+        logger.error('Goal data attempted', { ...cleanGoalData, user_id: userId });
         return { success: false, goal: null, error: error.message };
       }
 
       return { success: true, goal: data };
     }
   } catch (error) {
-    console.error('Error in saveUserGoal:', error);
+    logger.error('Error in saveUserGoal', { error });
     return { success: false, goal: null, error: error.message };
   }
 };
 
 /**
  * Get workout statistics for user
+ * Aggregated from user_workout_daily_stats rollups in one query
  */
 export const getUserStats = async (userId) => {
   try {
-    // Get total workouts
-    const { count: totalWorkouts } = await supabase
-      .from('user_workouts')
-      .select('*', { count: 'exact', head: true })
-      .eq('user_id', userId)
-      .eq('status', 'completed');
-
-    // Get total calories burned (all time)
-    const { data: allWorkouts } = await supabase
-      .from('user_workouts')
-      .select('total_calories')
-      .eq('user_id', userId)
-      .eq('status', 'completed');
-
-    const totalCalories = allWorkouts?.reduce((sum, w) => sum + (w.total_calories || 0), 0) || 0;
-
-    // Get this week's stats
-    const weekStart = new Date();
-    weekStart.setDate(weekStart.getDate() - 7);
-    weekStart.setHours(0, 0, 0, 0);
-
-    const { data: weekWorkouts } = await supabase
-      .from('user_workouts')
-      .select('total_calories, total_exercises')
-      .eq('user_id', userId)
-      .eq('status', 'completed')
-      .gte('workout_date', weekStart.toISOString());
-
-    const weekCalories = weekWorkouts?.reduce((sum, w) => sum + (w.total_calories || 0), 0) || 0;
-    const weekWorkoutsCount = weekWorkouts?.length || 0;
-
-    // Get today's stats
-    const todayStart = new Date();
-    todayStart.setHours(0, 0, 0, 0);
+    const { data, error } = await supabase.rpc('gym_user_stats', {
+      p_user_id: userId
+    });
 
-    const { data: todayWorkouts } = await supabase
-      .from('user_workouts')
-      .select('total_calories, total_exercises')
-      .eq('user_id', userId)
-      .eq('status', 'completed')
-      .gte('workout_date', todayStart.toISOString());
+    if (error) {
+      logger.error('Error fetching user stats', { error });
+      return { success: false, stats: null, error: error.message };
+    }
 
-    const todayCalories = todayWorkouts?.reduce((sum, w) => sum + (w.total_calories || 0), 0) || 0;
-    const todayExercises = todayWorkouts?.reduce((sum, w) => sum + (w.total_exercises || 0), 0) || 0;
+    const row = (Array.isArray(data) ? data[0] : data) || {};
 
     return {
       success: true,
       stats: {
-        totalWorkouts: totalWorkouts || 0,
-        totalCalories,
-        weekCalories,
-        weekWorkouts: weekWorkoutsCount,
-        todayCalories,
-        todayExercises
+        totalWorkouts: row.total_workouts || 0,
+        totalCalories: row.total_calories || 0,
+        weekCalories: row.week_calories || 0,
+        weekWorkouts: row.week_workouts || 0,
+        todayCalories: row.today_calories || 0,
+        todayExercises: row.today_exercises || 0
       }
     };
   } catch (error) {
-    console.error('Error in getUserStats:', error);
+    logger.error('Error in getUserStats', { error });
     return { success: false, stats: null, error: error.message };
   }
 };
@@ -518,13 +476,13 @@ export const getUserGymRegistration = async (userId) => {
       .maybeSingle();
 
     if (error) {
-      console.error('Error getting user gym registration:', error);
+      logger.error('Error getting user gym registration', { error });
       return { success: false, registration: null, error: error.message };
     }
 
     return { success: true, registration: data };
   } catch (error) {
-    console.error('Error in getUserGymRegistration:', error);
+    logger.error('Error in getUserGymRegistration', { error });
     return { success: false, registration: null, error: error.message };
   }
 };
@@ -533,6 +491,11 @@ export const getUserGymRegistration = async (userId) => {
  * Check if user has active gym registration (paid and not expired)
  */
 export const checkGymRegistrationStatus = async (userId) => {
+  const cachedStatus = getCachedRegistrationStatus('gym', userId);
+  if (cachedStatus) {
+    return cachedStatus;
+  }
+
   try {
     const { success, registration } = await getUserGymRegistration(userId);
 
@@ -556,7 +519,7 @@ export const checkGymRegistrationStatus = async (userId) => {
                      registration.payment_status === 'succeeded' &&
                      !isPaymentDue;
 
-    return {
+    const status = {
       success: true,
       isRegistered: true,
       isActive,
@@ -568,8 +531,11 @@ export const checkGymRegistrationStatus = async (userId) => {
           : 'Gym registration is not active',
       registration
     };
+
+    setCachedRegistrationStatus('gym', userId, status);
+    return status;
   } catch (error) {
-    console.error('Error in checkGymRegistrationStatus:', error);
+    logger.error('Error in checkGymRegistrationStatus', { error });
     return {
       success: false,
       isRegistered: false,
@@ -627,13 +593,14 @@ export const createGymRegistration = async (registrationData) => {
       .single();
 
     if (error) {
-      console.error('Error creating gym registration:', error);
+      logger.error('Error creating gym registration', { error });
       return { success: false, registration: null, error: error.message };
     }
 
+    invalidateRegistrationStatus('gym', data.user_id);
     return { success: true, registration: data };
   } catch (error) {
-    console.error('Error in createGymRegistration:', error);
+    logger.error('Error in createGymRegistration', { error });
     return { success: false, registration: null, error: error.message };
   }
 };
@@ -651,13 +618,14 @@ export const updateGymRegistration = async (registrationId, updateData) => {
       .single();
 
     if (error) {
-      console.error('Error updating gym registration:', error);
+      logger.error('Error updating gym registration', { error });
       return { success: false, registration: null, error: error.message };
     }
 
+    invalidateRegistrationStatus('gym', data.user_id);
     return { success: true, registration: data };
   } catch (error) {
-    console.error('Error in updateGymRegistration:', error);
+    logger.error('Error in updateGymRegistration', { error });
     return { success: false, registration: null, error: error.message };
   }
 };
@@ -677,7 +645,7 @@ export const checkGymPaymentDueStatus = async () => {
       .in('status', ['active']);
 
     if (error) {
-      console.error('Error checking gym payment due status:', error);
+      logger.error('Error checking gym payment due status', { error });
       return { success: false, error: error.message };
     }
 
@@ -694,14 +662,16 @@ export const checkGymPaymentDueStatus = async () => {
         .in('id', ids);
 
       if (updateError) {
-        console.error('Error updating gym payment due status:', updateError);
+        logger.error('Error updating gym payment due status', { error: updateError });
         return { success: false, error: updateError.message };
       }
+
+      clearRegistrationStatusCache('gym');
     }
 
     return { success: true, overdueCount: overdueRegistrations.length };
   } catch (error) {
-    console.error('Error in checkGymPaymentDueStatus:', error);
+    logger.error('Error in checkGymPaymentDueStatus', { error });
     return { success: false, error: error.message };
   }
 };
@@ -718,13 +688,13 @@ export const createGymMonthlyPayment = async (paymentData) => {
       .single();
 
     if (error) {
-      console.error('Error creating gym monthly payment:', error);
+      logger.error('Error creating gym monthly payment', { error });
       return { success: false, payment: null, error: error.message };
     }
 
     return { success: true, payment: data };
   } catch (error) {
-    console.error('Error in createGymMonthlyPayment:', error);
+    logger.error('Error in createGymMonthlyPayment', { error });
     return { success: false, payment: null, error: error.message };
   }
 };
@@ -742,13 +712,13 @@ export const updateGymMonthlyPayment = async (paymentId, paymentData) => {
       .single();
 
     if (error) {
-      console.error('Error updating gym monthly payment:', error);
+      logger.error('Error updating gym monthly payment', { error });
       return { success: false, payment: null, error: error.message };
     }
 
     return { success: true, payment: data };
   } catch (error) {
-    console.error('Error in updateGymMonthlyPayment:', error);
+    logger.error('Error in updateGymMonthlyPayment', { error });
     return { success: false, payment: null, error: error.message };
   }
 };
@@ -766,17 +736,45 @@ export const getUserGymMonthlyPayments = async (userId, limit = 12) => {
       .limit(limit);
 
     if (error) {
-      console.error('Error getting gym monthly payments:', error);
+      logger.error('Error getting gym monthly payments', { error });
       return { success: false, payments: [], error: error.message };
     }
 
     return { success: true, payments: data || [] };
   } catch (error) {
-    console.error('Error in getUserGymMonthlyPayments:', error);
+    logger.error('Error in getUserGymMonthlyPayments', { error });
     return { success: false, payments: [], error: error.message };
   }
 };
 
+/**
+ * Update the live gym occupancy counter after a check-in.
+ * The first check-in of a day (or after a resync) seeds the counter with one count query.
+ */
+const recordGymCheckIn = async (sessionDate) => {
+  try {
+    if (getOccupancy('gym', GYM_OCCUPANCY_KEY, sessionDate) !== undefined) {
+      recordCheckIn('gym', GYM_OCCUPANCY_KEY, sessionDate);
+      return;
+    }
+
+    const { count, error } = await supabase
+      .from('gym_attendance')
+      .select('*', { count: 'exact', head: true })
+      .eq('session_date', sessionDate);
+
+    if (error) {
+      logger.error('Error counting gym attendance', { error });
+      return;
+    }
+
+    // Count already includes this check-in
+    recordCheckIn('gym', GYM_OCCUPANCY_KEY, sessionDate, count || 0);
+  } catch (error) {
+    logger.error('Error in recordGymCheckIn', { error });
+  }
+};
+
 /**
  * Process gym QR code scan for attendance
  */
@@ -793,15 +791,13 @@ export const getUserGymMonthlyPayments = async (userId, limit = 12) => {
  * 
  * @param {string} qrCodeValue - The QR code value from gym_qr_codes table
  * @param {object} user - The authenticated user object
+ * @param {object} [resolvedQRCode] - gym_qr_codes row already resolved by the caller
  * @returns {Promise<object>} Success/failure result with message
  */
-export const processGymQRScan = async (qrCodeValue, user) => {
+export const processGymQRScan = async (qrCodeValue, user, resolvedQRCode = null) => {
   try {
-    console.log('=== GYM QR SCAN PROCESSING ===');
-    console.log('QR Code:', qrCodeValue);
-    console.log('User:', user.id, user.email);
-    console.log('Target table: gym_attendance');
-    
+    logger.debug('Processing gym QR scan', { qrCodeValue, userId: user.id });
+
     // 1. Check if user has active gym registration
     const registrationStatus = await checkGymRegistrationStatus(user.id);
     if (!registrationStatus.isActive) {
@@ -812,15 +808,10 @@ export const processGymQRScan = async (qrCodeValue, user) => {
       };
     }
 
-    // 2. Validate QR code exists and is active
-    const { data: qrCode, error: qrError } = await supabase
-      .from('gym_qr_codes')
-      .select('*')
-      .eq('qr_code_value', qrCodeValue)
-      .eq('is_active', true)
-      .single();
+    // 2. Validate QR code exists and is active (in-memory QR registry)
+    const qrCode = resolvedQRCode || await resolveQRCodeForSport('gym', qrCodeValue);
 
-    if (qrError || !qrCode) {
+    if (!qrCode) {
       return {
         success: false,
         message: 'Invalid or inactive QR code'
@@ -847,13 +838,6 @@ export const processGymQRScan = async (qrCodeValue, user) => {
     }
 
     // 4. Create attendance record in gym_attendance table (NOT swimming_attendance)
-    console.log('→ Inserting into gym_attendance table (NOT swimming_attendance):', {
-      user_id: user.id,
-      registration_id: registrationStatus.registration.id,
-      session_date: sessionDate,
-      table: 'gym_attendance'
-    });
-
     const { data: attendance, error: attendanceError } = await supabase
       .from('gym_attendance') // ✓ Correct table for gym attendance
       .insert([
@@ -869,8 +853,7 @@ export const processGymQRScan = async (qrCodeValue, user) => {
       .single();
 
     if (attendanceError) {
-      console.error('✗ ERROR: Failed to insert into gym_attendance table:', attendanceError);
-      console.error('Error details:', JSON.stringify(attendanceError, null, 2));
+      logger.error('Failed to insert into gym_attendance table', { error: attendanceError });
       return {
         success: false,
         message: 'Failed to record attendance. Please try again.',
@@ -878,9 +861,10 @@ export const processGymQRScan = async (qrCodeValue, user) => {
       };
     }
 
-    console.log('✓ SUCCESS: Gym attendance record created in gym_attendance table');
-    console.log('Record ID:', attendance.id);
-    console.log('=== GYM QR SCAN COMPLETE ===');
+    logger.debug('Gym attendance recorded', { attendanceId: attendance.id });
+
+    // Push the live occupancy delta without holding up the scan response
+    recordGymCheckIn(sessionDate);
 
     // 5. Return success with details
     return {
@@ -893,7 +877,7 @@ export const processGymQRScan = async (qrCodeValue, user) => {
       }
     };
   } catch (error) {
-    console.error('Error in processGymQRScan:', error);
+    logger.error('Error in processGymQRScan', { error });
     return {
       success: false,
       message: 'An error occurred during check-in. Please try again.'
@@ -914,13 +898,13 @@ export const getUserGymAttendance = async (userId, limit = 30) => {
       .limit(limit);
 
     if (error) {
-      console.error('Error getting gym attendance:', error);
+      logger.error('Error getting gym attendance', { error });
       return { success: false, attendance: [], error: error.message };
     }
 
     return { success: true, attendance: data || [] };
   } catch (error) {
-    console.error('Error in getUserGymAttendance:', error);
+    logger.error('Error in getUserGymAttendance', { error });
     return { success: false, attendance: [], error: error.message };
   }
 };
@@ -933,7 +917,7 @@ export const getAllGymAttendanceToday = async (limit = 100, showAll = false) =>
     const today = new Date();
     const sessionDate = today.toISOString().split('T')[0]; // YYYY-MM-DD
 
-    console.log('Fetching gym attendance for date:', sessionDate, 'showAll:', showAll);
+    logger.debug('Fetching gym attendance', { sessionDate, showAll });
 
     // First, get all attendance records
     let attendanceQuery = supabase
@@ -950,12 +934,12 @@ export const getAllGymAttendanceToday = async (limit = 100, showAll = false) =>
       .limit(limit);
 
     if (attendanceError) {
-      console.error('Error getting gym attendance:', attendanceError);
+      logger.error('Error getting gym attendance', { error: attendanceError });
       return { success: false, attendance: [], error: attendanceError.message };
     }
 
     if (!attendanceData || attendanceData.length === 0) {
-      console.log(`No gym attendance records found for ${showAll ? 'all time' : sessionDate}`);
+      logger.debug('No gym attendance records found', { sessionDate, showAll });
       return { success: true, attendance: [] };
     }
 
@@ -969,7 +953,7 @@ export const getAllGymAttendanceToday = async (limit = 100, showAll = false) =>
       .in('id', userIds);
 
     if (usersError) {
-      console.error('Error fetching users:', usersError);
+      logger.error('Error fetching users', { error: usersError });
       // Return attendance without user data
       return { success: true, attendance: attendanceData };
     }
@@ -988,10 +972,10 @@ export const getAllGymAttendanceToday = async (limit = 100, showAll = false) =>
       user: userMap[entry.user_id] || null
     }));
 
-    console.log(`Found ${attendanceWithUsers.length} gym attendance records for ${showAll ? 'all time' : sessionDate}`);
+    logger.debug('Gym attendance records fetched', { count: attendanceWithUsers.length, sessionDate, showAll });
     return { success: true, attendance: attendanceWithUsers };
   } catch (error) {
-    console.error('Error in getAllGymAttendanceToday:', error);
+    logger.error('Error in getAllGymAttendanceToday', { error });
     return { success: false, attendance: [], error: error.message };
   }
 };
@@ -1,4 +1,5 @@
 import { supabaseAdmin as supabase } from '../config/supabase.js';
+import { logger } from '../utils/logger.js';
 
 /**
  * Get all time slots
@@ -21,13 +22,13 @@ export const getTimeSlots = async (filters = {}) => {
     const { data, error } = await query;
 
     if (error) {
-      console.error('Error getting time slots:', error);
+      logger.error('Error getting time slots', { error });
       return { success: false, timeSlots: [], error: error.message };
     }
 
     return { success: true, timeSlots: data || [] };
   } catch (error) {
-    console.error('Error in getTimeSlots:', error);
+    logger.error('Error in getTimeSlots', { error });
     return { success: false, timeSlots: [], error: error.message };
   }
 };
@@ -44,13 +45,13 @@ export const getTimeSlotById = async (id) => {
       .single();
 
     if (error) {
-      console.error('Error getting time slot:', error);
+      logger.error('Error getting time slot', { error });
       return { success: false, timeSlot: null, error: error.message };
     }
 
     return { success: true, timeSlot: data };
   } catch (error) {
-    console.error('Error in getTimeSlotById:', error);
+    logger.error('Error in getTimeSlotById', { error });
     return { success: false, timeSlot: null, error: error.message };
   }
 };
@@ -67,13 +68,13 @@ export const createTimeSlot = async (timeSlotData) => {
       .single();
 
     if (error) {
-      console.error('Error creating time slot:', error);
+      logger.error('Error creating time slot', { error });
       return { success: false, timeSlot: null, error: error.message };
     }
 
     return { success: true, timeSlot: data };
   } catch (error) {
-    console.error('Error in createTimeSlot:', error);
+    logger.error('Error in createTimeSlot', { error });
     return { success: false, timeSlot: null, error: error.message };
   }
 };
@@ -91,7 +92,7 @@ export const updateTimeSlot = async (id, timeSlotData) => {
       .single();
 
     if (error) {
-      console.error('Error updating time slot:', error);
+      logger.error('Error updating time slot', { error });
       return { success: false, timeSlot: null, error: error.message };
     }
 
@@ -101,7 +102,7 @@ export const updateTimeSlot = async (id, timeSlotData) => {
 
     return { success: true, timeSlot: data };
   } catch (error) {
-    console.error('Error in updateTimeSlot:', error);
+    logger.error('Error in updateTimeSlot', { error });
     return { success: false, timeSlot: null, error: error.message };
   }
 };
@@ -117,13 +118,13 @@ export const deleteTimeSlot = async (id) => {
       .eq('id', id);
 
     if (error) {
-      console.error('Error deleting time slot:', error);
+      logger.error('Error deleting time slot', { error });
       return { success: false, error: error.message };
     }
 
     return { success: true };
   } catch (error) {
-    console.error('Error in deleteTimeSlot:', error);
+    logger.error('Error in deleteTimeSlot', { error });
     return { success: false, error: error.message };
   }
 };
@@ -140,7 +141,7 @@ export const getRules = async () => {
       .order('display_order', { ascending: true });
 
     if (error) {
-      console.error('Error getting rules:', error);
+      logger.error('Error getting rules', { error });
       return { success: false, rules: [], error: error.message };
     }
 
@@ -154,7 +155,7 @@ export const getRules = async () => {
 
     return { success: true, rules: sortedRules };
   } catch (error) {
-    console.error('Error in getRules:', error);
+    logger.error('Error in getRules', { error });
     return { success: false, rules: [], error: error.message };
   }
 };
@@ -171,13 +172,13 @@ export const createRule = async (ruleData) => {
       .single();
 
     if (error) {
-      console.error('Error creating rule:', error);
+      logger.error('Error creating rule', { error });
       return { success: false, rule: null, error: error.message };
     }
 
     return { success: true, rule: data };
   } catch (error) {
-    console.error('Error in createRule:', error);
+    logger.error('Error in createRule', { error });
     return { success: false, rule: null, error: error.message };
   }
 };
@@ -195,7 +196,7 @@ export const updateRule = async (id, ruleData) => {
       .single();
 
     if (error) {
-      console.error('Error updating rule:', error);
+      logger.error('Error updating rule', { error });
       return { success: false, rule: null, error: error.message };
     }
 
@@ -205,7 +206,7 @@ export const updateRule = async (id, ruleData) => {
 
     return { success: true, rule: data };
   } catch (error) {
-    console.error('Error in updateRule:', error);
+    logger.error('Error in updateRule', { error });
     return { success: false, rule: null, error: error.message };
   }
 };
@@ -221,13 +222,13 @@ export const deleteRule = async (id) => {
       .eq('id', id);
 
     if (error) {
-      console.error('Error deleting rule:', error);
+      logger.error('Error deleting rule', { error });
       return { success: false, error: error.message };
     }
 
     return { success: true };
   } catch (error) {
-    console.error('Error in deleteRule:', error);
+    logger.error('Error in deleteRule', { error });
     return { success: false, error: error.message };
   }
 };
@@ -243,13 +244,13 @@ export const getEquipment = async () => {
       .order('name', { ascending: true });
 
     if (error) {
-      console.error('Error getting equipment:', error);
+      logger.error('Error getting equipment', { error });
       return { success: false, equipment: [], error: error.message };
     }
 
     return { success: true, equipment: data || [] };
   } catch (error) {
-    console.error('Error in getEquipment:', error);
+    logger.error('Error in getEquipment', { error });
     return { success: false, equipment: [], error: error.message };
   }
 };
@@ -266,13 +267,13 @@ export const createEquipment = async (equipmentData) => {
       .single();
 
     if (error) {
-      console.error('Error creating equipment:', error);
+      logger.error('Error creating equipment', { error });
       return { success: false, equipment: null, error: error.message };
     }
 
     return { success: true, equipment: data };
   } catch (error) {
-    console.error('Error in createEquipment:', error);
+    logger.error('Error in createEquipment', { error });
     return { success: false, equipment: null, error: error.message };
   }
 };
@@ -290,7 +291,7 @@ export const updateEquipment = async (id, equipmentData) => {
       .single();
 
     if (error) {
-      console.error('Error updating equipment:', error);
+      logger.error('Error updating equipment', { error });
       return { success: false, equipment: null, error: error.message };
     }
 
@@ -300,7 +301,7 @@ export const updateEquipment = async (id, equipmentData) => {
 
     return { success: true, equipment: data };
   } catch (error) {
-    console.error('Error in updateEquipment:', error);
+    logger.error('Error in updateEquipment', { error });
     return { success: false, equipment: null, error: error.message };
   }
 };
@@ -316,13 +317,13 @@ export const deleteEquipment = async (id) => {
       .eq('id', id);
 
     if (error) {
-      console.error('Error deleting equipment:', error);
+      logger.error('Error deleting equipment', { error });
       return { success: false, error: error.message };
     }
 
     return { success: true };
   } catch (error) {
-    console.error('Error in deleteEquipment:', error);
+    logger.error('Error in deleteEquipment', { error });
     return { success: false, error: error.message };
   }
 };
@@ -354,13 +355,13 @@ export const getAllRegistrations = async () => {
       .order('registered_at', { ascending: false });
 
     if (error) {
-      console.error('Error getting all registrations:', error);
+      logger.error('Error getting all registrations', { error });
       return { success: false, registrations: [], error: error.message };
     }
 
     return { success: true, registrations: data || [] };
   } catch (error) {
-    console.error('Error in getAllRegistrations:', error);
+    logger.error('Error in getAllRegistrations', { error });
     return { success: false, registrations: [], error: error.message };
   }
 };
@@ -377,13 +378,13 @@ export const getUserRegistration = async (userId) => {
       .maybeSingle();
 
     if (error) {
-      console.error('Error getting user registration:', error);
+      logger.error('Error getting user registration', { error });
       return { success: false, registration: null, error: error.message };
     }
 
     return { success: true, registration: data };
   } catch (error) {
-    console.error('Error in getUserRegistration:', error);
+    logger.error('Error in getUserRegistration', { error });
     return { success: false, registration: null, error: error.message };
   }
 };
@@ -435,13 +436,13 @@ export const createRegistration = async (registrationData) => {
       .single();
 
     if (error) {
-      console.error('Error creating registration:', error);
+      logger.error('Error creating registration', { error });
       return { success: false, registration: null, error: error.message };
     }
 
     return { success: true, registration: data };
   } catch (error) {
-    console.error('Error in createRegistration:', error);
+    logger.error('Error in createRegistration', { error });
     return { success: false, registration: null, error: error.message };
   }
 };
@@ -461,7 +462,7 @@ export const checkPaymentDueStatus = async () => {
       .in('status', ['paid', 'enrolled']);
 
     if (error) {
-      console.error('Error checking payment due status:', error);
+      logger.error('Error checking payment due status', { error });
       return { success: false, error: error.message };
     }
 
@@ -478,14 +479,14 @@ export const checkPaymentDueStatus = async () => {
         .in('id', ids);
 
       if (updateError) {
-        console.error('Error updating payment due status:', updateError);
+        logger.error('Error updating payment due status', { error: updateError });
         return { success: false, error: updateError.message };
       }
     }
 
     return { success: true, overdueCount: overdueRegistrations.length };
   } catch (error) {
-    console.error('Error in checkPaymentDueStatus:', error);
+    logger.error('Error in checkPaymentDueStatus', { error });
     return { success: false, error: error.message };
   }
 };
@@ -502,13 +503,13 @@ export const createMonthlyPayment = async (paymentData) => {
       .single();
 
     if (error) {
-      console.error('Error creating monthly payment:', error);
+      logger.error('Error creating monthly payment', { error });
       return { success: false, payment: null, error: error.message };
     }
 
     return { success: true, payment: data };
   } catch (error) {
-    console.error('Error in createMonthlyPayment:', error);
+    logger.error('Error in createMonthlyPayment', { error });
     return { success: false, payment: null, error: error.message };
   }
 };
@@ -526,13 +527,13 @@ export const updateMonthlyPayment = async (paymentId, paymentData) => {
       .single();
 
     if (error) {
-      console.error('Error updating monthly payment:', error);
+      logger.error('Error updating monthly payment', { error });
       return { success: false, payment: null, error: error.message };
     }
 
     return { success: true, payment: data };
   } catch (error) {
-    console.error('Error in updateMonthlyPayment:', error);
+    logger.error('Error in updateMonthlyPayment', { error });
     return { success: false, payment: null, error: error.message };
   }
 };
@@ -549,13 +550,13 @@ export const getUserMonthlyPayments = async (userId) => {
       .order('payment_month', { ascending: false });
 
     if (error) {
-      console.error('Error getting monthly payments:', error);
+      logger.error('Error getting monthly payments', { error });
       return { success: false, payments: [], error: error.message };
     }
 
     return { success: true, payments: data || [] };
   } catch (error) {
-    console.error('Error in getUserMonthlyPayments:', error);
+    logger.error('Error in getUserMonthlyPayments', { error });
     return { success: false, payments: [], error: error.message };
   }
 };
@@ -573,7 +574,7 @@ export const updateRegistration = async (id, registrationData) => {
       .single();
 
     if (error) {
-      console.error('Error updating registration:', error);
+      logger.error('Error updating registration', { error });
       return { success: false, registration: null, error: error.message };
     }
 
@@ -583,7 +584,7 @@ export const updateRegistration = async (id, registrationData) => {
 
     return { success: true, registration: data };
   } catch (error) {
-    console.error('Error in updateRegistration:', error);
+    logger.error('Error in updateRegistration', { error });
     return { success: false, registration: null, error: error.message };
   }
 };
@@ -613,13 +614,13 @@ export const getUserEnrollments = async (userId, filters = {}) => {
     const { data, error } = await query;
 
     if (error) {
-      console.error('Error getting enrollments:', error);
+      logger.error('Error getting enrollments', { error });
       return { success: false, enrollments: [], error: error.message };
     }
 
     return { success: true, enrollments: data || [] };
   } catch (error) {
-    console.error('Error in getUserEnrollments:', error);
+    logger.error('Error in getUserEnrollments', { error });
     return { success: false, enrollments: [], error: error.message };
   }
 };
@@ -662,13 +663,13 @@ export const createEnrollment = async (enrollmentData) => {
       .single();
 
     if (error) {
-      console.error('Error creating enrollment:', error);
+      logger.error('Error creating enrollment', { error });
       return { success: false, enrollment: null, error: error.message };
     }
 
     return { success: true, enrollment: data };
   } catch (error) {
-    console.error('Error in createEnrollment:', error);
+    logger.error('Error in createEnrollment', { error });
     return { success: false, enrollment: null, error: error.message };
   }
 };
@@ -688,13 +689,13 @@ export const getUserEquipmentPurchases = async (userId) => {
       .order('purchased_at', { ascending: false });
 
     if (error) {
-      console.error('Error getting equipment purchases:', error);
+      logger.error('Error getting equipment purchases', { error });
       return { success: false, purchases: [], error: error.message };
     }
 
     return { success: true, purchases: data || [] };
   } catch (error) {
-    console.error('Error in getUserEquipmentPurchases:', error);
+    logger.error('Error in getUserEquipmentPurchases', { error });
     return { success: false, purchases: [], error: error.message };
   }
 };
@@ -711,13 +712,13 @@ export const createEquipmentPurchase = async (purchaseData) => {
       .single();
 
     if (error) {
-      console.error('Error creating equipment purchase:', error);
+      logger.error('Error creating equipment purchase', { error });
       return { success: false, purchase: null, error: error.message };
     }
 
     return { success: true, purchase: data };
   } catch (error) {
-    console.error('Error in createEquipmentPurchase:', error);
+    logger.error('Error in createEquipmentPurchase', { error });
     return { success: false, purchase: null, error: error.message };
   }
 };
@@ -735,7 +736,7 @@ export const updateEquipmentPurchase = async (id, purchaseData) => {
       .single();
 
     if (error) {
-      console.error('Error updating equipment purchase:', error);
+      logger.error('Error updating equipment purchase', { error });
       return { success: false, purchase: null, error: error.message };
     }
 
@@ -745,7 +746,7 @@ export const updateEquipmentPurchase = async (id, purchaseData) => {
 
     return { success: true, purchase: data };
   } catch (error) {
-    console.error('Error in updateEquipmentPurchase:', error);
+    logger.error('Error in updateEquipmentPurchase', { error });
     return { success: false, purchase: null, error: error.message };
   }
 };
@@ -0,0 +1,299 @@
+import { randomUUID } from "node:crypto";
+import { supabaseAdmin as supabase } from '../config/supabase.js';
+import {
+  FIXTURE_FORMATS,
+  generateRoundRobin,
+  generateKnockout,
+  scheduleFixtures
+} from '../utils/fixtureScheduling.js';
+import { getPlayerCards } from './playerCardService.js';
+import { selectAllPages } from '../utils/pagination.js';
+import { logger } from '../utils/logger.js';
+
+/**
+ * League fixtures: generate round-robin or knockout fixtures from confirmed registrations,
+ * place them on free badminton courts and persist them in one transaction.
+ * Loading costs four reads (league, registrations, courts, bookings), paged by 1000 rows; the
+ * engine itself is pure (see utils/fixtureScheduling.js). Saving uploads the fixtures to
+ * league_fixtures_staging in chunks and swaps them in with one replace_league_fixtures call.
+ */
+
+const DEFAULT_SCHEDULE = {
+  slotMinutes: 30,
+  dayStartHour: 8,
+  dayEndHour: 22
+};
+
+// Rows per staging insert, and staging inserts in flight at once
+const STAGE_CHUNK_SIZE = 1000;
+const STAGE_CONCURRENCY = 4;
+
+// replace_league_fixtures statuses -> user-facing errors
+const SAVE_ERRORS = {
+  league_not_found: 'League not found',
+  has_results: 'Fixtures already have recorded results and cannot be regenerated',
+  incomplete_batch: 'Failed to save fixtures'
+};
+
+const toRow = (fixture, format) => ({
+  format,
+  round: fixture.round,
+  match_number: fixture.matchNumber,
+  player1_id: fixture.player1Id,
+  player2_id: fixture.player2Id,
+  court_id: fixture.courtId || null,
+  scheduled_start_time: fixture.startTime ? fixture.startTime.toISOString() : null,
+  scheduled_end_time: fixture.endTime ? fixture.endTime.toISOString() : null,
+  status: fixture.status,
+  winner_id: fixture.winnerId
+});
+
+/**
+ * Court bookings overlapping the window: active matches and other leagues' fixtures
+ */
+const getCourtBookings = async (leagueId, windowStart, windowEnd) => {
+  const [matchesResult, fixturesResult] = await Promise.all([
+    selectAllPages(() => supabase
+      .from('badminton_matches')
+      .select('court_id, scheduled_start_time, scheduled_end_time')
+      .in('status', ['scheduled', 'in_progress'])
+      .lt('scheduled_start_time', windowEnd.toISOString())
+      .gt('scheduled_end_time', windowStart.toISOString())
+      .order('id', { ascending: true })),
+    selectAllPages(() => supabase
+      .from('league_fixtures')
+      .select('court_id, scheduled_start_time, scheduled_end_time')
+      .eq('status', 'scheduled')
+      .neq('league_id', leagueId)
+      .not('court_id', 'is', null)
+      .lt('scheduled_start_time', windowEnd.toISOString())
+      .gt('scheduled_end_time', windowStart.toISOString())
+      .order('id', { ascending: true }))
+  ]);
+
+  if (matchesResult.error || fixturesResult.error) {
+    throw matchesResult.error || fixturesResult.error;
+  }
+
+  return [...(matchesResult.data || []), ...(fixturesResult.data || [])].map(booking => ({
+    courtId: booking.court_id,
+    start: new Date(booking.scheduled_start_time).getTime(),
+    end: new Date(booking.scheduled_end_time).getTime()
+  }));
+};
+
+/**
+ * Upload fixture rows to league_fixtures_staging under a new batch id
+ */
+const stageFixtures = async (leagueId, batchId, rows) => {
+  const chunks = [];
+  for (let i = 0; i < rows.length; i += STAGE_CHUNK_SIZE) {
+    chunks.push(rows.slice(i, i + STAGE_CHUNK_SIZE).map(row => ({ ...row, batch_id: batchId, league_id: leagueId })));
+  }
+
+  for (let i = 0; i < chunks.length; i += STAGE_CONCURRENCY) {
+    const results = await Promise.all(chunks.slice(i, i + STAGE_CONCURRENCY).map(chunk =>
+      supabase.from('league_fixtures_staging').insert(chunk)
+    ));
+
+    const failed = results.find(result => result.error);
+    if (failed) {
+      return failed.error;
+    }
+  }
+
+  return null;
+};
+
+/**
+ * Persist fixtures: stage them in chunks, then swap them in with replace_league_fixtures,
+ * which replaces the league's fixtures in one transaction (nothing changes if any step fails)
+ */
+const saveFixtures = async (leagueId, rows) => {
+  const batchId = randomUUID();
+
+  const stageError = await stageFixtures(leagueId, batchId, rows);
+  if (stageError) {
+    logger.error('Error staging league fixtures', { error: stageError });
+    const { error: discardError } = await supabase
+      .from('league_fixtures_staging')
+      .delete()
+      .eq('batch_id', batchId);
+    if (discardError) {
+      logger.warn('Error discarding staged league fixtures', { error: discardError });
+    }
+    return { success: false, error: stageError.message };
+  }
+
+  const { data, error } = await supabase.rpc('replace_league_fixtures', {
+    p_league_id: leagueId,
+    p_batch_id: batchId,
+    p_expected_count: rows.length
+  });
+
+  if (error || !data) {
+    logger.error('Error in replace_league_fixtures RPC', { error });
+    return { success: false, error: error?.message || 'Failed to save fixtures' };
+  }
+
+  if (data.status !== 'replaced') {
+    if (data.status === 'incomplete_batch') {
+      logger.error('Staged league fixtures incomplete', { expected: rows.length, staged: data.staged });
+    }
+    return { success: false, error: SAVE_ERRORS[data.status] || 'Failed to save fixtures' };
+  }
+
+  return { success: true };
+};
+
+/**
+ * Generate, schedule and save a league's fixtures (replaces any existing ones)
+ * @param {string} leagueId - League ID
+ * @param {Object} options
+ * @param {string} options.format - 'round_robin' or 'knockout'
+ * @param {string} [options.startDate] - First day (defaults to the league start date)
+ * @param {string} [options.endDate] - Last day (defaults to the league end date)
+ * @param {number} [options.slotMinutes] - Match length in minutes
+ * @param {number} [options.dayStartHour] - First match hour of each day
+ * @param {number} [options.dayEndHour] - Hour by which each day's last match ends
+ * @returns {Promise<Object>} - { success, fixtures, summary, error }
+ */
+export const generateLeagueFixtures = async (leagueId, options = {}) => {
+  try {
+    const format = options.format;
+    if (!FIXTURE_FORMATS.includes(format)) {
+      return { success: false, fixtures: [], error: `format must be one of: ${FIXTURE_FORMATS.join(', ')}` };
+    }
+
+    const slotMinutes = options.slotMinutes ?? DEFAULT_SCHEDULE.slotMinutes;
+    const dayStartHour = options.dayStartHour ?? DEFAULT_SCHEDULE.dayStartHour;
+    const dayEndHour = options.dayEndHour ?? DEFAULT_SCHEDULE.dayEndHour;
+    if (!(slotMinutes > 0) || !(dayStartHour >= 0) || !(dayEndHour <= 24) || dayStartHour * 60 + slotMinutes > dayEndHour * 60) {
+      return { success: false, fixtures: [], error: 'Invalid daily schedule' };
+    }
+
+    const [leagueResult, registrationsResult, courtsResult] = await Promise.all([
+      supabase
+        .from('leagues')
+        .select('id, start_date, end_date, status')
+        .eq('id', leagueId)
+        .single(),
+      selectAllPages(() => supabase
+        .from('league_registrations')
+        .select('user_id')
+        .eq('league_id', leagueId)
+        .eq('status', 'confirmed')
+        .order('confirmed_at', { ascending: true })
+        .order('user_id', { ascending: true })),
+      supabase
+        .from('badminton_courts')
+        .select('id')
+        .neq('status', 'maintenance') // 'occupied' only describes the court right now
+        .order('court_number', { ascending: true })
+    ]);
+
+    if (leagueResult.error || !leagueResult.data) {
+      return { success: false, fixtures: [], error: 'League not found' };
+    }
+    if (registrationsResult.error || courtsResult.error) {
+      logger.error('Error loading fixture inputs', { error: registrationsResult.error || courtsResult.error });
+      return { success: false, fixtures: [], error: 'Failed to load league participants or courts' };
+    }
+
+    const league = leagueResult.data;
+    if (league.status === 'cancelled') {
+      return { success: false, fixtures: [], error: 'League is cancelled' };
+    }
+
+    const participantIds = registrationsResult.data.map(registration => registration.user_id);
+    if (participantIds.length < 2) {
+      return { success: false, fixtures: [], error: 'At least two confirmed participants are required' };
+    }
+
+    const windowStart = new Date(options.startDate || league.start_date);
+    windowStart.setHours(0, 0, 0, 0);
+    const windowEnd = new Date(options.endDate || league.end_date);
+    windowEnd.setHours(24, 0, 0, 0);
+    if (Number.isNaN(windowStart.getTime()) || Number.isNaN(windowEnd.getTime()) || windowEnd <= windowStart) {
+      return { success: false, fixtures: [], error: 'Invalid date range' };
+    }
+
+    const fixtures = format === 'knockout'
+      ? generateKnockout(participantIds)
+      : generateRoundRobin(participantIds);
+
+    const scheduled = scheduleFixtures(fixtures, {
+      courtIds: courtsResult.data.map(court => court.id),
+      windowStart,
+      windowEnd,
+      slotMinutes,
+      dayStartMinutes: dayStartHour * 60,
+      dayEndMinutes: dayEndHour * 60,
+      busy: await getCourtBookings(leagueId, windowStart, windowEnd)
+    });
+
+    if (!scheduled.success) {
+      return { success: false, fixtures: [], error: scheduled.error };
+    }
+
+    const rows = fixtures.map(fixture => toRow(fixture, format));
+    const saved = await saveFixtures(leagueId, rows);
+    if (!saved.success) {
+      return { success: false, fixtures: [], error: saved.error };
+    }
+
+    const timed = fixtures.filter(fixture => fixture.startTime);
+    return {
+      success: true,
+      fixtures: rows,
+      summary: {
+        format,
+        participants: participantIds.length,
+        rounds: fixtures.reduce((max, fixture) => Math.max(max, fixture.round), 0),
+        matches: timed.length,
+        byes: fixtures.length - timed.length,
+        firstMatchAt: timed[0]?.startTime.toISOString() || null,
+        lastMatchAt: timed[timed.length - 1]?.endTime.toISOString() || null
+      }
+    };
+  } catch (error) {
+    logger.error('Error in generateLeagueFixtures', { error });
+    return { success: false, fixtures: [], error: error.message };
+  }
+};
+
+/**
+ * Get a league's fixtures with player cards and courts
+ * @param {string} leagueId - League ID
+ * @returns {Promise<Object>} - { success, fixtures, error }
+ */
+export const getLeagueFixtures = async (leagueId) => {
+  try {
+    const { data, error } = await selectAllPages(() => supabase
+      .from('league_fixtures')
+      .select('*, court:badminton_courts(id, name, court_number)')
+      .eq('league_id', leagueId)
+      .order('round', { ascending: true })
+      .order('match_number', { ascending: true }));
+
+    if (error) {
+      logger.error('Error getting league fixtures', { error });
+      return { success: false, fixtures: [], error: error.message };
+    }
+
+    const fixtures = data || [];
+    const cards = await getPlayerCards(fixtures.flatMap(fixture => [fixture.player1_id, fixture.player2_id]));
+
+    return {
+      success: true,
+      fixtures: fixtures.map(fixture => ({
+        ...fixture,
+        player1: cards.get(fixture.player1_id) || null,
+        player2: cards.get(fixture.player2_id) || null
+      }))
+    };
+  } catch (error) {
+    logger.error('Error in getLeagueFixtures', { error });
+    return { success: false, fixtures: [], error: error.message };
+  }
+};
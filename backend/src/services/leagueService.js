@@ -1,4 +1,21 @@
+import process from "node:process";
 import { supabaseAdmin as supabase } from '../config/supabase.js';
+import { selectAllPages } from '../utils/pagination.js';
+import { isMissingFunction } from '../utils/rpcErrors.js';
+import { logger } from '../utils/logger.js';
+
+/**
+ * League status maintenance
+ * Reads never write: they return the stored row with its status derived in memory by
+ * calculateLeagueStatus. The stored status is brought up to date by a sweeper that runs
+ * at startup and just after every local midnight, and by the edit paths (create/update/
+ * toggle), which persist the derived status of the row they just wrote.
+ */
+
+// Delay after midnight before sweeping, so the sweep lands on the new day
+const SWEEP_DELAY_MS = parseInt(process.env.LEAGUE_STATUS_SWEEP_DELAY_MS, 10) || 5 * 1000;
+
+let sweepTimer = null;
 
 /**
  * Calculate league status based on dates
@@ -50,6 +67,39 @@ const calculateLeagueStatus = (league) => {
   return 'upcoming';
 };
 
+/**
+ * Derive a league's status in memory (no database write)
+ * @param {Object} league - leagues row
+ * @returns {Object} - League with status recalculated from its dates
+ */
+const withDerivedStatus = (league) => {
+  return { ...league, status: calculateLeagueStatus(league) };
+};
+
+/**
+ * Persist the derived status of a league row that was just read or written
+ * @param {Object} league - leagues row
+ * @returns {Promise<Object>} - League with the derived status
+ */
+const persistLeagueStatus = async (league) => {
+  const newStatus = calculateLeagueStatus(league);
+  if (league.status === newStatus) {
+    return league;
+  }
+
+  const { error } = await supabase
+    .from('leagues')
+    .update({ status: newStatus })
+    .eq('id', league.id)
+    .eq('status', league.status);
+
+  if (error) {
+    logger.error('Error updating league status', { error });
+  }
+
+  return { ...league, status: newStatus };
+};
+
 /**
  * Update league status based on dates (auto-update)
  * @param {string} leagueId - League ID
@@ -60,7 +110,7 @@ const updateLeagueStatus = async (leagueId) => {
     // Get current league data
     const { data: league, error: fetchError } = await supabase
       .from('leagues')
-      .select('*')
+      .select('id, start_date, end_date, registration_deadline, registration_enabled, status')
       .eq('id', leagueId)
       .single();
 
@@ -68,143 +118,166 @@ const updateLeagueStatus = async (leagueId) => {
       return { success: false, error: 'League not found' };
     }
 
-    // Calculate new status
-    const newStatus = calculateLeagueStatus(league);
-
-    // Only update if status has changed
-    if (league.status !== newStatus) {
-      const { error: updateError } = await supabase
-        .from('leagues')
-        .update({ status: newStatus })
-        .eq('id', leagueId);
-
-      if (updateError) {
-        console.error('Error updating league status:', updateError);
-        return { success: false, error: updateError.message };
-      }
-
-      return { success: true, oldStatus: league.status, newStatus };
+    const updated = await persistLeagueStatus(league);
+    if (updated.status !== league.status) {
+      return { success: true, oldStatus: league.status, newStatus: updated.status };
     }
 
     return { success: true, status: league.status, unchanged: true };
   } catch (error) {
-    console.error('Error in updateLeagueStatus:', error);
+    logger.error('Error in updateLeagueStatus', { error });
     return { success: false, error: error.message };
   }
 };
 
 /**
  * Update all leagues statuses based on dates
- * @returns {Promise<Object>} - Result object
+ * One update_league_status() call (league_status_sweep.sql): a single UPDATE in the database
+ * derives each status from the row it writes, so no league list is read into Node.
+ * @returns {Promise<Object>} - { success, updated, error }
  */
 const updateAllLeaguesStatus = async () => {
   try {
-    // Get all non-cancelled leagues
-    const { data: leagues, error: fetchError } = await supabase
-      .from('leagues')
-      .select('id, start_date, end_date, registration_deadline, registration_enabled, status')
-      .neq('status', 'cancelled');
+    const { data, error } = await supabase.rpc('update_league_status');
 
-    if (fetchError) {
-      console.error('Error fetching leagues for status update:', fetchError);
-      return { success: false, error: fetchError.message };
+    if (error) {
+      logger.error('Error in update_league_status RPC', { error });
+      return { success: false, error: error.message };
     }
 
-    if (!leagues || leagues.length === 0) {
-      return { success: true, updated: 0 };
-    }
+    return { success: true, updated: data || 0 };
+  } catch (error) {
+    logger.error('Error in updateAllLeaguesStatus', { error });
+    return { success: false, error: error.message };
+  }
+};
 
-    let updatedCount = 0;
-    const updates = [];
-
-    // Calculate new status for each league
-    for (const league of leagues) {
-      const newStatus = calculateLeagueStatus(league);
-      if (league.status !== newStatus) {
-        updates.push({
-          id: league.id,
-          status: newStatus
-        });
-        updatedCount++;
-      }
-    }
+/**
+ * Milliseconds until the next local midnight plus the sweep delay
+ */
+const msUntilNextSweep = () => {
+  const nextMidnight = new Date();
+  nextMidnight.setHours(24, 0, 0, 0);
+  return nextMidnight.getTime() - Date.now() + SWEEP_DELAY_MS;
+};
 
-    // Batch update all leagues that need status changes
-    if (updates.length > 0) {
-      for (const update of updates) {
-        const { error: updateError } = await supabase
-          .from('leagues')
-          .update({ status: update.status })
-          .eq('id', update.id);
-
-        if (updateError) {
-          console.error(`Error updating league ${update.id}:`, updateError);
-        }
+/**
+ * Start the league status sweeper: one sweep now, then one after every local midnight
+ * Safe to call more than once; the sweep is idempotent, so running it in several
+ * processes only repeats a no-op read.
+ */
+const startLeagueStatusSweeper = () => {
+  if (sweepTimer) {
+    return;
+  }
+
+  const scheduleNext = () => {
+    sweepTimer = setTimeout(async () => {
+      const result = await updateAllLeaguesStatus();
+      if (result.success && result.updated > 0) {
+        logger.info(`League status sweep updated ${result.updated} leagues`);
       }
+      scheduleNext();
+    }, msUntilNextSweep());
+    sweepTimer.unref?.();
+  };
+
+  updateAllLeaguesStatus();
+  scheduleNext();
+};
+
+/**
+ * Stop the league status sweeper
+ */
+const stopLeagueStatusSweeper = () => {
+  clearTimeout(sweepTimer);
+  sweepTimer = null;
+};
+
+const COUNTED_REGISTRATION_STATUSES = ['registered', 'confirmed'];
+
+/**
+ * Attach participant counts to league rows
+ * Rows already carry the cached leagues.participant_count once league_participant_counts.sql
+ * is applied; otherwise the counts come from one grouped query for all leagues.
+ * @param {Array<Object>} leagues - leagues rows
+ * @returns {Promise<Array<Object>>} - Leagues with participant_count
+ * @throws The query error if the counts cannot be read (callers report it as a failure)
+ */
+const withParticipantCounts = async (leagues) => {
+  if (leagues.every(league => typeof league.participant_count === 'number')) {
+    return leagues;
+  }
+
+  const counts = new Map();
+  const leagueIds = leagues.map(league => league.id);
+
+  const { data: grouped, error: rpcError } = await supabase
+    .rpc('league_participant_counts_for', { p_league_ids: leagueIds });
+
+  if (!rpcError) {
+    (grouped || []).forEach(row => counts.set(row.league_id, row.participant_count));
+  } else if (isMissingFunction(rpcError)) {
+    // Function not installed: count one column of the matching registrations, page by page
+    const { data: registrations, error } = await selectAllPages(() => supabase
+      .from('league_registrations')
+      .select('id, league_id')
+      .in('league_id', leagueIds)
+      .in('status', COUNTED_REGISTRATION_STATUSES)
+      .order('id', { ascending: true }));
+
+    if (error) {
+      logger.error('Error getting league participant counts', { error });
+      throw error;
     }
 
-    return { success: true, updated: updatedCount, total: leagues.length };
-  } catch (error) {
-    console.error('Error in updateAllLeaguesStatus:', error);
-    return { success: false, error: error.message };
+    registrations.forEach(({ league_id }) => {
+      counts.set(league_id, (counts.get(league_id) || 0) + 1);
+    });
+  } else {
+    // Reporting 0 participants would hide the failure
+    logger.error('Error in league_participant_counts_for RPC', { error: rpcError });
+    throw rpcError;
   }
+
+  return leagues.map(league => ({
+    ...league,
+    participant_count: counts.get(league.id) || 0
+  }));
 };
 
 /**
- * Get all leagues (with auto-updated statuses and participant counts)
+ * Get all leagues (with derived statuses and participant counts)
  */
 export const getLeagues = async () => {
   try {
-    // First, update all league statuses based on dates
-    await updateAllLeaguesStatus();
-
-    // Then fetch all leagues
     const { data, error } = await supabase
       .from('leagues')
       .select('*')
       .order('start_date', { ascending: true });
 
     if (error) {
-      console.error('Error getting leagues:', error);
+      logger.error('Error getting leagues', { error });
       if (error.code === '42P01' || error.message?.includes('does not exist')) {
-        console.error('Leagues table does not exist. Please run the migration: backend/database/migrations/leagues_module.sql');
+        logger.error('Leagues table does not exist. Please run the migration: backend/database/migrations/leagues_module.sql');
       }
       return { success: false, leagues: [], error: error.message };
     }
 
-    // Get participant counts for each league
-    const leaguesWithCounts = await Promise.all(
-      (data || []).map(async (league) => {
-        // Count confirmed and registered participants
-        const { count } = await supabase
-          .from('league_registrations')
-          .select('*', { count: 'exact', head: true })
-          .eq('league_id', league.id)
-          .in('status', ['registered', 'confirmed']);
-
-        return {
-          ...league,
-          participant_count: count || 0
-        };
-      })
-    );
+    const leaguesWithCounts = (await withParticipantCounts(data || [])).map(withDerivedStatus);
 
     return { success: true, leagues: leaguesWithCounts };
   } catch (error) {
-    console.error('Error in getLeagues:', error);
+    logger.error('Error in getLeagues', { error });
     return { success: false, leagues: [] };
   }
 };
 
 /**
- * Get league by ID (with auto-updated status and participant count)
+ * Get league by ID (with derived status and participant count)
  */
 export const getLeagueById = async (id) => {
   try {
-    // First, update this league's status based on dates
-    await updateLeagueStatus(id);
-
-    // Then fetch the league
     const { data, error } = await supabase
       .from('leagues')
       .select('*')
@@ -212,25 +285,15 @@ export const getLeagueById = async (id) => {
       .single();
 
     if (error) {
-      console.error('Error getting league:', error);
+      logger.error('Error getting league', { error });
       return { success: false, league: null, error: error.message };
     }
 
-    // Get participant count
-    const { count } = await supabase
-      .from('league_registrations')
-      .select('*', { count: 'exact', head: true })
-      .eq('league_id', id)
-      .in('status', ['registered', 'confirmed']);
-
-    const leagueWithCount = {
-      ...data,
-      participant_count: count || 0
-    };
+    const [leagueWithCount] = (await withParticipantCounts([data])).map(withDerivedStatus);
 
     return { success: true, league: leagueWithCount };
   } catch (error) {
-    console.error('Error in getLeagueById:', error);
+    logger.error('Error in getLeagueById', { error });
     return { success: false, league: null };
   }
 };
@@ -261,13 +324,13 @@ export const createLeague = async (leagueData, createdBy) => {
       .single();
 
     if (error) {
-      console.error('Error creating league:', error);
+      logger.error('Error creating league', { error });
       return { success: false, league: null, error: error.message };
     }
 
-    return { success: true, league: data };
+    return { success: true, league: await persistLeagueStatus(data) };
   } catch (error) {
-    console.error('Error in createLeague:', error);
+    logger.error('Error in createLeague', { error });
     return { success: false, league: null, error: error.message };
   }
 };
@@ -297,7 +360,7 @@ export const updateLeague = async (id, leagueData) => {
       .single();
 
     if (error) {
-      console.error('Error updating league:', error);
+      logger.error('Error updating league', { error });
       return { success: false, league: null, error: error.message };
     }
 
@@ -305,9 +368,9 @@ export const updateLeague = async (id, leagueData) => {
       return { success: false, league: null, error: 'League not found' };
     }
 
-    return { success: true, league: data };
+    return { success: true, league: await persistLeagueStatus(data) };
   } catch (error) {
-    console.error('Error in updateLeague:', error);
+    logger.error('Error in updateLeague', { error });
     return { success: false, league: null, error: error.message };
   }
 };
@@ -323,13 +386,13 @@ export const deleteLeague = async (id) => {
       .eq('id', id);
 
     if (error) {
-      console.error('Error deleting league:', error);
+      logger.error('Error deleting league', { error });
       return { success: false, error: error.message };
     }
 
     return { success: true };
   } catch (error) {
-    console.error('Error in deleteLeague:', error);
+    logger.error('Error in deleteLeague', { error });
     return { success: false, error: error.message };
   }
 };
@@ -347,7 +410,7 @@ export const toggleLeagueRegistration = async (leagueId, enabled) => {
       .single();
 
     if (error) {
-      console.error('Error toggling league registration:', error);
+      logger.error('Error toggling league registration', { error });
       return { success: false, league: null, error: error.message };
     }
 
@@ -355,102 +418,59 @@ export const toggleLeagueRegistration = async (leagueId, enabled) => {
       return { success: false, league: null, error: 'League not found' };
     }
 
-    return { success: true, league: data };
+    return { success: true, league: await persistLeagueStatus(data) };
   } catch (error) {
-    console.error('Error in toggleLeagueRegistration:', error);
+    logger.error('Error in toggleLeagueRegistration', { error });
     return { success: false, league: null, error: error.message };
   }
 };
 
+// register_for_league statuses -> user-facing errors
+const REGISTRATION_ERRORS = {
+  league_not_found: 'League not found',
+  registration_disabled: 'Registration is currently disabled for this league',
+  deadline_passed: 'Registration deadline has passed',
+  league_started: 'League has already started',
+  already_registered: 'You are already registered for this league',
+  league_full: 'League has reached maximum participants'
+};
+
 /**
- * Register user for a league
+ * Register user for a league via the register_for_league RPC.
+ * Window, duplicate and capacity checks and the insert run in one transaction with the
+ * league row locked, so concurrent registrations cannot exceed max_participants.
+ * @returns {Object} - { success, registration, requiresPayment, fee, status, error }
  */
 export const registerUserForLeague = async (leagueId, userId) => {
   try {
-    // Check if league exists and registration is enabled
-    const { data: league, error: leagueError } = await supabase
-      .from('leagues')
-      .select('id, registration_enabled, max_participants, registration_deadline, start_date, registration_fee')
-      .eq('id', leagueId)
-      .single();
-
-    if (leagueError || !league) {
-      return { success: false, registration: null, error: 'League not found' };
+    const { data, error } = await supabase.rpc('register_for_league', {
+      p_league_id: leagueId,
+      p_user_id: userId
+    });
+
+    if (error || !data) {
+      logger.error('Error in register_for_league RPC', { error });
+      return { success: false, registration: null, status: 'error', error: error?.message || 'Failed to register for league' };
     }
 
-    // Check if registration is enabled
-    if (!league.registration_enabled) {
-      return { success: false, registration: null, error: 'Registration is currently disabled for this league' };
+    if (data.status !== 'registered') {
+      return {
+        success: false,
+        registration: null,
+        status: data.status,
+        error: REGISTRATION_ERRORS[data.status] || 'Failed to register for league'
+      };
     }
 
-    // Check if registration deadline has passed
-    const today = new Date();
-    const deadline = new Date(league.registration_deadline);
-    if (today > deadline) {
-      return { success: false, registration: null, error: 'Registration deadline has passed' };
-    }
-
-    // Check if league has started
-    const startDate = new Date(league.start_date);
-    if (today >= startDate) {
-      return { success: false, registration: null, error: 'League has already started' };
-    }
-
-    // Check if user is already registered
-    const { data: existingRegistration } = await supabase
-      .from('league_registrations')
-      .select('id')
-      .eq('league_id', leagueId)
-      .eq('user_id', userId)
-      .maybeSingle();
-
-    if (existingRegistration) {
-      return { success: false, registration: null, error: 'You are already registered for this league' };
-    }
-
-    // Check max participants if set
-    if (league.max_participants) {
-      const { count } = await supabase
-        .from('league_registrations')
-        .select('*', { count: 'exact', head: true })
-        .eq('league_id', leagueId)
-        .in('status', ['registered', 'confirmed']);
-
-      if (count >= league.max_participants) {
-        return { success: false, registration: null, error: 'League has reached maximum participants' };
-      }
-    }
-
-    // Register user (payment will be handled separately if fee > 0)
-    const registrationData = {
-      league_id: leagueId,
-      user_id: userId,
-      status: 'registered',
-      payment_status: league.registration_fee > 0 ? 'pending' : 'succeeded',
-      amount_paid: 0,
+    // Payment will be handled separately if fee > 0
+    return {
+      success: true,
+      registration: data.registration,
+      requiresPayment: data.requires_payment,
+      fee: data.fee
     };
-
-    // If fee is 0, mark as paid immediately
-    if (league.registration_fee === 0) {
-      registrationData.payment_status = 'succeeded';
-      registrationData.status = 'confirmed';
-      registrationData.confirmed_at = new Date().toISOString();
-    }
-
-    const { data, error } = await supabase
-      .from('league_registrations')
-      .insert([registrationData])
-      .select()
-      .single();
-
-    if (error) {
-      console.error('Error registering user for league:', error);
-      return { success: false, registration: null, error: error.message };
-    }
-
-    return { success: true, registration: data, requiresPayment: league.registration_fee > 0, fee: league.registration_fee };
   } catch (error) {
-    console.error('Error in registerUserForLeague:', error);
+    logger.error('Error in registerUserForLeague', { error });
     return { success: false, registration: null, error: error.message };
   }
 };
@@ -483,13 +503,13 @@ export const getLeagueRegistrations = async (leagueId) => {
       .order('registered_at', { ascending: false });
 
     if (error) {
-      console.error('Error getting league registrations:', error);
+      logger.error('Error getting league registrations', { error });
       return { success: false, registrations: [], error: error.message };
     }
 
     return { success: true, registrations: data || [] };
   } catch (error) {
-    console.error('Error in getLeagueRegistrations:', error);
+    logger.error('Error in getLeagueRegistrations', { error });
     return { success: false, registrations: [], error: error.message };
   }
 };
@@ -507,13 +527,13 @@ export const getUserLeagueRegistration = async (leagueId, userId) => {
       .maybeSingle();
 
     if (error) {
-      console.error('Error getting user league registration:', error);
+      logger.error('Error getting user league registration', { error });
       return { success: false, registration: null, error: error.message };
     }
 
     return { success: true, registration: data };
   } catch (error) {
-    console.error('Error in getUserLeagueRegistration:', error);
+    logger.error('Error in getUserLeagueRegistration', { error });
     return { success: false, registration: null, error: error.message };
   }
 };
@@ -531,13 +551,13 @@ export const cancelLeagueRegistration = async (leagueId, userId) => {
       .eq('status', 'registered');
 
     if (error) {
-      console.error('Error cancelling league registration:', error);
+      logger.error('Error cancelling league registration', { error });
       return { success: false, error: error.message };
     }
 
     return { success: true };
   } catch (error) {
-    console.error('Error in cancelLeagueRegistration:', error);
+    logger.error('Error in cancelLeagueRegistration', { error });
     return { success: false, error: error.message };
   }
 };
@@ -545,7 +565,13 @@ export const cancelLeagueRegistration = async (leagueId, userId) => {
 /**
  * Export status update functions for use in controllers or scheduled tasks
  */
-export { calculateLeagueStatus, updateLeagueStatus, updateAllLeaguesStatus };
+export {
+  calculateLeagueStatus,
+  updateLeagueStatus,
+  updateAllLeaguesStatus,
+  startLeagueStatusSweeper,
+  stopLeagueStatusSweeper
+};
 
 /**
  * Update league registration payment status
@@ -573,13 +599,13 @@ export const updateLeagueRegistrationPayment = async (registrationId, paymentDat
       .single();
 
     if (error) {
-      console.error('Error updating league registration payment:', error);
+      logger.error('Error updating league registration payment', { error });
       return { success: false, registration: null, error: error.message };
     }
 
     return { success: true, registration: data };
   } catch (error) {
-    console.error('Error in updateLeagueRegistrationPayment:', error);
+    logger.error('Error in updateLeagueRegistrationPayment', { error });
     return { success: false, registration: null, error: error.message };
   }
 };
@@ -599,13 +625,13 @@ export const getLeagueRegistrationById = async (registrationId) => {
       .single();
 
     if (error) {
-      console.error('Error getting league registration:', error);
+      logger.error('Error getting league registration', { error });
       return { success: false, registration: null, error: error.message };
     }
 
     return { success: true, registration: data };
   } catch (error) {
-    console.error('Error in getLeagueRegistrationById:', error);
+    logger.error('Error in getLeagueRegistrationById', { error });
     return { success: false, registration: null, error: error.message };
   }
 };
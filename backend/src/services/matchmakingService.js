@@ -0,0 +1,482 @@
+import process from "node:process";
+import { supabaseAdmin as supabase } from '../config/supabase.js';
+import {
+  loadBadmintonPresence,
+  createMatch,
+  getAvailableCourtsAtTime
+} from './badmintonService.js';
+import { emitMatchChange } from '../socket/socketServer.js';
+import { isClusterWorker } from '../socket/socketCluster.js';
+import { publish, subscribe } from '../utils/clusterBus.js';
+import { logger } from '../utils/logger.js';
+
+/**
+ * In-memory badminton matchmaking.
+ *
+ * Presence: players who set themselves available, minus players in scheduled/in-progress
+ * matches. Seeded from the database once, then kept in step by setUserAvailability,
+ * createMatch and endMatch, and re-seeded after MATCHMAKING_RESYNC_MS to pick up writes
+ * from other processes. Idle players live in a dense array so a random pick is O(1).
+ * In cluster mode every presence change is also applied by the other workers (cluster bus).
+ *
+ * Queues: one FIFO per match mode. When enough players are queued they are assigned a
+ * free court, the match is created and the players are notified via emitMatchChange.
+ * A single process keeps the queues in memory; cluster workers share them through the
+ * badminton_matchmaking_queue table (badminton_matchmaking_queue.sql), since a player's
+ * requests may be served by any worker.
+ */
+
+const RESYNC_MS = parseInt(process.env.MATCHMAKING_RESYNC_MS, 10) || 5 * 60 * 1000;
+const MATCH_DURATION_MS = 30 * 60 * 1000;
+export const PLAYERS_PER_MATCH = { '1v1': 2, '2v2': 4 };
+
+const availablePlayers = new Map(); // userId -> player
+const busyPlayers = new Set(); // userIds in scheduled/in-progress matches
+const idlePlayers = []; // userIds available and not busy
+const idlePositions = new Map(); // userId -> index in idlePlayers
+const queues = { '1v1': new Map(), '2v2': new Map() }; // mode -> Map<userId, queuedAt> (insertion order = FIFO)
+const draining = { '1v1': false, '2v2': false };
+
+let seededAt = 0;
+let seedingPromise = null;
+let mutationsSinceSeed = 0;
+
+const addIdle = (userId) => {
+  if (!idlePositions.has(userId)) {
+    idlePositions.set(userId, idlePlayers.length);
+    idlePlayers.push(userId);
+  }
+};
+
+// Swap-remove keeps removal O(1)
+const removeIdle = (userId) => {
+  const position = idlePositions.get(userId);
+  if (position === undefined) {
+    return;
+  }
+
+  const lastUserId = idlePlayers.pop();
+  if (lastUserId !== userId) {
+    idlePlayers[position] = lastUserId;
+    idlePositions.set(lastUserId, position);
+  }
+  idlePositions.delete(userId);
+};
+
+const leaveAllQueues = (userId) => {
+  queues['1v1'].delete(userId);
+  queues['2v2'].delete(userId);
+};
+
+const refreshIdle = (userId) => {
+  if (availablePlayers.has(userId) && !busyPlayers.has(userId)) {
+    addIdle(userId);
+  } else {
+    removeIdle(userId);
+    leaveAllQueues(userId);
+  }
+};
+
+const getMatchPlayerIds = (match) => {
+  return [
+    match.team1_player1_id,
+    match.team1_player2_id,
+    match.team2_player1_id,
+    match.team2_player2_id
+  ].filter(Boolean);
+};
+
+// ---------------------------------------------------------------------------
+// Queue storage: in memory for a single process, in Postgres for cluster workers
+// Entries are { userId, queuedAt }; takeGroup returns the oldest full group or null.
+// ---------------------------------------------------------------------------
+
+const QUEUE_TABLE = 'badminton_matchmaking_queue';
+
+const memoryQueue = {
+  join: async (userId, matchMode) => {
+    leaveAllQueues(userId);
+    queues[matchMode].set(userId, Date.now());
+  },
+
+  leave: async (userIds) => {
+    userIds.forEach(leaveAllQueues);
+  },
+
+  hasGroup: async (matchMode, groupSize) => queues[matchMode].size >= groupSize,
+
+  takeGroup: async (matchMode, groupSize) => {
+    const queue = queues[matchMode];
+    if (queue.size < groupSize) {
+      return null;
+    }
+
+    const group = [...queue.entries()].slice(0, groupSize).map(([userId, queuedAt]) => ({ userId, queuedAt }));
+    group.forEach(({ userId }) => queue.delete(userId));
+    return group;
+  },
+
+  // Put a group back at the head of the queue
+  requeue: async (matchMode, group) => {
+    const queue = queues[matchMode];
+    const rest = [...queue.entries()];
+    queue.clear();
+    group.forEach(({ userId }) => queue.set(userId, Date.now()));
+    rest.forEach(([userId, queuedAt]) => queue.set(userId, queuedAt));
+  },
+
+  position: async (userId, matchMode) => {
+    const queue = queues[matchMode];
+    return queue.has(userId) ? [...queue.keys()].indexOf(userId) + 1 : null;
+  }
+};
+
+const throwOnError = (error) => {
+  if (error) {
+    throw new Error(error.message);
+  }
+};
+
+const sharedQueue = {
+  join: async (userId, matchMode) => {
+    const { error } = await supabase
+      .from(QUEUE_TABLE)
+      .upsert({ user_id: userId, match_mode: matchMode, queued_at: new Date().toISOString() }, { onConflict: 'user_id' });
+    throwOnError(error);
+  },
+
+  leave: async (userIds) => {
+    const { error } = await supabase
+      .from(QUEUE_TABLE)
+      .delete()
+      .in('user_id', userIds);
+    throwOnError(error);
+  },
+
+  hasGroup: async (matchMode, groupSize) => {
+    const { count, error } = await supabase
+      .from(QUEUE_TABLE)
+      .select('user_id', { count: 'exact', head: true })
+      .eq('match_mode', matchMode);
+    throwOnError(error);
+    return (count || 0) >= groupSize;
+  },
+
+  takeGroup: async (matchMode, groupSize) => {
+    const { data, error } = await supabase.rpc('matchmaking_take_group', {
+      p_match_mode: matchMode,
+      p_group_size: groupSize
+    });
+    throwOnError(error);
+
+    if (!data?.length) {
+      return null;
+    }
+    return data
+      .map(row => ({ userId: row.user_id, queuedAt: row.queued_at }))
+      .sort((a, b) => Date.parse(a.queuedAt) - Date.parse(b.queuedAt));
+  },
+
+  // Original queued_at puts the group back at the head; a player who re-joined meanwhile keeps the new entry
+  requeue: async (matchMode, group) => {
+    if (group.length === 0) {
+      return;
+    }
+    const { error } = await supabase
+      .from(QUEUE_TABLE)
+      .upsert(
+        group.map(({ userId, queuedAt }) => ({ user_id: userId, match_mode: matchMode, queued_at: queuedAt })),
+        { onConflict: 'user_id', ignoreDuplicates: true }
+      );
+    throwOnError(error);
+  },
+
+  position: async (userId, matchMode) => {
+    const { data, error } = await supabase
+      .from(QUEUE_TABLE)
+      .select('queued_at')
+      .eq('user_id', userId)
+      .eq('match_mode', matchMode)
+      .maybeSingle();
+    throwOnError(error);
+    if (!data) {
+      return null;
+    }
+
+    const { count, error: countError } = await supabase
+      .from(QUEUE_TABLE)
+      .select('user_id', { count: 'exact', head: true })
+      .eq('match_mode', matchMode)
+      .lte('queued_at', data.queued_at);
+    throwOnError(countError);
+    return count;
+  }
+};
+
+const queueStore = isClusterWorker() ? sharedQueue : memoryQueue;
+
+/**
+ * Remove players who stopped being idle from the shared queue
+ * (the in-memory queues are pruned by refreshIdle)
+ */
+const leaveSharedQueue = (userIds) => {
+  if (queueStore === sharedQueue && userIds.length > 0) {
+    sharedQueue.leave(userIds).catch(error => logger.error('Error leaving matchmaking queue', { error }));
+  }
+};
+
+/**
+ * Seed presence from the database (single-flight)
+ */
+const ensurePresence = async () => {
+  if (seededAt && Date.now() - seededAt <= RESYNC_MS) {
+    return;
+  }
+
+  if (!seedingPromise) {
+    seedingPromise = (async () => {
+      try {
+        const mutationsAtStart = mutationsSinceSeed;
+        const result = await loadBadmintonPresence();
+        if (!result.success) {
+          throw new Error(result.error || 'Failed to load badminton presence');
+        }
+
+        availablePlayers.clear();
+        busyPlayers.clear();
+        idlePlayers.length = 0;
+        idlePositions.clear();
+
+        result.players.forEach(player => availablePlayers.set(player.id, player));
+        result.busyUserIds.forEach(userId => busyPlayers.add(userId));
+        availablePlayers.forEach((_, userId) => refreshIdle(userId));
+        Object.values(queues).forEach(queue => {
+          [...queue.keys()].forEach(userId => {
+            if (!idlePositions.has(userId)) {
+              queue.delete(userId);
+            }
+          });
+        });
+
+        // An update landed while we were reading; the snapshot may predate it, so re-seed next time
+        seededAt = mutationsSinceSeed === mutationsAtStart ? Date.now() : 0;
+        mutationsSinceSeed = 0;
+      } finally {
+        seedingPromise = null;
+      }
+    })();
+  }
+
+  await seedingPromise;
+};
+
+const applyPlayerPresence = ({ userId, isAvailable, player }) => {
+  mutationsSinceSeed++;
+
+  if (isAvailable && player) {
+    availablePlayers.set(userId, player);
+  } else {
+    availablePlayers.delete(userId);
+  }
+
+  refreshIdle(userId);
+};
+
+const applyMatchPresence = ({ playerIds, isActive }) => {
+  mutationsSinceSeed++;
+
+  playerIds.forEach(userId => {
+    if (isActive) {
+      busyPlayers.add(userId);
+    } else {
+      busyPlayers.delete(userId);
+    }
+    refreshIdle(userId);
+  });
+};
+
+// Presence changes made by other workers
+subscribe('matchmaking:player-presence', applyPlayerPresence);
+subscribe('matchmaking:match-presence', applyMatchPresence);
+
+/**
+ * Track a player's availability toggle
+ * @param {string} userId - User ID
+ * @param {boolean} isAvailable - New availability
+ * @param {Object} [player] - Player object (required when becoming available)
+ */
+export const setPlayerPresence = (userId, isAvailable, player = null) => {
+  const change = { userId, isAvailable, player };
+  applyPlayerPresence(change);
+  publish('matchmaking:player-presence', change);
+
+  if (!isAvailable) {
+    leaveSharedQueue([userId]);
+  }
+};
+
+/**
+ * Track players entering or leaving an active match
+ * @param {Object} match - badminton_matches row
+ * @param {boolean} isActive - true when the match is scheduled/in progress, false once it ends
+ */
+export const setMatchPresence = (match, isActive) => {
+  const change = { playerIds: getMatchPlayerIds(match), isActive };
+  applyMatchPresence(change);
+  publish('matchmaking:match-presence', change);
+
+  if (isActive) {
+    leaveSharedQueue(change.playerIds);
+  }
+};
+
+/**
+ * List idle players (available and not in an active match)
+ * @param {string} [excludeUserId] - User to leave out (usually the caller)
+ */
+export const listIdlePlayers = async (excludeUserId = null) => {
+  await ensurePresence();
+
+  return idlePlayers
+    .filter(userId => userId !== excludeUserId)
+    .map(userId => availablePlayers.get(userId));
+};
+
+/**
+ * Pick a random idle opponent in O(1)
+ * @returns {Object|null} - Player or null if nobody else is idle
+ */
+export const pickRandomOpponent = async (userId) => {
+  await ensurePresence();
+
+  const ownPosition = idlePositions.get(userId);
+  const candidates = idlePlayers.length - (ownPosition === undefined ? 0 : 1);
+  if (candidates <= 0) {
+    return null;
+  }
+
+  // Pick among the other players by skipping over our own slot
+  let index = Math.floor(Math.random() * candidates);
+  if (ownPosition !== undefined && index >= ownPosition) {
+    index++;
+  }
+
+  return availablePlayers.get(idlePlayers[index]) || null;
+};
+
+/**
+ * Create matches for as many full groups as there are free courts
+ */
+const drainQueue = async (matchMode) => {
+  if (draining[matchMode]) {
+    return;
+  }
+
+  draining[matchMode] = true;
+  try {
+    await ensurePresence();
+    const groupSize = PLAYERS_PER_MATCH[matchMode];
+
+    while (await queueStore.hasGroup(matchMode, groupSize)) {
+      const startTime = new Date();
+      const endTime = new Date(startTime.getTime() + MATCH_DURATION_MS);
+      const courtsResult = await getAvailableCourtsAtTime(startTime.toISOString(), endTime.toISOString());
+      if (!courtsResult.success || courtsResult.courts.length === 0) {
+        return;
+      }
+
+      // The queue may have changed while the courts were loading
+      const taken = await queueStore.takeGroup(matchMode, groupSize);
+      if (!taken) {
+        return;
+      }
+
+      // Players who stopped being idle after queueing are dropped; the rest wait for a full group
+      const group = taken.filter(({ userId }) => idlePositions.has(userId));
+      if (group.length < groupSize) {
+        await queueStore.requeue(matchMode, group);
+        continue;
+      }
+      const playerIds = group.map(({ userId }) => userId);
+
+      let match = null;
+      for (const court of courtsResult.courts) {
+        const result = await createMatch({
+          courtId: court.id,
+          team1Player1Id: playerIds[0],
+          team1Player2Id: matchMode === '2v2' ? playerIds[2] : null,
+          team2Player1Id: playerIds[1],
+          team2Player2Id: matchMode === '2v2' ? playerIds[3] : null,
+          matchMode,
+          createdBy: playerIds[0]
+        });
+
+        if (result.success) {
+          match = result.match;
+          break;
+        }
+
+        if (!result.conflict) {
+          logger.error('Error creating matchmaking match', { error: result.error });
+          break;
+        }
+      }
+
+      if (!match) {
+        // Put the group back at the head of the queue and wait for a court to free up
+        await queueStore.requeue(matchMode, group.filter(({ userId }) => idlePositions.has(userId)));
+        return;
+      }
+
+      emitMatchChange(match);
+    }
+  } catch (error) {
+    logger.error('Error in drainQueue', { error });
+  } finally {
+    draining[matchMode] = false;
+  }
+};
+
+/**
+ * Try to form matches in every queue (e.g. after a court frees up)
+ */
+export const drainQueues = () => {
+  Object.keys(queues).forEach(matchMode => {
+    drainQueue(matchMode);
+  });
+};
+
+/**
+ * Join the matchmaking queue for a mode
+ * @returns {Object} - { success, queued, position, error }
+ */
+export const joinQueue = async (userId, matchMode) => {
+  await ensurePresence();
+
+  if (!idlePositions.has(userId)) {
+    return {
+      success: false,
+      error: busyPlayers.has(userId)
+        ? 'You are already in an active match'
+        : 'Set yourself available before joining the queue'
+    };
+  }
+
+  await queueStore.join(userId, matchMode);
+  await drainQueue(matchMode);
+
+  const position = await queueStore.position(userId, matchMode);
+  return {
+    success: true,
+    queued: position !== null,
+    position
+  };
+};
+
+/**
+ * Leave any matchmaking queue
+ */
+export const leaveQueue = async (userId) => {
+  await queueStore.leave([userId]);
+  return { success: true };
+};
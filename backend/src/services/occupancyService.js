@@ -0,0 +1,122 @@
+import process from "node:process";
+import { emitOccupancyChange } from '../socket/socketServer.js';
+import { publish, subscribe } from '../utils/clusterBus.js';
+
+/**
+ * In-memory occupancy counters per (sport, time slot, session date).
+ * Seeded from the database on first read and kept current by check-in paths,
+ * which push deltas to the sport's Socket.IO room. In cluster mode each check-in is also
+ * applied to the other workers' counters through the cluster bus.
+ *
+ * Entries are re-seeded after OCCUPANCY_RESYNC_MS so writes made outside the API
+ * (manual SQL, another process) are picked up eventually.
+ */
+
+// Gym check-ins are not tied to a time slot, so they share one key per day
+export const GYM_OCCUPANCY_KEY = 'gym';
+
+const RESYNC_MS = parseInt(process.env.OCCUPANCY_RESYNC_MS, 10) || 5 * 60 * 1000;
+
+const occupancy = new Map(); // `${sport}|${slotKey}|${sessionDate}` -> { sport, slotKey, sessionDate, count, seededAt }
+let currentSessionDate = null;
+
+const toKey = (sport, slotKey, sessionDate) => `${sport}|${slotKey}|${sessionDate}`;
+
+/**
+ * Drop counters for past days once a new session date shows up
+ */
+const rollSessionDate = (sessionDate) => {
+  if (currentSessionDate === sessionDate) {
+    return;
+  }
+
+  if (currentSessionDate === null || sessionDate > currentSessionDate) {
+    currentSessionDate = sessionDate;
+    for (const [key, entry] of occupancy) {
+      if (entry.sessionDate < sessionDate) {
+        occupancy.delete(key);
+      }
+    }
+  }
+};
+
+/**
+ * Get an occupancy count if it is seeded and fresh
+ * @returns {number|undefined}
+ */
+export const getOccupancy = (sport, slotKey, sessionDate) => {
+  const entry = occupancy.get(toKey(sport, slotKey, sessionDate));
+
+  if (!entry || Date.now() - entry.seededAt > RESYNC_MS) {
+    return undefined;
+  }
+
+  return entry.count;
+};
+
+/**
+ * Seed an occupancy count from the database
+ * @param {number} readStartedAt - When the count query was issued; a check-in recorded
+ *   after that point is newer than the query result and is kept
+ */
+export const seedOccupancy = (sport, slotKey, sessionDate, count, readStartedAt = Date.now()) => {
+  rollSessionDate(sessionDate);
+
+  const key = toKey(sport, slotKey, sessionDate);
+  const entry = occupancy.get(key);
+  if (entry && entry.seededAt > readStartedAt) {
+    return;
+  }
+
+  occupancy.set(key, {
+    sport,
+    slotKey,
+    sessionDate,
+    count,
+    seededAt: Date.now()
+  });
+};
+
+/**
+ * Apply a check-in to the local counter
+ * @returns {number|null} - New count, or null if the slot is not seeded here
+ */
+const applyCheckIn = ({ sport, slotKey, sessionDate, authoritativeCount }) => {
+  rollSessionDate(sessionDate);
+
+  const key = toKey(sport, slotKey, sessionDate);
+  const entry = occupancy.get(key);
+
+  if (typeof authoritativeCount === 'number') {
+    occupancy.set(key, { sport, slotKey, sessionDate, count: authoritativeCount, seededAt: Date.now() });
+    return authoritativeCount;
+  }
+  if (entry) {
+    entry.count += 1;
+    return entry.count;
+  }
+  return null;
+};
+
+/**
+ * Record a successful check-in and push the delta to subscribers
+ * @param {string} sport - 'swimming' or 'gym'
+ * @param {string} slotKey - Time slot ID (GYM_OCCUPANCY_KEY for gym)
+ * @param {string} sessionDate - Session date (YYYY-MM-DD)
+ * @param {number} [authoritativeCount] - Count returned by the database, if known
+ */
+export const recordCheckIn = (sport, slotKey, sessionDate, authoritativeCount) => {
+  const checkIn = { sport, slotKey, sessionDate, authoritativeCount };
+  const currentCount = applyCheckIn(checkIn);
+  publish('occupancy:check-in', checkIn);
+
+  emitOccupancyChange(sport, {
+    timeSlotId: sport === 'gym' ? null : slotKey,
+    sessionDate,
+    delta: 1,
+    currentCount
+  });
+};
+
+// Check-ins recorded by other workers (their clients were already notified)
+subscribe('occupancy:check-in', applyCheckIn);
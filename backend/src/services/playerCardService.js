@@ -0,0 +1,168 @@
+import process from "node:process";
+import { supabaseAdmin as supabase } from '../config/supabase.js';
+import { createLruCache } from '../utils/lruCache.js';
+import { publish, subscribe } from '../utils/clusterBus.js';
+import { logger } from '../utils/logger.js';
+
+/**
+ * Player cards: the Player shape the badminton frontend expects, projected from users_metadata.
+ * Match rows carry up to four player joins; any join PostgREST could not resolve is filled
+ * from a short-lived card cache or from one batched users_metadata query per call.
+ */
+
+export const PLAYER_CARD_COLUMNS = 'id, name, email, profile_picture_url, cms_id, role, gender';
+
+export const MATCH_PLAYER_SLOTS = ['team1_player1', 'team1_player2', 'team2_player1', 'team2_player2'];
+
+// Embeds all four player joins for badminton_matches selects
+export const MATCH_PLAYERS_SELECT = MATCH_PLAYER_SLOTS
+  .map(slot => `${slot}:users_metadata!${slot}_id (${PLAYER_CARD_COLUMNS})`)
+  .join(',\n        ');
+
+const cardCache = createLruCache({
+  maxEntries: parseInt(process.env.PLAYER_CARD_CACHE_MAX_ENTRIES, 10) || 2000,
+  ttlMs: parseInt(process.env.PLAYER_CARD_CACHE_TTL_MS, 10) || 60 * 1000
+});
+
+/**
+ * Get initials from a name
+ */
+export const getInitials = (name) => {
+  if (!name) return '??';
+  const parts = name.trim().split(' ');
+  if (parts.length >= 2) {
+    return `${parts[0][0]}${parts[parts.length - 1][0]}`.toUpperCase();
+  }
+  return name.substring(0, 2).toUpperCase();
+};
+
+/**
+ * Project a users_metadata row into a player card
+ */
+export const toPlayerCard = (user) => ({
+  id: user.id,
+  name: user.name,
+  email: user.email,
+  avatar: user.profile_picture_url,
+  cms_id: user.cms_id || 0,
+  role: user.role || '',
+  gender: user.gender,
+  initials: getInitials(user.name),
+  available: true
+});
+
+/**
+ * Load player cards for the given user IDs: cache first, then one in() query for the rest
+ * @param {Array<string>} userIds - User IDs
+ * @returns {Map} - userId -> player card (missing users are left out)
+ */
+export const getPlayerCards = async (userIds) => {
+  const cards = new Map();
+  const missingIds = [];
+
+  new Set(userIds.filter(Boolean)).forEach(userId => {
+    const cached = cardCache.get(userId);
+    if (cached) {
+      cards.set(userId, cached);
+    } else {
+      missingIds.push(userId);
+    }
+  });
+
+  if (missingIds.length === 0) {
+    return cards;
+  }
+
+  try {
+    const { data, error } = await supabase
+      .from('users_metadata')
+      .select(PLAYER_CARD_COLUMNS)
+      .in('id', missingIds);
+
+    if (error) {
+      logger.error('Error fetching player cards', { error });
+      return cards;
+    }
+
+    (data || []).forEach(user => {
+      const card = toPlayerCard(user);
+      cardCache.set(user.id, card);
+      cards.set(user.id, card);
+    });
+  } catch (error) {
+    logger.error('Error in getPlayerCards', { error });
+  }
+
+  return cards;
+};
+
+/**
+ * Replace the four player joins of each match with player cards
+ * Joined rows are projected in place; unresolved joins are batch-loaded in one query
+ * @param {Array<Object>} matches - badminton_matches rows selected with MATCH_PLAYERS_SELECT
+ * @returns {Array<Object>} - Matches with team*_player* set to player cards (or null)
+ */
+export const projectMatchPlayers = async (matches) => {
+  const unresolvedIds = [];
+
+  const projected = matches.map(match => {
+    const transformed = { ...match };
+
+    MATCH_PLAYER_SLOTS.forEach(slot => {
+      const userId = match[`${slot}_id`];
+      const joined = match[slot];
+
+      if (!userId) {
+        return;
+      }
+
+      if (joined && typeof joined === 'object') {
+        const card = toPlayerCard(joined);
+        cardCache.set(card.id, card);
+        transformed[slot] = card;
+      } else {
+        transformed[slot] = null;
+        unresolvedIds.push(userId);
+      }
+    });
+
+    return transformed;
+  });
+
+  if (unresolvedIds.length > 0) {
+    const cards = await getPlayerCards(unresolvedIds);
+
+    projected.forEach(match => {
+      MATCH_PLAYER_SLOTS.forEach(slot => {
+        const userId = match[`${slot}_id`];
+        if (userId && !match[slot]) {
+          match[slot] = cards.get(userId) || null;
+        }
+      });
+    });
+  }
+
+  return projected;
+};
+
+/**
+ * Project a single match
+ */
+export const projectMatch = async (match) => {
+  const [projected] = await projectMatchPlayers([match]);
+  return projected;
+};
+
+/**
+ * Drop a cached card after the user's profile changes
+ */
+export const invalidatePlayerCard = (userId) => {
+  if (userId) {
+    cardCache.delete(userId);
+    publish('player-card:invalidate', { userId });
+  }
+};
+
+subscribe('player-card:invalidate', ({ userId }) => {
+  cardCache.delete(userId);
+});
@@ -0,0 +1,141 @@
+import process from "node:process";
+import { supabaseAdmin as supabase } from '../config/supabase.js';
+import { publish, subscribe } from '../utils/clusterBus.js';
+
+/**
+ * In-memory QR code registry.
+ * All active gym_qr_codes and swimming_qr_codes rows are loaded into one map keyed by
+ * qr_code_value and tagged with their sport and location, so routing a scan needs no
+ * database reads. The resolved record is passed on to the sport's scan processing.
+ *
+ * Call invalidateQRRegistry() after any write to either QR table (the admin QR CRUD does);
+ * the other cluster workers drop their copy too. Writes from other processes are picked up
+ * after QR_REGISTRY_TTL_MS; an unknown code triggers an early reload at most once per
+ * QR_REGISTRY_MISS_RELOAD_MS so a code created elsewhere works within seconds.
+ */
+
+const REGISTRY_TTL_MS = parseInt(process.env.QR_REGISTRY_TTL_MS, 10) || 5 * 60 * 1000;
+const MISS_RELOAD_MS = parseInt(process.env.QR_REGISTRY_MISS_RELOAD_MS, 10) || 30 * 1000;
+
+export const QR_SPORTS = ['gym', 'swimming'];
+
+let registry = null; // { loadedAt, codes: Map<qr_code_value, { sport, location, qrCode } | { sport: 'ambiguous' }> }
+let loadingPromise = null;
+let invalidations = 0;
+
+/**
+ * Build the registry from both QR tables
+ * A value present in both tables is recorded as ambiguous instead of picking one.
+ */
+const buildRegistry = (gymCodes, swimmingCodes) => {
+  const codes = new Map();
+
+  const add = (qrCode, sport, location) => {
+    if (codes.has(qrCode.qr_code_value)) {
+      codes.set(qrCode.qr_code_value, { sport: 'ambiguous' });
+      return;
+    }
+    codes.set(qrCode.qr_code_value, { sport, location: location || null, qrCode });
+  };
+
+  gymCodes.forEach(qrCode => add(qrCode, 'gym', qrCode.location));
+  swimmingCodes.forEach(qrCode => add(qrCode, 'swimming', qrCode.location_name));
+
+  return { loadedAt: Date.now(), codes };
+};
+
+/**
+ * Load all active QR codes (single-flight)
+ */
+const loadRegistry = () => {
+  if (!loadingPromise) {
+    const startedAt = invalidations;
+    const promise = (async () => {
+      try {
+        const [gymResult, swimmingResult] = await Promise.all([
+          supabase
+            .from('gym_qr_codes')
+            .select('*')
+            .eq('is_active', true),
+          supabase
+            .from('swimming_qr_codes')
+            .select('*')
+            .eq('is_active', true)
+        ]);
+
+        if (gymResult.error || swimmingResult.error) {
+          throw new Error((gymResult.error || swimmingResult.error).message);
+        }
+
+        const loaded = buildRegistry(gymResult.data || [], swimmingResult.data || []);
+        // Don't publish a snapshot read before an invalidation
+        if (startedAt === invalidations) {
+          registry = loaded;
+        }
+        return loaded;
+      } finally {
+        if (loadingPromise === promise) {
+          loadingPromise = null;
+        }
+      }
+    })();
+    loadingPromise = promise;
+  }
+
+  return loadingPromise;
+};
+
+/**
+ * Get the current registry, reloading it when missing or expired
+ */
+const getRegistry = async () => {
+  if (!registry || Date.now() - registry.loadedAt > REGISTRY_TTL_MS) {
+    return loadRegistry();
+  }
+  return registry;
+};
+
+/**
+ * Resolve a scanned QR code value
+ * @param {string} qrCodeValue - Scanned value
+ * @returns {Promise<Object|null>} - { sport: 'gym'|'swimming', location, qrCode },
+ *   { sport: 'ambiguous' } if the value exists in both tables, or null if unknown/inactive
+ */
+export const resolveQRCode = async (qrCodeValue) => {
+  let current = await getRegistry();
+  let entry = current.codes.get(qrCodeValue);
+
+  if (!entry && Date.now() - current.loadedAt > MISS_RELOAD_MS) {
+    current = await loadRegistry();
+    entry = current.codes.get(qrCodeValue);
+  }
+
+  return entry || null;
+};
+
+/**
+ * Resolve a QR code value for one sport
+ * @param {string} sport - 'gym' or 'swimming'
+ * @param {string} qrCodeValue - Scanned value
+ * @returns {Promise<Object|null>} - Active QR row of that sport, or null
+ */
+export const resolveQRCodeForSport = async (sport, qrCodeValue) => {
+  const entry = await resolveQRCode(qrCodeValue);
+  return entry?.sport === sport ? entry.qrCode : null;
+};
+
+/**
+ * Drop the registry so the next scan reloads it (call after QR code writes)
+ */
+const dropRegistry = () => {
+  invalidations += 1;
+  registry = null;
+  loadingPromise = null;
+};
+
+export const invalidateQRRegistry = () => {
+  dropRegistry();
+  publish('qr-registry:invalidate');
+};
+
+subscribe('qr-registry:invalidate', dropRegistry);
@@ -1,25 +1,26 @@
 import Stripe from 'stripe';
 import dotenv from 'dotenv';
+import { logger } from '../utils/logger.js';
 
 dotenv.config();
 
 const stripeSecretKey = process.env.STRIPE_SECRET_KEY || '';
 
 if (!stripeSecretKey) {
-  console.error('❌ ERROR: STRIPE_SECRET_KEY not found in environment variables.');
-  console.error('   Please add STRIPE_SECRET_KEY to your .env file');
-  console.error('   Get it from: https://dashboard.stripe.com/test/apikeys');
+  logger.error('❌ ERROR: STRIPE_SECRET_KEY not found in environment variables.');
+  logger.error('   Please add STRIPE_SECRET_KEY to your .env file');
+  logger.error('   Get it from: https://dashboard.stripe.com/test/apikeys');
 } else if (!stripeSecretKey.startsWith('sk_test_') && !stripeSecretKey.startsWith('sk_live_')) {
-  console.error('❌ ERROR: STRIPE_SECRET_KEY is invalid!');
-  console.error('   Stripe secret keys must start with "sk_test_" (test) or "sk_live_" (production)');
-  console.error('   Your key starts with:', stripeSecretKey.substring(0, 10) + '...');
-  console.error('   This is NOT a valid Stripe key format.');
-  console.error('   Get your key from: https://dashboard.stripe.com/test/apikeys');
-  console.error('');
-  console.error('   Common mistakes:');
-  console.error('   - Using webhook secret (whsec_...) as secret key');
-  console.error('   - Using publishable key (pk_...) as secret key');
-  console.error('   - Using a key from a different service');
+  logger.error('❌ ERROR: STRIPE_SECRET_KEY is invalid!');
+  logger.error('   Stripe secret keys must start with "sk_test_" (test) or "sk_live_" (production)');
+  logger.error('   Your key starts with', { keyPrefix: stripeSecretKey.substring(0, 10) + '...' });
+  logger.error('   This is NOT a valid Stripe key format.');
+  logger.error('   Get your key from: https://dashboard.stripe.com/test/apikeys');
+  logger.error('');
+  logger.error('   Common mistakes:');
+  logger.error('   - Using webhook secret (whsec_...) as secret key');
+  logger.error('   - Using publishable key (pk_...) as secret key');
+  logger.error('   - Using a key from a different service');
 }
 
 const stripe = stripeSecretKey && (stripeSecretKey.startsWith('sk_test_') || stripeSecretKey.startsWith('sk_live_'))
@@ -29,7 +30,7 @@ const stripe = stripeSecretKey && (stripeSecretKey.startsWith('sk_test_') || str
   : null;
 
 if (!stripe) {
-  console.error('⚠️  Stripe client not initialized. Payment features will not work.');
+  logger.error('⚠️  Stripe client not initialized. Payment features will not work.');
 }
 
 /**
@@ -53,7 +54,7 @@ export const createRegistrationPaymentIntent = async (amount, userId, registrati
 
     return { success: true, paymentIntent };
   } catch (error) {
-    console.error('Error creating payment intent:', error);
+    logger.error('Error creating payment intent', { error });
     return { success: false, error: error.message };
   }
 };
@@ -94,7 +95,7 @@ export const createRegistrationCheckoutSession = async (amount, userId, registra
 
     return { success: true, session };
   } catch (error) {
-    console.error('Error creating checkout session:', error);
+    logger.error('Error creating checkout session', { error });
     return { success: false, error: error.message };
   }
 };
@@ -136,7 +137,7 @@ export const createLeagueCheckoutSession = async (amount, userId, registrationId
 
     return { success: true, session };
   } catch (error) {
-    console.error('Error creating league checkout session:', error);
+    logger.error('Error creating league checkout session', { error });
     return { success: false, error: error.message };
   }
 };
@@ -179,7 +180,7 @@ export const createMonthlyPaymentCheckoutSession = async (amount, userId, regist
 
     return { success: true, session };
   } catch (error) {
-    console.error('Error creating monthly payment checkout session:', error);
+    logger.error('Error creating monthly payment checkout session', { error });
     return { success: false, error: error.message };
   }
 };
@@ -220,7 +221,7 @@ export const createGymRegistrationCheckoutSession = async (amount, userId, regis
 
     return { success: true, session };
   } catch (error) {
-    console.error('Error creating gym registration checkout session:', error);
+    logger.error('Error creating gym registration checkout session', { error });
     return { success: false, error: error.message };
   }
 };
@@ -263,7 +264,7 @@ export const createGymMonthlyPaymentCheckoutSession = async (amount, userId, reg
 
     return { success: true, session };
   } catch (error) {
-    console.error('Error creating gym monthly payment checkout session:', error);
+    logger.error('Error creating gym monthly payment checkout session', { error });
     return { success: false, error: error.message };
   }
 };
@@ -309,7 +310,7 @@ export const createSwimmingRegistrationCheckoutSession = async (amount, userId,
 
     return { success: true, session };
   } catch (error) {
-    console.error('Error creating swimming registration checkout session:', error);
+    logger.error('Error creating swimming registration checkout session', { error });
     return { success: false, error: error.message };
   }
 };
@@ -352,7 +353,7 @@ export const createSwimmingMonthlyPaymentCheckoutSession = async (amount, userId
 
     return { success: true, session };
   } catch (error) {
-    console.error('Error creating swimming monthly payment checkout session:', error);
+    logger.error('Error creating swimming monthly payment checkout session', { error });
     return { success: false, error: error.message };
   }
 };
@@ -379,7 +380,7 @@ export const createEquipmentPaymentIntent = async (amount, userId, purchaseId, e
 
     return { success: true, paymentIntent };
   } catch (error) {
-    console.error('Error creating equipment payment intent:', error);
+    logger.error('Error creating equipment payment intent', { error });
     return { success: false, error: error.message };
   }
 };
@@ -421,7 +422,7 @@ export const createEquipmentCheckoutSession = async (amount, userId, purchaseId,
 
     return { success: true, session };
   } catch (error) {
-    console.error('Error creating equipment checkout session:', error);
+    logger.error('Error creating equipment checkout session', { error });
     return { success: false, error: error.message };
   }
 };
@@ -434,7 +435,7 @@ export const verifyPaymentIntent = async (paymentIntentId) => {
     const paymentIntent = await stripe.paymentIntents.retrieve(paymentIntentId);
     return { success: true, paymentIntent };
   } catch (error) {
-    console.error('Error verifying payment intent:', error);
+    logger.error('Error verifying payment intent', { error });
     return { success: false, error: error.message };
   }
 };
@@ -447,7 +448,7 @@ export const verifyCheckoutSession = async (sessionId) => {
     const session = await stripe.checkout.sessions.retrieve(sessionId);
     return { success: true, session };
   } catch (error) {
-    console.error('Error verifying checkout session:', error);
+    logger.error('Error verifying checkout session', { error });
     return { success: false, error: error.message };
   }
 };
@@ -468,7 +469,7 @@ export const getCheckoutSessionUrl = async (sessionId) => {
       return { success: false, error: 'Session URL not available. Session may be expired.' };
     }
   } catch (error) {
-    console.error('Error getting checkout session URL:', error);
+    logger.error('Error getting checkout session URL', { error });
     return { success: false, error: error.message };
   }
 };
@@ -489,7 +490,7 @@ export const handleWebhookEvent = async (event) => {
         return { success: true, type: 'unknown', data: event.data.object };
     }
   } catch (error) {
-    console.error('Error handling webhook event:', error);
+    logger.error('Error handling webhook event', { error });
     return { success: false, error: error.message };
   }
 };
@@ -1,12 +1,39 @@
+import process from "node:process";
 import { supabaseAdmin as supabase } from '../config/supabase.js';
-import { determineTimeSlot, getTodayDate } from '../utils/timeSlotDetermination.js';
-import { validateUserEligibility } from '../utils/swimmingValidation.js';
+import {
+  getCachedRegistrationStatus,
+  setCachedRegistrationStatus,
+  invalidateRegistrationStatus
+} from '../utils/registrationStatusCache.js';
+import { getOccupancy, seedOccupancy, recordCheckIn } from './occupancyService.js';
+import { emitWaitlistPromotion } from '../socket/socketServer.js';
+import { resolveQRCodeForSport } from './qrRegistryService.js';
+import {
+  getCompiledSchedule,
+  getEligibleSlotIndex,
+  lookupTimeSlot,
+  getTodayDate
+} from '../utils/timeSlotDetermination.js';
+import { selectAllPages } from '../utils/pagination.js';
+import { isMissingFunction } from '../utils/rpcErrors.js';
+import { logger } from '../utils/logger.js';
+
+// How often expired waitlist reservations are released when nobody joins, leaves or edits the slot
+const WAITLIST_SWEEP_INTERVAL_MS = parseInt(process.env.WAITLIST_SWEEP_INTERVAL_MS, 10) || 60 * 1000;
+
+let waitlistSweepTimer = null;
 
 /**
  * Get current attendance count for a time slot
  */
 export const getAttendanceCount = async (timeSlotId, sessionDate) => {
+  const cachedCount = getOccupancy('swimming', timeSlotId, sessionDate);
+  if (cachedCount !== undefined) {
+    return { success: true, count: cachedCount };
+  }
+
   try {
+    const readStartedAt = Date.now();
     const { count, error } = await supabase
       .from('swimming_attendance')
       .select('*', { count: 'exact', head: true })
@@ -14,17 +41,134 @@ export const getAttendanceCount = async (timeSlotId, sessionDate) => {
       .eq('session_date', sessionDate);
 
     if (error) {
-      console.error('Error getting attendance count:', error);
+      logger.error('Error getting attendance count', { error });
       return { success: false, count: 0 };
     }
 
+    seedOccupancy('swimming', timeSlotId, sessionDate, count || 0, readStartedAt);
     return { success: true, count: count || 0 };
   } catch (error) {
-    console.error('Error in getAttendanceCount:', error);
+    logger.error('Error in getAttendanceCount', { error });
     return { success: false, count: 0 };
   }
 };
 
+/**
+ * Get attendance counts for several time slots in a single query
+ * @param {Array<string>} timeSlotIds - Time slot IDs
+ * @param {string} sessionDate - Session date (YYYY-MM-DD)
+ * @returns {Object} - { success, counts } where counts maps time slot ID to count
+ */
+export const getAttendanceCounts = async (timeSlotIds, sessionDate) => {
+  const counts = {};
+  const missingIds = [];
+
+  // Serve seeded slots from the in-memory occupancy map
+  timeSlotIds.forEach(id => {
+    const cachedCount = getOccupancy('swimming', id, sessionDate);
+    if (cachedCount === undefined) {
+      counts[id] = 0;
+      missingIds.push(id);
+    } else {
+      counts[id] = cachedCount;
+    }
+  });
+
+  if (missingIds.length === 0) {
+    return { success: true, counts };
+  }
+
+  const readStartedAt = Date.now();
+  const seedMissing = () => {
+    missingIds.forEach(id => seedOccupancy('swimming', id, sessionDate, counts[id], readStartedAt));
+  };
+
+  try {
+    const { data, error } = await supabase.rpc('swim_attendance_counts', {
+      p_session_date: sessionDate,
+      p_time_slot_ids: missingIds
+    });
+
+    if (!error) {
+      (data || []).forEach(row => {
+        counts[row.time_slot_id] = row.attendance_count;
+      });
+
+      seedMissing();
+      return { success: true, counts };
+    }
+
+    if (!isMissingFunction(error)) {
+      logger.error('Error in swim_attendance_counts RPC', { error });
+      return { success: false, counts };
+    }
+
+    // Fallback to grouping in Node only if the RPC isn't installed yet (still one query)
+    logger.warn('swim_attendance_counts RPC not installed, counting in Node', { error });
+    const { data: rows, error: fallbackError } = await supabase
+      .from('swimming_attendance')
+      .select('time_slot_id')
+      .eq('session_date', sessionDate)
+      .in('time_slot_id', missingIds);
+
+    if (fallbackError) {
+      logger.error('Error getting attendance counts', { error: fallbackError });
+      return { success: false, counts };
+    }
+
+    (rows || []).forEach(row => {
+      counts[row.time_slot_id] += 1;
+    });
+
+    seedMissing();
+    return { success: true, counts };
+  } catch (error) {
+    logger.error('Error in getAttendanceCounts', { error });
+    return { success: false, counts };
+  }
+};
+
+/**
+ * Attach trainer info and today's occupancy to time slots.
+ * Uses one trainer lookup and one grouped count query regardless of slot count.
+ * @param {Array} timeSlots - swimming_time_slots rows
+ * @param {string} sessionDate - Session date (YYYY-MM-DD)
+ * @returns {Array} - Slots with trainer, currentCount and availableSpots
+ */
+export const enrichTimeSlots = async (timeSlots, sessionDate) => {
+  if (!timeSlots || timeSlots.length === 0) {
+    return [];
+  }
+
+  const trainerIds = [...new Set(timeSlots.map(slot => slot.trainer_id).filter(Boolean))];
+
+  const [trainersResult, { counts }] = await Promise.all([
+    trainerIds.length > 0
+      ? supabase
+        .from('users_metadata')
+        .select('id, name, email')
+        .in('id', trainerIds)
+      : Promise.resolve({ data: [], error: null }),
+    getAttendanceCounts(timeSlots.map(slot => slot.id), sessionDate)
+  ]);
+
+  if (trainersResult.error) {
+    logger.error('Error fetching trainers for time slots', { error: trainersResult.error });
+  }
+
+  const trainersById = new Map((trainersResult.data || []).map(trainer => [trainer.id, trainer]));
+
+  return timeSlots.map(slot => {
+    const count = counts[slot.id] || 0;
+    return {
+      ...slot,
+      trainer: trainersById.get(slot.trainer_id) || null,
+      currentCount: count,
+      availableSpots: slot.max_capacity - count
+    };
+  });
+};
+
 /**
  * Check if user has already checked in for a session
  */
@@ -39,17 +183,55 @@ export const hasUserCheckedIn = async (userId, timeSlotId, sessionDate) => {
       .single();
 
     if (error && error.code !== 'PGRST116') { // PGRST116 = no rows returned
-      console.error('Error checking user attendance:', error);
+      logger.error('Error checking user attendance', { error });
       return { success: false, hasCheckedIn: false };
     }
 
     return { success: true, hasCheckedIn: !!data };
   } catch (error) {
-    console.error('Error in hasUserCheckedIn:', error);
+    logger.error('Error in hasUserCheckedIn', { error });
     return { success: false, hasCheckedIn: false };
   }
 };
 
+/**
+ * Atomically check a user into a time slot via the swim_check_in RPC.
+ * Duplicate check, capacity check and insert run in one transaction with the slot row locked.
+ * @returns {Object} - { success, status, attendance, currentCount, maxCapacity }
+ *   status is one of 'checked_in', 'already_checked_in', 'capacity_exceeded', 'slot_not_found', 'error'
+ */
+export const checkInToTimeSlot = async (userId, timeSlotId, sessionDate, registrationId = null, checkInMethod = 'qr_scan') => {
+  try {
+    const { data, error } = await supabase.rpc('swim_check_in', {
+      p_user_id: userId,
+      p_time_slot_id: timeSlotId,
+      p_session_date: sessionDate,
+      p_registration_id: registrationId,
+      p_check_in_method: checkInMethod
+    });
+
+    if (error || !data) {
+      logger.error('Error in swim_check_in RPC', { error });
+      return { success: false, status: 'error' };
+    }
+
+    if (data.status === 'checked_in') {
+      recordCheckIn('swimming', timeSlotId, sessionDate, data.current_count);
+    }
+
+    return {
+      success: data.status === 'checked_in',
+      status: data.status,
+      attendance: data.attendance || null,
+      currentCount: data.current_count ?? null,
+      maxCapacity: data.max_capacity ?? null
+    };
+  } catch (error) {
+    logger.error('Error in checkInToTimeSlot', { error });
+    return { success: false, status: 'error' };
+  }
+};
+
 /**
  * Get swimming time slots (optionally filtering active ones)
  */
@@ -63,16 +245,19 @@ export const getActiveTimeSlots = async (activeOnly = true) => {
       query = query.eq('is_active', true);
     }
 
-    const { data, error } = await query.order('start_time', { ascending: true });
+    // Stable order: compiled schedules (getCompiledSchedule) resolve positions into this array
+    const { data, error } = await query
+      .order('start_time', { ascending: true })
+      .order('id', { ascending: true });
 
     if (error) {
-      console.error('Error fetching time slots:', error);
+      logger.error('Error fetching time slots', { error });
       return { success: false, timeSlots: [] };
     }
 
     return { success: true, timeSlots: data || [] };
   } catch (error) {
-    console.error('Error in getActiveTimeSlots:', error);
+    logger.error('Error in getActiveTimeSlots', { error });
     return { success: false, timeSlots: [] };
   }
 };
@@ -82,15 +267,10 @@ export const getActiveTimeSlots = async (activeOnly = true) => {
  */
 export const processQRScan = async (qrCodeValue, user) => {
   try {
-    // 1. Validate QR code exists and is active
-    const { data: qrCode, error: qrError } = await supabase
-      .from('swimming_qr_codes')
-      .select('*')
-      .eq('qr_code_value', qrCodeValue)
-      .eq('is_active', true)
-      .single();
+    // 1. Validate QR code exists and is active (in-memory QR registry)
+    const qrCode = await resolveQRCodeForSport('swimming', qrCodeValue);
 
-    if (qrError || !qrCode) {
+    if (!qrCode) {
       return {
         success: false,
         message: 'Invalid or inactive QR code'
@@ -110,13 +290,11 @@ export const processQRScan = async (qrCodeValue, user) => {
       };
     }
 
-    // 3. Filter time slots by user eligibility first (gender/role)
-    const eligibleSlots = timeSlots.filter(slot => {
-      const eligibility = validateUserEligibility(user, slot);
-      return eligibility.isValid;
-    });
+    // 3. Restrict the compiled schedule to slots the user is eligible for (gender/role)
+    const schedule = getCompiledSchedule(timeSlots);
+    const eligibleIndex = getEligibleSlotIndex(schedule, user);
 
-    if (eligibleSlots.length === 0) {
+    if (eligibleIndex.size === 0) {
       return {
         success: false,
         message: 'No time slots available for your role and gender. Please contact admin.'
@@ -124,7 +302,7 @@ export const processQRScan = async (qrCodeValue, user) => {
     }
 
     // 4. Determine appropriate time slot from eligible slots only
-    const slotDetermination = determineTimeSlot(eligibleSlots, today);
+    const slotDetermination = lookupTimeSlot(schedule, eligibleIndex, today);
 
     if (slotDetermination.error) {
       return {
@@ -135,10 +313,10 @@ export const processQRScan = async (qrCodeValue, user) => {
 
     const { timeSlot, reason, message: slotMessage } = slotDetermination;
 
-    // 5. Check if user already checked in for this session
-    const { hasCheckedIn } = await hasUserCheckedIn(user.id, timeSlot.id, sessionDate);
+    // 5. Check in atomically (duplicate check, capacity check and insert in one round trip)
+    const checkIn = await checkInToTimeSlot(user.id, timeSlot.id, sessionDate);
 
-    if (hasCheckedIn) {
+    if (checkIn.status === 'already_checked_in') {
       return {
         success: false,
         message: 'You have already checked in for this time slot today',
@@ -146,10 +324,7 @@ export const processQRScan = async (qrCodeValue, user) => {
       };
     }
 
-    // 6. Check capacity
-    const { count: currentCount } = await getAttendanceCount(timeSlot.id, sessionDate);
-
-    if (currentCount >= timeSlot.max_capacity) {
+    if (checkIn.status === 'capacity_exceeded') {
       return {
         success: false,
         message: 'This time slot has reached maximum capacity',
@@ -158,36 +333,22 @@ export const processQRScan = async (qrCodeValue, user) => {
           id: timeSlot.id,
           startTime: timeSlot.start_time,
           endTime: timeSlot.end_time,
-          currentCount,
+          currentCount: checkIn.currentCount,
           maxCapacity: timeSlot.max_capacity
         }
       };
     }
 
-    // 7. Create attendance record
-    const { data: attendance, error: attendanceError } = await supabase
-      .from('swimming_attendance')
-      .insert([
-        {
-          time_slot_id: timeSlot.id,
-          user_id: user.id,
-          session_date: sessionDate,
-          check_in_time: new Date().toISOString(),
-          check_in_method: 'qr_scan'
-        }
-      ])
-      .select()
-      .single();
-
-    if (attendanceError) {
-      console.error('Error creating attendance:', attendanceError);
+    if (!checkIn.success) {
       return {
         success: false,
         message: 'Failed to record attendance. Please try again.'
       };
     }
 
-    // 8. Return success with details
+    const { attendance, currentCount } = checkIn;
+
+    // 6. Return success with details
     return {
       success: true,
       message: 'Check-in successful',
@@ -202,14 +363,14 @@ export const processQRScan = async (qrCodeValue, user) => {
         endTime: timeSlot.end_time,
         genderRestriction: timeSlot.gender_restriction,
         trainerName: timeSlot.trainer?.name || null,
-        currentCount: currentCount + 1,
+        currentCount,
         maxCapacity: timeSlot.max_capacity
       },
       slotDeterminationReason: reason,
       slotMessage
     };
   } catch (error) {
-    console.error('Error in processQRScan:', error);
+    logger.error('Error in processQRScan', { error });
     return {
       success: false,
       message: 'An error occurred during check-in. Please try again.'
@@ -222,16 +383,16 @@ export const processQRScan = async (qrCodeValue, user) => {
  */
 export const addToWaitlist = async (userId, timeSlotId, sessionDate) => {
   try {
-    // Check if user is already on waitlist
+    // Check if user is already on waitlist (a cancelled entry, e.g. an expired reservation, is reused)
     const { data: existing } = await supabase
       .from('swimming_waitlist')
-      .select('id')
+      .select('id, status')
       .eq('user_id', userId)
       .eq('time_slot_id', timeSlotId)
       .eq('session_date', sessionDate)
       .single();
 
-    if (existing) {
+    if (existing && existing.status !== 'cancelled') {
       return {
         success: false,
         message: 'You are already on the waitlist for this time slot'
@@ -248,40 +409,52 @@ export const addToWaitlist = async (userId, timeSlotId, sessionDate) => {
 
     const position = (count || 0) + 1;
 
-    // Insert into waitlist
-    const { data, error } = await supabase
-      .from('swimming_waitlist')
-      .insert([
-        {
-          user_id: userId,
-          time_slot_id: timeSlotId,
-          session_date: sessionDate,
-          position,
-          status: 'pending'
-        }
-      ])
-      .select()
-      .single();
+    // Insert into waitlist; the row is unique per user, slot and date, so a cancelled one is re-queued
+    const { data, error } = existing
+      ? await supabase
+        .from('swimming_waitlist')
+        .update({ position, status: 'pending', notified_at: null })
+        .eq('id', existing.id)
+        .eq('status', 'cancelled')
+        .select()
+        .single()
+      : await supabase
+        .from('swimming_waitlist')
+        .insert([
+          {
+            user_id: userId,
+            time_slot_id: timeSlotId,
+            session_date: sessionDate,
+            position,
+            status: 'pending'
+          }
+        ])
+        .select()
+        .single();
 
     if (error) {
-      console.error('Error adding to waitlist:', error);
+      logger.error('Error adding to waitlist', { error });
       return {
         success: false,
         message: 'Failed to join waitlist'
       };
     }
 
+    // Seats may already be free (e.g. a reservation was released); promote right away
+    const { promoted } = await promoteFromWaitlist(timeSlotId, sessionDate);
+    const wasPromoted = promoted.some(entry => entry.id === data.id);
+
     return {
       success: true,
       message: 'Successfully added to waitlist',
       waitlist: {
         id: data.id,
         position: data.position,
-        status: data.status
+        status: wasPromoted ? 'notified' : data.status
       }
     };
   } catch (error) {
-    console.error('Error in addToWaitlist:', error);
+    logger.error('Error in addToWaitlist', { error });
     return {
       success: false,
       message: 'An error occurred while joining waitlist'
@@ -291,33 +464,32 @@ export const addToWaitlist = async (userId, timeSlotId, sessionDate) => {
 
 /**
  * Remove user from waitlist
+ * Delete, renumbering and promotion of the next user run in a single RPC
  */
 export const removeFromWaitlist = async (userId, timeSlotId, sessionDate) => {
   try {
-    const { error } = await supabase
-      .from('swimming_waitlist')
-      .delete()
-      .eq('user_id', userId)
-      .eq('time_slot_id', timeSlotId)
-      .eq('session_date', sessionDate);
+    const { data: promoted, error } = await supabase.rpc('swim_waitlist_leave', {
+      p_user_id: userId,
+      p_time_slot_id: timeSlotId,
+      p_session_date: sessionDate
+    });
 
     if (error) {
-      console.error('Error removing from waitlist:', error);
+      logger.error('Error removing from waitlist', { error });
       return {
         success: false,
         message: 'Failed to leave waitlist'
       };
     }
 
-    // Reorder remaining waitlist positions
-    await reorderWaitlist(timeSlotId, sessionDate);
+    (promoted || []).forEach(emitWaitlistPromotion);
 
     return {
       success: true,
       message: 'Successfully removed from waitlist'
     };
   } catch (error) {
-    console.error('Error in removeFromWaitlist:', error);
+    logger.error('Error in removeFromWaitlist', { error });
     return {
       success: false,
       message: 'An error occurred while leaving waitlist'
@@ -326,29 +498,94 @@ export const removeFromWaitlist = async (userId, timeSlotId, sessionDate) => {
 };
 
 /**
- * Reorder waitlist positions after removal
+ * Promote waitlisted users into free seats of a time slot and notify them
+ * @returns {Object} - { success, promoted } with the promoted waitlist rows
+ */
+export const promoteFromWaitlist = async (timeSlotId, sessionDate) => {
+  try {
+    const { data: promoted, error } = await supabase.rpc('swim_waitlist_promote', {
+      p_time_slot_id: timeSlotId,
+      p_session_date: sessionDate
+    });
+
+    if (error) {
+      logger.error('Error promoting from waitlist', { error });
+      return { success: false, promoted: [] };
+    }
+
+    (promoted || []).forEach(emitWaitlistPromotion);
+
+    return { success: true, promoted: promoted || [] };
+  } catch (error) {
+    logger.error('Error in promoteFromWaitlist', { error });
+    return { success: false, promoted: [] };
+  }
+};
+
+/**
+ * Run swim_waitlist_promote for every slot of today with outstanding reservations, so expired
+ * holds are cancelled and their seats offered to the next pending users
+ * @returns {Object} - { success, slots, promoted }
  */
-const reorderWaitlist = async (timeSlotId, sessionDate) => {
+export const sweepWaitlistReservations = async () => {
   try {
-    const { data: waitlist } = await supabase
+    const sessionDate = getTodayDate();
+    const { data, error } = await selectAllPages(() => supabase
       .from('swimming_waitlist')
-      .select('id')
-      .eq('time_slot_id', timeSlotId)
+      .select('id, time_slot_id')
       .eq('session_date', sessionDate)
-      .eq('status', 'pending')
-      .order('position', { ascending: true });
-
-    if (waitlist && waitlist.length > 0) {
-      for (let i = 0; i < waitlist.length; i++) {
-        await supabase
-          .from('swimming_waitlist')
-          .update({ position: i + 1 })
-          .eq('id', waitlist[i].id);
-      }
+      .eq('status', 'notified')
+      .order('id', { ascending: true }));
+
+    if (error) {
+      logger.error('Error loading waitlist reservations', { error });
+      return { success: false, slots: 0, promoted: 0 };
     }
+
+    const slotIds = [...new Set(data.map(row => row.time_slot_id))];
+    let promoted = 0;
+    // One slot at a time: each promotion locks its slot row
+    for (const slotId of slotIds) {
+      promoted += (await promoteFromWaitlist(slotId, sessionDate)).promoted.length;
+    }
+
+    return { success: true, slots: slotIds.length, promoted };
   } catch (error) {
-    console.error('Error reordering waitlist:', error);
+    logger.error('Error in sweepWaitlistReservations', { error });
+    return { success: false, slots: 0, promoted: 0 };
+  }
+};
+
+/**
+ * Start the waitlist sweeper (every WAITLIST_SWEEP_INTERVAL_MS); safe to call more than once
+ */
+export const startWaitlistSweeper = () => {
+  if (waitlistSweepTimer) {
+    return;
   }
+
+  const scheduleNext = () => {
+    waitlistSweepTimer = setTimeout(async () => {
+      const result = await sweepWaitlistReservations();
+      if (result.promoted > 0) {
+        logger.info(`Waitlist sweep promoted ${result.promoted} users in ${result.slots} slots`);
+      }
+      if (waitlistSweepTimer) {
+        scheduleNext();
+      }
+    }, WAITLIST_SWEEP_INTERVAL_MS);
+    waitlistSweepTimer.unref?.();
+  };
+
+  scheduleNext();
+};
+
+/**
+ * Stop the waitlist sweeper
+ */
+export const stopWaitlistSweeper = () => {
+  clearTimeout(waitlistSweepTimer);
+  waitlistSweepTimer = null;
 };
 
 // ==================== SWIMMING REGISTRATION ====================
@@ -365,13 +602,13 @@ export const getUserSwimmingRegistration = async (userId) => {
       .maybeSingle();
 
     if (error) {
-      console.error('Error getting user swimming registration:', error);
+      logger.error('Error getting user swimming registration', { error });
       return { success: false, registration: null, error: error.message };
     }
 
     return { success: true, registration: data };
   } catch (error) {
-    console.error('Error in getUserSwimmingRegistration:', error);
+    logger.error('Error in getUserSwimmingRegistration', { error });
     return { success: false, registration: null, error: error.message };
   }
 };
@@ -380,6 +617,11 @@ export const getUserSwimmingRegistration = async (userId) => {
  * Check if user has active swimming registration (paid and not expired)
  */
 export const checkSwimmingRegistrationStatus = async (userId) => {
+  const cachedStatus = getCachedRegistrationStatus('swimming', userId);
+  if (cachedStatus) {
+    return cachedStatus;
+  }
+
   try {
     const { success, registration } = await getUserSwimmingRegistration(userId);
 
@@ -403,7 +645,7 @@ export const checkSwimmingRegistrationStatus = async (userId) => {
                      registration.payment_status === 'succeeded' &&
                      !isPaymentDue;
 
-    return {
+    const status = {
       success: true,
       isRegistered: true,
       isActive,
@@ -415,8 +657,11 @@ export const checkSwimmingRegistrationStatus = async (userId) => {
           : 'Swimming registration is not active',
       registration
     };
+
+    setCachedRegistrationStatus('swimming', userId, status);
+    return status;
   } catch (error) {
-    console.error('Error in checkSwimmingRegistrationStatus:', error);
+    logger.error('Error in checkSwimmingRegistrationStatus', { error });
     return {
       success: false,
       isRegistered: false,
@@ -471,13 +716,14 @@ export const createSwimmingRegistration = async (registrationData) => {
       .single();
 
     if (error) {
-      console.error('Error creating swimming registration:', error);
+      logger.error('Error creating swimming registration', { error });
       return { success: false, registration: null, error: error.message };
     }
 
+    invalidateRegistrationStatus('swimming', data.user_id);
     return { success: true, registration: data };
   } catch (error) {
-    console.error('Error in createSwimmingRegistration:', error);
+    logger.error('Error in createSwimmingRegistration', { error });
     return { success: false, registration: null, error: error.message };
   }
 };
@@ -495,13 +741,14 @@ export const updateSwimmingRegistration = async (registrationId, updateData) =>
       .single();
 
     if (error) {
-      console.error('Error updating swimming registration:', error);
+      logger.error('Error updating swimming registration', { error });
       return { success: false, registration: null, error: error.message };
     }
 
+    invalidateRegistrationStatus('swimming', data.user_id);
     return { success: true, registration: data };
   } catch (error) {
-    console.error('Error in updateSwimmingRegistration:', error);
+    logger.error('Error in updateSwimmingRegistration', { error });
     return { success: false, registration: null, error: error.message };
   }
 };
@@ -518,13 +765,13 @@ export const createSwimmingMonthlyPayment = async (paymentData) => {
       .single();
 
     if (error) {
-      console.error('Error creating swimming monthly payment:', error);
+      logger.error('Error creating swimming monthly payment', { error });
       return { success: false, payment: null, error: error.message };
     }
 
     return { success: true, payment: data };
   } catch (error) {
-    console.error('Error in createSwimmingMonthlyPayment:', error);
+    logger.error('Error in createSwimmingMonthlyPayment', { error });
     return { success: false, payment: null, error: error.message };
   }
 };
@@ -542,13 +789,13 @@ export const updateSwimmingMonthlyPayment = async (paymentId, paymentData) => {
       .single();
 
     if (error) {
-      console.error('Error updating swimming monthly payment:', error);
+      logger.error('Error updating swimming monthly payment', { error });
       return { success: false, payment: null, error: error.message };
     }
 
     return { success: true, payment: data };
   } catch (error) {
-    console.error('Error in updateSwimmingMonthlyPayment:', error);
+    logger.error('Error in updateSwimmingMonthlyPayment', { error });
     return { success: false, payment: null, error: error.message };
   }
 };
@@ -566,21 +813,24 @@ export const getUserSwimmingMonthlyPayments = async (userId, limit = 12) => {
       .limit(limit);
 
     if (error) {
-      console.error('Error getting swimming monthly payments:', error);
+      logger.error('Error getting swimming monthly payments', { error });
       return { success: false, payments: [], error: error.message };
     }
 
     return { success: true, payments: data || [] };
   } catch (error) {
-    console.error('Error in getUserSwimmingMonthlyPayments:', error);
+    logger.error('Error in getUserSwimmingMonthlyPayments', { error });
     return { success: false, payments: [], error: error.message };
   }
 };
 
 /**
  * Process swimming QR scan with registration check
+ * @param {string} qrCodeValue - The QR code value from swimming_qr_codes table
+ * @param {object} user - The authenticated user object
+ * @param {object} [resolvedQRCode] - swimming_qr_codes row already resolved by the caller
  */
-export const processSwimmingQRScan = async (qrCodeValue, user) => {
+export const processSwimmingQRScan = async (qrCodeValue, user, resolvedQRCode = null) => {
   try {
     // 1. Check if user has active swimming registration
     const registrationStatus = await checkSwimmingRegistrationStatus(user.id);
@@ -592,15 +842,10 @@ export const processSwimmingQRScan = async (qrCodeValue, user) => {
       };
     }
 
-    // 2. Validate QR code exists and is active (swimming QR code)
-    const { data: qrCode, error: qrError } = await supabase
-      .from('swimming_qr_codes')
-      .select('*')
-      .eq('qr_code_value', qrCodeValue)
-      .eq('is_active', true)
-      .single();
+    // 2. Validate QR code exists and is active (in-memory QR registry)
+    const qrCode = resolvedQRCode || await resolveQRCodeForSport('swimming', qrCodeValue);
 
-    if (qrError || !qrCode) {
+    if (!qrCode) {
       return {
         success: false,
         message: 'Invalid or inactive swimming QR code'
@@ -620,21 +865,13 @@ export const processSwimmingQRScan = async (qrCodeValue, user) => {
       };
     }
 
-    // 4. Filter time slots by user eligibility first (gender/role)
-    const eligibleSlots = timeSlots.filter(slot => {
-      const eligibility = validateUserEligibility(user, slot);
-      if (!eligibility.isValid) {
-        console.log(`Slot ${slot.start_time}-${slot.end_time} (${slot.gender_restriction}) filtered out: ${eligibility.message}`);
-      }
-      return eligibility.isValid;
-    });
+    // 4. Restrict the compiled schedule to slots the user is eligible for (gender/role)
+    const schedule = getCompiledSchedule(timeSlots);
+    const eligibleIndex = getEligibleSlotIndex(schedule, user);
 
-    console.log(`User ${user.id} (role: ${user.role}, gender: ${user.gender}) - Eligible slots: ${eligibleSlots.length} out of ${timeSlots.length}`);
-    eligibleSlots.forEach(slot => {
-      console.log(`  - ${slot.start_time}-${slot.end_time} (${slot.gender_restriction})`);
-    });
+    logger.debug('Eligible swimming slots', { userId: user.id, role: user.role, gender: user.gender, eligible: eligibleIndex.size, total: timeSlots.length });
 
-    if (eligibleSlots.length === 0) {
+    if (eligibleIndex.size === 0) {
       return {
         success: false,
         message: 'No time slots available for your role and gender. Please contact admin.'
@@ -642,9 +879,9 @@ export const processSwimmingQRScan = async (qrCodeValue, user) => {
     }
 
     // 5. Determine appropriate time slot from eligible slots only
-    const slotDetermination = determineTimeSlot(eligibleSlots, today);
+    const slotDetermination = lookupTimeSlot(schedule, eligibleIndex, today);
     
-    console.log(`Determined slot: ${slotDetermination.timeSlot?.start_time}-${slotDetermination.timeSlot?.end_time} (${slotDetermination.timeSlot?.gender_restriction}), reason: ${slotDetermination.reason}`);
+    logger.debug('Determined swimming slot', { timeSlotId: slotDetermination.timeSlot?.id, reason: slotDetermination.reason });
 
     if (slotDetermination.error) {
       return {
@@ -655,10 +892,15 @@ export const processSwimmingQRScan = async (qrCodeValue, user) => {
 
     const { timeSlot, reason, message: slotMessage } = slotDetermination;
 
-    // 6. Check if user already checked in for this session
-    const { hasCheckedIn } = await hasUserCheckedIn(user.id, timeSlot.id, sessionDate);
+    // 6. Check in atomically (duplicate check, capacity check and insert in one round trip)
+    const checkIn = await checkInToTimeSlot(
+      user.id,
+      timeSlot.id,
+      sessionDate,
+      registrationStatus.registration.id
+    );
 
-    if (hasCheckedIn) {
+    if (checkIn.status === 'already_checked_in') {
       return {
         success: false,
         message: 'You have already checked in for this time slot today',
@@ -666,10 +908,7 @@ export const processSwimmingQRScan = async (qrCodeValue, user) => {
       };
     }
 
-    // 7. Check capacity
-    const { count: currentCount } = await getAttendanceCount(timeSlot.id, sessionDate);
-
-    if (currentCount >= timeSlot.max_capacity) {
+    if (checkIn.status === 'capacity_exceeded') {
       return {
         success: false,
         message: 'This time slot has reached maximum capacity',
@@ -678,37 +917,22 @@ export const processSwimmingQRScan = async (qrCodeValue, user) => {
           id: timeSlot.id,
           startTime: timeSlot.start_time,
           endTime: timeSlot.end_time,
-          currentCount,
+          currentCount: checkIn.currentCount,
           maxCapacity: timeSlot.max_capacity
         }
       };
     }
 
-    // 8. Create attendance record with registration_id
-    const { data: attendance, error: attendanceError } = await supabase
-      .from('swimming_attendance')
-      .insert([
-        {
-          time_slot_id: timeSlot.id,
-          user_id: user.id,
-          registration_id: registrationStatus.registration.id,
-          session_date: sessionDate,
-          check_in_time: new Date().toISOString(),
-          check_in_method: 'qr_scan'
-        }
-      ])
-      .select()
-      .single();
-
-    if (attendanceError) {
-      console.error('Error creating swimming attendance:', attendanceError);
+    if (!checkIn.success) {
       return {
         success: false,
         message: 'Failed to record attendance. Please try again.'
       };
     }
 
-    // 9. Return success with details
+    const { attendance, currentCount } = checkIn;
+
+    // 7. Return success with details
     return {
       success: true,
       message: 'Check-in successful',
@@ -723,14 +947,14 @@ export const processSwimmingQRScan = async (qrCodeValue, user) => {
         endTime: timeSlot.end_time,
         genderRestriction: timeSlot.gender_restriction,
         trainerName: timeSlot.trainer?.name || null,
-        currentCount: currentCount + 1,
+        currentCount,
         maxCapacity: timeSlot.max_capacity
       },
       slotDeterminationReason: reason,
       slotMessage
     };
   } catch (error) {
-    console.error('Error in processSwimmingQRScan:', error);
+    logger.error('Error in processSwimmingQRScan', { error });
     return {
       success: false,
       message: 'An error occurred during check-in. Please try again.'
@@ -0,0 +1,55 @@
+import cluster from 'node:cluster';
+import process from 'node:process';
+import { setupMaster, setupWorker } from '@socket.io/sticky';
+import { createAdapter, setupPrimary } from '@socket.io/cluster-adapter';
+
+/**
+ * Socket.IO clustering without an external broker
+ * - The primary owns the listening socket and hands each connection to a worker, keeping
+ *   a client on the same worker for all its requests (sticky sessions, needed for polling)
+ * - Workers use the cluster adapter, which relays room broadcasts between workers over
+ *   the cluster IPC channel, so io.to(room).emit reaches clients on every worker
+ */
+
+/**
+ * Whether this process is a clustered worker (started by src/cluster.js)
+ */
+export const isClusterWorker = () => cluster.isWorker;
+
+/**
+ * Primary side: sticky load balancing + adapter message relay
+ * @param {import('http').Server} httpServer - Server the primary listens on
+ */
+export const setupSocketPrimary = (httpServer) => {
+  setupMaster(httpServer, {
+    loadBalancingMethod: 'least-connection'
+  });
+  setupPrimary();
+};
+
+/**
+ * Worker side: receive connections from the primary and share rooms with other workers
+ * @param {import('socket.io').Server} io - Worker's Socket.IO server
+ */
+export const attachSocketWorker = (io) => {
+  io.adapter(createAdapter());
+  setupWorker(io);
+};
+
+/**
+ * Worker side: leave the cluster so the primary stops handing this worker new connections
+ * (used when draining). Room broadcasts no longer reach other workers afterwards.
+ */
+export const leaveCluster = () => {
+  if (!cluster.isWorker || !cluster.worker.isConnected()) {
+    return;
+  }
+
+  // Broadcasts from requests still in flight fail once the IPC channel is closed; drop them
+  process.on('error', (error) => {
+    if (error.code !== 'ERR_IPC_CHANNEL_CLOSED') {
+      throw error;
+    }
+  });
+  cluster.worker.disconnect();
+};
@@ -0,0 +1,140 @@
+import process from "node:process";
+import { getIoInstance } from './socketManager.js';
+
+/**
+ * Socket fan-out layer
+ * - emitToRoom / emitToUsers send immediately and record per-event metrics
+ * - queueToRoom / queueToUsers coalesce bursts: within COALESCE_MS only the latest payload
+ *   per (target, event, key) is sent, e.g. several updates of one match collapse into one
+ *
+ * emitToUsers targets the `user:<id>` rooms in a single emit, so a socket that belongs to
+ * several of them still receives the event once.
+ *
+ * Byte counts are sampled: only every SOCKET_STATS_BYTES_SAMPLE-th emit of an event (default
+ * 20, 0 turns byte counting off) is serialized to measure it, the others are extrapolated.
+ */
+
+const COALESCE_MS = parseInt(process.env.SOCKET_COALESCE_MS, 10) || 100;
+const BYTES_SAMPLE_EVERY = parseInt(process.env.SOCKET_STATS_BYTES_SAMPLE ?? '20', 10) || 0;
+
+const eventStats = new Map(); // event -> { emits, coalesced, recipients, bytes }
+const pending = new Map(); // `${targetKey}|${event}|${key}` -> { rooms, event, payload }
+let flushTimer = null;
+
+const getEventStats = (event) => {
+  let stats = eventStats.get(event);
+  if (!stats) {
+    stats = { emits: 0, coalesced: 0, recipients: 0, bytes: 0 };
+    eventStats.set(event, stats);
+  }
+  return stats;
+};
+
+/**
+ * Number of local sockets in any of the rooms
+ */
+const countRecipients = (io, rooms) => {
+  const adapterRooms = io.sockets.adapter.rooms;
+  if (rooms.length === 1) {
+    return adapterRooms.get(rooms[0])?.size || 0;
+  }
+
+  const sockets = new Set();
+  rooms.forEach(room => {
+    adapterRooms.get(room)?.forEach(socketId => sockets.add(socketId));
+  });
+  return sockets.size;
+};
+
+const send = (rooms, event, payload) => {
+  const io = getIoInstance();
+  if (!io || rooms.length === 0) {
+    return;
+  }
+
+  const recipients = countRecipients(io, rooms);
+  const stats = getEventStats(event);
+  stats.emits++;
+  stats.recipients += recipients;
+  if (BYTES_SAMPLE_EVERY > 0 && recipients > 0 && (stats.emits - 1) % BYTES_SAMPLE_EVERY === 0) {
+    stats.bytes += Buffer.byteLength(JSON.stringify(payload)) * recipients * BYTES_SAMPLE_EVERY;
+  }
+
+  io.to(rooms).emit(event, payload);
+};
+
+const flush = () => {
+  flushTimer = null;
+  const batch = [...pending.values()];
+  pending.clear();
+  batch.forEach(({ rooms, event, payload }) => send(rooms, event, payload));
+};
+
+const queue = (rooms, event, key, payload) => {
+  if (rooms.length === 0) {
+    return;
+  }
+
+  const pendingKey = `${rooms.join(',')}|${event}|${key}`;
+  if (pending.has(pendingKey)) {
+    getEventStats(event).coalesced++;
+    // Re-insert so the flush order follows the latest update
+    pending.delete(pendingKey);
+  }
+  pending.set(pendingKey, { rooms, event, payload });
+
+  if (!flushTimer) {
+    flushTimer = setTimeout(flush, COALESCE_MS);
+    flushTimer.unref?.();
+  }
+};
+
+const toUserRooms = (userIds) => [...new Set(userIds.filter(Boolean))].map(userId => `user:${userId}`);
+
+/**
+ * Emit to a room now
+ */
+export const emitToRoom = (room, event, payload) => {
+  send([room], event, payload);
+};
+
+/**
+ * Emit to users' personal rooms now
+ */
+export const emitToUsers = (userIds, event, payload) => {
+  send(toUserRooms(userIds), event, payload);
+};
+
+/**
+ * Emit to a room, keeping only the latest payload per key within the coalescing window
+ */
+export const queueToRoom = (room, event, key, payload) => {
+  queue([room], event, key, payload);
+};
+
+/**
+ * Emit to users' personal rooms, keeping only the latest payload per key within the coalescing window
+ */
+export const queueToUsers = (userIds, event, key, payload) => {
+  queue(toUserRooms(userIds), event, key, payload);
+};
+
+/**
+ * Per-event counters since startup
+ * bytes estimates the serialized payload size times the number of local recipients, from
+ * one emit in bytesSampleEvery
+ * @returns {Object} - { coalesceMs, bytesSampleEvery, pending, events: { [event]: { emits, coalesced, recipients, bytes } } }
+ */
+export const getSocketFanoutStats = () => {
+  const events = {};
+  eventStats.forEach((stats, event) => {
+    events[event] = { ...stats };
+  });
+
+  return {
+    coalesceMs: COALESCE_MS,
+    bytesSampleEvery: BYTES_SAMPLE_EVERY,
+    pending: pending.size,
+    events
+  };
+};
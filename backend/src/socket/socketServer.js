@@ -1,7 +1,35 @@
 import { Server } from 'socket.io';
 import jwt from 'jsonwebtoken';
-import { supabaseAdmin as supabase } from '../config/supabase.js';
-import { setIoInstance, getIoInstance } from './socketManager.js';
+import { getCachedUserPrincipal, loadUserPrincipal } from '../utils/userPrincipalCache.js';
+import { createRateLimiter } from '../utils/rateLimiter.js';
+import { setIoInstance } from './socketManager.js';
+import { emitToRoom, emitToUsers, queueToRoom, queueToUsers } from './socketFanout.js';
+import { isClusterWorker, attachSocketWorker } from './socketCluster.js';
+import { logger } from '../utils/logger.js';
+
+// Rooms clients can subscribe to for occupancy deltas
+const OCCUPANCY_ROOMS = ['swimming', 'gym'];
+
+// Handshake limits: a per-user burst for reconnect loops, and a process-wide cap on
+// handshakes that miss the principal cache and have to read users_metadata
+const userHandshakeLimiter = createRateLimiter({
+  capacity: parseInt(process.env.SOCKET_HANDSHAKE_BURST, 10) || 10,
+  refillPerSecond: parseFloat(process.env.SOCKET_HANDSHAKE_PER_SEC) || 1
+});
+const dbHandshakeLimiter = createRateLimiter({
+  capacity: parseInt(process.env.SOCKET_HANDSHAKE_DB_BURST, 10) || 100,
+  refillPerSecond: parseFloat(process.env.SOCKET_HANDSHAKE_DB_PER_SEC) || 50,
+  maxKeys: 1
+});
+
+/**
+ * Handshake rejection that tells the client when to retry
+ */
+const retryError = (message, retryAfterMs) => {
+  const error = new Error(message);
+  error.data = { retryAfterMs };
+  return error;
+};
 
 /**
  * Initialize Socket.IO server with authentication
@@ -31,29 +59,39 @@ export const initializeSocketServer = (httpServer) => {
       }
 
       const decoded = jwt.verify(token, process.env.JWT_SECRET);
-      
-      // Verify user exists
-      const { data: user, error } = await supabase
-        .from('users_metadata')
-        .select('id, name, email')
-        .eq('id', decoded.id)
-        .single();
-
-      if (error || !user) {
+
+      const userLimit = userHandshakeLimiter.take(decoded.id);
+      if (!userLimit.allowed) {
+        return next(retryError('Too many connection attempts', userLimit.retryAfterMs));
+      }
+
+      // Verify user exists, sharing the principal cache with the HTTP auth middleware
+      let principal = getCachedUserPrincipal(decoded.id);
+      if (!principal) {
+        const dbLimit = dbHandshakeLimiter.take('users_metadata');
+        if (!dbLimit.allowed) {
+          return next(retryError('Server busy, retry shortly', dbLimit.retryAfterMs));
+        }
+        principal = await loadUserPrincipal(decoded.id);
+      }
+
+      if (!principal) {
         return next(new Error('Authentication error: User not found'));
       }
 
+      const user = { id: principal.id, name: principal.name, email: principal.email };
+
       socket.userId = decoded.id;
       socket.user = user;
       next();
     } catch (error) {
-      console.error('Socket authentication error:', error);
+      logger.error('Socket authentication error', { error });
       next(new Error('Authentication error: Invalid token'));
     }
   });
 
   io.on('connection', (socket) => {
-    console.log(`User connected: ${socket.userId} (${socket.user.name})`);
+    logger.debug('Socket connected', { userId: socket.userId });
     
     // Join user's personal room for targeted updates
     socket.join(`user:${socket.userId}`);
@@ -62,30 +100,31 @@ export const initializeSocketServer = (httpServer) => {
     socket.join('badminton');
 
     socket.on('disconnect', () => {
-      console.log(`User disconnected: ${socket.userId}`);
+      logger.debug('Socket disconnected', { userId: socket.userId });
     });
 
-    // Handle availability updates
-    socket.on('availability:update', async (data) => {
-      // Broadcast availability change to all users in badminton room
-      io.to('badminton').emit('availability:changed', {
-        userId: socket.userId,
-        isAvailable: data.isAvailable,
-        timestamp: new Date().toISOString()
-      });
+    // Live occupancy counters (swimming slots / gym floor)
+    socket.on('occupancy:subscribe', (data) => {
+      if (OCCUPANCY_ROOMS.includes(data?.sport)) {
+        socket.join(data.sport);
+      }
     });
 
-    // Handle match updates
-    socket.on('match:update', (data) => {
-      // Broadcast match update to all users in badminton room
-      io.to('badminton').emit('match:changed', {
-        matchId: data.matchId,
-        status: data.status,
-        timestamp: new Date().toISOString()
-      });
+    socket.on('occupancy:unsubscribe', (data) => {
+      if (OCCUPANCY_ROOMS.includes(data?.sport)) {
+        socket.leave(data.sport);
+      }
     });
+
+    // Availability and match changes are published by the REST controllers
+    // (emitAvailabilityChange / emitMatchChange); clients are not relayed directly
   });
 
+  // In cluster mode connections come from the primary and rooms are shared across workers
+  if (isClusterWorker()) {
+    attachSocketWorker(io);
+  }
+
   // Store io instance globally
   setIoInstance(io);
 
@@ -94,59 +133,65 @@ export const initializeSocketServer = (httpServer) => {
 
 /**
  * Emit availability change event
+ * Coalesced per user, so rapid toggles only send the final state
  */
 export const emitAvailabilityChange = (userId, isAvailable) => {
-  const io = getIoInstance();
-  if (io) {
-    io.to('badminton').emit('availability:changed', {
-      userId,
-      isAvailable,
-      timestamp: new Date().toISOString()
-    });
-  }
+  queueToRoom('badminton', 'availability:changed', userId, {
+    userId,
+    isAvailable,
+    timestamp: new Date().toISOString()
+  });
 };
 
 /**
  * Emit match change event
+ * The badminton room gets a compact delta; only the players get the full match
  */
 export const emitMatchChange = (matchData) => {
-  const io = getIoInstance();
-  if (io) {
-    // Get player IDs involved in the match
-    const playerIds = [
-      matchData.team1_player1_id,
-      matchData.team1_player2_id,
-      matchData.team2_player1_id,
-      matchData.team2_player2_id
-    ].filter(Boolean);
-
-    // Emit to all users in badminton room (for general updates)
-    io.to('badminton').emit('match:changed', {
-      matchId: matchData.id,
-      status: matchData.status,
-      courtId: matchData.court_id,
-      team1Player1Id: matchData.team1_player1_id,
-      team1Player2Id: matchData.team1_player2_id,
-      team2Player1Id: matchData.team2_player1_id,
-      team2Player2Id: matchData.team2_player2_id,
-      timestamp: new Date().toISOString()
-    });
+  const timestamp = new Date().toISOString();
+
+  queueToRoom('badminton', 'match:changed', matchData.id, {
+    matchId: matchData.id,
+    status: matchData.status,
+    courtId: matchData.court_id,
+    team1Player1Id: matchData.team1_player1_id,
+    team1Player2Id: matchData.team1_player2_id,
+    team2Player1Id: matchData.team2_player1_id,
+    team2Player2Id: matchData.team2_player2_id,
+    timestamp
+  });
 
-    // Emit detailed match update to specific users involved in the match
-    // This ensures they get the full match data immediately
-    playerIds.forEach(playerId => {
-      io.to(`user:${playerId}`).emit('match:updated', {
-        match: matchData,
-        timestamp: new Date().toISOString()
-      });
-    });
+  queueToUsers([
+    matchData.team1_player1_id,
+    matchData.team1_player2_id,
+    matchData.team2_player1_id,
+    matchData.team2_player2_id
+  ], 'match:updated', matchData.id, {
+    match: matchData,
+    timestamp
+  });
+};
 
-    // Also emit to badminton room with full match data for involved players
-    // This is a fallback in case user-specific rooms don't work
-    io.to('badminton').emit('match:updated', {
-      match: matchData,
-      timestamp: new Date().toISOString()
-    });
-  }
+/**
+ * Emit occupancy delta to the sport's room ('swimming' or 'gym')
+ * Not coalesced: every check-in is a separate delta
+ */
+export const emitOccupancyChange = (sport, change) => {
+  emitToRoom(sport, 'occupancy:changed', {
+    sport,
+    ...change,
+    timestamp: new Date().toISOString()
+  });
 };
 
+/**
+ * Notify a user that a waitlist seat opened up for them
+ */
+export const emitWaitlistPromotion = (entry) => {
+  emitToUsers([entry.user_id], 'waitlist:promoted', {
+    waitlistId: entry.id,
+    timeSlotId: entry.time_slot_id,
+    sessionDate: entry.session_date,
+    timestamp: new Date().toISOString()
+  });
+};
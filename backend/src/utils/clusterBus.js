@@ -0,0 +1,180 @@
+import process from "node:process";
+import cluster from "node:cluster";
+import { randomUUID } from "node:crypto";
+import { logger } from './logger.js';
+
+/**
+ * Cluster message bus for in-process state
+ * Caches (user principals, registration status, QR registry, ...), occupancy counters and
+ * matchmaking presence live in each process. In cluster mode REST requests are not sticky, so a
+ * write is seen by one worker only: it updates its own state and publishes the change here, the
+ * primary relays it to every other worker and their subscribers apply it.
+ *
+ * Outside cluster mode publish() does nothing. Messages are best effort: state that must be
+ * shared exactly (e.g. the matchmaking queue) belongs in the database.
+ *
+ * collect() is the request/reply side: the primary asks every worker's responder for the channel
+ * and hands all replies back to the caller (e.g. /metrics gathering every worker's counters).
+ */
+
+const BUS_MESSAGE = 'bus:message';
+const COLLECT_REQUEST = 'bus:collect';
+const COLLECT_QUERY = 'bus:collect:query';
+const COLLECT_REPLY = 'bus:collect:reply';
+const COLLECT_RESULT = 'bus:collect:result';
+
+// The primary answers with whatever arrived by then; the caller gives up a little later
+const COLLECT_TIMEOUT_MS = 2000;
+
+const subscribers = new Map(); // channel -> handler
+const responders = new Map(); // channel -> handler
+const pendingCollects = new Map(); // id -> resolve
+
+/**
+ * Apply changes published by other workers
+ * @param {string} channel - Channel name, e.g. 'user-principal:invalidate'
+ * @param {Function} handler - Called with the published payload
+ */
+export const subscribe = (channel, handler) => {
+  subscribers.set(channel, handler);
+};
+
+/**
+ * Send a change to every other worker (the caller applies it locally itself)
+ * @param {string} channel - Channel name
+ * @param {Object} [payload] - JSON-serializable payload
+ */
+export const publish = (channel, payload = null) => {
+  if (cluster.isWorker && process.connected) {
+    process.send({ type: BUS_MESSAGE, channel, payload });
+  }
+};
+
+/**
+ * Answer collect() requests for a channel
+ * @param {string} channel - Channel name, e.g. 'metrics:snapshot'
+ * @param {Function} handler - Returns this process's JSON-serializable reply
+ */
+export const respond = (channel, handler) => {
+  responders.set(channel, handler);
+};
+
+/**
+ * Ask every worker (this one included) for its reply on a channel
+ * Outside cluster mode, or if the primary does not answer in time, only the local reply is returned.
+ * @param {string} channel - Channel name
+ * @returns {Promise<Array>} - [{ pid, reply }], one entry per worker that answered
+ */
+export const collect = (channel) => {
+  const local = () => [{ pid: process.pid, reply: responders.get(channel)?.() ?? null }];
+  if (!cluster.isWorker || !process.connected) {
+    return Promise.resolve(local());
+  }
+
+  return new Promise((resolve) => {
+    const id = randomUUID();
+    const timer = setTimeout(() => {
+      pendingCollects.delete(id);
+      resolve(local());
+    }, COLLECT_TIMEOUT_MS * 2);
+
+    pendingCollects.set(id, (replies) => {
+      clearTimeout(timer);
+      pendingCollects.delete(id);
+      resolve(replies);
+    });
+    process.send({ type: COLLECT_REQUEST, id, channel });
+  });
+};
+
+if (cluster.isWorker) {
+  process.on('message', (message) => {
+    if (message?.type === COLLECT_QUERY) {
+      let reply = null;
+      try {
+        reply = responders.get(message.channel)?.() ?? null;
+      } catch (error) {
+        logger.error('Cluster bus responder failed', { channel: message.channel, error });
+      }
+      if (process.connected) {
+        process.send({ type: COLLECT_REPLY, id: message.id, pid: process.pid, reply });
+      }
+      return;
+    }
+
+    if (message?.type === COLLECT_RESULT) {
+      pendingCollects.get(message.id)?.(message.replies);
+      return;
+    }
+
+    if (message?.type !== BUS_MESSAGE) {
+      return;
+    }
+
+    const handler = subscribers.get(message.channel);
+    try {
+      handler?.(message.payload);
+    } catch (error) {
+      logger.error('Cluster bus handler failed', { channel: message.channel, error });
+    }
+  });
+}
+
+/**
+ * Primary side of collect(): query every connected worker, answer the caller with the replies
+ * that arrive before COLLECT_TIMEOUT_MS
+ */
+const collectFromWorkers = (sender, { id, channel }) => {
+  const workers = Object.values(cluster.workers).filter(worker => worker.isConnected());
+  const replies = [];
+  let answered = 0;
+  let timer;
+
+  const finish = () => {
+    clearTimeout(timer);
+    workers.forEach(worker => worker.off('message', onReply));
+    if (sender.isConnected()) {
+      sender.send({ type: COLLECT_RESULT, id, replies });
+    }
+  };
+
+  // Each queried worker replies once; workers forked after the query are not waited for
+  const onReply = (message) => {
+    if (message?.type !== COLLECT_REPLY || message.id !== id) {
+      return;
+    }
+    replies.push({ pid: message.pid, reply: message.reply });
+    answered++;
+    if (answered === workers.length) {
+      finish();
+    }
+  };
+
+  timer = setTimeout(finish, COLLECT_TIMEOUT_MS);
+  workers.forEach((worker) => {
+    worker.on('message', onReply);
+    worker.send({ type: COLLECT_QUERY, id, channel });
+  });
+};
+
+/**
+ * Primary side: relay every bus message to all workers except its sender, and answer collect()
+ */
+export const setupClusterBusPrimary = () => {
+  cluster.on('message', (sender, message) => {
+    if (message?.type === COLLECT_REQUEST) {
+      collectFromWorkers(sender, message);
+      return;
+    }
+
+    if (message?.type !== BUS_MESSAGE) {
+      return;
+    }
+
+    Object.values(cluster.workers).forEach((worker) => {
+      if (worker !== sender && worker.isConnected()) {
+        worker.send(message);
+      }
+    });
+  });
+};
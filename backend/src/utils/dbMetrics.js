@@ -0,0 +1,251 @@
+import cluster from "node:cluster";
+import { performance } from "node:perf_hooks";
+import { getRequestContext } from './requestContext.js';
+import { collect, respond } from './clusterBus.js';
+
+/**
+ * Database call metrics
+ * instrumentSupabase wraps a supabase-js client so every table query and RPC is timed when it
+ * is awaited. The request context (utils/requestContext.js) ties each call to the HTTP request
+ * that issued it; calls made outside a request are recorded under
+ * route="background". collectMetrics() returns everything in the Prometheus text format.
+ *
+ * Metrics are kept per process. In cluster mode workers do not listen themselves, so the worker
+ * serving /metrics gathers every worker's snapshot over the cluster bus and each series carries
+ * a worker="<pid>" label (sum without (worker) for cluster totals; a recycled worker's counters
+ * start a new series instead of appearing to go backwards).
+ */
+
+const SNAPSHOT_CHANNEL = 'metrics:snapshot';
+
+// Seconds
+const DURATION_BUCKETS = [0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5];
+// Database calls per request
+const QUERY_COUNT_BUCKETS = [0, 1, 2, 3, 5, 8, 13, 21, 34, 55];
+
+const BACKGROUND_ROUTE = 'background';
+const MUTATIONS = ['insert', 'update', 'upsert', 'delete'];
+
+const queryCounters = new Map(); // `${route}|${target}|${operation}` -> { route, target, operation, calls, errors }
+const targetDurations = new Map(); // target -> histogram
+const routeStats = new Map(); // route -> { queries: histogram, duration: histogram }
+
+const createHistogram = (buckets) => ({ buckets, counts: new Array(buckets.length).fill(0), sum: 0, count: 0 });
+
+const observe = (histogram, value) => {
+  for (let i = 0; i < histogram.buckets.length; i++) {
+    if (value <= histogram.buckets[i]) {
+      histogram.counts[i]++;
+    }
+  }
+  histogram.sum += value;
+  histogram.count++;
+};
+
+const getOrCreate = (map, key, create) => {
+  let value = map.get(key);
+  if (!value) {
+    value = create();
+    map.set(key, value);
+  }
+  return value;
+};
+
+const addCall = (route, target, operation, calls, errors) => {
+  const counter = getOrCreate(queryCounters, `${route}|${target}|${operation}`, () => ({
+    route, target, operation, calls: 0, errors: 0
+  }));
+  counter.calls += calls;
+  counter.errors += errors;
+};
+
+const recordQuery = (target, operation, seconds, failed) => {
+  observe(getOrCreate(targetDurations, target, () => createHistogram(DURATION_BUCKETS)), seconds);
+
+  const metrics = getRequestContext()?.db;
+  if (!metrics || metrics.finished) {
+    addCall(metrics?.route || BACKGROUND_ROUTE, target, operation, 1, failed ? 1 : 0);
+    return;
+  }
+
+  // The route is only known once the request is routed; keep the calls on the request until then
+  metrics.queries++;
+  const call = getOrCreate(metrics.calls, `${target}|${operation}`, () => ({ target, operation, calls: 0, errors: 0 }));
+  call.calls++;
+  if (failed) {
+    call.errors++;
+  }
+};
+
+/**
+ * Wrap a query builder so awaiting it (directly or after further chaining) records one call
+ */
+const instrumentBuilder = (builder, target, operation) => new Proxy(builder, {
+  get(object, property) {
+    if (property === 'then') {
+      return (onFulfilled, onRejected) => {
+        const startedAt = performance.now();
+        return object.then(
+          (result) => {
+            recordQuery(target, operation, (performance.now() - startedAt) / 1000, !!result?.error);
+            return result;
+          },
+          (error) => {
+            recordQuery(target, operation, (performance.now() - startedAt) / 1000, true);
+            throw error;
+          }
+        ).then(onFulfilled, onRejected);
+      };
+    }
+
+    const value = Reflect.get(object, property, object);
+    if (typeof value !== 'function') {
+      return value;
+    }
+
+    return (...args) => {
+      const result = value.apply(object, args);
+      if (!result || typeof result.then !== 'function') {
+        return result;
+      }
+      // select() after a mutation only shapes the returned rows; the operation stays the mutation
+      return instrumentBuilder(result, target, MUTATIONS.includes(property) ? property : operation);
+    };
+  }
+});
+
+/**
+ * Instrument a supabase-js client
+ * @param {Object} client - Client from createClient
+ * @returns {Object} - Same client; from() and rpc() calls are recorded
+ */
+export const instrumentSupabase = (client) => new Proxy(client, {
+  get(object, property) {
+    if (property === 'from') {
+      return (table) => instrumentBuilder(object.from(table), table, 'select');
+    }
+    if (property === 'rpc') {
+      return (fn, ...args) => instrumentBuilder(object.rpc(fn, ...args), `rpc:${fn}`, 'rpc');
+    }
+
+    const value = Reflect.get(object, property, object);
+    return typeof value === 'function' ? value.bind(object) : value;
+  }
+});
+
+/**
+ * Start counting the database calls of one request (stored as the request context's `db`)
+ * @returns {Object} - Request metrics; pass to recordRequest once the response is sent
+ */
+export const startRequestMetrics = () => ({
+  route: null,
+  queries: 0,
+  calls: new Map(),
+  finished: false,
+  startedAt: performance.now()
+});
+
+/**
+ * Record a finished request
+ * @param {Object} metrics - Result of startRequestMetrics
+ * @param {string} route - Route label, e.g. "GET /api/leagues/:id"
+ */
+export const recordRequest = (metrics, route) => {
+  metrics.route = route;
+  metrics.finished = true;
+  metrics.calls.forEach(({ target, operation, calls, errors }) => addCall(route, target, operation, calls, errors));
+
+  const stats = getOrCreate(routeStats, route, () => ({
+    queries: createHistogram(QUERY_COUNT_BUCKETS),
+    duration: createHistogram(DURATION_BUCKETS)
+  }));
+  observe(stats.queries, metrics.queries);
+  observe(stats.duration, (performance.now() - metrics.startedAt) / 1000);
+};
+
+// ---------------------------------------------------------------------------
+// Prometheus text format
+// ---------------------------------------------------------------------------
+
+const escapeLabel = (value) => String(value).replace(/\\/g, '\\\\').replace(/"/g, '\\"').replace(/\n/g, '\\n');
+
+const formatLabels = (labels) => {
+  const entries = Object.entries(labels);
+  return entries.length ? `{${entries.map(([key, value]) => `${key}="${escapeLabel(value)}"`).join(',')}}` : '';
+};
+
+const histogramLines = (name, labels, histogram) => [
+  ...histogram.buckets.map((bucket, i) => `${name}_bucket${formatLabels({ ...labels, le: bucket })} ${histogram.counts[i]}`),
+  `${name}_bucket${formatLabels({ ...labels, le: '+Inf' })} ${histogram.count}`,
+  `${name}_sum${formatLabels(labels)} ${histogram.sum}`,
+  `${name}_count${formatLabels(labels)} ${histogram.count}`
+];
+
+/**
+ * This process's metrics as plain (IPC-serializable) data
+ * @returns {Object} - { counters, durations, routes }
+ */
+export const getMetricsSnapshot = () => ({
+  counters: [...queryCounters.values()],
+  durations: [...targetDurations.entries()],
+  routes: [...routeStats.entries()]
+});
+
+/**
+ * Render snapshots in the Prometheus text exposition format (version 0.0.4)
+ * @param {Array} snapshots - [{ labels, snapshot }]; labels are added to every series
+ * @returns {string}
+ */
+export const renderMetrics = (snapshots = [{ labels: {}, snapshot: getMetricsSnapshot() }]) => {
+  const lines = [];
+
+  lines.push('# HELP db_queries_total Supabase table queries and RPCs by route, target and operation');
+  lines.push('# TYPE db_queries_total counter');
+  snapshots.forEach(({ labels, snapshot }) => snapshot.counters.forEach(({ route, target, operation, calls }) => {
+    lines.push(`db_queries_total${formatLabels({ ...labels, route, target, operation })} ${calls}`);
+  }));
+
+  lines.push('# HELP db_query_errors_total Supabase calls that returned or threw an error');
+  lines.push('# TYPE db_query_errors_total counter');
+  snapshots.forEach(({ labels, snapshot }) => snapshot.counters.forEach(({ route, target, operation, errors }) => {
+    lines.push(`db_query_errors_total${formatLabels({ ...labels, route, target, operation })} ${errors}`);
+  }));
+
+  lines.push('# HELP db_query_duration_seconds Supabase call latency by table or RPC');
+  lines.push('# TYPE db_query_duration_seconds histogram');
+  snapshots.forEach(({ labels, snapshot }) => snapshot.durations.forEach(([target, histogram]) => {
+    lines.push(...histogramLines('db_query_duration_seconds', { ...labels, target }, histogram));
+  }));
+
+  lines.push('# HELP http_request_db_queries Supabase calls made while serving one request');
+  lines.push('# TYPE http_request_db_queries histogram');
+  snapshots.forEach(({ labels, snapshot }) => snapshot.routes.forEach(([route, stats]) => {
+    lines.push(...histogramLines('http_request_db_queries', { ...labels, route }, stats.queries));
+  }));
+
+  lines.push('# HELP http_request_duration_seconds Request latency by route');
+  lines.push('# TYPE http_request_duration_seconds histogram');
+  snapshots.forEach(({ labels, snapshot }) => snapshot.routes.forEach(([route, stats]) => {
+    lines.push(...histogramLines('http_request_duration_seconds', { ...labels, route }, stats.duration));
+  }));
+
+  return `${lines.join('\n')}\n`;
+};
+
+respond(SNAPSHOT_CHANNEL, getMetricsSnapshot);
+
+/**
+ * Render this process's metrics, or in cluster mode every worker's (labelled by worker pid)
+ * @returns {Promise<string>}
+ */
+export const collectMetrics = async () => {
+  if (!cluster.isWorker) {
+    return renderMetrics();
+  }
+
+  const replies = await collect(SNAPSHOT_CHANNEL);
+  return renderMetrics(replies
+    .filter(({ reply }) => reply)
+    .sort((a, b) => a.pid - b.pid)
+    .map(({ pid, reply }) => ({ labels: { worker: String(pid) }, snapshot: reply })));
+};
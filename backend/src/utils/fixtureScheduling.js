@@ -0,0 +1,282 @@
+/**
+ * League fixture generation and court scheduling
+ * Pure functions: no database access, so the engine can be benchmarked on synthetic leagues.
+ *
+ * Fixtures are plain objects:
+ *   { round, matchNumber, player1Id, player2Id, status, winnerId, courtId, startTime, endTime }
+ * Rounds are played in order: every fixture of round r is placed in a later time slot than
+ * every fixture of round r - 1, so knockout rounds always follow the results they depend on.
+ */
+
+export const FIXTURE_FORMATS = ['round_robin', 'knockout'];
+
+const MINUTE_MS = 60 * 1000;
+
+/**
+ * Round-robin fixtures (circle method): everyone plays everyone once
+ * With an odd number of participants one player sits out each round.
+ * @param {Array<string>} participantIds - Participant user IDs
+ * @returns {Array<Object>} - Fixtures, n - 1 rounds (n rounded up to even)
+ */
+export const generateRoundRobin = (participantIds) => {
+  const players = participantIds.length % 2 === 0 ? [...participantIds] : [...participantIds, null];
+  const n = players.length;
+  const rotating = n - 1; // players[n - 1] stays fixed, the rest rotate
+  const fixtures = [];
+
+  for (let round = 0; round < rotating; round++) {
+    let matchNumber = 1;
+
+    for (let i = 0; i < n / 2; i++) {
+      let home;
+      let away;
+      if (i === 0) {
+        home = players[n - 1];
+        away = players[round % rotating];
+        // Alternate the fixed player's side
+        if (round % 2 === 1) {
+          [home, away] = [away, home];
+        }
+      } else {
+        home = players[(round + i) % rotating];
+        away = players[(round - i + rotating) % rotating];
+      }
+
+      if (home !== null && away !== null) {
+        fixtures.push({
+          round: round + 1,
+          matchNumber: matchNumber++,
+          player1Id: home,
+          player2Id: away,
+          status: 'scheduled',
+          winnerId: null
+        });
+      }
+    }
+  }
+
+  return fixtures;
+};
+
+/**
+ * Bracket order of seeds, e.g. 8 -> [1, 8, 4, 5, 2, 7, 3, 6], so top seeds meet last
+ */
+const seedOrder = (size) => {
+  let order = [1];
+  while (order.length < size) {
+    const next = order.length * 2 + 1;
+    order = order.flatMap(seed => [seed, next - seed]);
+  }
+  return order;
+};
+
+/**
+ * Single-elimination fixtures
+ * Participants are seeded in the given order. The bracket is padded to a power of two with
+ * byes (top seeds get them); bye winners are advanced into round 2 straight away. Fixtures of
+ * later rounds have null players until results come in: the winner of (round, m) plays in
+ * (round + 1, ceil(m / 2)).
+ * @param {Array<string>} participantIds - Participant user IDs, best seed first
+ * @returns {Array<Object>} - Fixtures for every round, byes included with status 'bye'
+ */
+export const generateKnockout = (participantIds) => {
+  const n = participantIds.length;
+  if (n < 2) {
+    return [];
+  }
+
+  let size = 2;
+  while (size < n) {
+    size *= 2;
+  }
+
+  const order = seedOrder(size);
+  const fixtures = [];
+  let previousRound = [];
+
+  for (let k = 0; k < size / 2; k++) {
+    const player1Id = participantIds[order[2 * k] - 1] ?? null;
+    const player2Id = participantIds[order[2 * k + 1] - 1] ?? null;
+    const isBye = player1Id === null || player2Id === null;
+
+    const fixture = {
+      round: 1,
+      matchNumber: k + 1,
+      player1Id: player1Id ?? player2Id,
+      player2Id: isBye ? null : player2Id,
+      status: isBye ? 'bye' : 'scheduled',
+      winnerId: isBye ? (player1Id ?? player2Id) : null
+    };
+    fixtures.push(fixture);
+    previousRound.push(fixture);
+  }
+
+  for (let round = 2; previousRound.length > 1; round++) {
+    const currentRound = [];
+
+    for (let k = 0; k < previousRound.length / 2; k++) {
+      const fixture = {
+        round,
+        matchNumber: k + 1,
+        player1Id: previousRound[2 * k].winnerId,
+        player2Id: previousRound[2 * k + 1].winnerId,
+        status: 'scheduled',
+        winnerId: null
+      };
+      fixtures.push(fixture);
+      currentRound.push(fixture);
+    }
+
+    previousRound = currentRound;
+  }
+
+  return fixtures;
+};
+
+/**
+ * Time slots of slotMinutes within the daily window, from windowStart until windowEnd
+ * Days follow the server's local calendar, like calculateLeagueStatus.
+ */
+function* timeSlots({ windowStart, windowEnd, slotMinutes, dayStartMinutes, dayEndMinutes }) {
+  const endMs = windowEnd.getTime();
+  const day = new Date(windowStart);
+  day.setHours(0, 0, 0, 0);
+
+  while (day.getTime() < endMs) {
+    for (let minute = dayStartMinutes; minute + slotMinutes <= dayEndMinutes; minute += slotMinutes) {
+      const start = new Date(day.getFullYear(), day.getMonth(), day.getDate(), 0, minute).getTime();
+      const end = start + slotMinutes * MINUTE_MS;
+
+      if (end > endMs) {
+        return;
+      }
+      if (start >= windowStart.getTime()) {
+        yield { start, end };
+      }
+    }
+    day.setDate(day.getDate() + 1);
+  }
+}
+
+/**
+ * Per-court sorted busy intervals with a forward-only cursor (slots are visited in order)
+ */
+const createBusyIndex = (busyIntervals) => {
+  const byCourt = new Map();
+  busyIntervals.forEach(({ courtId, start, end }) => {
+    if (!byCourt.has(courtId)) {
+      byCourt.set(courtId, []);
+    }
+    byCourt.get(courtId).push({ start, end });
+  });
+
+  const cursors = new Map();
+  byCourt.forEach((intervals, courtId) => {
+    intervals.sort((a, b) => a.start - b.start);
+    cursors.set(courtId, 0);
+  });
+
+  return (courtId, start, end) => {
+    const intervals = byCourt.get(courtId);
+    if (!intervals) {
+      return false;
+    }
+
+    // Intervals that ended before this slot can never overlap a later one
+    let cursor = cursors.get(courtId);
+    while (cursor < intervals.length && intervals[cursor].end <= start) {
+      cursor++;
+    }
+    cursors.set(courtId, cursor);
+
+    for (let i = cursor; i < intervals.length && intervals[i].start < end; i++) {
+      if (intervals[i].end > start) {
+        return true;
+      }
+    }
+    return false;
+  };
+};
+
+/**
+ * Place fixtures on courts and time slots
+ * Rounds are placed in order, each starting in the slot after the previous round's last match;
+ * within a round every player appears at most once, so any free court in any slot will do.
+ * Byes are left without a court or time.
+ * @param {Array<Object>} fixtures - Output of generateRoundRobin / generateKnockout
+ * @param {Object} options
+ * @param {Array<string>} options.courtIds - Courts to use, in order of preference
+ * @param {Date} options.windowStart - Earliest start
+ * @param {Date} options.windowEnd - Latest end
+ * @param {number} [options.slotMinutes] - Match length
+ * @param {number} [options.dayStartMinutes] - Daily opening, minutes after midnight
+ * @param {number} [options.dayEndMinutes] - Daily closing, minutes after midnight
+ * @param {Array<Object>} [options.busy] - Existing bookings { courtId, start, end } (ms)
+ * @returns {Object} - { success, fixtures, unscheduled, error }
+ */
+export const scheduleFixtures = (fixtures, {
+  courtIds,
+  windowStart,
+  windowEnd,
+  slotMinutes = 30,
+  dayStartMinutes = 8 * 60,
+  dayEndMinutes = 22 * 60,
+  busy = []
+}) => {
+  if (!courtIds || courtIds.length === 0) {
+    return { success: false, fixtures, unscheduled: fixtures.length, error: 'No courts available' };
+  }
+
+  const isBusy = createBusyIndex(busy);
+  const slots = timeSlots({ windowStart, windowEnd, slotMinutes, dayStartMinutes, dayEndMinutes });
+  const playable = fixtures.filter(fixture => fixture.status !== 'bye');
+
+  let slot = null;
+  let freeCourts = [];
+  let usedInSlot = 0;
+  let placed = 0;
+  let currentRound = null;
+
+  const nextSlot = () => {
+    slot = slots.next();
+    usedInSlot = 0;
+    freeCourts = slot.done
+      ? []
+      : courtIds.filter(courtId => !isBusy(courtId, slot.value.start, slot.value.end));
+  };
+
+  nextSlot();
+
+  for (const fixture of playable) {
+    // A new round starts in a fresh slot
+    if (fixture.round !== currentRound && usedInSlot > 0) {
+      nextSlot();
+    }
+    currentRound = fixture.round;
+
+    while (!slot.done && freeCourts.length === 0) {
+      nextSlot();
+    }
+    if (slot.done) {
+      break;
+    }
+
+    fixture.courtId = freeCourts.shift();
+    fixture.startTime = new Date(slot.value.start);
+    fixture.endTime = new Date(slot.value.end);
+    usedInSlot++;
+    placed++;
+  }
+
+  const unscheduled = playable.length - placed;
+  if (unscheduled > 0) {
+    return {
+      success: false,
+      fixtures,
+      unscheduled,
+      error: `Not enough court time: ${unscheduled} of ${playable.length} matches could not be placed before the end date`
+    };
+  }
+
+  return { success: true, fixtures, unscheduled: 0 };
+};
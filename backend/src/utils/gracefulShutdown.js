@@ -0,0 +1,113 @@
+import process from "node:process";
+import { logger } from './logger.js';
+
+/**
+ * Graceful shutdown
+ * - Readiness: /health/ready answers 503 once shutdown starts, so load balancers stop sending
+ *   new traffic while in-flight requests finish
+ * - Connection draining: every response is sent with Connection: close, so busy connections
+ *   close right after it; idle keep-alive connections are left to the server's
+ *   keepAliveTimeout as usual (closing one sooner races a client reusing it and fails that
+ *   request); anything still open at the deadline is destroyed
+ *
+ * Connections are tracked through the server's 'connection' event instead of
+ * server.closeIdleConnections(): in cluster mode workers do not listen themselves, the primary
+ * hands them connections (see socket/socketCluster.js), and Node only tracks listening servers.
+ *
+ * SHUTDOWN_TIMEOUT_MS: how long in-flight requests get to finish (default 25000)
+ * SHUTDOWN_READINESS_DELAY_MS: how long to keep serving while reporting not ready, before
+ *   connections are refused (default 5000 in production, 0 otherwise)
+ */
+
+const IS_PRODUCTION = process.env.NODE_ENV === 'production';
+
+export const SHUTDOWN_TIMEOUT_MS = parseInt(process.env.SHUTDOWN_TIMEOUT_MS, 10) || 25000;
+export const READINESS_DELAY_MS = parseInt(process.env.SHUTDOWN_READINESS_DELAY_MS ?? (IS_PRODUCTION ? '5000' : '0'), 10) || 0;
+
+// IPC messages between the cluster primary (src/cluster.js) and its workers
+export const WORKER_LIFECYCLE = {
+  ready: 'lifecycle:ready', // worker -> primary: accepting connections
+  unready: 'lifecycle:unready', // primary -> worker: report not ready, keep serving
+  shutdown: 'lifecycle:shutdown' // primary -> worker: drain and exit
+};
+
+let ready = true;
+
+/**
+ * Whether this process should receive new traffic
+ * @returns {boolean}
+ */
+export const isReady = () => ready;
+
+/**
+ * Report not ready from now on (the process keeps serving until it is drained)
+ */
+export const markNotReady = () => {
+  ready = false;
+};
+
+/**
+ * Wait for the given time
+ * @param {number} ms - Milliseconds
+ * @returns {Promise<void>}
+ */
+export const delay = (ms) => new Promise(resolve => setTimeout(resolve, ms));
+
+/**
+ * Track the connections of an HTTP server so they can be drained on shutdown
+ * Call after the Socket.IO server is attached.
+ * @param {import('http').Server} httpServer - Server whose connections are tracked
+ * @returns {(timeoutMs: number) => Promise<void>} - Drain: resolves once every connection is closed
+ */
+export const trackConnections = (httpServer) => {
+  const connections = new Set();
+  const inFlight = new Set(); // responses not finished yet
+  let draining = false;
+  let onDrained = null;
+
+  httpServer.on('connection', (socket) => {
+    connections.add(socket);
+    socket.once('close', () => {
+      connections.delete(socket);
+      if (draining && connections.size === 0) {
+        onDrained?.();
+      }
+    });
+  });
+
+  // Ahead of Express and Socket.IO, so every request (long-polling included) is seen
+  httpServer.prependListener('request', (req, res) => {
+    if (draining) {
+      res.setHeader('Connection', 'close');
+      return;
+    }
+
+    inFlight.add(res);
+    res.once('close', () => inFlight.delete(res));
+  });
+
+  return (timeoutMs) => new Promise((resolve) => {
+    const timer = setTimeout(() => {
+      if (connections.size > 0) {
+        logger.warn('Shutdown deadline reached, closing remaining connections', { connections: connections.size });
+      }
+      connections.forEach(socket => socket.destroy());
+      resolve();
+    }, timeoutMs);
+
+    onDrained = () => {
+      clearTimeout(timer);
+      resolve();
+    };
+
+    draining = true;
+    inFlight.forEach((res) => {
+      if (!res.headersSent) {
+        res.setHeader('Connection', 'close');
+      }
+    });
+    if (connections.size === 0) {
+      onDrained();
+    }
+  });
+};
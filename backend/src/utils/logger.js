@@ -0,0 +1,244 @@
+import process from "node:process";
+import fs from "node:fs";
+import tty from "node:tty";
+import { getRequestContext } from './requestContext.js';
+
+/**
+ * Leveled, structured logger
+ * - One JSON object per line: { time, level, msg, pid, reqId, ...fields }
+ * - Lines are buffered and written to stdout asynchronously (fs.write runs on the libuv
+ *   thread pool), so logging never blocks the event loop the way console.log on a pipe does
+ * - Debug logs are sampled per request: a sampled request logs all of its debug lines
+ *   (LOG_DEBUG_SAMPLE_RATE, default 1 in development and 0.01 in production)
+ * - A field named `error` holding an Error or a Supabase error is reduced to its message,
+ *   code, details and stack
+ *
+ * LOG_LEVEL: debug | info | warn | error (default info in production, debug otherwise)
+ * LOG_FORMAT: json | pretty (default pretty on an interactive terminal, json otherwise)
+ */
+
+const LEVELS = { debug: 10, info: 20, warn: 30, error: 40 };
+
+const IS_PRODUCTION = process.env.NODE_ENV === 'production';
+const MIN_LEVEL = LEVELS[process.env.LOG_LEVEL] ?? (IS_PRODUCTION ? LEVELS.info : LEVELS.debug);
+const DEBUG_SAMPLE_RATE = parseFloat(process.env.LOG_DEBUG_SAMPLE_RATE ?? (IS_PRODUCTION ? '0.01' : '1'));
+const PRETTY = (process.env.LOG_FORMAT || (tty.isatty(1) ? 'pretty' : 'json')) === 'pretty';
+
+const STDOUT_FD = 1;
+const FLUSH_BYTES = 64 * 1024;
+// Beyond this, new lines are dropped (and counted) until the destination catches up
+const MAX_BUFFERED_BYTES = 8 * 1024 * 1024;
+const RETRY_MS = 10;
+
+let buffer = [];
+let bufferedBytes = 0;
+let dropped = 0;
+let writing = false;
+let flushScheduled = false;
+let drainWaiters = [];
+
+// ---------------------------------------------------------------------------
+// Output
+// ---------------------------------------------------------------------------
+
+const settleDrainWaiters = () => {
+  if (!writing && buffer.length === 0) {
+    drainWaiters.forEach(resolve => resolve());
+    drainWaiters = [];
+  }
+};
+
+const writeChunk = (chunk) => {
+  fs.write(STDOUT_FD, chunk, 0, chunk.length, null, (error, written) => {
+    if (error) {
+      // stdout may be a non-blocking pipe that is full: retry shortly
+      if (error.code === 'EAGAIN') {
+        setTimeout(() => writeChunk(chunk), RETRY_MS);
+        return;
+      }
+      writing = false;
+      flush();
+      return;
+    }
+
+    if (written < chunk.length) {
+      writeChunk(chunk.subarray(written));
+      return;
+    }
+
+    writing = false;
+    flush();
+  });
+};
+
+const takeBuffer = () => {
+  if (dropped > 0) {
+    buffer.push(formatLine('warn', 'Log lines dropped: output could not keep up', { dropped }, undefined));
+    dropped = 0;
+  }
+  const chunk = Buffer.from(buffer.join(''));
+  buffer = [];
+  bufferedBytes = 0;
+  return chunk;
+};
+
+function flush() {
+  flushScheduled = false;
+  if (writing || buffer.length === 0) {
+    settleDrainWaiters();
+    return;
+  }
+
+  writing = true;
+  writeChunk(takeBuffer());
+}
+
+const enqueue = (line) => {
+  if (bufferedBytes > MAX_BUFFERED_BYTES) {
+    dropped++;
+    return;
+  }
+
+  buffer.push(line);
+  bufferedBytes += line.length;
+
+  if (bufferedBytes >= FLUSH_BYTES) {
+    flush();
+  } else if (!flushScheduled) {
+    flushScheduled = true;
+    setImmediate(flush);
+  }
+};
+
+// Whatever is still buffered when the process exits is written synchronously
+process.on('exit', () => {
+  if (buffer.length > 0) {
+    try {
+      fs.writeSync(STDOUT_FD, takeBuffer());
+    } catch {
+      // Nothing left to report to
+    }
+  }
+});
+
+// ---------------------------------------------------------------------------
+// Formatting
+// ---------------------------------------------------------------------------
+
+const serializeError = (error) => {
+  if (!error || typeof error !== 'object' || (!(error instanceof Error) && error.message === undefined)) {
+    return error;
+  }
+  return {
+    ...(error.name && error.name !== 'Error' ? { name: error.name } : {}),
+    message: error.message,
+    ...(error.code ? { code: error.code } : {}),
+    ...(error.details ? { details: error.details } : {}),
+    ...(error.hint ? { hint: error.hint } : {}),
+    ...(error instanceof Error && error.stack ? { stack: error.stack } : {})
+  };
+};
+
+const safeReplacer = () => {
+  const seen = new WeakSet();
+  return (key, value) => {
+    if (typeof value === 'bigint') {
+      return value.toString();
+    }
+    if (value && typeof value === 'object') {
+      if (seen.has(value)) {
+        return '[Circular]';
+      }
+      seen.add(value);
+    }
+    return value;
+  };
+};
+
+const stringify = (entry) => {
+  try {
+    return JSON.stringify(entry);
+  } catch {
+    // Circular or BigInt fields: a logging call must never throw
+    return JSON.stringify(entry, safeReplacer());
+  }
+};
+
+const prettyFields = (fields) => Object.entries(fields)
+  .map(([key, value]) => `${key}=${typeof value === 'string' ? value : stringify(value)}`)
+  .join(' ');
+
+function formatLine(level, msg, fields, reqId) {
+  const data = fields?.error !== undefined ? { ...fields, error: serializeError(fields.error) } : fields;
+
+  if (PRETTY) {
+    const time = new Date().toISOString().slice(11, 23);
+    const { stack, ...error } = data?.error && typeof data.error === 'object' ? data.error : {};
+    const details = data ? prettyFields(stack ? { ...data, error } : data) : '';
+    return `${time} ${level.toUpperCase().padEnd(5)} ${reqId ? `[${reqId.slice(0, 8)}] ` : ''}${msg}${details ? ` ${details}` : ''}\n${stack ? `${stack}\n` : ''}`;
+  }
+
+  return `${stringify({
+    time: new Date().toISOString(),
+    level,
+    msg,
+    pid: process.pid,
+    ...(reqId ? { reqId } : {}),
+    ...data
+  })}\n`;
+}
+
+// ---------------------------------------------------------------------------
+// API
+// ---------------------------------------------------------------------------
+
+/**
+ * Decide whether a new request logs its debug lines
+ * @returns {boolean}
+ */
+export const sampleDebug = () => MIN_LEVEL <= LEVELS.debug && Math.random() < DEBUG_SAMPLE_RATE;
+
+const isEnabled = (level, context) => {
+  if (LEVELS[level] < MIN_LEVEL) {
+    return false;
+  }
+  if (level !== 'debug') {
+    return true;
+  }
+  return context ? context.debugSampled : Math.random() < DEBUG_SAMPLE_RATE;
+};
+
+const log = (level, msg, fields) => {
+  const context = getRequestContext();
+  if (isEnabled(level, context)) {
+    enqueue(formatLine(level, msg, fields, context?.requestId));
+  }
+};
+
+export const logger = {
+  /**
+   * @param {string} msg - Message
+   * @param {Object} [fields] - Structured fields (an `error` field is serialized)
+   */
+  debug: (msg, fields) => log('debug', msg, fields),
+  info: (msg, fields) => log('info', msg, fields),
+  warn: (msg, fields) => log('warn', msg, fields),
+  error: (msg, fields) => log('error', msg, fields),
+
+  /**
+   * Whether debug lines of the current request are written (skip building costly fields otherwise)
+   */
+  isDebugEnabled: () => {
+    const context = getRequestContext();
+    return context ? isEnabled('debug', context) : MIN_LEVEL <= LEVELS.debug && DEBUG_SAMPLE_RATE > 0;
+  }
+};
+
+/**
+ * Resolve once everything logged so far has been written (e.g. before a graceful exit)
+ * @returns {Promise<void>}
+ */
+export const flushLogs = () => new Promise((resolve) => {
+  drainWaiters.push(resolve);
+  flush();
+});
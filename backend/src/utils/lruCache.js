@@ -0,0 +1,81 @@
+/**
+ * Small in-process LRU cache with per-entry TTL
+ * Relies on Map insertion order: the first key is always the least recently used
+ */
+
+/**
+ * Create a bounded LRU cache
+ * @param {Object} options
+ * @param {number} options.maxEntries - Maximum number of entries kept in memory
+ * @param {number} options.ttlMs - Default time-to-live for an entry in milliseconds
+ * @returns {Object} - Cache with get/set/delete/clear/stats
+ */
+export const createLruCache = ({ maxEntries = 1000, ttlMs = 60 * 1000 } = {}) => {
+  const entries = new Map();
+  let hits = 0;
+  let misses = 0;
+  let evictions = 0;
+
+  const get = (key) => {
+    const entry = entries.get(key);
+
+    if (!entry) {
+      misses++;
+      return undefined;
+    }
+
+    if (entry.expiresAt <= Date.now()) {
+      entries.delete(key);
+      misses++;
+      return undefined;
+    }
+
+    // Move to the most recently used position
+    entries.delete(key);
+    entries.set(key, entry);
+    hits++;
+    return entry.value;
+  };
+
+  /**
+   * @param {*} key
+   * @param {*} value
+   * @param {number} [entryTtlMs] - Overrides the default TTL for this entry
+   */
+  const set = (key, value, entryTtlMs = ttlMs) => {
+    if (entryTtlMs <= 0) {
+      entries.delete(key);
+      return;
+    }
+
+    entries.delete(key);
+    entries.set(key, { value, expiresAt: Date.now() + entryTtlMs });
+
+    while (entries.size > maxEntries) {
+      const oldestKey = entries.keys().next().value;
+      entries.delete(oldestKey);
+      evictions++;
+    }
+  };
+
+  const del = (key) => entries.delete(key);
+
+  const clear = () => entries.clear();
+
+  const stats = () => ({
+    size: entries.size,
+    maxEntries,
+    hits,
+    misses,
+    evictions,
+    hitRate: hits + misses === 0 ? 0 : hits / (hits + misses)
+  });
+
+  return {
+    get,
+    set,
+    delete: del,
+    clear,
+    stats
+  };
+};
@@ -0,0 +1,29 @@
+/**
+ * Paged reads
+ * PostgREST caps every response at its max-rows setting (1000 by default) and truncates
+ * silently, so reads that can grow past it are fetched page by page with range().
+ */
+
+export const PAGE_SIZE = 1000;
+
+/**
+ * Read every row of a query, one page at a time
+ * @param {Function} buildQuery - Returns a fresh query builder with a stable (unique) order
+ * @param {number} [pageSize] - Rows per request
+ * @returns {Promise<Object>} - { data, error }
+ */
+export const selectAllPages = async (buildQuery, pageSize = PAGE_SIZE) => {
+  const rows = [];
+
+  for (let from = 0; ; from += pageSize) {
+    const { data, error } = await buildQuery().range(from, from + pageSize - 1);
+    if (error) {
+      return { data: null, error };
+    }
+
+    rows.push(...(data || []));
+    if (!data || data.length < pageSize) {
+      return { data: rows, error: null };
+    }
+  }
+};
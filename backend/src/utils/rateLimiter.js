@@ -0,0 +1,42 @@
+import { createLruCache } from './lruCache.js';
+
+/**
+ * Keyed token-bucket rate limiter
+ * Each key gets `capacity` tokens that refill at `refillPerSecond`; idle buckets are
+ * dropped from the LRU once they would be full again, so memory stays bounded.
+ */
+
+/**
+ * Create a rate limiter
+ * @param {Object} options
+ * @param {number} options.capacity - Burst size per key
+ * @param {number} options.refillPerSecond - Sustained rate per key
+ * @param {number} [options.maxKeys] - Maximum number of tracked keys
+ * @returns {Object} - Limiter with take(key) -> { allowed, retryAfterMs }
+ */
+export const createRateLimiter = ({ capacity, refillPerSecond, maxKeys = 10000 }) => {
+  const refillMs = Math.ceil((capacity / refillPerSecond) * 1000);
+  const buckets = createLruCache({ maxEntries: maxKeys, ttlMs: refillMs });
+
+  const take = (key) => {
+    const now = Date.now();
+    const bucket = buckets.get(key) || { tokens: capacity, updatedAt: now };
+
+    bucket.tokens = Math.min(capacity, bucket.tokens + ((now - bucket.updatedAt) / 1000) * refillPerSecond);
+    bucket.updatedAt = now;
+
+    if (bucket.tokens < 1) {
+      buckets.set(key, bucket);
+      return {
+        allowed: false,
+        retryAfterMs: Math.ceil(((1 - bucket.tokens) / refillPerSecond) * 1000)
+      };
+    }
+
+    bucket.tokens -= 1;
+    buckets.set(key, bucket);
+    return { allowed: true, retryAfterMs: 0 };
+  };
+
+  return { take };
+};
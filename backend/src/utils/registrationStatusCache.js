@@ -0,0 +1,107 @@
+import process from "node:process";
+import { createLruCache } from './lruCache.js';
+import { publish, subscribe } from './clusterBus.js';
+
+/**
+ * Cache of registration status results (checkGymRegistrationStatus / checkSwimmingRegistrationStatus)
+ * keyed by sport and user ID. An entry never outlives the registration's next_payment_date,
+ * so a cached "active" status cannot hide a payment that has become due.
+ *
+ * Entries must be invalidated whenever a registration row is created or updated
+ * (payment verification, monthly payments) and after payment-due sweeps. Invalidations are
+ * published to the other cluster workers, which hold their own copy.
+ */
+
+const MAX_ENTRIES = parseInt(process.env.REGISTRATION_CACHE_MAX_ENTRIES, 10) || 5000;
+const TTL_MS = parseInt(process.env.REGISTRATION_CACHE_TTL_MS, 10) || 5 * 60 * 1000;
+
+const statusCaches = new Map(); // sport -> LRU cache keyed by user ID
+
+const getSportCache = (sport) => {
+  let cache = statusCaches.get(sport);
+  if (!cache) {
+    cache = createLruCache({ maxEntries: MAX_ENTRIES, ttlMs: TTL_MS });
+    statusCaches.set(sport, cache);
+  }
+  return cache;
+};
+
+/**
+ * Milliseconds until the registration's payment becomes due
+ * next_payment_date is compared against the UTC date, so the boundary is UTC midnight
+ */
+const msUntilPaymentDue = (registration) => {
+  if (!registration?.next_payment_date) {
+    return Infinity;
+  }
+
+  const dueAt = Date.parse(`${registration.next_payment_date}T00:00:00Z`);
+  return Number.isNaN(dueAt) ? Infinity : dueAt - Date.now();
+};
+
+/**
+ * Get a cached registration status
+ * @param {string} sport - 'gym' or 'swimming'
+ * @param {string} userId - User ID
+ * @returns {Object|undefined} - Cached status result or undefined on miss
+ */
+export const getCachedRegistrationStatus = (sport, userId) => {
+  return getSportCache(sport).get(userId);
+};
+
+/**
+ * Store a registration status result
+ * Failed lookups are not cached; the TTL is capped at the next payment boundary
+ * @param {string} sport - 'gym' or 'swimming'
+ * @param {string} userId - User ID
+ * @param {Object} status - Result of the registration status check
+ */
+export const setCachedRegistrationStatus = (sport, userId, status) => {
+  if (!status?.success) {
+    return;
+  }
+
+  const ttlMs = Math.min(TTL_MS, msUntilPaymentDue(status.registration));
+  getSportCache(sport).set(userId, status, ttlMs);
+};
+
+/**
+ * Drop a user's cached status so the next check reloads the registration
+ * @param {string} sport - 'gym' or 'swimming'
+ * @param {string} userId - User ID
+ */
+export const invalidateRegistrationStatus = (sport, userId) => {
+  if (userId) {
+    getSportCache(sport).delete(userId);
+    publish('registration-status:invalidate', { sport, userId });
+  }
+};
+
+/**
+ * Drop every cached status for a sport (used after bulk updates such as payment-due sweeps)
+ * @param {string} sport - 'gym' or 'swimming'
+ */
+export const clearRegistrationStatusCache = (sport) => {
+  getSportCache(sport).clear();
+  publish('registration-status:invalidate', { sport, userId: null });
+};
+
+subscribe('registration-status:invalidate', ({ sport, userId }) => {
+  if (userId) {
+    getSportCache(sport).delete(userId);
+  } else {
+    getSportCache(sport).clear();
+  }
+});
+
+/**
+ * Get hit/miss counters per sport
+ * @returns {Object} - { [sport]: { size, maxEntries, hits, misses, evictions, hitRate } }
+ */
+export const getRegistrationStatusCacheStats = () => {
+  const stats = {};
+  for (const [sport, cache] of statusCaches) {
+    stats[sport] = cache.stats();
+  }
+  return stats;
+};
@@ -0,0 +1,21 @@
+import { AsyncLocalStorage } from "node:async_hooks";
+
+/**
+ * Per-request context shared by the logger (request id, debug sampling) and the
+ * database metrics (call counts), carried across awaits with AsyncLocalStorage.
+ * Established for every HTTP request by middlewares/requestContext.js.
+ */
+
+const storage = new AsyncLocalStorage();
+
+/**
+ * Run a callback (and everything it awaits or schedules) inside a request context
+ * @param {Object} context - { requestId, debugSampled, db }
+ * @param {Function} callback
+ */
+export const runWithRequestContext = (context, callback) => storage.run(context, callback);
+
+/**
+ * Context of the request being served, or undefined outside a request
+ */
+export const getRequestContext = () => storage.getStore();
@@ -0,0 +1,26 @@
+/**
+ * Supabase RPC error helpers
+ * Services that can fall back to plain table queries do so only when the function is not
+ * installed yet; any other error (a failed or rolled-back call) is reported, never retried
+ * outside the function. A fallback may in turn meet tables from migrations not applied yet.
+ */
+
+// Function not found: PostgREST schema cache (PGRST202) / Postgres undefined_function (42883)
+export const MISSING_FUNCTION_CODES = ['PGRST202', '42883'];
+
+/**
+ * Whether an RPC error means the database function does not exist
+ * @param {Object} error - Error returned by supabase.rpc
+ * @returns {boolean}
+ */
+export const isMissingFunction = (error) => MISSING_FUNCTION_CODES.includes(error?.code);
+
+// Table not found: PostgREST schema cache (PGRST205) / Postgres undefined_table (42P01)
+export const MISSING_TABLE_CODES = ['PGRST205', '42P01'];
+
+/**
+ * Whether a query error means the table does not exist
+ * @param {Object} error - Error returned by a table query
+ * @returns {boolean}
+ */
+export const isMissingTable = (error) => MISSING_TABLE_CODES.includes(error?.code);
@@ -2,6 +2,8 @@
  * Utility functions for determining appropriate time slot based on current time
  */
 
+import { validateUserEligibility } from './swimmingValidation.js';
+
 /**
  * Determine which time slot to assign based on current time
  * @param {Array} timeSlots - Array of time slot objects with start_time and end_time
@@ -99,6 +101,205 @@ export const determineTimeSlot = (timeSlots, currentDateTime = new Date()) => {
   };
 };
 
+// ==================== COMPILED SCHEDULE ====================
+
+/**
+ * Build a sorted interval index over a list of slot entries
+ * @param {Array} entries - [{ position, start, end }] already sorted by start (stable)
+ * @returns {Object} - Minute-of-day arrays plus positions into the source slot array
+ */
+const buildSlotIndex = (entries) => {
+  const size = entries.length;
+  const starts = new Int32Array(size);
+  const ends = new Int32Array(size);
+  const maxEnds = new Int32Array(size); // running max of ends, non-decreasing
+  const positions = new Int32Array(size);
+  let runningMax = -1;
+
+  entries.forEach((entry, i) => {
+    starts[i] = entry.start;
+    ends[i] = entry.end;
+    positions[i] = entry.position;
+    runningMax = Math.max(runningMax, entry.end);
+    maxEnds[i] = runningMax;
+  });
+
+  return { size, starts, ends, maxEnds, positions };
+};
+
+/**
+ * Index of the first element greater than target in a non-decreasing array
+ */
+const upperBound = (values, target) => {
+  let low = 0;
+  let high = values.length;
+  while (low < high) {
+    const mid = (low + high) >>> 1;
+    if (values[mid] <= target) {
+      low = mid + 1;
+    } else {
+      high = mid;
+    }
+  }
+  return low;
+};
+
+/**
+ * Version key for a slot set: slot count and newest updated_at. The updated_at trigger bumps a
+ * row on every edit (including activation), so any edit, addition or removal changes the key.
+ */
+const getSlotSetVersion = (timeSlots) => {
+  let latest = '';
+  for (const slot of timeSlots) {
+    if (slot.updated_at > latest) {
+      latest = slot.updated_at;
+    }
+  }
+  return `${timeSlots.length}|${latest}`;
+};
+
+/**
+ * Compile time slots into a schedule answering slot lookups with binary search.
+ * Times are parsed once; lookups never sort or re-parse.
+ * @param {Array} timeSlots - Time slot rows (start_time, end_time, gender_restriction)
+ * @returns {Object} - Compiled schedule
+ */
+export const compileSchedule = (timeSlots = []) => {
+  const entries = timeSlots
+    .map((slot, position) => ({
+      position,
+      start: parseTime(slot.start_time),
+      end: parseTime(slot.end_time),
+      restriction: slot.gender_restriction
+    }))
+    .sort((a, b) => a.start - b.start);
+
+  return {
+    version: getSlotSetVersion(timeSlots),
+    entries,
+    restrictions: [...new Set(entries.map(entry => entry.restriction))],
+    all: buildSlotIndex(entries),
+    classIndexes: new Map()
+  };
+};
+
+let lastCompiledSchedule = null;
+// Slot arrays already resolved (a caller reusing its array skips the version scan entirely)
+const compiledBySlots = new WeakMap();
+
+/**
+ * Get the compiled schedule for a slot set, recompiling only when the slot set version changes.
+ * Positions resolve into the given array, so callers pass slots in a stable order
+ * (getActiveTimeSlots orders by start_time, then id).
+ * @param {Array} timeSlots - Time slot rows
+ * @returns {Object} - { schedule, timeSlots } where lookups resolve into the given array
+ */
+export const getCompiledSchedule = (timeSlots = []) => {
+  const known = compiledBySlots.get(timeSlots);
+  if (known && known === lastCompiledSchedule) {
+    return { schedule: known, timeSlots };
+  }
+
+  const version = getSlotSetVersion(timeSlots);
+  if (!lastCompiledSchedule || lastCompiledSchedule.version !== version) {
+    lastCompiledSchedule = compileSchedule(timeSlots);
+  }
+  compiledBySlots.set(timeSlots, lastCompiledSchedule);
+
+  return { schedule: lastCompiledSchedule, timeSlots };
+};
+
+/**
+ * Get the slot index for the eligibility class of a user (which gender restrictions they may attend).
+ * Uses validateUserEligibility so the result matches filtering slot by slot.
+ * @param {Object} compiled - Result of getCompiledSchedule
+ * @param {Object} user - User with role and gender
+ * @returns {Object} - Slot index restricted to eligible slots
+ */
+export const getEligibleSlotIndex = (compiled, user) => {
+  const { schedule } = compiled;
+  const eligibleRestrictions = schedule.restrictions.filter(restriction =>
+    validateUserEligibility(user, { gender_restriction: restriction }).isValid
+  );
+  const classKey = eligibleRestrictions.join(',');
+
+  let index = schedule.classIndexes.get(classKey);
+  if (!index) {
+    index = buildSlotIndex(schedule.entries.filter(entry => eligibleRestrictions.includes(entry.restriction)));
+    schedule.classIndexes.set(classKey, index);
+  }
+
+  return index;
+};
+
+/**
+ * Compiled equivalent of determineTimeSlot
+ * @param {Object} compiled - Result of getCompiledSchedule
+ * @param {Object} index - Slot index (compiled.schedule.all or from getEligibleSlotIndex)
+ * @param {Date} currentDateTime - Current date and time
+ * @returns {Object} - { timeSlot, reason } or { error, message }
+ */
+export const lookupTimeSlot = (compiled, index = compiled.schedule.all, currentDateTime = new Date()) => {
+  if (index.size === 0) {
+    return {
+      error: true,
+      message: 'No time slots available'
+    };
+  }
+
+  const currentTime = currentDateTime.getHours() * 60 + currentDateTime.getMinutes();
+
+  // First slot (in start order) whose end is after now; it is current if it already started
+  const firstOpen = upperBound(index.maxEnds, currentTime);
+  // First slot that has not started yet
+  const nextIndex = upperBound(index.starts, currentTime);
+
+  if (firstOpen < nextIndex) {
+    const slot = compiled.timeSlots[index.positions[firstOpen]];
+    return {
+      timeSlot: slot,
+      reason: 'current_slot',
+      message: `Check-in for current slot (${slot.start_time} - ${slot.end_time})`
+    };
+  }
+
+  if (nextIndex >= index.size) {
+    return {
+      error: true,
+      message: 'All time slots for today have ended. Please check back tomorrow.'
+    };
+  }
+
+  const slot = compiled.timeSlots[index.positions[nextIndex]];
+  return {
+    timeSlot: slot,
+    reason: currentTime + 10 >= index.starts[nextIndex]
+      ? 'within_10_minutes_of_next_slot'
+      : 'next_upcoming_slot',
+    message: `Check-in for upcoming slot starting at ${slot.start_time}`
+  };
+};
+
+/**
+ * Get slots that have not ended yet, in start time order
+ * @param {Object} compiled - Result of getCompiledSchedule
+ * @param {Object} index - Slot index
+ * @param {Date} currentDateTime - Current date and time
+ * @returns {Array} - Time slot rows
+ */
+export const getUpcomingSlots = (compiled, index = compiled.schedule.all, currentDateTime = new Date()) => {
+  const currentTime = currentDateTime.getHours() * 60 + currentDateTime.getMinutes();
+  const upcoming = [];
+
+  for (let i = upperBound(index.maxEnds, currentTime); i < index.size; i++) {
+    if (index.ends[i] > currentTime) {
+      upcoming.push(compiled.timeSlots[index.positions[i]]);
+    }
+  }
+
+  return upcoming;
+};
+
 /**
  * Parse time string (HH:MM:SS or HH:MM) to minutes since midnight
  * @param {string} timeString - Time in format "HH:MM:SS" or "HH:MM"
@@ -0,0 +1,100 @@
+import process from "node:process";
+import { supabase } from '../config/supabase.js';
+import { createLruCache } from './lruCache.js';
+import { publish, subscribe } from './clusterBus.js';
+
+/**
+ * Cache of authenticated user principals (users_metadata rows) keyed by JWT id.
+ * Entries must be invalidated whenever the underlying row changes
+ * (profile updates, password changes, role changes); invalidations reach the other cluster
+ * workers through the cluster bus.
+ */
+
+const principalCache = createLruCache({
+  maxEntries: parseInt(process.env.USER_CACHE_MAX_ENTRIES, 10) || 5000,
+  ttlMs: parseInt(process.env.USER_CACHE_TTL_MS, 10) || 60 * 1000
+});
+
+/**
+ * Get a cached user principal
+ * @param {string} userId - User ID from the JWT
+ * @returns {Object|undefined} - Cached users_metadata row or undefined on miss
+ */
+export const getCachedUserPrincipal = (userId) => {
+  return principalCache.get(userId);
+};
+
+/**
+ * Store a user principal in the cache
+ * @param {string} userId - User ID from the JWT
+ * @param {Object} user - users_metadata row
+ */
+export const setCachedUserPrincipal = (userId, user) => {
+  principalCache.set(userId, user);
+};
+
+// Columns shared by the HTTP auth middleware and the socket handshake
+const PRINCIPAL_COLUMNS = 'id, email, role, cms_id, name, email_confirmed, gender';
+
+const pendingLoads = new Map(); // userId -> Promise of the in-flight users_metadata read
+
+/**
+ * Load a user principal: cache first, then one users_metadata read per user
+ * Concurrent misses for the same user (e.g. a reconnect storm) share a single query.
+ * @param {string} userId - User ID from the JWT
+ * @returns {Promise<Object|null>} - users_metadata row or null if the user does not exist
+ */
+export const loadUserPrincipal = async (userId) => {
+  const cached = principalCache.get(userId);
+  if (cached) {
+    return cached;
+  }
+
+  let pending = pendingLoads.get(userId);
+  if (!pending) {
+    pending = (async () => {
+      try {
+        const { data, error } = await supabase
+          .from('users_metadata')
+          .select(PRINCIPAL_COLUMNS)
+          .eq('id', userId)
+          .single();
+
+        if (error || !data) {
+          return null;
+        }
+
+        principalCache.set(userId, data);
+        return data;
+      } finally {
+        pendingLoads.delete(userId);
+      }
+    })();
+    pendingLoads.set(userId, pending);
+  }
+
+  return pending;
+};
+
+/**
+ * Drop a user principal so the next request reloads it from the database
+ * @param {string} userId - User ID
+ */
+export const invalidateUserPrincipal = (userId) => {
+  if (userId) {
+    principalCache.delete(userId);
+    publish('user-principal:invalidate', { userId });
+  }
+};
+
+subscribe('user-principal:invalidate', ({ userId }) => {
+  principalCache.delete(userId);
+});
+
+/**
+ * Get hit/miss counters for the principal cache
+ * @returns {Object} - { size, maxEntries, hits, misses, evictions, hitRate }
+ */
+export const getUserPrincipalCacheStats = () => {
+  return principalCache.stats();
+};
@@ -0,0 +1,129 @@
+import {
+  generateRoundRobin,
+  generateKnockout,
+  scheduleFixtures
+} from '../src/utils/fixtureScheduling.js';
+
+const players = (count) => Array.from({ length: count }, (_, i) => `p${i + 1}`);
+
+const pairKey = (fixture) => [fixture.player1Id, fixture.player2Id].sort().join('-');
+
+const byRound = (fixtures) => {
+  const rounds = new Map();
+  fixtures.forEach(fixture => {
+    if (!rounds.has(fixture.round)) {
+      rounds.set(fixture.round, []);
+    }
+    rounds.get(fixture.round).push(fixture);
+  });
+  return rounds;
+};
+
+const HOUR_MS = 60 * 60 * 1000;
+
+describe('round robin', () => {
+  test.each([2, 5, 8, 11])('every pair meets exactly once with %i players', (count) => {
+    const fixtures = generateRoundRobin(players(count));
+    const pairs = fixtures.map(pairKey);
+
+    expect(fixtures).toHaveLength(count * (count - 1) / 2);
+    expect(new Set(pairs).size).toBe(pairs.length);
+    fixtures.forEach(fixture => expect(fixture.player1Id).not.toBe(fixture.player2Id));
+  });
+
+  test.each([5, 8])('no player appears twice in a round with %i players', (count) => {
+    byRound(generateRoundRobin(players(count))).forEach(roundFixtures => {
+      const roundPlayers = roundFixtures.flatMap(fixture => [fixture.player1Id, fixture.player2Id]);
+      expect(new Set(roundPlayers).size).toBe(roundPlayers.length);
+    });
+  });
+});
+
+describe('knockout', () => {
+  test.each([
+    [3, ['p1']],
+    [5, ['p1', 'p2', 'p3']],
+    [6, ['p1', 'p2']]
+  ])('gives the byes of %i players to the top seeds', (count, byePlayers) => {
+    const fixtures = generateKnockout(players(count));
+    const firstRound = fixtures.filter(fixture => fixture.round === 1);
+    const byes = firstRound.filter(fixture => fixture.status === 'bye');
+
+    expect(byes.map(fixture => fixture.winnerId).sort()).toEqual(byePlayers);
+    byes.forEach(fixture => expect(fixture.player2Id).toBeNull());
+
+    // Everyone starts in round 1 exactly once
+    const entrants = firstRound.flatMap(fixture => [fixture.player1Id, fixture.player2Id]).filter(Boolean);
+    expect(entrants.sort()).toEqual(players(count).sort());
+  });
+
+  test('advances bye winners into round 2 and ends with one final', () => {
+    const fixtures = generateKnockout(players(5));
+    const roundTwoPlayers = fixtures
+      .filter(fixture => fixture.round === 2)
+      .flatMap(fixture => [fixture.player1Id, fixture.player2Id])
+      .filter(Boolean);
+
+    expect(roundTwoPlayers.sort()).toEqual(['p1', 'p2', 'p3']);
+    expect(fixtures.filter(fixture => fixture.round === 3)).toHaveLength(1);
+  });
+});
+
+describe('scheduler', () => {
+  const windowStart = new Date(2024, 0, 1);
+  const windowEnd = new Date(2024, 0, 8);
+  const courtIds = ['c1', 'c2', 'c3'];
+  const busy = [
+    { courtId: 'c1', start: new Date(2024, 0, 1, 8).getTime(), end: new Date(2024, 0, 1, 12).getTime() },
+    { courtId: 'c2', start: new Date(2024, 0, 1, 9, 15).getTime(), end: new Date(2024, 0, 1, 10).getTime() },
+    { courtId: 'c3', start: new Date(2024, 0, 1, 8).getTime(), end: new Date(2024, 0, 2, 0).getTime() }
+  ];
+
+  test('never overlaps busy intervals or double-books a court', () => {
+    const { success, fixtures } = scheduleFixtures(generateRoundRobin(players(8)), {
+      courtIds, windowStart, windowEnd, busy
+    });
+    expect(success).toBe(true);
+
+    fixtures.forEach(fixture => {
+      const start = fixture.startTime.getTime();
+      const end = fixture.endTime.getTime();
+
+      busy.filter(booking => booking.courtId === fixture.courtId).forEach(booking => {
+        expect(start < booking.end && end > booking.start).toBe(false);
+      });
+      fixtures.filter(other => other !== fixture && other.courtId === fixture.courtId).forEach(other => {
+        expect(start < other.endTime.getTime() && end > other.startTime.getTime()).toBe(false);
+      });
+    });
+  });
+
+  test('places every round in strictly later slots than the previous one', () => {
+    const { success, fixtures } = scheduleFixtures(generateKnockout(players(11)), {
+      courtIds, windowStart, windowEnd, busy
+    });
+    expect(success).toBe(true);
+
+    const rounds = [...byRound(fixtures.filter(fixture => fixture.status !== 'bye')).entries()]
+      .sort(([a], [b]) => a - b)
+      .map(([, roundFixtures]) => roundFixtures);
+
+    for (let r = 1; r < rounds.length; r++) {
+      const previousEnd = Math.max(...rounds[r - 1].map(fixture => fixture.endTime.getTime()));
+      const start = Math.min(...rounds[r].map(fixture => fixture.startTime.getTime()));
+      expect(start).toBeGreaterThanOrEqual(previousEnd);
+    }
+  });
+
+  test('reports fixtures that do not fit before the end date', () => {
+    const result = scheduleFixtures(generateRoundRobin(players(8)), {
+      courtIds: ['c1'],
+      windowStart,
+      windowEnd: new Date(windowStart.getTime() + 24 * HOUR_MS),
+      busy
+    });
+
+    expect(result.success).toBe(false);
+    expect(result.unscheduled).toBeGreaterThan(0);
+  });
+});
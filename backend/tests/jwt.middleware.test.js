@@ -108,4 +108,54 @@ describe('authenticateToken middleware', () => {
     expect(req.user.email).toBe(mockUser.email);
     expect(req.user.cmsId).toBe(mockUser.cms_id);
   });
-});
\ No newline at end of file
+
+  test('serves repeat requests from the principal cache until invalidated', async () => {
+    const mockUser = {
+      id: 'user-2',
+      email: 'cached@nust.edu.pk',
+      role: 'student',
+      cms_id: 222222,
+      name: 'Cached User',
+      email_confirmed: true
+    };
+
+    const mockSingle = jest.fn(async () => ({
+      data: mockUser,
+      error: null
+    }));
+    const mockEq = jest.fn(() => ({ single: mockSingle }));
+    const mockSelect = jest.fn(() => ({ eq: mockEq }));
+    const mockFrom = jest.fn(() => ({ select: mockSelect }));
+
+    jest.unstable_mockModule('../src/config/supabase.js', () => ({
+      supabase: { from: mockFrom }
+    }));
+
+    const { generateToken } = await import('../src/config/auth.js');
+    const token = generateToken(mockUser);
+
+    const { authenticateToken } = await import('../src/middlewares/auth.js');
+    const { invalidateUserPrincipal, getUserPrincipalCacheStats } = await import('../src/utils/userPrincipalCache.js');
+
+    const runRequest = async () => {
+      const req = { headers: { authorization: `Bearer ${token}` } };
+      const res = { status: jest.fn(() => ({ json: jest.fn() })) };
+      const next = jest.fn();
+      await authenticateToken(req, res, next);
+      expect(next).toHaveBeenCalled();
+      expect(req.user.email).toBe(mockUser.email);
+    };
+
+    await runRequest();
+    await runRequest();
+    expect(mockFrom).toHaveBeenCalledTimes(1);
+
+    invalidateUserPrincipal(mockUser.id);
+    await runRequest();
+    expect(mockFrom).toHaveBeenCalledTimes(2);
+
+    const stats = getUserPrincipalCacheStats();
+    expect(stats.hits).toBe(1);
+    expect(stats.misses).toBe(2);
+  });
+});
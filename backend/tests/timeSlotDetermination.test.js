@@ -0,0 +1,58 @@
+import {
+  determineTimeSlot,
+  getCompiledSchedule,
+  getEligibleSlotIndex,
+  lookupTimeSlot,
+  getUpcomingSlots
+} from '../src/utils/timeSlotDetermination.js';
+import { validateUserEligibility } from '../src/utils/swimmingValidation.js';
+
+const timeSlots = [
+  { id: 'a', start_time: '07:00:00', end_time: '08:00:00', gender_restriction: 'male', updated_at: 't1' },
+  { id: 'b', start_time: '08:00:00', end_time: '09:00:00', gender_restriction: 'female', updated_at: 't1' },
+  { id: 'c', start_time: '09:30:00', end_time: '10:30:00', gender_restriction: 'mixed', updated_at: 't1' },
+  { id: 'd', start_time: '06:00:00', end_time: '07:30:00', gender_restriction: 'faculty_pg', updated_at: 't1' },
+  { id: 'e', start_time: '17:00:00', end_time: '18:00:00', gender_restriction: 'male', updated_at: 't1' }
+];
+
+const users = [
+  { id: 'u1', role: 'student', gender: 'male' },
+  { id: 'u2', role: 'student', gender: 'female' },
+  { id: 'u3', role: 'faculty', gender: 'female' },
+  { id: 'u4', role: 'student', gender: null }
+];
+
+describe('compiled schedule lookup', () => {
+  test('matches determineTimeSlot for every minute of the day', () => {
+    const schedule = getCompiledSchedule(timeSlots);
+
+    users.forEach(user => {
+      const eligibleSlots = timeSlots.filter(slot => validateUserEligibility(user, slot).isValid);
+      const index = getEligibleSlotIndex(schedule, user);
+      expect(index.size).toBe(eligibleSlots.length);
+
+      for (let minute = 0; minute < 24 * 60; minute++) {
+        const now = new Date(2024, 0, 1, Math.floor(minute / 60), minute % 60);
+        const expected = determineTimeSlot([...eligibleSlots], now);
+        expect(lookupTimeSlot(schedule, index, now)).toEqual(expected);
+      }
+    });
+  });
+
+  test('recompiles only when the slot set version changes', () => {
+    const first = getCompiledSchedule(timeSlots).schedule;
+    expect(getCompiledSchedule([...timeSlots]).schedule).toBe(first);
+
+    const edited = timeSlots.map(slot => (slot.id === 'c' ? { ...slot, updated_at: 't2' } : slot));
+    expect(getCompiledSchedule(edited).schedule).not.toBe(first);
+
+    const removed = timeSlots.filter(slot => slot.id !== 'b');
+    expect(getCompiledSchedule(removed).schedule).not.toBe(getCompiledSchedule(timeSlots).schedule);
+  });
+
+  test('lists slots that have not ended in start order', () => {
+    const schedule = getCompiledSchedule(timeSlots);
+    const upcoming = getUpcomingSlots(schedule, schedule.schedule.all, new Date(2024, 0, 1, 7, 45));
+    expect(upcoming.map(slot => slot.id)).toEqual(['a', 'b', 'c', 'e']);
+  });
+});
@@ -7,6 +7,7 @@ import {
   type TimeSlot,
  } from '@/services/swimmingService';
 import { getCurrentUserId } from '@/utils/jwt';
+import { socketService } from '@/services/socketService';
 
 /**
  * Custom hook for swimming module operations
@@ -90,6 +91,24 @@ export const useSwimming = () => {
     [setTimeSlots, setLoadingTimeSlots, setTimeSlotsError]
   );
 
+  /**
+   * Subscribe to live occupancy deltas for today's slots (replaces polling)
+   * @returns Unsubscribe function
+   */
+  const subscribeToOccupancy = useCallback(() => {
+    return socketService.subscribeOccupancy('swimming', (event) => {
+      if (!event.timeSlotId) return;
+
+      if (event.currentCount === null) {
+        // Server had no seeded count for this slot; fall back to a single refresh
+        fetchTimeSlots({ active: true });
+        return;
+      }
+
+      updateTimeSlotCount(event.timeSlotId, event.currentCount);
+    });
+  }, [fetchTimeSlots, updateTimeSlotCount]);
+
   /**
    * Fetch specific time slot by ID
    */
@@ -565,6 +584,7 @@ export const useSwimming = () => {
 
     // Actions
     fetchTimeSlots,
+    subscribeToOccupancy,
     fetchTimeSlotById,
     scanQRCode,
     fetchAttendance,
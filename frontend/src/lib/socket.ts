@@ -38,6 +38,9 @@ export const initializeSocket = (): Socket => {
     transports: ['websocket', 'polling'],
     reconnection: true,
     reconnectionDelay: 1000,
+    reconnectionDelayMax: 10000,
+    // Spread reconnects so a network blip doesn't bring every client back at once
+    randomizationFactor: 0.5,
     reconnectionAttempts: 5
   });
 
@@ -49,8 +52,19 @@ export const initializeSocket = (): Socket => {
     console.log('Socket disconnected:', reason);
   });
 
-  socket.on('connect_error', (error) => {
+  socket.on('connect_error', (error: Error & { data?: { retryAfterMs?: number } }) => {
     console.error('Socket connection error:', error);
+
+    // Rejections from the server's handshake rate limiter are not retried automatically
+    const retryAfterMs = error.data?.retryAfterMs;
+    if (retryAfterMs) {
+      const current = socket;
+      setTimeout(() => {
+        if (socket === current && !current?.connected) {
+          current?.connect();
+        }
+      }, retryAfterMs + Math.random() * retryAfterMs);
+    }
   });
 
   return socket;
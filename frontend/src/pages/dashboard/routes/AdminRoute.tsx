@@ -46,6 +46,7 @@ import type { League, CreateLeagueRequest } from '@/services/adminService';
 import { useAdminSwimming } from '@/hooks/useAdminSwimming';
 import { useAdminHorseRiding } from '@/hooks/useHorseRiding';
 import { horseRidingService } from '@/services/horseRidingService';
+import { socketService } from '@/services/socketService';
 import axiosInstance from '@/lib/axiosInstance';
 import toast from 'react-hot-toast';
 
@@ -235,11 +236,20 @@ const AdminRoute: React.FC = () => {
       fetchHorseRidingData();
     } else if (activeTab === 'gym') {
       fetchGymAttendance();
-      // Set up polling every 5 seconds for real-time updates
-      const interval = setInterval(() => {
-        fetchGymAttendance();
-      }, 5000);
-      return () => clearInterval(interval);
+      // Refresh only when a gym check-in is pushed over the socket (no polling).
+      // A burst of check-ins is coalesced into one refetch.
+      let refreshTimer: ReturnType<typeof setTimeout> | null = null;
+      const unsubscribe = socketService.subscribeOccupancy('gym', () => {
+        if (refreshTimer) return;
+        refreshTimer = setTimeout(() => {
+          refreshTimer = null;
+          fetchGymAttendance();
+        }, 1000);
+      });
+      return () => {
+        unsubscribe();
+        if (refreshTimer) clearTimeout(refreshTimer);
+      };
     }
   }, [activeTab, fetchTimeSlots]);
 
@@ -37,6 +37,7 @@ const SwimmingRoute: React.FC = () => {
     rules,
     loadingRules,
     fetchTimeSlots,
+    subscribeToOccupancy,
     scanQRCode,
     joinWaitlist,
     leaveWaitlist,
@@ -183,13 +184,11 @@ const SwimmingRoute: React.FC = () => {
     
     loadData();
     
-    // Refresh time slots every 30 seconds to update capacity
-    const interval = setInterval(() => {
-      fetchTimeSlots({ active: true });
-    }, 30000);
+    // Keep capacity up to date from live occupancy deltas instead of polling
+    const unsubscribe = subscribeToOccupancy();
     
-    return () => clearInterval(interval);
-  }, [fetchTimeSlots, fetchRules]);
+    return () => unsubscribe();
+  }, [fetchTimeSlots, fetchRules, subscribeToOccupancy]);
 
   const handleQRScan = async (qrCode: string) => {
     try {
@@ -103,6 +103,13 @@ export interface FindMatchResponse {
   player: Player;
 }
 
+export interface JoinMatchQueueResponse {
+  success: boolean;
+  message: string;
+  queued: boolean;
+  position: number | null;
+}
+
 // ==================== SERVICE ====================
 
 export const badmintonService = {
@@ -190,5 +197,23 @@ export const badmintonService = {
     });
     return response.data;
   },
+
+  /**
+   * Join the matchmaking queue - the match arrives via the match:updated socket event
+   */
+  joinMatchQueue: async (matchMode: '1v1' | '2v2'): Promise<JoinMatchQueueResponse> => {
+    const response = await axiosInstance.post('/badminton/matches/queue', {
+      matchMode,
+    });
+    return response.data;
+  },
+
+  /**
+   * Leave the matchmaking queue
+   */
+  leaveMatchQueue: async (): Promise<{ success: boolean; message: string }> => {
+    const response = await axiosInstance.delete('/badminton/matches/queue');
+    return response.data;
+  },
 };
 
@@ -86,6 +86,7 @@ export interface UserGoal {
 
 export interface ProgressData {
   workout_date: string;
+  workouts_count?: number;
   total_calories: number;
   total_exercises: number;
   total_duration_minutes: number;
@@ -23,6 +23,17 @@ export type MatchUpdatedEvent = {
   timestamp: string;
 };
 
+export type OccupancySport = 'swimming' | 'gym';
+
+export type OccupancyChangedEvent = {
+  sport: OccupancySport;
+  timeSlotId: string | null;
+  sessionDate: string;
+  delta: number;
+  currentCount: number | null;
+  timestamp: string;
+};
+
 type EventCallbacks = {
   onAvailabilityChanged?: (data: AvailabilityChangedEvent) => void;
   onMatchChanged?: (data: MatchChangedEvent) => void;
@@ -39,6 +50,7 @@ class SocketService {
   private socket: Socket | null = null;
   private callbacks: EventCallbacks = {};
   private isInitialized = false;
+  private occupancyHandlers = new Map<OccupancySport, Set<(data: OccupancyChangedEvent) => void>>();
 
   /**
    * Initialize socket connection
@@ -120,6 +132,48 @@ class SocketService {
     this.callbacks = {};
   }
 
+  /**
+   * Subscribe to live occupancy deltas for a sport.
+   * Independent of on()/off() so it doesn't interfere with badminton callbacks.
+   * @returns Unsubscribe function
+   */
+  subscribeOccupancy(sport: OccupancySport, handler: (data: OccupancyChangedEvent) => void) {
+    const socket = this.socket ?? this.initialize();
+
+    const handlers = this.occupancyHandlers.get(sport) ?? new Set();
+    this.occupancyHandlers.set(sport, handlers);
+    handlers.add(handler);
+
+    // Re-registering the same bound handlers keeps exactly one listener per socket
+    socket.off('occupancy:changed', this.handleOccupancyChanged);
+    socket.on('occupancy:changed', this.handleOccupancyChanged);
+    socket.off('connect', this.resubscribeOccupancy);
+    socket.on('connect', this.resubscribeOccupancy);
+    socket.emit('occupancy:subscribe', { sport });
+
+    return () => {
+      handlers.delete(handler);
+      if (handlers.size === 0) {
+        this.socket?.emit('occupancy:unsubscribe', { sport });
+      }
+    };
+  }
+
+  private handleOccupancyChanged = (data: OccupancyChangedEvent) => {
+    this.occupancyHandlers.get(data.sport)?.forEach((handler) => handler(data));
+  };
+
+  /**
+   * Re-join occupancy rooms after a reconnect (rooms are per connection)
+   */
+  private resubscribeOccupancy = () => {
+    this.occupancyHandlers.forEach((handlers, sport) => {
+      if (handlers.size > 0) {
+        this.socket?.emit('occupancy:subscribe', { sport });
+      }
+    });
+  };
+
   /**
    * Get current socket instance
    */